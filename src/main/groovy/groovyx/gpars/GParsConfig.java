@@ -20,12 +20,12 @@ import groovyx.gpars.scheduler.Pool;
 import groovyx.gpars.scheduler.ResizeablePool;
 import groovyx.gpars.scheduler.Timer;
 import groovyx.gpars.util.GeneralTimer;
+import groovyx.gpars.util.HashedWheelTimer;
 import groovyx.gpars.util.PoolFactory;
 import groovyx.gpars.util.TimerFactory;
 
 import java.util.Collection;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Enables to specify custom thread pools and timers to run GPars in hosted environments, such as GAE
@@ -75,7 +75,7 @@ public final class GParsConfig {
 
     /**
      * If a timer factory has been set, it will be used to create a timer.
-     * Otherwise a new instance of java.util.Timer will be created, wrapped inside a GeneralTimer instance and returned.
+     * Otherwise a new instance of HashedWheelTimer, ticking on the shared GPars timer scheduler, will be created and returned.
      *
      * @return A timer instance to use to handle timeouts (actors, GParsPool, GParsExecutorsPool)
      */
@@ -84,18 +84,7 @@ public final class GParsConfig {
         if (timerFactory != null) {
             timer = timerFactory.createTimer(name, daemon);
         } else {
-            timer = new GeneralTimer() {
-
-                @Override
-                public void schedule(final Runnable task, final long timeout) {
-                    Timer.timer.schedule(task, timeout, TimeUnit.MILLISECONDS);
-                }
-
-                @Override
-                public void shutdown() {
-                    Timer.timer.shutdown();
-                }
-            };
+            timer = new HashedWheelTimer(name, Timer.timer);
         }
         if (!timers.contains(timer)) timers.add(timer);
         return timer;
@@ -105,6 +94,7 @@ public final class GParsConfig {
         for (final GeneralTimer timer : timers) {
             timer.shutdown();
         }
+        if (timerFactory == null) Timer.timer.shutdown();
         GParsPool.shutdown();
         GParsExecutorsPool.shutdown();
     }
@@ -19,7 +19,12 @@ import groovy.lang.Closure;
 import groovyx.gpars.actor.impl.ActorReplyException;
 import groovyx.gpars.actor.impl.MessageStream;
 import groovyx.gpars.group.PGroup;
+import groovyx.gpars.metrics.MessagingInstrumentation;
+import groovyx.gpars.metrics.MessagingMetrics;
 import groovyx.gpars.util.AsyncMessagingCore;
+import groovyx.gpars.util.MessageQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Wraps all actors that repeatedly loop through incoming messages and hold no implicit state between subsequent messages.
@@ -37,6 +42,16 @@ public abstract class AbstractLoopingActor extends Actor {
     private int timeoutCounter = 0;
     private MessageStream currentSender;
 
+    /**
+     * Counts messages and applies the overflow policy, if the mailbox is bounded, null for unbounded mailboxes
+     */
+    private volatile BoundedMailbox mailbox = null;
+
+    /**
+     * Counts the messages waiting in an unbounded mailbox, if the depth needs to be tracked, null otherwise
+     */
+    private volatile AtomicInteger unboundedDepth = null;
+
     /**
      * Holds the particular instance of async messaging core to use
      */
@@ -52,9 +67,24 @@ public abstract class AbstractLoopingActor extends Actor {
      * @param code Code to run on each message
      */
     protected final void initialize(final Closure code) {
+        initialize(code, parallelGroup.createMessageQueue());
+    }
+
+    /**
+     * Builds the async messaging core using the supplied code handler.
+     * Unless the group specifies a message queue factory, messages get stored in an EnvelopeQueue,
+     * which needs a single allocation per message.
+     *
+     * @param code Code to run on each message
+     */
+    final void initializeWithEnvelopes(final Closure code) {
+        initialize(code, parallelGroup.getMessageQueueFactory() != null ? parallelGroup.createMessageQueue() : new EnvelopeQueue());
+    }
+
+    private void initialize(final Closure code, final MessageQueue queue) {
 
         //noinspection OverlyComplexAnonymousInnerClass
-        this.core = new AsyncMessagingCore(parallelGroup.getThreadPool()) {
+        this.core = new AsyncMessagingCore(parallelGroup.getThreadPool(), queue) {
             @Override
             protected void registerError(final Throwable e) {
                 if (e instanceof InterruptedException) {
@@ -67,6 +97,26 @@ public abstract class AbstractLoopingActor extends Actor {
 
             @Override
             protected void handleMessage(final Object message) {
+                final BoundedMailbox localMailbox = mailbox;
+                if (isControlMessage(message)) flushPendingMessages();
+                else if (localMailbox != null) {
+                    if (localMailbox.release()) return;
+                } else {
+                    final AtomicInteger localDepth = unboundedDepth;
+                    if (localDepth != null) {
+                        //the message keeps being counted while it is being processed
+                        try {
+                            processMessage(message);
+                        } finally {
+                            localDepth.decrementAndGet();
+                        }
+                        return;
+                    }
+                }
+                processMessage(message);
+            }
+
+            private void processMessage(final Object message) {
                 if (message == START_MESSAGE) handleStart();
                 else {
                     if (message == TIMEOUT_MESSAGE) {
@@ -87,13 +137,16 @@ public abstract class AbstractLoopingActor extends Actor {
                             terminatedFlag = true;
                             getJoinLatch().bindUnique(null);
                         }
-                    } else {
+                    } else if (message instanceof ActorMessage) {
                         final ActorMessage actorMessage = (ActorMessage) message;
                         try {
                             runEnhancedWithoutRepliesOnMessages(actorMessage, code, actorMessage.getPayLoad());
                         } finally {
                             currentSender = null;
                         }
+                    } else {
+                        //a message sent from outside of actors carries no sender and so is stored without an envelope
+                        code.call(message);
                     }
                 }
             }
@@ -103,6 +156,11 @@ public abstract class AbstractLoopingActor extends Actor {
                 return isActive();
             }
 
+            @Override
+            protected void activationFinished() {
+                if (isActive()) flushPendingMessages();
+            }
+
             @Override
             protected void threadAssigned() {
                 registerCurrentActorWithThread(AbstractLoopingActor.this);
@@ -137,10 +195,103 @@ public abstract class AbstractLoopingActor extends Actor {
         core.makeFair();
     }
 
+    /**
+     * Limits the number of messages the actor's mailbox can hold. Once the mailbox is full,
+     * the supplied policy decides about the fate of newly sent messages.
+     * Control messages, like start, stop or timeout notifications, are never subject to the capacity limit.
+     * It can only be invoked before the actor is started.
+     *
+     * @param capacity The maximum number of messages waiting in the mailbox
+     * @param policy   The policy to apply to messages sent to a full mailbox, DEAD_LETTER requires a dead-letter actor and so is not allowed here
+     */
+    public final void makeBounded(final int capacity, final MailboxOverflowPolicy policy) {
+        if (policy == MailboxOverflowPolicy.DEAD_LETTER)
+            throw new IllegalArgumentException("Use makeBounded(capacity, deadLetters) to specify the dead-letter actor.");
+        setMailbox(new BoundedMailbox(this, capacity, policy, null));
+    }
+
+    /**
+     * Limits the number of messages the actor's mailbox can hold. Once the mailbox is full,
+     * newly sent messages are diverted to the supplied dead-letter actor together with the original sender.
+     * Control messages, like start, stop or timeout notifications, are never subject to the capacity limit.
+     * It can only be invoked before the actor is started.
+     *
+     * @param capacity    The maximum number of messages waiting in the mailbox
+     * @param deadLetters The actor to receive the messages, which do not fit into the mailbox
+     */
+    public final void makeBounded(final int capacity, final MessageStream deadLetters) {
+        setMailbox(new BoundedMailbox(this, capacity, MailboxOverflowPolicy.DEAD_LETTER, deadLetters));
+    }
+
+    private void setMailbox(final BoundedMailbox mailbox) {
+        if (!hasBeenStopped()) throw new IllegalStateException("The mailbox can only be bounded before the actor is started.");
+        this.mailbox = mailbox;
+    }
+
+    /**
+     * @return True, if the actor's mailbox has a limited capacity
+     */
+    public final boolean isBounded() {
+        return mailbox != null;
+    }
+
+    /**
+     * @return The capacity of the actor's mailbox or -1, if the mailbox is unbounded
+     */
+    public final int getMailboxCapacity() {
+        final BoundedMailbox localMailbox = mailbox;
+        return localMailbox != null ? localMailbox.getCapacity() : -1;
+    }
+
+    /**
+     * Retrieves the current number of messages waiting in a bounded mailbox.
+     * The depth of unbounded mailboxes is only tracked for the workers of a Router.
+     *
+     * @return The number of messages waiting to be processed or -1, if the mailbox is unbounded and its depth is not tracked
+     */
+    public final int getMailboxDepth() {
+        final BoundedMailbox localMailbox = mailbox;
+        if (localMailbox != null) return localMailbox.getDepth();
+        final AtomicInteger localDepth = unboundedDepth;
+        return localDepth != null ? localDepth.get() : -1;
+    }
+
+    /**
+     * Starts counting the messages waiting in an unbounded mailbox, so that getMailboxDepth() reports them.
+     * It can only be invoked before the actor is started.
+     */
+    final void trackMailboxDepth() {
+        if (!hasBeenStopped()) throw new IllegalStateException("The mailbox depth can only be tracked before the actor is started.");
+        if (mailbox == null && unboundedDepth == null) unboundedDepth = new AtomicInteger(0);
+    }
+
+    /**
+     * Retrieves the number of messages dropped or diverted to the dead-letter actor due to a full mailbox.
+     *
+     * @return The number of messages not delivered to the actor, always 0 for unbounded mailboxes
+     */
+    public final long getDroppedMessageCount() {
+        final BoundedMailbox localMailbox = mailbox;
+        return localMailbox != null ? localMailbox.getDroppedMessages() : 0L;
+    }
+
+    /**
+     * Invoked by the actor's thread before it processes a control message (start, stop, timeout or termination)
+     * and before it gives up the thread, once there are no more messages to process.
+     * Allows sub-classes holding back received messages, for example to process them in batches, to deliver them.
+     */
+    @SuppressWarnings({"NoopMethodInAbstractClass"})
+    protected void flushPendingMessages() {
+    }
+
+    private static boolean isControlMessage(final Object message) {
+        return message == START_MESSAGE || message == STOP_MESSAGE || message == TERMINATE_MESSAGE || message == TIMEOUT_MESSAGE;
+    }
+
     protected final void setTimeout(final long timeout) {
         if (timeout < 0L) throw new IllegalArgumentException("Actor timeout must be a non-negative value");
         currentTimerTask = new ActorTimerTask(this, timeoutCounter);
-        timer.schedule(currentTimerTask, timeout);
+        currentTimerTask.setTimeout(timer.scheduleTimeout(currentTimerTask, timeout));
     }
 
     private void cancelCurrentTimeoutTask() {
@@ -187,6 +338,8 @@ public abstract class AbstractLoopingActor extends Actor {
         if (!hasBeenStopped()) {
             stoppedFlag = true;
             send(STOP_MESSAGE);
+            final BoundedMailbox localMailbox = mailbox;
+            if (localMailbox != null) localMailbox.wakeUpBlockedSenders();
         }
         return this;
     }
@@ -233,12 +386,42 @@ public abstract class AbstractLoopingActor extends Actor {
      */
     @Override
     protected ActorMessage sweepNextMessage() {
-        return (ActorMessage) core.sweepNextMessage();
+        final Object message = core.sweepNextMessage();
+        if (message == null || message instanceof ActorMessage) return (ActorMessage) message;
+        return new ActorMessage(message, null);
     }
 
+    /**
+     * Stores the message in the mailbox.
+     * Unless the mailbox is bounded, messages sent from outside of actors are stored without an envelope,
+     * since there's no sender to reply to. Actors using an EnvelopeQueue get the envelope, which also serves as the queue node,
+     * for all messages.
+     *
+     * @param message The message to send
+     * @return The actor itself
+     */
     @Override
     public MessageStream send(final Object message) {
-        core.store(createActorMessage(message));
+        if (message != null && !(message instanceof ActorMessage) && mailbox == null) {
+            if (hasBeenStopped()) throw new IllegalStateException("The actor cannot accept messages at this point.");
+            final AtomicInteger localDepth = unboundedDepth;
+            if (localDepth != null) localDepth.incrementAndGet();
+            final MessageStream sender = Actor.threadBoundActor();
+            if (core.getMessageQueue() instanceof EnvelopeQueue) core.store(new Envelope(message, sender));
+            else core.store(sender != null ? new ActorMessage(message, sender) : message);
+            return this;
+        }
+        final ActorMessage actorMessage = createActorMessage(message);
+        final BoundedMailbox localMailbox = mailbox;
+        if (!isControlMessage(actorMessage)) {
+            if (localMailbox != null) {
+                if (!localMailbox.admit(actorMessage)) return this;
+            } else {
+                final AtomicInteger localDepth = unboundedDepth;
+                if (localDepth != null) localDepth.incrementAndGet();
+            }
+        }
+        core.store(actorMessage);
         return this;
     }
 
@@ -246,6 +429,49 @@ public abstract class AbstractLoopingActor extends Actor {
     public void setParallelGroup(final PGroup group) {
         super.setParallelGroup(group);
         core.attachToThreadPool(group.getThreadPool());
+        if (hasBeenStopped() && group.getMessageQueueFactory() != null) core.tryUseMessageQueue(group.createMessageQueue());
+    }
+
+    /**
+     * Sets the message queue implementation to hold the messages sent to the actor.
+     * It can only be invoked before the actor is started.
+     *
+     * @param queue The message queue to use
+     */
+    public final void setMessageQueue(final MessageQueue queue) {
+        if (!hasBeenStopped()) throw new IllegalStateException("The message queue can only be set before the actor is started.");
+        core.useMessageQueue(queue);
+    }
+
+    /**
+     * Starts notifying the supplied instrumentation about messages passing through the actor.
+     * The instrumentation cannot be removed or replaced afterwards.
+     *
+     * @param instrumentation The instrumentation to notify
+     */
+    public final void instrument(final MessagingInstrumentation instrumentation) {
+        core.instrument(instrumentation);
+    }
+
+    /**
+     * Starts collecting run-time metrics of the actor, such as mailbox length, throughput, queueing and handler latencies.
+     * Messages sent earlier only get their handler time measured.
+     * Call registerMBean() on the returned metrics to expose them through JMX.
+     *
+     * @param name The name to identify the metrics by
+     * @return The metrics of the actor
+     */
+    public final MessagingMetrics enableMetrics(final String name) {
+        final MessagingMetrics metrics = new MessagingMetrics(name);
+        instrument(metrics);
+        return metrics;
+    }
+
+    /**
+     * @return The instrumentation receiving notifications about messages passing through the actor, or null
+     */
+    public final MessagingInstrumentation getInstrumentation() {
+        return core.getInstrumentation();
     }
 
     /**
@@ -16,6 +16,8 @@
 
 package groovyx.gpars.actor;
 
+import groovyx.gpars.util.GeneralTimer;
+
 /**
  * Represents an ongoing timeout
  *
@@ -25,6 +27,7 @@ final class ActorTimerTask implements Runnable {
     private final AbstractLoopingActor actor;
     private final int id;
     private volatile boolean cancelled = false;
+    private GeneralTimer.Timeout timeout = null;
 
     ActorTimerTask(final AbstractLoopingActor actor, final int id) {
         this.actor = actor;
@@ -42,8 +45,18 @@ final class ActorTimerTask implements Runnable {
         }
     }
 
+    /**
+     * Remembers the timer's handle to remove the task from the timer upon cancellation
+     *
+     * @param timeout The handle returned by the timer
+     */
+    void setTimeout(final GeneralTimer.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
     public void cancel() {
         cancelled = true;
+        if (timeout != null) timeout.cancel();
     }
 
     public int getId() {
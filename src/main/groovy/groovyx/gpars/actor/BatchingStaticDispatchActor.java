@@ -0,0 +1,120 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statically dispatched actor, which receives messages in batches rather than one at a time.
+ * All messages waiting in the mailbox are handed over to the onMessages() method at once, up to the maximum batch size.
+ * A batch is also delivered once the maximum latency elapses since its first message has been taken from the mailbox,
+ * so that a steady stream of incoming messages cannot postpone processing indefinitely.
+ * <p>
+ * Control messages keep their usual semantics. Messages received before a stop request are delivered before the actor stops,
+ * while termination discards messages collected in an undelivered batch.
+ * Since a batch may combine messages from different senders, the reply() and getSender() methods cannot be used inside onMessages().
+ * Batching actors should not be made fair, since fair actors give up the thread and so deliver the batch after each message.
+ * </p>
+ * <pre>
+ * final class DatabaseWriter extends BatchingStaticDispatchActor&lt;Order&gt; {
+ *     DatabaseWriter() { super(500) }
+ *     void onMessages(List&lt;Order&gt; orders) {
+ *         insertAll(orders)
+ *     }
+ * }
+ * </pre>
+ */
+public abstract class BatchingStaticDispatchActor<T> extends StaticDispatchActor<T> {
+    private static final long serialVersionUID = -1875424233473346617L;
+
+    /**
+     * The batch size used by the no-arg constructor
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final int maxBatchSize;
+    private final long maxLatency;
+    private List<T> batch;
+    private long batchStart = 0L;
+
+    /**
+     * Creates an actor with the default maximum batch size and no latency limit
+     */
+    protected BatchingStaticDispatchActor() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an actor with no latency limit
+     *
+     * @param maxBatchSize The maximum number of messages delivered in a single batch
+     */
+    protected BatchingStaticDispatchActor(final int maxBatchSize) {
+        this(maxBatchSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param maxBatchSize The maximum number of messages delivered in a single batch
+     * @param maxLatency   The maximum time to spend collecting messages into a single batch
+     * @param unit         The time unit of the maxLatency parameter
+     */
+    protected BatchingStaticDispatchActor(final int maxBatchSize, final long maxLatency, final TimeUnit unit) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("The maximum batch size must be a positive number.");
+        if (maxLatency < 0L) throw new IllegalArgumentException("The maximum batch latency must be a non-negative value.");
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatency = unit.toNanos(maxLatency);
+        this.batch = new ArrayList<T>(Math.min(maxBatchSize, DEFAULT_BATCH_SIZE));
+    }
+
+    public final int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Collects the message into the current batch, delivering the batch, if it is full or if it has waited for too long
+     *
+     * @param message The message at the head of the mail box
+     */
+    @Override
+    public final void onMessage(final T message) {
+        if (batch.isEmpty()) batchStart = System.nanoTime();
+        batch.add(message);
+        if (batch.size() >= maxBatchSize || System.nanoTime() - batchStart >= maxLatency) flushPendingMessages();
+    }
+
+    /**
+     * Delivers the messages collected so far to the onMessages() method
+     */
+    @Override
+    protected final void flushPendingMessages() {
+        if (batch.isEmpty()) return;
+        final List<T> messages = batch;
+        batch = new ArrayList<T>(Math.min(maxBatchSize, DEFAULT_BATCH_SIZE));
+        onMessages(messages);
+    }
+
+    /**
+     * Handles a batch of incoming messages. Needs to be implemented in sub-classes.
+     *
+     * @param messages The messages taken from the mail box in the order of arrival, never empty
+     */
+    public abstract void onMessages(final List<T> messages);
+}
@@ -0,0 +1,170 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import groovyx.gpars.actor.impl.MailboxOverflowException;
+import groovyx.gpars.actor.impl.MessageStream;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Keeps track of the number of messages waiting in a looping actor's mailbox and applies the overflow policy
+ * once the mailbox capacity is exhausted.
+ * The mailbox only counts messages, the messages themselves are kept in the actor's message queue,
+ * so accepting a message costs a single CAS as long as there's room in the mailbox.
+ */
+@SuppressWarnings({"FieldMayBeFinal", "unused"})
+final class BoundedMailbox {
+    private final AbstractLoopingActor actor;
+    private final int capacity;
+    private final MailboxOverflowPolicy policy;
+    private final MessageStream deadLetters;
+
+    private volatile int depth = 0;
+    private volatile int pendingDrops = 0;
+    private volatile int blockedSenders = 0;
+    private volatile long droppedMessages = 0L;
+    private static final AtomicIntegerFieldUpdater<BoundedMailbox> depthUpdater = AtomicIntegerFieldUpdater.newUpdater(BoundedMailbox.class, "depth");
+    private static final AtomicIntegerFieldUpdater<BoundedMailbox> pendingDropsUpdater = AtomicIntegerFieldUpdater.newUpdater(BoundedMailbox.class, "pendingDrops");
+    private static final AtomicLongFieldUpdater<BoundedMailbox> droppedMessagesUpdater = AtomicLongFieldUpdater.newUpdater(BoundedMailbox.class, "droppedMessages");
+
+    BoundedMailbox(final AbstractLoopingActor actor, final int capacity, final MailboxOverflowPolicy policy, final MessageStream deadLetters) {
+        if (capacity < 1) throw new IllegalArgumentException("The mailbox capacity must be a positive number.");
+        if (policy == null) throw new IllegalArgumentException("The mailbox overflow policy must not be null.");
+        if (policy == MailboxOverflowPolicy.DEAD_LETTER && deadLetters == null)
+            throw new IllegalArgumentException("A dead-letter actor is required for the DEAD_LETTER overflow policy.");
+        this.actor = actor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.deadLetters = deadLetters;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    MailboxOverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return The number of messages waiting in the mailbox, excluding those already doomed by the DROP_OLDEST policy
+     */
+    int getDepth() {
+        final int result = depth - pendingDrops;
+        return result > 0 ? result : 0;
+    }
+
+    long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    /**
+     * Reserves room in the mailbox for the message about to be sent, applying the overflow policy if the mailbox is full.
+     *
+     * @param message The message being sent
+     * @return True, if the message should be added to the actor's message queue, false if it has been dropped or diverted
+     */
+    boolean admit(final ActorMessage message) {
+        while (true) {
+            final int current = depth;
+            if (current < capacity) {
+                if (depthUpdater.compareAndSet(this, current, current + 1)) return true;
+                continue;
+            }
+            switch (policy) {
+                case BLOCK:
+                    if (actor.isActorThread()) {
+                        depthUpdater.incrementAndGet(this);
+                        return true;
+                    }
+                    awaitRoom();
+                    break;
+                case FAIL:
+                    throw new MailboxOverflowException("The mailbox of the actor " + actor + " is full. Its capacity is " + capacity + " messages.");
+                case DROP_NEWEST:
+                    droppedMessagesUpdater.incrementAndGet(this);
+                    return false;
+                case DROP_OLDEST:
+                    droppedMessagesUpdater.incrementAndGet(this);
+                    if (current >= 2 * capacity) return false;
+                    if (depthUpdater.compareAndSet(this, current, current + 1)) {
+                        pendingDropsUpdater.incrementAndGet(this);
+                        return true;
+                    }
+                    droppedMessagesUpdater.decrementAndGet(this);
+                    break;
+                case DEAD_LETTER:
+                    droppedMessagesUpdater.incrementAndGet(this);
+                    deadLetters.send(message);
+                    return false;
+                default:
+                    throw new IllegalStateException("Unknown mailbox overflow policy " + policy);
+            }
+        }
+    }
+
+    /**
+     * Frees the room occupied by a message, which has just been taken from the message queue by the actor's thread.
+     *
+     * @return True, if the message should be discarded due to the DROP_OLDEST policy
+     */
+    boolean release() {
+        depthUpdater.decrementAndGet(this);
+        if (blockedSenders > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        while (true) {
+            final int drops = pendingDrops;
+            if (drops == 0) return false;
+            if (pendingDropsUpdater.compareAndSet(this, drops, drops - 1)) return true;
+        }
+    }
+
+    /**
+     * Wakes up all senders waiting for room in the mailbox so that they can notice the actor has been stopped
+     */
+    synchronized void wakeUpBlockedSenders() {
+        notifyAll();
+    }
+
+    /**
+     * Parks the sender until release() or wakeUpBlockedSenders() notifies it.
+     * Since blockedSenders is raised before depth is re-checked, a concurrent release() cannot miss the sender.
+     */
+    @SuppressWarnings("SynchronizeOnThis")
+    private void awaitRoom() {
+        synchronized (this) {
+            blockedSenders++;
+            try {
+                while (depth >= capacity) {
+                    if (actor.hasBeenStopped())
+                        throw new IllegalStateException("The actor cannot accept messages at this point.");
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for room in the actor's mailbox.", e);
+            } finally {
+                blockedSenders--;
+            }
+        }
+    }
+}
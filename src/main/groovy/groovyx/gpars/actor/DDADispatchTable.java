@@ -0,0 +1,210 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import groovy.lang.Closure;
+import groovy.lang.GString;
+import groovy.lang.GroovyInterceptable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the resolution of message handlers for DynamicDispatchActors.
+ * A table holds the candidate onMessage() methods of an actor class, optionally extended with the when() handlers
+ * registered on a particular actor instance, and remembers for each message runtime type the handler
+ * that Groovy's multi-method dispatch would pick.
+ * <p>
+ * Only unambiguous cases are resolved by the table - the most specific candidate assignable from the message type.
+ * Whenever Groovy might apply a coercion (numbers, characters, GStrings, closures to SAM types, null messages)
+ * or no unique most specific candidate exists, resolve() returns null and the caller must fall back
+ * to the dynamic dispatch through the actor's metaClass.
+ * </p>
+ */
+final class DDADispatchTable {
+
+    private static final String ON_MESSAGE = "onMessage";
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(Object.class, DynamicDispatchActor.class, Object.class);
+    private static final MethodHandle CLOSURE_CALL;
+
+    static {
+        try {
+            CLOSURE_CALL = MethodHandles.publicLookup().findVirtual(Closure.class, "call", MethodType.methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Marks message types, which the table cannot resolve
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private static final ClassValue<DDADispatchTable> classTables = new ClassValue<DDADispatchTable>() {
+        @Override
+        protected DDADispatchTable computeValue(final Class<?> type) {
+            return new DDADispatchTable(collectMethods(type), true);
+        }
+    };
+
+    /**
+     * Candidate handlers indexed by their parameter type, null if the table cannot be used at all
+     */
+    private final Map<Class<?>, MethodHandle> candidates;
+
+    /**
+     * Tables shared by all instances of an actor class cache resolved handlers in a ClassValue,
+     * tables holding per-instance when() handlers use a map, which gets discarded together with the actor.
+     */
+    private final ClassValue<Object> sharedCache;
+    private final ConcurrentMap<Class<?>, Object> instanceCache;
+
+    private DDADispatchTable(final Map<Class<?>, MethodHandle> candidates, final boolean shared) {
+        this.candidates = candidates;
+        if (shared) {
+            this.sharedCache = new ClassValue<Object>() {
+                @Override
+                protected Object computeValue(final Class<?> type) {
+                    return doResolve(type);
+                }
+            };
+            this.instanceCache = null;
+        } else {
+            this.sharedCache = null;
+            this.instanceCache = new ConcurrentHashMap<Class<?>, Object>();
+        }
+    }
+
+    /**
+     * Retrieves the shared table of onMessage() methods for the given actor class
+     *
+     * @param actorClass The class of the actor
+     * @return The table for the class
+     */
+    static DDADispatchTable forClass(final Class<?> actorClass) {
+        return classTables.get(actorClass);
+    }
+
+    /**
+     * Creates a new table extending the current one with a when() handler, which overrides
+     * a previous handler with the same parameter type, just like metaClass registration does
+     *
+     * @param handler The handler to add
+     * @return A new table, the current one is left intact
+     */
+    DDADispatchTable withHandler(final Closure handler) {
+        if (candidates == null) return this;
+        final Class[] parameterTypes = handler.getParameterTypes();
+        if (parameterTypes.length != 1) return new DDADispatchTable(null, false);
+        final Map<Class<?>, MethodHandle> extended = new LinkedHashMap<Class<?>, MethodHandle>(candidates);
+        extended.put(parameterTypes[0], MethodHandles.dropArguments(CLOSURE_CALL.bindTo(handler), 0, DynamicDispatchActor.class));
+        return new DDADispatchTable(Collections.unmodifiableMap(extended), false);
+    }
+
+    /**
+     * Finds the handler for messages of the given type
+     *
+     * @param messageType The runtime type of the message
+     * @return A method handle of type (DynamicDispatchActor, Object)Object or null, if dynamic dispatch must be used
+     */
+    MethodHandle resolve(final Class<?> messageType) {
+        if (candidates == null) return null;
+        final Object handler;
+        if (sharedCache != null) handler = sharedCache.get(messageType);
+        else {
+            final Object cached = instanceCache.get(messageType);
+            if (cached != null) handler = cached;
+            else {
+                handler = doResolve(messageType);
+                instanceCache.putIfAbsent(messageType, handler);
+            }
+        }
+        return handler == UNRESOLVED ? null : (MethodHandle) handler;
+    }
+
+    private Object doResolve(final Class<?> messageType) {
+        if (messageType == null || GString.class.isAssignableFrom(messageType)) return UNRESOLVED;
+
+        Class<?> best = null;
+        for (final Class<?> parameterType : candidates.keySet()) {
+            if (parameterType.isAssignableFrom(messageType)) {
+                if (best == null || best.isAssignableFrom(parameterType)) best = parameterType;
+                else if (!parameterType.isAssignableFrom(best)) return UNRESOLVED;
+            } else if (mayCoerce(messageType, parameterType)) return UNRESOLVED;
+        }
+        return best != null ? candidates.get(best) : UNRESOLVED;
+    }
+
+    /**
+     * Detects parameter types, to which Groovy might convert a message, although they are not assignable from it
+     */
+    private static boolean mayCoerce(final Class<?> messageType, final Class<?> parameterType) {
+        if (parameterType.isPrimitive()) return isCoercibleValue(messageType) || messageType == String.class;
+        if (isCoercibleValue(messageType) && isCoercibleValue(parameterType)) return true;
+        if (messageType == String.class && parameterType == Character.class) return true;
+        return Closure.class.isAssignableFrom(messageType) && (parameterType.isInterface() || Modifier.isAbstract(parameterType.getModifiers()));
+    }
+
+    private static boolean isCoercibleValue(final Class<?> type) {
+        return Number.class.isAssignableFrom(type) || type == Character.class || type == Boolean.class;
+    }
+
+    /**
+     * Collects the single-argument onMessage() methods of the class and its superclasses
+     *
+     * @return The handles indexed by parameter types or null, if the class dispatches messages in a way the table cannot follow
+     */
+    private static Map<Class<?>, MethodHandle> collectMethods(final Class<?> actorClass) {
+        if (GroovyInterceptable.class.isAssignableFrom(actorClass)) return null;
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final Map<Class<?>, MethodHandle> result = new LinkedHashMap<Class<?>, MethodHandle>();
+        final List<Method> methods = new ArrayList<Method>();
+        for (Class<?> current = actorClass; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (final Method method : current.getDeclaredMethods()) {
+                if (ON_MESSAGE.equals(method.getName()) && !method.isBridge() && !method.isSynthetic() && !Modifier.isStatic(method.getModifiers()))
+                    methods.add(method);
+            }
+        }
+        for (final Method method : methods) {
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length != 1 || method.isVarArgs()) return null;
+            //Methods declared in subclasses come first and override the inherited ones
+            if (result.containsKey(parameterTypes[0])) continue;
+            try {
+                method.setAccessible(true);
+                result.put(parameterTypes[0], lookup.unreflect(method).asType(HANDLER_TYPE));
+            } catch (IllegalAccessException ignore) {
+                return null;
+            } catch (RuntimeException ignore) {
+                return null;
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+}
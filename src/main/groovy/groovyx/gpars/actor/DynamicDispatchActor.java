@@ -17,7 +17,12 @@
 package groovyx.gpars.actor;
 
 import groovy.lang.Closure;
+import groovy.lang.MetaClass;
+import groovy.lang.MetaClassImpl;
 import groovyx.gpars.actor.impl.DDAClosure;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.lang.invoke.MethodHandle;
 
 /**
  * A pooled actor allowing for an alternative structure of the message handling code.
@@ -31,6 +36,11 @@ import groovyx.gpars.actor.impl.DDAClosure;
  * }*} </pre>
  *
  * Method when {...} provides an alternative way to define message handlers
+ * <p>
+ * The handler chosen for a message runtime type is cached per actor class (and per actor instance for when handlers),
+ * so the multi-method resolution only runs once for each type. Messages, for which Groovy might need to coerce
+ * the argument, as well as actors with a modified metaClass, fall back to the regular dynamic dispatch.
+ * </p>
  *
  * @author Vaclav Pech, Alex Tkachman, Dierk Koenig
  *         Date: Jun 26, 2009
@@ -40,11 +50,56 @@ import groovyx.gpars.actor.impl.DDAClosure;
 public class DynamicDispatchActor extends AbstractLoopingActor {
     private static final long serialVersionUID = 2709208258556647529L;
 
+    private volatile DDADispatchTable dispatchTable = DDADispatchTable.forClass(getClass());
+
+    /**
+     * The metaClass of the actor after the last when() handler has been registered, null if there are no when handlers
+     */
+    private volatile MetaClass whenMetaClass = null;
+    private final Object whenLock = new Object();
+
     /**
      * Creates a new instance without any when handlers registered
      */
     public DynamicDispatchActor() {
-        initialize(DDAClosure.createDDAClosure(this));
+        final Closure dynamicDispatch = DDAClosure.createDDAClosure(this);
+        initializeWithEnvelopes(new Closure(this) {
+            @Override
+            public Object call(final Object arguments) {
+                return dispatch(arguments, dynamicDispatch);
+            }
+        });
+    }
+
+    /**
+     * Invokes the cached handler for the message type, if the actor's metaClass hasn't been changed behind our back
+     *
+     * @param message         The message to dispatch
+     * @param dynamicDispatch The closure to use when the cache cannot decide
+     * @return The result of the handler
+     */
+    @SuppressWarnings({"OverlyBroadCatchBlock"})
+    private Object dispatch(final Object message, final Closure dynamicDispatch) {
+        if (message != null) {
+            final MetaClass metaClass = InvokerHelper.getMetaClass(this);
+            final MetaClass expectedMetaClass = whenMetaClass;
+            if (expectedMetaClass == null ? metaClass.getClass() == MetaClassImpl.class : metaClass == expectedMetaClass) {
+                final MethodHandle handler = dispatchTable.resolve(message.getClass());
+                if (handler != null) {
+                    try {
+                        return handler.invokeExact(this, message);
+                    } catch (Throwable e) {
+                        throw DynamicDispatchActor.<RuntimeException>rethrow(e);
+                    }
+                }
+            }
+        }
+        return dynamicDispatch.call(message);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static <T extends Throwable> T rethrow(final Throwable e) throws T {
+        throw (T) e;
     }
 
     /**
@@ -68,7 +123,11 @@ public class DynamicDispatchActor extends AbstractLoopingActor {
             final Closure cloned = (Closure) closure.clone();
             cloned.setResolveStrategy(Closure.DELEGATE_FIRST);
             cloned.setDelegate(this);
-            DDAHelper.when(this, cloned);
+            synchronized (whenLock) {
+                DDAHelper.when(this, cloned);
+                dispatchTable = dispatchTable.withHandler(cloned);
+                whenMetaClass = InvokerHelper.getMetaClass(this);
+            }
         }
     }
 }
@@ -0,0 +1,79 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import groovyx.gpars.actor.impl.MessageStream;
+
+/**
+ * An actor message, which also serves as the node of the EnvelopeQueue linked list, so that sending a message
+ * only allocates a single object.
+ * Objects stored in the queue, which are not fresh envelopes, get wrapped in a carrier envelope.
+ */
+class Envelope extends ActorMessage {
+    private static final long serialVersionUID = 3914520765129512946L;
+
+    /**
+     * Terminates lists of envelopes and marks envelopes, which have already left a queue
+     */
+    static final Envelope END = new Envelope(null, null);
+
+    /**
+     * The next envelope in the queue, null only for envelopes, which have not been stored in a queue yet.
+     * Re-sending an envelope, which has been queued before, thus cannot corrupt the queue.
+     */
+    transient Envelope next = null;
+
+    Envelope(final Object payLoad, final MessageStream sender) {
+        super(payLoad, sender);
+    }
+
+    /**
+     * Turns an object into an envelope, which can be linked into a queue
+     *
+     * @param element The object to store in a queue
+     * @return The element itself, if it is a fresh envelope, or a carrier envelope holding the element
+     */
+    static Envelope wrap(final Object element) {
+        if (element instanceof Envelope && ((Envelope) element).next == null) return (Envelope) element;
+        return new Carrier(element);
+    }
+
+    /**
+     * @return The object originally stored in the queue
+     */
+    Object unwrap() {
+        return this;
+    }
+
+    /**
+     * Holds objects other than fresh envelopes in the queue
+     */
+    private static final class Carrier extends Envelope {
+        private static final long serialVersionUID = -6154728375021974653L;
+        private final transient Object carried;
+
+        private Carrier(final Object carried) {
+            super(null, null);
+            this.carried = carried;
+        }
+
+        @Override
+        Object unwrap() {
+            return carried;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import groovyx.gpars.util.MessageQueue;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free message queue for a single consumer, linking envelopes directly without allocating separate queue nodes.
+ * Senders push envelopes onto a stack, which the consumer detaches as a whole once it has processed all previously
+ * detached messages, and reverses to restore the order of sending.
+ * Messages sent from a single thread are thus retrieved in the order they have been sent.
+ */
+@SuppressWarnings({"FieldMayBeFinal"})
+final class EnvelopeQueue implements MessageQueue {
+
+    /**
+     * Newly added envelopes, the most recent one at the head
+     */
+    private volatile Envelope input = null;
+    private static final AtomicReferenceFieldUpdater<EnvelopeQueue, Envelope> inputUpdater = AtomicReferenceFieldUpdater.newUpdater(EnvelopeQueue.class, Envelope.class, "input");
+
+    /**
+     * Envelopes detached by the consumer, the oldest one at the head
+     */
+    private Envelope output = Envelope.END;
+
+    @Override
+    public boolean isEmpty() {
+        return output == Envelope.END && input == null;
+    }
+
+    @Override
+    public Object poll() {
+        Envelope head = output;
+        if (head == Envelope.END) {
+            if (input == null) return null;
+            Envelope node = inputUpdater.getAndSet(this, null);
+            while (node != Envelope.END) {
+                final Envelope next = node.next;
+                node.next = head;
+                head = node;
+                node = next;
+            }
+        }
+        output = head.next;
+        head.next = Envelope.END;
+        return head.unwrap();
+    }
+
+    @Override
+    public void add(final Object element) {
+        final Envelope envelope = Envelope.wrap(element);
+        while (true) {
+            final Envelope head = input;
+            envelope.next = head != null ? head : Envelope.END;
+            if (inputUpdater.compareAndSet(this, head, envelope)) return;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+/**
+ * Determines the fate of messages sent to an actor with a bounded mailbox, which is full at the time of sending.
+ * Control messages, such as start, stop or timeout notifications, are never subject to the mailbox capacity.
+ */
+public enum MailboxOverflowPolicy {
+    /**
+     * The sender waits until the actor makes room in its mailbox.
+     * Messages the actor sends to itself are accepted regardless of the capacity, since the actor cannot wait for itself.
+     */
+    BLOCK,
+    /**
+     * The send operation throws MailboxOverflowException
+     */
+    FAIL,
+    /**
+     * The message being sent gets discarded
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest message in the mailbox gets discarded to make room for the message being sent.
+     * The discarded messages are removed by the actor's thread when it reaches them. Should the actor fall behind
+     * by another full capacity before it gets to them, the message being sent gets discarded instead.
+     */
+    DROP_OLDEST,
+    /**
+     * The message gets diverted to a dead-letter actor, keeping its original sender
+     */
+    DEAD_LETTER
+}
@@ -0,0 +1,485 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+import groovy.lang.Closure;
+import groovyx.gpars.MessagingRunnable;
+import groovyx.gpars.actor.impl.MessageStream;
+import groovyx.gpars.dataflow.DataflowVariable;
+import groovyx.gpars.group.PGroup;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spreads messages among a set of worker actors, which process them in parallel.
+ * The worker is picked by the sending thread at the time of sending, according to the chosen RoutingStrategy,
+ * and the message is stored directly in the worker's mailbox with the original sender attached, so replies go
+ * to the original sender and no intermediate actor is involved.
+ * <p>
+ * The number of workers can be changed at run-time, either explicitly through the resize() method or automatically
+ * based on the number of messages waiting in the workers' mailboxes, once enabled through autoResize().
+ * Workers removed from the router finish processing the messages already in their mailboxes.
+ * Workers, which stop or terminate on their own while the router is running, get replaced with new ones from the worker factory.
+ * Messages with the same key, which have been routed to a removed worker by the CONSISTENT_HASH strategy,
+ * may thus get processed concurrently with the subsequent ones sent to the key's new worker.
+ * </p>
+ */
+@SuppressWarnings({"rawtypes"})
+public final class Router extends Actor {
+    private static final long serialVersionUID = -1845387127362531592L;
+
+    /**
+     * The number of points each worker occupies on the consistent hash ring
+     */
+    private static final int VIRTUAL_NODES = 64;
+
+    /**
+     * The number of messages sent between two consecutive mailbox pressure checks, when auto-resizing
+     */
+    private static final int RESIZE_CHECK_INTERVAL = 256;
+
+    private final RoutingStrategy strategy;
+    private final Callable<? extends AbstractLoopingActor> workerFactory;
+    private final ReentrantLock resizeLock = new ReentrantLock();
+    private final AtomicInteger sendCounter = new AtomicInteger(0);
+    private final AtomicInteger resizeCounter = new AtomicInteger(0);
+
+    private volatile AbstractLoopingActor[] workers;
+    private volatile HashRing ring = null;
+    private int workerSequence = 0;
+    private int[] workerIds;
+
+    private volatile Closure hashKey = null;
+    private volatile boolean autoResizing = false;
+    private int minSize;
+    private int maxSize;
+    private int pressureThreshold;
+
+    private volatile boolean started = false;
+    private volatile boolean stoppedFlag = true;
+
+    /**
+     * Creates a router, which needs to be started before messages can be sent to it
+     *
+     * @param group         The group, which the workers will belong to
+     * @param strategy      The strategy to pick workers for messages
+     * @param size          The initial number of workers
+     * @param workerFactory Creates new worker actors, which must not be started
+     */
+    public Router(final PGroup group, final RoutingStrategy strategy, final int size, final Callable<? extends AbstractLoopingActor> workerFactory) {
+        super(new DataflowVariable<Object>(), group);
+        if (strategy == null) throw new IllegalArgumentException("The routing strategy must be specified.");
+        if (size < 1) throw new IllegalArgumentException("A router needs at least one worker.");
+        if (workerFactory == null) throw new IllegalArgumentException("The worker factory must be specified.");
+        this.strategy = strategy;
+        this.workerFactory = workerFactory;
+        this.workers = new AbstractLoopingActor[0];
+        this.workerIds = new int[0];
+        setWorkers(size);
+    }
+
+    /**
+     * Sets the code to calculate the keys of messages for the CONSISTENT_HASH strategy.
+     * Messages are their own keys by default.
+     *
+     * @param hashKey A closure accepting a message and returning its key
+     * @return The router itself
+     */
+    public Router hashKey(final Closure hashKey) {
+        this.hashKey = hashKey;
+        return this;
+    }
+
+    /**
+     * Lets the router adjust the number of workers to the number of messages waiting in their mailboxes.
+     * Once the average number of waiting messages exceeds the threshold, a worker is added.
+     * When all the mailboxes are found empty, a worker is removed.
+     *
+     * @param minSize           The minimum number of workers
+     * @param maxSize           The maximum number of workers
+     * @param pressureThreshold The average number of messages waiting in the workers' mailboxes to add a worker at
+     * @return The router itself
+     */
+    public Router autoResize(final int minSize, final int maxSize, final int pressureThreshold) {
+        if (minSize < 1 || maxSize < minSize)
+            throw new IllegalArgumentException("The minimum size must be positive and not exceed the maximum size.");
+        if (pressureThreshold < 1) throw new IllegalArgumentException("The pressure threshold must be positive.");
+        resizeLock.lock();
+        try {
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.pressureThreshold = pressureThreshold;
+            autoResizing = true;
+        } finally {
+            resizeLock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * @return The current number of workers
+     */
+    public int getSize() {
+        return workers.length;
+    }
+
+    /**
+     * @return The routing strategy
+     */
+    public RoutingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Changes the number of workers. Removed workers get stopped and finish processing the messages already in their mailboxes.
+     *
+     * @param size The new number of workers
+     */
+    public void resize(final int size) {
+        if (size < 1) throw new IllegalArgumentException("A router needs at least one worker.");
+        resizeLock.lock();
+        try {
+            if (started && hasBeenStopped()) throw new IllegalStateException("The router has been stopped.");
+            setWorkers(size);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds or removes workers, must be called while holding the resize lock
+     *
+     * @param size The new number of workers
+     */
+    private void setWorkers(final int size) {
+        final AbstractLoopingActor[] oldWorkers = workers;
+        final int oldSize = oldWorkers.length;
+        if (size == oldSize) return;
+
+        final AbstractLoopingActor[] newWorkers = Arrays.copyOf(oldWorkers, size);
+        final int[] newIds = Arrays.copyOf(workerIds, size);
+        for (int i = oldSize; i < size; i++) {
+            newWorkers[i] = createWorker();
+            newIds[i] = workerSequence++;
+        }
+        if (started) {
+            for (int i = oldSize; i < size; i++) newWorkers[i].start();
+        }
+        workerIds = newIds;
+        if (strategy == RoutingStrategy.CONSISTENT_HASH) ring = new HashRing(newWorkers, newIds);
+        workers = newWorkers;
+        if (started) {
+            for (int i = size; i < oldSize; i++) oldWorkers[i].stop();
+        }
+    }
+
+    @SuppressWarnings({"CatchGenericClass"})
+    private AbstractLoopingActor createWorker() {
+        final AbstractLoopingActor worker;
+        try {
+            worker = workerFactory.call();
+        } catch (Exception e) {
+            throw new IllegalStateException("The router failed to create a worker.", e);
+        }
+        if (worker == null || !worker.hasBeenStopped())
+            throw new IllegalStateException("The worker factory must return new actors, which have not been started.");
+        worker.setParallelGroup(parallelGroup);
+        worker.trackMailboxDepth();
+        worker.getJoinLatch().whenBound(new MessagingRunnable<Object>() {
+            private static final long serialVersionUID = -3318440370468325374L;
+
+            @Override
+            protected void doRun(final Object argument) {
+                replaceWorker(worker);
+            }
+        });
+        return worker;
+    }
+
+    /**
+     * Replaces a worker, which has stopped on its own, with a new one occupying the same position in the routing table.
+     * Workers already removed from the table through resizing, as well as workers of a stopped router, are left alone.
+     *
+     * @param worker The stopped worker
+     */
+    private void replaceWorker(final AbstractLoopingActor worker) {
+        resizeLock.lock();
+        try {
+            if (!started || hasBeenStopped()) return;
+            final AbstractLoopingActor[] oldWorkers = workers;
+            for (int i = 0; i < oldWorkers.length; i++) {
+                if (oldWorkers[i] == worker) {
+                    final AbstractLoopingActor[] newWorkers = oldWorkers.clone();
+                    newWorkers[i] = createWorker();
+                    newWorkers[i].start();
+                    if (strategy == RoutingStrategy.CONSISTENT_HASH) ring = new HashRing(newWorkers, workerIds);
+                    workers = newWorkers;
+                    return;
+                }
+            }
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the message in the mailbox of one of the workers.
+     * The message is passed on as is, so that the workers wrap it together with the sender only if needed.
+     *
+     * @param message The message to send
+     * @return The router itself
+     */
+    @Override
+    public MessageStream send(final Object message) {
+        if (hasBeenStopped()) throw new IllegalStateException("The actor cannot accept messages at this point.");
+        AbstractLoopingActor[] localWorkers = workers;
+        while (true) {
+            final AbstractLoopingActor worker = selectWorker(localWorkers, message);
+            try {
+                worker.send(message);
+                break;
+            } catch (IllegalStateException e) {
+                //the selected worker may have been removed by a concurrent resize or may have stopped on its own
+                if (hasBeenStopped() || !worker.hasBeenStopped()) throw e;
+                if (workers == localWorkers) replaceWorker(worker);
+                final AbstractLoopingActor[] currentWorkers = workers;
+                if (currentWorkers == localWorkers) throw e;
+                localWorkers = currentWorkers;
+            }
+        }
+        if (autoResizing && (resizeCounter.incrementAndGet() & (RESIZE_CHECK_INTERVAL - 1)) == 0) adjustSize();
+        return this;
+    }
+
+    private AbstractLoopingActor selectWorker(final AbstractLoopingActor[] localWorkers, final Object message) {
+        final int size = localWorkers.length;
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return localWorkers[(sendCounter.getAndIncrement() & Integer.MAX_VALUE) % size];
+            case RANDOM:
+                return localWorkers[ThreadLocalRandom.current().nextInt(size)];
+            case SMALLEST_MAILBOX:
+                return smallestMailbox(localWorkers);
+            default:
+                final Closure localHashKey = hashKey;
+                final Object payLoad = message instanceof ActorMessage ? ((ActorMessage) message).getPayLoad() : message;
+                final Object key = localHashKey != null ? localHashKey.call(payLoad) : payLoad;
+                return ring.lookup(key != null ? key.hashCode() : 0);
+        }
+    }
+
+    private static AbstractLoopingActor smallestMailbox(final AbstractLoopingActor[] localWorkers) {
+        final int size = localWorkers.length;
+        final int start = ThreadLocalRandom.current().nextInt(size);
+        AbstractLoopingActor result = localWorkers[start];
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            final AbstractLoopingActor worker = localWorkers[(start + i) % size];
+            final int depth = worker.getMailboxDepth();
+            if (depth < smallest) {
+                smallest = depth;
+                result = worker;
+                if (depth <= 0) break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a worker under mailbox pressure or removes one, if all the mailboxes are empty.
+     * Skips the check, if another thread is currently resizing the router.
+     */
+    private void adjustSize() {
+        if (!resizeLock.tryLock()) return;
+        try {
+            if (hasBeenStopped()) return;
+            final AbstractLoopingActor[] localWorkers = workers;
+            long total = 0L;
+            for (final AbstractLoopingActor worker : localWorkers) {
+                total += (long) Math.max(worker.getMailboxDepth(), 0);
+            }
+            final int size = localWorkers.length;
+            if (total > (long) pressureThreshold * (long) size && size < maxSize) setWorkers(size + 1);
+            else if (total == 0L && size > minSize) setWorkers(size - 1);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Starts the workers without sending them the start message.
+     *
+     * @return The router itself
+     */
+    @Override
+    public Actor silentStart() {
+        doStart(true);
+        return this;
+    }
+
+    /**
+     * Starts the workers
+     *
+     * @return The router itself
+     */
+    @Override
+    public Actor start() {
+        doStart(false);
+        return this;
+    }
+
+    private void doStart(final boolean silent) {
+        resizeLock.lock();
+        try {
+            if (started) throw new IllegalStateException(ACTOR_HAS_ALREADY_BEEN_STARTED);
+            for (final AbstractLoopingActor worker : workers) {
+                if (silent) worker.silentStart();
+                else worker.start();
+            }
+            started = true;
+            stoppedFlag = false;
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Stops all the workers, letting them process the messages already in their mailboxes
+     *
+     * @return The router itself
+     */
+    @Override
+    public Actor stop() {
+        shutdownWorkers(false);
+        return this;
+    }
+
+    /**
+     * Terminates all the workers
+     *
+     * @return The router itself
+     */
+    @Override
+    public Actor terminate() {
+        shutdownWorkers(true);
+        return this;
+    }
+
+    private void shutdownWorkers(final boolean terminate) {
+        final AbstractLoopingActor[] localWorkers;
+        final boolean first;
+        resizeLock.lock();
+        try {
+            if (!started) return;
+            first = !stoppedFlag;
+            stoppedFlag = true;
+            localWorkers = workers;
+        } finally {
+            resizeLock.unlock();
+        }
+        for (final AbstractLoopingActor worker : localWorkers) {
+            if (terminate) worker.terminate();
+            else worker.stop();
+        }
+        if (first) bindJoinLatchOnceTerminated(localWorkers);
+    }
+
+    private void bindJoinLatchOnceTerminated(final AbstractLoopingActor[] localWorkers) {
+        final AtomicInteger remaining = new AtomicInteger(localWorkers.length);
+        for (final AbstractLoopingActor worker : localWorkers) {
+            worker.getJoinLatch().whenBound(new MessagingRunnable<Object>() {
+                private static final long serialVersionUID = 2790212564138637426L;
+
+                @Override
+                protected void doRun(final Object argument) {
+                    if (remaining.decrementAndGet() == 0) getJoinLatch().bindUnique(null);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return True, if the router has been started and some of its workers have not terminated yet
+     */
+    @Override
+    public boolean isActive() {
+        return started && !getJoinLatch().isBound();
+    }
+
+    @Override
+    protected boolean hasBeenStopped() {
+        return stoppedFlag;
+    }
+
+    /**
+     * The router keeps no messages itself, they all go to the workers' mailboxes
+     *
+     * @return Always null
+     */
+    @Override
+    protected ActorMessage sweepNextMessage() {
+        return null;
+    }
+
+    /**
+     * Maps hash codes of keys onto workers, each worker occupying several points on a circle of hash values
+     */
+    private static final class HashRing {
+        private final int[] points;
+        private final AbstractLoopingActor[] owners;
+
+        HashRing(final AbstractLoopingActor[] workers, final int[] ids) {
+            final long[] entries = new long[workers.length * VIRTUAL_NODES];
+            for (int i = 0; i < workers.length; i++) {
+                for (int j = 0; j < VIRTUAL_NODES; j++) {
+                    final int point = mix(ids[i] * VIRTUAL_NODES + j);
+                    entries[i * VIRTUAL_NODES + j] = ((long) point << 32) | (long) i;
+                }
+            }
+            Arrays.sort(entries);
+            points = new int[entries.length];
+            owners = new AbstractLoopingActor[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = (int) (entries[i] >> 32);
+                owners[i] = workers[(int) entries[i]];
+            }
+        }
+
+        AbstractLoopingActor lookup(final int hashCode) {
+            int index = Arrays.binarySearch(points, mix(hashCode));
+            if (index < 0) index = -index - 1;
+            return owners[index == points.length ? 0 : index];
+        }
+
+        /**
+         * The finalization step of the MurmurHash3 function, spreading the bits of hash codes across the whole int range
+         */
+        private static int mix(final int value) {
+            int h = value;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor;
+
+/**
+ * Determines how a Router picks the worker actor to deliver each message to.
+ */
+public enum RoutingStrategy {
+    /**
+     * Messages go to the workers in turns
+     */
+    ROUND_ROBIN,
+    /**
+     * Each message goes to a randomly chosen worker
+     */
+    RANDOM,
+    /**
+     * Each message goes to the worker with the fewest messages waiting in its mailbox
+     */
+    SMALLEST_MAILBOX,
+    /**
+     * Messages with equal keys go to the same worker and so get processed in the order they have been sent.
+     * Resizing the router only moves a proportional share of the keys to different workers.
+     */
+    CONSISTENT_HASH
+}
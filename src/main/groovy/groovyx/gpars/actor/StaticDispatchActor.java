@@ -31,7 +31,7 @@ public abstract class StaticDispatchActor<T> extends AbstractLoopingActor {
      * Creates a new instance
      */
     protected StaticDispatchActor() {
-        initialize(SDAClosure.createSDAClosure(this));
+        initializeWithEnvelopes(SDAClosure.createSDAClosure(this));
     }
 
     /**
@@ -0,0 +1,31 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor.impl;
+
+/**
+ * Indicates that a message could not be delivered, since the bounded mailbox of the target actor was full
+ * and the actor uses the fail-fast overflow policy.
+ * It deliberately does not extend IllegalStateException, which signals a stopped actor,
+ * so that code handling stopped actors does not mistake a full mailbox for one.
+ */
+public final class MailboxOverflowException extends RuntimeException {
+    private static final long serialVersionUID = -2270387924938564621L;
+
+    public MailboxOverflowException(final String message) {
+        super(message);
+    }
+}
@@ -22,6 +22,8 @@ import groovyx.gpars.actor.Actor;
 import groovyx.gpars.actor.ActorMessage;
 import groovyx.gpars.actor.Actors;
 import groovyx.gpars.group.PGroup;
+import groovyx.gpars.metrics.MessagingInstrumentation;
+import groovyx.gpars.metrics.MessagingMetrics;
 import org.codehaus.groovy.runtime.ScriptBytecodeAdapter;
 
 import java.util.concurrent.TimeUnit;
@@ -60,6 +62,17 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
 
     private volatile Thread waitingThread;
 
+    /**
+     * Receives notifications about messages passing through the actor, null, if the actor is not instrumented
+     */
+    private volatile MessagingInstrumentation instrumentation = null;
+
+    /**
+     * The time the currently processed message has been taken from the queue, 0 if no message is being processed.
+     * Only used by instrumented actors.
+     */
+    private long handlingStartTime = 0L;
+
     protected static final int S_ACTIVE_MASK = 1;
     protected static final int S_FINISHING_MASK = 2;
     protected static final int S_FINISHED_MASK = 4;
@@ -120,8 +133,7 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
 
         ActorMessage toProcess = null;
         if (outputQueue != null) {
-            toProcess = outputQueue.msg;
-            outputQueue = outputQueue.next;
+            toProcess = dequeue(false);
         }
         return toProcess;
     }
@@ -135,6 +147,7 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
     protected final ActorMessage takeMessage() throws InterruptedException {
         assert isActorThread();
 
+        finishHandling();
         while (true) {
             final ActorMessage message = awaitNextMessage(0L);
             if (message != null) return message;
@@ -152,6 +165,7 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
     protected ActorMessage takeMessage(final long timeout, final TimeUnit timeUnit) throws InterruptedException {
         assert isActorThread();
 
+        finishHandling();
         final long endTime = System.nanoTime() + timeUnit.toNanos(timeout);
         do {
             final ActorMessage message = awaitNextMessage(endTime);
@@ -187,13 +201,74 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
      * @return The next message
      */
     private ActorMessage retrieveNextMessage() {
-        final ActorMessage toProcess = outputQueue.msg;
-        outputQueue = outputQueue.next;
+        final ActorMessage toProcess = dequeue(true);
 
         throwIfNeeded(toProcess);
         return toProcess;
     }
 
+    /**
+     * Removes the head of the output queue, which must not be empty
+     *
+     * @param toProcess True, if the message is going to be processed, false, if it is being swept from the queue
+     * @return The message
+     */
+    private ActorMessage dequeue(final boolean toProcess) {
+        final Node node = outputQueue;
+        outputQueue = node.next;
+        final MessagingInstrumentation localInstrumentation = instrumentation;
+        if (localInstrumentation != null) {
+            final long now = System.nanoTime();
+            if (node instanceof TimedNode)
+                localInstrumentation.messageDequeued(toProcess ? now - ((TimedNode) node).enqueueTime : -1L);
+            if (toProcess) handlingStartTime = now;
+        }
+        return node.msg;
+    }
+
+    /**
+     * Reports the time spent processing the previous message, once the actor asks for the next one or terminates
+     */
+    private void finishHandling() {
+        if (handlingStartTime == 0L) return;
+        final MessagingInstrumentation localInstrumentation = instrumentation;
+        if (localInstrumentation != null) localInstrumentation.messageHandled(System.nanoTime() - handlingStartTime);
+        handlingStartTime = 0L;
+    }
+
+    /**
+     * Starts notifying the supplied instrumentation about messages passing through the actor.
+     * It can only be invoked before the actor is started.
+     *
+     * @param instrumentation The instrumentation to notify
+     */
+    public final void instrument(final MessagingInstrumentation instrumentation) {
+        if (instrumentation == null) throw new IllegalArgumentException("The instrumentation must not be null.");
+        if (stopFlag != S_NOT_STARTED) throw new IllegalStateException("Cannot instrument an actor after it was started.");
+        if (this.instrumentation != null) throw new IllegalStateException("The actor has already been instrumented.");
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Starts collecting run-time metrics of the actor.
+     * It can only be invoked before the actor is started.
+     *
+     * @param name The name to identify the metrics by
+     * @return The metrics of the actor
+     */
+    public final MessagingMetrics enableMetrics(final String name) {
+        final MessagingMetrics metrics = new MessagingMetrics(name);
+        instrument(metrics);
+        return metrics;
+    }
+
+    /**
+     * @return The instrumentation receiving notifications about messages passing through the actor, or null
+     */
+    public final MessagingInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
     /**
      * Transfers messages from the input queue into the output queue, reverting the order of the elements.
      */
@@ -234,7 +309,13 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
     @Override
     public final MessageStream send(final Object message) {
 
-        final Node toAdd = new Node(createActorMessage(message));
+        final MessagingInstrumentation localInstrumentation = instrumentation;
+        final Node toAdd;
+        if (localInstrumentation == null) toAdd = new Node(createActorMessage(message));
+        else {
+            toAdd = new TimedNode(createActorMessage(message), System.nanoTime());
+            localInstrumentation.messageEnqueued();
+        }
 
         while (true) {
             final Node prev = inputQueue;
@@ -436,6 +517,18 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
         }
     }
 
+    /**
+     * A queue element of an instrumented actor, remembering the time the message was sent
+     */
+    private static final class TimedNode extends Node {
+        final long enqueueTime;
+
+        TimedNode(final ActorMessage actorMessage, final long enqueueTime) {
+            super(actorMessage);
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
     /**
      * This method represents the body of the actor. It is called upon actor's start and can exit either
      * normally by return or due to actor being stopped through the stop() method, which cancels the current
@@ -490,6 +583,7 @@ public abstract class SequentialProcessingActor extends ReplyingMessageStream im
                 while (!ongoingThreadTermination.compareAndSet(false, true)) //noinspection CallToThreadYield
                     Thread.yield();
                 Thread.interrupted();
+                finishHandling();
                 handleTermination();
             } finally {
                 deregisterCurrentActorWithThread();
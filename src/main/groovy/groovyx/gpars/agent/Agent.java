@@ -44,6 +44,8 @@ import org.codehaus.groovy.runtime.NullObject;
  * The initial internal value can be passed to the constructor. The two-parameter constructor allows to alter the way
  * the internal value is returned from val/valAsync. By default the original reference is returned, but in many scenarios a copy
  * or a clone might be more appropriate.
+ * Persistent collections from the groovyx.gpars.agent.persistent package are never copied, since their updates create new versions
+ * sharing structure with the original, which makes them suitable for large states.
  *
  * @author Vaclav Pech
  *         Date: Jul 2, 2009
@@ -17,11 +17,13 @@
 package groovyx.gpars.agent;
 
 import groovy.lang.Closure;
+import groovyx.gpars.agent.persistent.PersistentCollection;
 import groovyx.gpars.dataflow.DataflowVariable;
 import org.codehaus.groovy.runtime.NullObject;
 
 import java.util.Collection;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -45,7 +47,8 @@ abstract class AgentBase<T> extends AgentCore {
 
     /**
      * Function converting the internal state during read to prevent internal state escape from
-     * the protected boundary of the agent
+     * the protected boundary of the agent.
+     * Not used for persistent collections, which cannot be modified.
      */
     private final Closure copy;
 
@@ -61,6 +64,55 @@ abstract class AgentBase<T> extends AgentCore {
      */
     private final Collection<Closure> validators = new CopyOnWriteArrayList<Closure>();
 
+    /**
+     * The maximum number of updates performed before the state gets published, 1 means no batching
+     */
+    private volatile int maxBatchSize = 1;
+    private volatile long maxBatchLatency = Long.MAX_VALUE;
+
+    /**
+     * Indicates whether reads are served from the state published at the end of each batch
+     */
+    private volatile boolean batched = false;
+
+    /**
+     * The state published at the end of each batch for batched agents
+     */
+    private volatile T published = null;
+
+    /**
+     * Indicates whether the agent's thread is in the middle of a batch, whose updates haven't been published yet
+     */
+    private boolean batching = false;
+    private int batchCount = 0;
+    private long batchStart = 0L;
+
+    /**
+     * Indicates whether reads are served from the published snapshot instead of under the read lock
+     */
+    private volatile boolean snapshotting = false;
+
+    /**
+     * The state published after each update for snapshotting agents
+     */
+    private volatile T snapshot = null;
+
+    /**
+     * Indicates whether the agent's thread holds the write lock for the current update
+     */
+    private boolean updateLocked = false;
+
+    /**
+     * Indicates whether listeners get notified once per batch of messages instead of once per update
+     */
+    private volatile boolean coalescing = false;
+
+    /**
+     * The value before the first update, which listeners haven't been notified about yet
+     */
+    private T pendingOldValue = null;
+    private boolean notificationPending = false;
+
     AgentBase(final T data) {
         this(data, null);
     }
@@ -81,7 +133,12 @@ abstract class AgentBase<T> extends AgentCore {
      *
      * @param obj The received message
      */
+    @SuppressWarnings({"unchecked"})
     final void onMessage(final NullObject obj) {
+        if (snapshotting || batched) {
+            onMessage((T) null);
+            return;
+        }
         lock.readLock().lock();
         try {
             updateValue(null);
@@ -96,12 +153,25 @@ abstract class AgentBase<T> extends AgentCore {
      * @param code The received message
      */
     final void onMessage(final Closure code) {
-        lock.writeLock().lock();
+        lockForUpdate();
+        boolean failed = true;
         try {
             code.setDelegate(this);
-            code.call(copy != null ? copy.call(data) : data);
+            if (code instanceof ReplyingClosure) {
+                final ReplyingClosure replyingClosure = (ReplyingClosure) code;
+                final Object reply = replyingClosure.compute(copyOf(data));
+                //callers waiting for the reply must find the state they have been replied with in instantVal
+                //and the listeners notified about it
+                publishBatch();
+                notifyCoalescedListeners();
+                replyingClosure.reply(reply);
+            } else {
+                if (code instanceof CallbackClosure) notifyCoalescedListeners();
+                code.call(copyOf(data));
+            }
+            failed = false;
         } finally {
-            lock.writeLock().unlock();
+            unlockAfterUpdate(failed);
         }
     }
 
@@ -111,14 +181,158 @@ abstract class AgentBase<T> extends AgentCore {
      * @param message The received message
      */
     final void onMessage(final T message) {
-        lock.writeLock().lock();
+        lockForUpdate();
+        boolean failed = true;
         try {
             updateValue(message);
+            failed = false;
+        } finally {
+            unlockAfterUpdate(failed);
+        }
+    }
+
+    /**
+     * Makes the agent process updates in batches. Instead of acquiring the write lock for each message,
+     * the agent's thread updates the state without locking and publishes it for readers of instantVal once per batch.
+     * A batch ends after the batch size is reached, the maximum latency elapses, the message queue gets drained,
+     * an update fails or a reply to val, await() or sendAndWait() is about to be sent.
+     * Readers of instantVal therefore never wait for the agent and only see the state between batches.
+     * If a copy closure has been specified, it is called once per batch to create the published state, which readers copy again.
+     * The mode cannot be turned off.
+     *
+     * @param maxBatchSize The maximum number of updates performed before the state gets published
+     * @param maxLatency   The maximum time to postpone publishing the state of a batch
+     * @param unit         The time unit of the maxLatency parameter
+     */
+    public final void makeBatched(final int maxBatchSize, final long maxLatency, final TimeUnit unit) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("The maximum batch size must be a positive number.");
+        if (maxLatency < 0L) throw new IllegalArgumentException("The maximum batch latency must be a non-negative value.");
+        lock.writeLock().lock();
+        try {
+            this.maxBatchLatency = unit.toNanos(maxLatency);
+            this.maxBatchSize = maxBatchSize;
+            if (batched) return;
+            published = copyOf(data);
+            batched = true;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Makes the agent process updates in batches with no latency limit.
+     *
+     * @param maxBatchSize The maximum number of updates performed before the state gets published
+     * @see #makeBatched(int, long, java.util.concurrent.TimeUnit)
+     */
+    public final void makeBatched(final int maxBatchSize) {
+        makeBatched(maxBatchSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The maximum number of updates performed before the state gets published, 1 for non-batched agents
+     */
+    public final int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Makes the agent publish a snapshot of its state through a volatile reference after each update.
+     * Reading instantVal then turns into a plain volatile read, while updates no longer need to acquire the write lock,
+     * which makes snapshotting agents suitable for frequently polled state.
+     * The copy closure is called once per update to create the snapshot, instead of on each read.
+     * All readers thus share the same snapshot, which they must not modify.
+     * Since the snapshot must not change after it has been published, the agent requires either a copy closure
+     * or a persistent collection as its state. Agents holding immutable values may use a copy closure returning its argument.
+     * Without a copy closure, values other than persistent collections are rejected by updateValue() and registered as errors.
+     * Validators and listeners are notified the same way as for other agents, the old value they get being the previous snapshot.
+     * Batching has no effect on snapshotting agents. The mode cannot be turned off.
+     *
+     * @throws IllegalStateException If the agent has no copy closure and its state is not a persistent collection
+     */
+    @SuppressWarnings({"unchecked"})
+    public final void makeSnapshotting() {
+        lock.writeLock().lock();
+        try {
+            if (snapshotting) return;
+            if (!isSnapshottable(data))
+                throw new IllegalStateException("Only agents with a copy closure or a persistent collection as their state can be made snapshotting.");
+            snapshot = copyOf(data);
+            snapshotting = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return True, if reads are served from a snapshot published after each update
+     */
+    public final boolean isSnapshotting() {
+        return snapshotting;
+    }
+
+    /**
+     * Makes the agent notify listeners once per batch of updates processed in one go, instead of once per update.
+     * All messages taken from the queue in one go get processed in order and validators check each of the updates,
+     * but listeners receive a single notification with the value before the first accepted update and the final value.
+     * The notification is sent once the queue has been drained or before a read, such as val, valAsync() or await(), gets its value,
+     * so readers never get ahead of the listeners.
+     * Exceptions thrown by the listeners get registered as errors of the agent.
+     */
+    public final void makeCoalescing() {
+        coalescing = true;
+    }
+
+    /**
+     * @return True, if listeners get notified once per batch of messages
+     */
+    public final boolean isCoalescing() {
+        return coalescing;
+    }
+
+    private void lockForUpdate() {
+        if (batching || snapshotting) return;
+        if (batched) {
+            batching = true;
+            batchCount = 0;
+            batchStart = System.nanoTime();
+            return;
+        }
+        lock.writeLock().lock();
+        updateLocked = true;
+    }
+
+    private void unlockAfterUpdate(final boolean failed) {
+        if (batching) {
+            batchCount++;
+            if (!failed && !snapshotting && batchCount < maxBatchSize && System.nanoTime() - batchStart < maxBatchLatency) return;
+            publishBatch();
+        } else if (updateLocked) {
+            updateLocked = false;
+            //the agent may have been made batched while waiting for the lock
+            if (batched) published = copyOf(data);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends the current batch, if there is any, and publishes the state for readers of instantVal
+     */
+    private void publishBatch() {
+        if (!batching) return;
+        batching = false;
+        published = copyOf(data);
+    }
+
+    /**
+     * Publishes the state of the current batch, since the agent's thread is about to stop processing messages
+     */
+    @Override
+    void activationFinished() {
+        publishBatch();
+        notifyCoalescedListeners();
+    }
+
     /**
      * Allows closures to set the new internal state as a whole
      * Do not call this method directly from the outside. It is designed to be used from within the submitted closures.
@@ -127,9 +341,15 @@ abstract class AgentBase<T> extends AgentCore {
      */
     @SuppressWarnings({"unchecked", "CatchGenericClass"})
     public final void updateValue(final T newValue) {
-        final T oldValue = copy != null ? (T) copy.call(data) : data;
+        final boolean publishing = snapshotting;
+        final boolean coalesce = coalescing;
+        //coalescing agents only need the old value for validators and for the first update of a batch
+        final boolean needsOldValue = !coalesce || !validators.isEmpty() || (!notificationPending && !listeners.isEmpty());
+        final T oldValue = needsOldValue ? publishing ? snapshot : copyOf(data) : null;
         boolean validated = false;
         try {
+            if (publishing && !isSnapshottable(newValue))
+                throw new IllegalArgumentException("Snapshotting agents without a copy closure only accept persistent collections as their state.");
             for (final Closure validator : validators) {
                 validator.call(new Object[]{oldValue, newValue});
             }
@@ -139,12 +359,58 @@ abstract class AgentBase<T> extends AgentCore {
         }
         if (validated) {
             data = newValue;
+            if (publishing) snapshot = copyOf(newValue);
+            if (coalesce) {
+                if (!notificationPending && !listeners.isEmpty()) {
+                    pendingOldValue = oldValue;
+                    notificationPending = true;
+                }
+                return;
+            }
             for (final Closure listener : listeners) {
                 listener.call(new Object[]{oldValue, newValue});
             }
         }
     }
 
+    /**
+     * Notifies the listeners about all the updates coalesced since the last notification
+     */
+    private void notifyCoalescedListeners() {
+        if (!notificationPending) return;
+        final T oldValue = pendingOldValue;
+        pendingOldValue = null;
+        notificationPending = false;
+        try {
+            for (final Closure listener : listeners) {
+                listener.call(new Object[]{oldValue, data});
+            }
+        } catch (Throwable e) {
+            registerError(e);
+        }
+    }
+
+    /**
+     * Checks whether the value can be published as a snapshot, which never changes
+     *
+     * @param value The new internal state
+     * @return True, if a copy closure has been specified or the value is null or a persistent collection
+     */
+    private boolean isSnapshottable(final T value) {
+        return copy != null || value == null || value instanceof PersistentCollection;
+    }
+
+    /**
+     * Protects the internal state from modifications from outside of the agent
+     *
+     * @param value The internal state
+     * @return The value itself, if no copy closure has been specified or the value is a persistent collection, or a copy of the value
+     */
+    @SuppressWarnings({"unchecked"})
+    private T copyOf(final T value) {
+        return copy != null && !(value instanceof PersistentCollection) ? (T) copy.call(value) : value;
+    }
+
     /**
      * A shorthand method for safe message-based retrieval of the internal state.
      * Retrieves the internal state immediately by-passing the queue of tasks waiting to be processed.
@@ -153,9 +419,11 @@ abstract class AgentBase<T> extends AgentCore {
      */
     @SuppressWarnings({"unchecked"})
     public final T getInstantVal() {
+        if (snapshotting) return snapshot;
+        if (batched) return copyOf(published);
         lock.readLock().lock();
         try {
-            return copy != null ? (T) copy.call(data) : data;
+            return copyOf(data);
         } finally {
             lock.readLock().unlock();
         }
@@ -179,15 +447,7 @@ abstract class AgentBase<T> extends AgentCore {
      * @param callback A closure to invoke with the internal state as a parameter
      */
     public final void valAsync(final Closure callback) {
-        send(new Closure(this) {
-            private static final long serialVersionUID = 27598476470091452L;
-
-            @Override
-            public Object call(final Object arguments) {
-                callback.call(arguments);
-                return null;
-            }
-        });
+        send(new CallbackClosure(this, callback));
     }
 
 
@@ -204,16 +464,7 @@ abstract class AgentBase<T> extends AgentCore {
             throw new IllegalStateException("Cannot submit messages to agents inside submitted commands");
 
         final DataflowVariable<Object> result = new DataflowVariable<Object>();
-        this.send(new Closure(message.getOwner()) {
-            private static final long serialVersionUID = -4637623342002266534L;
-
-            @Override
-            public Object call(final Object arguments) {
-                final Object value = message.call(arguments);
-                result.bind(value);
-                return null;
-            }
-        });
+        this.send(new ReplyingClosure(message, result));
         return (T) result.getVal();
     }
 
@@ -265,10 +516,65 @@ abstract class AgentBase<T> extends AgentCore {
 
     private static final Closure awaitClosure = new AwaitClosure();
 
+    /**
+     * Passes the state to a callback without modifying it
+     */
+    static final class CallbackClosure extends Closure {
+        private static final long serialVersionUID = 27598476470091452L;
+        private final Closure callback;
+
+        private CallbackClosure(final Object owner, final Closure callback) {
+            super(owner);
+            this.callback = callback;
+        }
+
+        @Override
+        public Object call(final Object arguments) {
+            callback.call(arguments);
+            return null;
+        }
+    }
+
+    /**
+     * Runs the submitted command and binds its result
+     */
+    static final class ReplyingClosure extends Closure {
+        private static final long serialVersionUID = -4637623342002266534L;
+        private final Closure command;
+        private final DataflowVariable<Object> result;
+
+        private ReplyingClosure(final Closure command, final DataflowVariable<Object> result) {
+            super(command.getOwner());
+            this.command = command;
+            this.result = result;
+        }
+
+        /**
+         * @return The submitted command or null, if only the state has been requested
+         */
+        Closure getCommand() {
+            return command != awaitClosure ? command : null;
+        }
+
+        Object compute(final Object arguments) {
+            return command.call(arguments);
+        }
+
+        void reply(final Object value) {
+            result.bind(value);
+        }
+
+        @Override
+        public Object call(final Object arguments) {
+            reply(compute(arguments));
+            return null;
+        }
+    }
+
     /**
      * Returns the current value of the Agent's state
      */
-    private static class AwaitClosure extends Closure {
+    static final class AwaitClosure extends Closure {
         private static final long serialVersionUID = 8104821777516625579L;
 
         private AwaitClosure() {
@@ -20,7 +20,10 @@ import groovyx.gpars.actor.Actors;
 import groovyx.gpars.group.PGroup;
 import groovyx.gpars.scheduler.Pool;
 import groovyx.gpars.serial.WithSerialId;
+import groovyx.gpars.metrics.MessagingInstrumentation;
+import groovyx.gpars.metrics.MessagingMetrics;
 import groovyx.gpars.util.AsyncMessagingCore;
+import groovyx.gpars.util.MessageQueue;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -38,7 +41,7 @@ public abstract class AgentCore extends WithSerialId {
     protected volatile Thread currentThread;
 
     protected AgentCore() {
-        this.core = new AsyncMessagingCore(Actors.defaultActorPGroup.getThreadPool()) {
+        this.core = new AsyncMessagingCore(Actors.defaultActorPGroup.getThreadPool(), Actors.defaultActorPGroup.createMessageQueue()) {
             @Override
             protected void registerError(final Throwable e) {
                 AgentCore.this.registerError(e);
@@ -62,6 +65,7 @@ public abstract class AgentCore extends WithSerialId {
              */
             @Override
             protected void threadUnassigned() {
+                AgentCore.this.activationFinished();
                 currentThread = null;
             }
         };
@@ -77,12 +81,56 @@ public abstract class AgentCore extends WithSerialId {
     }
 
     /**
-     * Sets an actor group to use for task scheduling
+     * Sets an actor group to use for task scheduling.
+     * The group's message queue factory is only applied if the agent has not received any messages yet.
      *
      * @param pGroup The pGroup to use
      */
     public void setPGroup(final PGroup pGroup) {
         attachToThreadPool(pGroup.getThreadPool());
+        if (pGroup.getMessageQueueFactory() != null) core.tryUseMessageQueue(pGroup.createMessageQueue());
+    }
+
+    /**
+     * Sets the message queue implementation to hold the messages sent to the agent.
+     * It can only be invoked before the first message is sent to the agent.
+     *
+     * @param queue The message queue to use
+     * @throws IllegalStateException If messages have already been sent to the agent
+     */
+    public final void setMessageQueue(final MessageQueue queue) {
+        core.useMessageQueue(queue);
+    }
+
+    /**
+     * Starts notifying the supplied instrumentation about messages passing through the agent.
+     * The instrumentation cannot be removed or replaced afterwards.
+     *
+     * @param instrumentation The instrumentation to notify
+     */
+    public final void instrument(final MessagingInstrumentation instrumentation) {
+        core.instrument(instrumentation);
+    }
+
+    /**
+     * Starts collecting run-time metrics of the agent, such as mailbox length, throughput, queueing and handler latencies.
+     * Messages sent earlier only get their handler time measured.
+     * Call registerMBean() on the returned metrics to expose them through JMX.
+     *
+     * @param name The name to identify the metrics by
+     * @return The metrics of the agent
+     */
+    public final MessagingMetrics enableMetrics(final String name) {
+        final MessagingMetrics metrics = new MessagingMetrics(name);
+        instrument(metrics);
+        return metrics;
+    }
+
+    /**
+     * @return The instrumentation receiving notifications about messages passing through the agent, or null
+     */
+    public final MessagingInstrumentation getInstrumentation() {
+        return core.getInstrumentation();
     }
 
     /**
@@ -105,6 +153,14 @@ public abstract class AgentCore extends WithSerialId {
         core.makeFair();
     }
 
+    /**
+     * Informs about the agent's thread being about to stop processing messages.
+     * Invoked even if the processing ended with an exception.
+     */
+    @SuppressWarnings({"NoopMethodInAbstractClass"})
+    void activationFinished() {
+    }
+
     /**
      * Holds agent errors
      */
@@ -0,0 +1,365 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent;
+
+import groovy.lang.Closure;
+import org.codehaus.groovy.runtime.NullObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * An agent, which survives restarts by keeping a journal of the commands it has processed together with periodic snapshots of its state.
+ * Each command or value sent to the agent gets serialized and, once processed without errors, appended to a journal file,
+ * which is written through memory-mapped regions. Commands, which throw an exception or get rejected by a validator, are not journaled.
+ * After the given number of journaled messages, the agent stores a snapshot of its state and starts a new journal.
+ * When created, the agent loads the latest snapshot from its directory and replays the journal written after it,
+ * without notifying listeners or consulting validators.
+ * <p>
+ * Journaled records are flushed to the storage device once the agent's thread has processed all the messages available in the queue,
+ * so many messages share a single flush. Call sync() to wait until all previously sent messages have become durable.
+ * </p>
+ * <p>
+ * Both the state and the messages must be serializable. Closures get dehydrated before serialization and rehydrated with the agent
+ * as their owner, delegate and this object during replay, so they can only refer to the agent and to the variables they capture.
+ * Commands should be deterministic and apply their changes atomically, since they are replayed after a restart.
+ * Reads, such as val, valAsync() or await(), are never journaled.
+ * </p>
+ *
+ * @param <T> The type of the agent's state
+ */
+public final class DurableAgent<T extends Serializable> extends Agent<T> {
+
+    /**
+     * The default number of journaled messages between two snapshots
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10000;
+
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+
+    private final File directory;
+    private volatile int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+    /**
+     * The number of the current snapshot and journal
+     */
+    private long generation;
+    private int journaledMessages = 0;
+    private Journal journal;
+    private boolean failed = false;
+
+    /**
+     * Creates a durable agent keeping its journal and snapshots in the given directory.
+     * Recovers the previously saved state, if there is some in the directory.
+     *
+     * @param directory    The directory to store the journal and snapshots in
+     * @param initialState The state to use, if there is no previously saved state in the directory
+     * @throws IOException If the saved state cannot be read or the journal cannot be opened
+     */
+    public DurableAgent(final File directory, final T initialState) throws IOException {
+        super(initialState);
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create the directory " + directory);
+        recover();
+    }
+
+    /**
+     * Sets the number of journaled messages, after which the agent stores a snapshot of its state and starts a new journal
+     *
+     * @param snapshotInterval A positive number of messages
+     */
+    public void setSnapshotInterval(final int snapshotInterval) {
+        if (snapshotInterval < 1) throw new IllegalArgumentException("The snapshot interval must be a positive number.");
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * @return The number of journaled messages, after which the agent stores a snapshot of its state
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Blocks until all messages sent prior to the call have been processed and their journal records flushed to the storage device
+     *
+     * @throws InterruptedException If the thread gets interrupted while waiting
+     */
+    public void sync() throws InterruptedException {
+        sendAndWait(new ControlCommand(this) {
+            private static final long serialVersionUID = -2163089218430785021L;
+
+            @Override
+            void execute() {
+                journal.force();
+            }
+        });
+    }
+
+    /**
+     * Stores a snapshot of the state after all messages sent prior to the call have been processed and starts a new journal
+     *
+     * @throws InterruptedException If the thread gets interrupted while waiting
+     */
+    public void snapshot() throws InterruptedException {
+        sendAndWait(new ControlCommand(this) {
+            private static final long serialVersionUID = 6780524309681154723L;
+
+            @Override
+            void execute() throws IOException {
+                takeSnapshot();
+            }
+        });
+    }
+
+    /**
+     * Flushes and closes the journal once all messages sent prior to the call have been processed.
+     * Messages sent afterwards get rejected with an error.
+     *
+     * @throws InterruptedException If the thread gets interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        sendAndWait(new ControlCommand(this) {
+            private static final long serialVersionUID = 1572386014892377603L;
+
+            @Override
+            void execute() throws IOException {
+                if (journal != null) journal.close();
+                journal = null;
+            }
+        });
+    }
+
+    @Override
+    public void handleMessage(final Object message) {
+        final Object command = message instanceof ReplyingClosure ? ((ReplyingClosure) message).getCommand() : message;
+        if (command instanceof ControlCommand || command == null || command instanceof CallbackClosure || command instanceof AwaitClosure) {
+            super.handleMessage(message);
+            return;
+        }
+        if (journal == null) {
+            registerError(new IllegalStateException("The durable agent has been closed."));
+            return;
+        }
+        final byte[] record;
+        try {
+            record = serialize(command);
+        } catch (IOException e) {
+            registerError(e);
+            return;
+        }
+        failed = false;
+        super.handleMessage(message);
+        if (failed) return;
+        try {
+            journal.append(record);
+            journaledMessages++;
+            if (journaledMessages >= snapshotInterval) takeSnapshot();
+        } catch (IOException e) {
+            registerError(e);
+        }
+    }
+
+    @Override
+    synchronized void registerError(final Throwable e) {
+        failed = true;
+        super.registerError(e);
+    }
+
+    /**
+     * Flushes the journal records of all the messages processed in the current activation
+     */
+    @Override
+    void activationFinished() {
+        super.activationFinished();
+        if (journal != null) journal.force();
+    }
+
+    /**
+     * Loads the latest snapshot, replays the journal written after it and opens the journal for appending
+     */
+    @SuppressWarnings({"unchecked"})
+    private void recover() throws IOException {
+        generation = latestSnapshot();
+        if (generation > 0L) data = (T) deserialize(readFile(snapshotFile(generation)));
+        for (final byte[] record : Journal.read(journalFile(generation))) {
+            final Object command = deserialize(record);
+            if (command instanceof Closure) {
+                handleReplayed(((Closure) command).rehydrate(this, this, this));
+            } else handleReplayed(command != null ? command : NullObject.getNullObject());
+            journaledMessages++;
+        }
+        journal = new Journal(journalFile(generation), REGION_SIZE);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private void handleReplayed(final Object message) {
+        if (message instanceof Closure) onMessage((Closure) message);
+        else if (message instanceof NullObject) onMessage((NullObject) message);
+        else onMessage((T) message);
+    }
+
+    /**
+     * Stores the current state as a new snapshot, switches to a new journal and removes the previous snapshot and journal
+     */
+    private void takeSnapshot() throws IOException {
+        final long next = generation + 1L;
+        final File temporary = new File(directory, SNAPSHOT_PREFIX + next + ".tmp");
+        final FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            output.write(serialize(data));
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!temporary.renameTo(snapshotFile(next)))
+            throw new IOException("Cannot store the snapshot " + snapshotFile(next));
+        Journal.syncDirectory(directory);
+        journal.close();
+        journal = new Journal(journalFile(next), REGION_SIZE);
+        journaledMessages = 0;
+        final long previous = generation;
+        generation = next;
+        deleteIfExists(journalFile(previous));
+        deleteIfExists(snapshotFile(previous));
+    }
+
+    private long latestSnapshot() {
+        long latest = 0L;
+        final String[] names = directory.list();
+        if (names == null) return latest;
+        for (final String name : names) {
+            if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                try {
+                    latest = Math.max(latest, Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+                } catch (NumberFormatException ignore) {
+                }
+            }
+        }
+        return latest;
+    }
+
+    private File snapshotFile(final long number) {
+        return new File(directory, SNAPSHOT_PREFIX + number + SNAPSHOT_SUFFIX);
+    }
+
+    private File journalFile(final long number) {
+        return new File(directory, JOURNAL_PREFIX + number + JOURNAL_SUFFIX);
+    }
+
+    private static void deleteIfExists(final File file) throws IOException {
+        if (file.exists() && !file.delete()) throw new IOException("Cannot delete " + file);
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        final InputStream input = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) > 0) content.write(buffer, 0, count);
+            return content.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        final Object value = object instanceof Closure ? ((Closure) object).dehydrate() : object instanceof NullObject ? null : object;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final OutputStream output = new ObjectOutputStream(bytes);
+        try {
+            ((ObjectOutputStream) output).writeObject(value);
+        } finally {
+            output.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] content) throws IOException {
+        final ObjectInputStream input = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(content));
+        try {
+            return input.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot restore a journaled message", e);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Resolves classes through the context class loader, so that closures defined in scripts can be restored
+     */
+    private static final class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+        ContextClassLoaderObjectInputStream(final InputStream input) throws IOException {
+            super(input);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(description.getName(), false, loader);
+                } catch (ClassNotFoundException ignore) {
+                }
+            }
+            return super.resolveClass(description);
+        }
+    }
+
+    /**
+     * Internal commands, which are never journaled
+     */
+    private abstract static class ControlCommand extends Closure {
+        private static final long serialVersionUID = 4395617023825497761L;
+        private final DurableAgent<?> agent;
+
+        ControlCommand(final DurableAgent<?> agent) {
+            super(null);
+            this.agent = agent;
+        }
+
+        abstract void execute() throws IOException;
+
+        @Override
+        public Object call(final Object arguments) {
+            try {
+                execute();
+            } catch (IOException e) {
+                agent.registerError(e);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of records stored in a file, which gets written through memory-mapped regions.
+ * Each record is stored as its length, its CRC32 checksum and its content. Reading stops at the first zero length or damaged record,
+ * so a record torn by a crash gets ignored together with anything behind it.
+ * Appended records only become durable after force() has been called, which allows for a single flush of many records.
+ * Regions are unmapped as soon as the journal moves past them, where the JVM allows for it, instead of waiting for the garbage collector.
+ */
+final class Journal implements Closeable {
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * The sun.misc.Unsafe instance offering invokeCleaner(), null if not available (Java 8)
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception ignore) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int regionSize;
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer region = null;
+    private long regionStart;
+    private boolean dirty = false;
+
+    /**
+     * Opens the journal, discarding anything behind the last intact record
+     *
+     * @param path       The file to hold the journal
+     * @param regionSize The size of the memory-mapped regions to write the records through
+     * @throws IOException If the file cannot be opened
+     */
+    Journal(final File path, final int regionSize) throws IOException {
+        this.regionSize = regionSize;
+        final boolean created = !path.exists();
+        final long validLength = scan(path, null);
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        channel.truncate(validLength);
+        this.regionStart = validLength;
+        if (created) syncDirectory(path.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Flushes the directory entries, so that files created, renamed or deleted in the directory survive a crash.
+     * Platforms, which cannot open a directory for reading, such as Windows, are skipped.
+     *
+     * @param directory The directory to flush
+     */
+    static void syncDirectory(final File directory) {
+        try {
+            final FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                directoryChannel.force(true);
+            } finally {
+                directoryChannel.close();
+            }
+        } catch (IOException ignore) {
+            //the platform doesn't support flushing directories
+        }
+    }
+
+    /**
+     * Releases the memory mapping right away. The mapping must not be accessed afterwards.
+     * Without a way to release the mapping explicitly, the mapping gets released once the buffer is garbage collected.
+     */
+    @SuppressWarnings({"CatchGenericClass"})
+    private static void unmap(final MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            } catch (Exception ignore) {
+            }
+        }
+        try {
+            //Java 8
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (Exception ignore) {
+            //left to the garbage collector
+        }
+    }
+
+    /**
+     * Reads all intact records of the journal file
+     *
+     * @param path The journal file
+     * @return The contents of the records in the order of appending, an empty list if the file doesn't exist
+     * @throws IOException If the file cannot be read
+     */
+    static List<byte[]> read(final File path) throws IOException {
+        final List<byte[]> records = new ArrayList<byte[]>();
+        if (path.exists()) scan(path, records);
+        return records;
+    }
+
+    /**
+     * @return The length of the intact part of the journal
+     */
+    private static long scan(final File path, final List<byte[]> records) throws IOException {
+        if (!path.exists()) return 0L;
+        final CRC32 checksum = new CRC32();
+        long position = 0L;
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        try {
+            while (true) {
+                final int length = input.readInt();
+                if (length <= 0) break;
+                final int expectedChecksum = input.readInt();
+                final byte[] content = new byte[length];
+                input.readFully(content);
+                checksum.reset();
+                checksum.update(content, 0, length);
+                if ((int) checksum.getValue() != expectedChecksum) break;
+                if (records != null) records.add(content);
+                position += HEADER_SIZE + length;
+            }
+        } catch (EOFException ignore) {
+            //a record torn by a crash
+        } finally {
+            input.close();
+        }
+        return position;
+    }
+
+    /**
+     * Appends the record to the journal. The record becomes durable once force() has been called.
+     *
+     * @param content The content of the record
+     * @throws IOException If the record cannot be written
+     */
+    void append(final byte[] content) throws IOException {
+        final int size = HEADER_SIZE + content.length;
+        if (region == null || region.remaining() < size) {
+            if (region != null) {
+                force();
+                regionStart += region.position();
+                final MappedByteBuffer previousRegion = region;
+                region = null;
+                unmap(previousRegion);
+            }
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, (long) Math.max(regionSize, size));
+        }
+        crc.reset();
+        crc.update(content, 0, content.length);
+        region.putInt(content.length);
+        region.putInt((int) crc.getValue());
+        region.put(content);
+        dirty = true;
+    }
+
+    /**
+     * Flushes all appended records to the storage device
+     */
+    void force() {
+        if (dirty) {
+            region.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Flushes the appended records and releases the file, trimming the unused part of the last region
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+            final long length = region != null ? regionStart + region.position() : regionStart;
+            if (region != null) {
+                final MappedByteBuffer lastRegion = region;
+                region = null;
+                unmap(lastRegion);
+            }
+            channel.truncate(length);
+        } finally {
+            file.close();
+        }
+    }
+}
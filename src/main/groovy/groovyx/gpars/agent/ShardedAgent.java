@@ -0,0 +1,236 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent;
+
+import groovy.lang.Closure;
+import groovyx.gpars.group.PGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Spreads state across several internal agents (shards) so that updates coming from many threads don't get serialized
+ * through a single agent.
+ * Commands get routed to a shard either by the hash of the supplied key, so that all commands for the same key are processed
+ * by the same shard in the order of sending, or by the identity of the sending thread.
+ * Reads combine the states of all the shards using the merge closure, which accepts the list of shard states.
+ * Listeners and validators get registered with all the shards and observe the state changes of individual shards.
+ *
+ * @param <T> The type of the state held by each of the shards
+ */
+public class ShardedAgent<T> {
+
+    private final Agent<T>[] shards;
+    private final Closure merge;
+
+    /**
+     * Creates a new instance
+     *
+     * @param group        The group to use for the shards
+     * @param shardCount   The number of shards
+     * @param stateFactory A closure returning the initial state for a new shard, invoked once for each shard
+     * @param merge        A closure combining a list of shard states into the value returned by reads
+     */
+    @SuppressWarnings({"unchecked", "OverridableMethodCallDuringObjectConstruction"})
+    public ShardedAgent(final PGroup group, final int shardCount, final Closure stateFactory, final Closure merge) {
+        if (shardCount < 1) throw new IllegalArgumentException("The number of shards must be a positive number.");
+        this.shards = new Agent[shardCount];
+        this.merge = merge;
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = createShard(group, (T) stateFactory.call());
+        }
+    }
+
+    /**
+     * Creates the agent for a shard
+     *
+     * @param group        The group to use for the shard
+     * @param initialState The initial state of the shard
+     * @return A new agent
+     */
+    protected Agent<T> createShard(final PGroup group, final T initialState) {
+        return group.agent(initialState);
+    }
+
+    /**
+     * @return The number of shards
+     */
+    public final int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param index The index of the shard
+     * @return The agent holding the state of the shard
+     */
+    public final Agent<T> getShard(final int index) {
+        return shards[index];
+    }
+
+    /**
+     * @param key The key to find the shard for
+     * @return The agent processing commands for the given key
+     */
+    public final Agent<T> shardFor(final Object key) {
+        return shards[indexOf(key != null ? key.hashCode() : 0)];
+    }
+
+    /**
+     * @return The agent processing commands sent from the current thread without a key
+     */
+    protected final Agent<T> shardForCurrentThread() {
+        return shards[currentThreadShardIndex()];
+    }
+
+    /**
+     * @return The index of the shard processing commands sent from the current thread without a key
+     */
+    protected final int currentThreadShardIndex() {
+        final long id = Thread.currentThread().getId();
+        return indexOf((int) (id ^ (id >>> 32)));
+    }
+
+    private int indexOf(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * Sends the message to the shard assigned to the current thread
+     *
+     * @param message A value or a closure
+     */
+    public final void send(final Object message) {
+        shardForCurrentThread().send(message);
+    }
+
+    /**
+     * Sends the message to the shard assigned to the current thread
+     *
+     * @param message A value or a closure
+     */
+    public final void leftShift(final Object message) {
+        send(message);
+    }
+
+    /**
+     * Sends the message to the shard assigned to the current thread
+     *
+     * @param message A value or a closure
+     */
+    public final void call(final Object message) {
+        send(message);
+    }
+
+    /**
+     * Sends the message to the shard assigned to the key
+     *
+     * @param key     The key identifying the shard
+     * @param message A value or a closure
+     */
+    public final void send(final Object key, final Object message) {
+        shardFor(key).send(message);
+    }
+
+    /**
+     * Waits for all messages sent to the shards prior to the call to complete and merges the states of the shards
+     *
+     * @return The merged state
+     * @throws InterruptedException If the thread gets interrupted while waiting for the shards
+     */
+    public final Object getVal() throws InterruptedException {
+        final List<T> states = new ArrayList<T>(shards.length);
+        for (final Agent<T> shard : shards) {
+            states.add(shard.getVal());
+        }
+        return merge.call(states);
+    }
+
+    /**
+     * Merges the current states of the shards, by-passing the queues of messages waiting to be processed
+     *
+     * @return The merged state
+     */
+    public final Object getInstantVal() {
+        final List<T> states = new ArrayList<T>(shards.length);
+        for (final Agent<T> shard : shards) {
+            states.add(shard.getInstantVal());
+        }
+        return merge.call(states);
+    }
+
+    /**
+     * Blocks until all messages sent to the shards prior to the call complete
+     *
+     * @throws InterruptedException If the thread gets interrupted while waiting for the shards
+     */
+    public final void await() throws InterruptedException {
+        for (final Agent<T> shard : shards) {
+            shard.await();
+        }
+    }
+
+    /**
+     * Adds a listener to all the shards
+     *
+     * @param listener The closure accepting the old and the new state of a shard, plus optionally the shard as the first argument
+     */
+    public final void addListener(final Closure listener) {
+        for (final Agent<T> shard : shards) {
+            shard.addListener(listener);
+        }
+    }
+
+    /**
+     * Adds a validator to all the shards
+     *
+     * @param validator The closure accepting the old and the new state of a shard, plus optionally the shard as the first argument
+     */
+    public final void addValidator(final Closure validator) {
+        for (final Agent<T> shard : shards) {
+            shard.addValidator(validator);
+        }
+    }
+
+    /**
+     * Retrieves and clears the exceptions thrown in all the shards
+     *
+     * @return The exceptions thrown within the shards
+     */
+    public final List<Throwable> getErrors() {
+        List<Throwable> errors = null;
+        for (final Agent<T> shard : shards) {
+            final List<Throwable> shardErrors = shard.getErrors();
+            if (shardErrors.isEmpty()) continue;
+            if (errors == null) errors = new ArrayList<Throwable>();
+            errors.addAll(shardErrors);
+        }
+        return errors != null ? errors : Collections.<Throwable>emptyList();
+    }
+
+    /**
+     * @return True, if any of the shards have thrown exceptions
+     */
+    public final boolean hasErrors() {
+        for (final Agent<T> shard : shards) {
+            if (shard.hasErrors()) return true;
+        }
+        return false;
+    }
+}
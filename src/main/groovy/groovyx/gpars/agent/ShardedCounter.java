@@ -0,0 +1,135 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent;
+
+import groovy.lang.Closure;
+import groovyx.gpars.group.PGroup;
+
+import java.util.List;
+
+/**
+ * A long counter spread across several agents, each of which gets updated by a subset of the sending threads.
+ * Reads sum up the values of all the shards. The shards publish snapshots of their values, so instantVal never blocks.
+ */
+public final class ShardedCounter extends ShardedAgent<Long> {
+
+    private final Closure[] increments;
+    private final Closure[] decrements;
+
+    /**
+     * Creates a new counter starting at zero
+     *
+     * @param group      The group to use for the shards
+     * @param shardCount The number of shards
+     */
+    public ShardedCounter(final PGroup group, final int shardCount) {
+        super(group, shardCount, new Closure(null) {
+            private static final long serialVersionUID = -2795643158902473168L;
+
+            @Override
+            public Object call() {
+                return 0L;
+            }
+        }, new Closure(null) {
+            private static final long serialVersionUID = 1398530651702235849L;
+
+            @Override
+            public Object call(final Object arguments) {
+                long sum = 0L;
+                for (final Object value : (List<?>) arguments) {
+                    sum += (Long) value;
+                }
+                return sum;
+            }
+        });
+        this.increments = new Closure[shardCount];
+        this.decrements = new Closure[shardCount];
+        //each shard gets its own instances, since the agent sets itself as the delegate of the received closures
+        for (int i = 0; i < shardCount; i++) {
+            increments[i] = new Adder(1L);
+            decrements[i] = new Adder(-1L);
+        }
+    }
+
+    @Override
+    protected Agent<Long> createShard(final PGroup group, final Long initialState) {
+        //Longs are immutable, so the state can be published without copying
+        final Agent<Long> shard = group.agent(initialState, new Closure(null) {
+            private static final long serialVersionUID = -6315482170374650278L;
+
+            @Override
+            public Object call(final Object arguments) {
+                return arguments;
+            }
+        });
+        shard.makeSnapshotting();
+        return shard;
+    }
+
+    /**
+     * Increments the counter by one
+     */
+    public void increment() {
+        sendToCurrentShard(increments);
+    }
+
+    /**
+     * Decrements the counter by one
+     */
+    public void decrement() {
+        sendToCurrentShard(decrements);
+    }
+
+    /**
+     * Adds the delta to the counter
+     *
+     * @param delta The value to add
+     */
+    public void add(final long delta) {
+        send(new Adder(delta));
+    }
+
+    private void sendToCurrentShard(final Closure[] perShard) {
+        final int index = currentThreadShardIndex();
+        getShard(index).send(perShard[index]);
+    }
+
+    /**
+     * @return The sum of the current values of all the shards, by-passing the queues of messages waiting to be processed
+     */
+    public long getInstantSum() {
+        return (Long) getInstantVal();
+    }
+
+    private static final class Adder extends Closure {
+        private static final long serialVersionUID = 6017287469523950473L;
+        private final long delta;
+
+        private Adder(final long delta) {
+            super(null);
+            this.delta = delta;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        @Override
+        public Object call(final Object arguments) {
+            ((Agent<Long>) getDelegate()).updateValue((Long) arguments + delta);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent;
+
+import groovy.lang.Closure;
+import groovyx.gpars.agent.persistent.PersistentMap;
+import groovyx.gpars.group.PGroup;
+
+import java.util.List;
+
+/**
+ * A concurrent map spread across several agents by the hash of the keys.
+ * Each shard holds a PersistentMap and publishes it as a snapshot after each update, so reads of individual keys never block,
+ * while updates to keys in different shards get processed in parallel.
+ * Updates of the same key are applied in the order of sending.
+ * The val and instantVal properties return a PersistentMap holding the entries of all the shards.
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ */
+public final class ShardedMap<K, V> extends ShardedAgent<PersistentMap<K, V>> {
+
+    /**
+     * Creates a new empty map
+     *
+     * @param group      The group to use for the shards
+     * @param shardCount The number of shards
+     */
+    public ShardedMap(final PGroup group, final int shardCount) {
+        super(group, shardCount, new Closure(null) {
+            private static final long serialVersionUID = 7531004719183316524L;
+
+            @Override
+            public Object call() {
+                return PersistentMap.empty();
+            }
+        }, new Closure(null) {
+            private static final long serialVersionUID = -5329736180442395687L;
+
+            @SuppressWarnings({"unchecked"})
+            @Override
+            public Object call(final Object arguments) {
+                PersistentMap<Object, Object> result = PersistentMap.empty();
+                for (final Object shardState : (List<?>) arguments) {
+                    result = result.plus((PersistentMap<Object, Object>) shardState);
+                }
+                return result;
+            }
+        });
+    }
+
+    @Override
+    protected Agent<PersistentMap<K, V>> createShard(final PGroup group, final PersistentMap<K, V> initialState) {
+        final Agent<PersistentMap<K, V>> shard = super.createShard(group, initialState);
+        shard.makeSnapshotting();
+        return shard;
+    }
+
+    /**
+     * Retrieves the current value of the key, by-passing the queue of messages waiting to be processed
+     *
+     * @param key The key to look up
+     * @return The value or null
+     */
+    public V get(final Object key) {
+        return shardFor(key).getInstantVal().get(key);
+    }
+
+    /**
+     * Checks the current presence of the key, by-passing the queue of messages waiting to be processed
+     *
+     * @param key The key to look up
+     * @return True, if the key is present
+     */
+    public boolean containsKey(final Object key) {
+        return shardFor(key).getInstantVal().containsKey(key);
+    }
+
+    /**
+     * @return The current number of entries in all the shards
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < getShardCount(); i++) {
+            size += getShard(i).getInstantVal().size();
+        }
+        return size;
+    }
+
+    /**
+     * Asynchronously binds the key to the value
+     *
+     * @param key   The key to bind
+     * @param value The value to bind the key to
+     */
+    public void put(final K key, final V value) {
+        compute(key, new Closure(null) {
+            private static final long serialVersionUID = -1826307491256836437L;
+
+            @Override
+            public Object call(final Object arguments) {
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Asynchronously removes the key
+     *
+     * @param key The key to remove
+     */
+    public void remove(final K key) {
+        compute(key, new Closure(null) {
+            private static final long serialVersionUID = 4281975634011968521L;
+
+            @Override
+            public Object call(final Object arguments) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronously updates the value of the key by the function, which is invoked in the shard owning the key
+     *
+     * @param key      The key to update
+     * @param function A closure accepting the current value or null and returning the new value or null to remove the key
+     */
+    public void compute(final K key, final Closure function) {
+        shardFor(key).send(new Update<K, V>(key, function));
+    }
+
+    private static final class Update<K, V> extends Closure {
+        private static final long serialVersionUID = -3617096284575209443L;
+        private final K key;
+        private final Closure function;
+
+        private Update(final K key, final Closure function) {
+            super(null);
+            this.key = key;
+            this.function = function;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        @Override
+        public Object call(final Object arguments) {
+            final PersistentMap<K, V> map = (PersistentMap<K, V>) arguments;
+            final V value = (V) function.call(map.get(key));
+            final PersistentMap<K, V> newMap = value != null ? map.plus(key, value) : map.minus(key);
+            if (newMap != map) ((Agent<PersistentMap<K, V>>) getDelegate()).updateValue(newMap);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent.persistent;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash map implemented as a hash array mapped trie.
+ * The plus() and minus() methods return new versions of the map, which share all but the O(log n) modified nodes with the original,
+ * so both updating the map and handing it out as a snapshot are cheap even for maps with many entries.
+ * The standard mutating Map methods throw UnsupportedOperationException.
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> implements PersistentCollection, Serializable {
+    private static final long serialVersionUID = -3176318562237640941L;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<Object, Object>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+    private transient Set<Map.Entry<K, V>> entrySet = null;
+
+    private PersistentMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return An empty map
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Creates a persistent map holding the entries of the supplied map
+     *
+     * @param map The entries to hold
+     * @return The supplied map itself, if it is a PersistentMap, or a new map with the same entries
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <K, V> PersistentMap<K, V> from(final Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) return (PersistentMap<K, V>) map;
+        return PersistentMap.<K, V>empty().plus(map);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return root.find(hash(key), key, 0) != null;
+    }
+
+    @Override
+    public V get(final Object key) {
+        final Leaf<K, V> leaf = root.find(hash(key), key, 0);
+        return leaf != null ? leaf.getValue() : null;
+    }
+
+    /**
+     * Creates a map with the key bound to the value
+     *
+     * @param key   The key to add or rebind
+     * @param value The value to bind the key to
+     * @return A new map, or the map itself if the key has already been bound to the very same value
+     */
+    public PersistentMap<K, V> plus(final K key, final V value) {
+        final Change change = new Change();
+        final Node newRoot = root.plus(new Leaf<K, V>(hash(key), key, value), 0, change);
+        if (newRoot == root) return this;
+        return new PersistentMap<K, V>(newRoot, change.sizeChanged ? size + 1 : size);
+    }
+
+    /**
+     * Creates a map with all the entries of the supplied map added
+     *
+     * @param map The entries to add
+     * @return A new map, or the map itself if no entry changed
+     */
+    public PersistentMap<K, V> plus(final Map<? extends K, ? extends V> map) {
+        PersistentMap<K, V> result = this;
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Creates a map without the given key
+     *
+     * @param key The key to remove
+     * @return A new map, or the map itself if the key has not been present
+     */
+    public PersistentMap<K, V> minus(final Object key) {
+        final Node newRoot = root.minus(hash(key), key, 0);
+        if (newRoot == root) return this;
+        return new PersistentMap<K, V>(newRoot != null ? newRoot : BitmapNode.EMPTY, size - 1);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new LeafIterator<K, V>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private static int hash(final Object key) {
+        if (key == null) return 0;
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equal(final Object first, final Object second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    /**
+     * Records, whether an update added a new key
+     */
+    private static final class Change {
+        boolean sizeChanged = false;
+    }
+
+    private static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 5390262514957316235L;
+        final int hash;
+
+        Leaf(final int hash, final K key, final V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    private abstract static class Node implements Serializable {
+        private static final long serialVersionUID = -1546081924406374498L;
+
+        abstract <K, V> Leaf<K, V> find(int hash, Object key, int shift);
+
+        abstract Node plus(Leaf<?, ?> leaf, int shift, Change change);
+
+        /**
+         * @return The node without the key, the node itself if the key is not present, or null if the node became empty
+         */
+        abstract Node minus(int hash, Object key, int shift);
+
+        /**
+         * @return The leaves and sub-nodes of the node
+         */
+        abstract Object[] children();
+
+        /**
+         * @return The only leaf held by the node, or null if the node holds more than a single leaf
+         */
+        abstract Leaf<?, ?> singleLeaf();
+    }
+
+    /**
+     * Holds leaves and sub-nodes for the hashes present in the bitmap
+     */
+    private static final class BitmapNode extends Node {
+        private static final long serialVersionUID = 2170342436372658232L;
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(final int bitmap, final Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @SuppressWarnings({"unchecked"})
+        @Override
+        <K, V> Leaf<K, V> find(final int hash, final Object key, final int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            final Object child = array[index(bit)];
+            if (child instanceof Leaf) {
+                final Leaf<K, V> leaf = (Leaf<K, V>) child;
+                return leaf.hash == hash && equal(leaf.getKey(), key) ? leaf : null;
+            }
+            return ((Node) child).find(hash, key, shift + BITS);
+        }
+
+        @Override
+        Node plus(final Leaf<?, ?> leaf, final int shift, final Change change) {
+            final int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            final int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] newArray = new Object[array.length + 1];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = leaf;
+                System.arraycopy(array, index, newArray, index + 1, array.length - index);
+                change.sizeChanged = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            final Object child = array[index];
+            final Object newChild;
+            if (child instanceof Leaf) {
+                final Leaf<?, ?> existing = (Leaf<?, ?>) child;
+                if (existing.hash == leaf.hash && equal(existing.getKey(), leaf.getKey())) {
+                    if (existing.getValue() == leaf.getValue()) return this;
+                    newChild = leaf;
+                } else {
+                    newChild = createNode(existing, leaf, shift + BITS);
+                    change.sizeChanged = true;
+                }
+            } else {
+                newChild = ((Node) child).plus(leaf, shift + BITS, change);
+                if (newChild == child) return this;
+            }
+            return new BitmapNode(bitmap, replace(array, index, newChild));
+        }
+
+        @Override
+        Node minus(final int hash, final Object key, final int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            final int index = index(bit);
+            final Object child = array[index];
+            final Object newChild;
+            if (child instanceof Leaf) {
+                final Leaf<?, ?> leaf = (Leaf<?, ?>) child;
+                if (leaf.hash != hash || !equal(leaf.getKey(), key)) return this;
+                newChild = null;
+            } else {
+                final Node newNode = ((Node) child).minus(hash, key, shift + BITS);
+                if (newNode == child) return this;
+                if (newNode != null) {
+                    final Leaf<?, ?> single = newNode.singleLeaf();
+                    newChild = single != null ? single : newNode;
+                } else newChild = null;
+            }
+            if (newChild != null) return new BitmapNode(bitmap, replace(array, index, newChild));
+            if (array.length == 1) return null;
+            final Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 1, newArray, index, array.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        @Override
+        Object[] children() {
+            return array;
+        }
+
+        @Override
+        Leaf<?, ?> singleLeaf() {
+            return array.length == 1 && array[0] instanceof Leaf ? (Leaf<?, ?>) array[0] : null;
+        }
+
+        private static Node createNode(final Leaf<?, ?> first, final Leaf<?, ?> second, final int shift) {
+            if (first.hash == second.hash) return new CollisionNode(first.hash, new Leaf<?, ?>[]{first, second});
+            final Change ignored = new Change();
+            return EMPTY.plus(first, shift, ignored).plus(second, shift, ignored);
+        }
+    }
+
+    /**
+     * Holds leaves of different keys with the same hash
+     */
+    private static final class CollisionNode extends Node {
+        private static final long serialVersionUID = -8046193264158342731L;
+
+        private final int hash;
+        private final Leaf<?, ?>[] leaves;
+
+        CollisionNode(final int hash, final Leaf<?, ?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (equal(leaves[i].getKey(), key)) return i;
+            }
+            return -1;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        @Override
+        <K, V> Leaf<K, V> find(final int hash, final Object key, final int shift) {
+            if (hash != this.hash) return null;
+            final int index = indexOf(key);
+            return index >= 0 ? (Leaf<K, V>) leaves[index] : null;
+        }
+
+        @Override
+        Node plus(final Leaf<?, ?> leaf, final int shift, final Change change) {
+            if (leaf.hash != hash) {
+                //nest the collision node into a bitmap node to distinguish the hashes on this level
+                final BitmapNode parent = new BitmapNode(1 << ((hash >>> shift) & MASK), new Object[]{this});
+                return parent.plus(leaf, shift, change);
+            }
+            final int index = indexOf(leaf.getKey());
+            if (index >= 0) {
+                if (leaves[index].getValue() == leaf.getValue()) return this;
+                return new CollisionNode(hash, (Leaf<?, ?>[]) replace(leaves, index, leaf));
+            }
+            final Leaf<?, ?>[] newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+            newLeaves[leaves.length] = leaf;
+            change.sizeChanged = true;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Node minus(final int hash, final Object key, final int shift) {
+            if (hash != this.hash) return this;
+            final int index = indexOf(key);
+            if (index < 0) return this;
+            if (leaves.length == 1) return null;
+            final Leaf<?, ?>[] newLeaves = new Leaf<?, ?>[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, index);
+            System.arraycopy(leaves, index + 1, newLeaves, index, leaves.length - index - 1);
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Object[] children() {
+            return leaves;
+        }
+
+        @Override
+        Leaf<?, ?> singleLeaf() {
+            return leaves.length == 1 ? leaves[0] : null;
+        }
+    }
+
+    private static Object[] replace(final Object[] array, final int index, final Object element) {
+        final Object[] result = array.clone();
+        result[index] = element;
+        return result;
+    }
+
+    /**
+     * Walks the trie depth-first, keeping the path from the root in a stack
+     */
+    private static final class LeafIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = 0;
+        private Leaf<K, V> next = null;
+
+        LeafIterator(final Node root) {
+            arrays[0] = root.children();
+            advance();
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] == arrays[depth].length) {
+                    depth--;
+                    continue;
+                }
+                final Object child = arrays[depth][positions[depth]++];
+                if (child instanceof Leaf) {
+                    next = (Leaf<K, V>) child;
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node) child).children();
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            final Leaf<K, V> result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
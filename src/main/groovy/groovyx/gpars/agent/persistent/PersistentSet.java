@@ -0,0 +1,114 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent.persistent;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * An immutable hash set backed by a PersistentMap.
+ * The plus() and minus() methods return new versions of the set, which share all but the O(log n) modified nodes with the original.
+ * The standard mutating Set methods throw UnsupportedOperationException.
+ *
+ * @param <E> The type of elements
+ */
+public final class PersistentSet<E> extends AbstractSet<E> implements PersistentCollection, Serializable {
+    private static final long serialVersionUID = 1250986372519254718L;
+
+    private static final PersistentSet<Object> EMPTY = new PersistentSet<Object>(PersistentMap.<Object, Boolean>empty());
+
+    private final PersistentMap<E, Boolean> map;
+
+    private PersistentSet(final PersistentMap<E, Boolean> map) {
+        this.map = map;
+    }
+
+    /**
+     * @return An empty set
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <E> PersistentSet<E> empty() {
+        return (PersistentSet<E>) EMPTY;
+    }
+
+    /**
+     * Creates a persistent set holding the supplied elements
+     *
+     * @param elements The elements to hold
+     * @return The supplied elements, if they are a PersistentSet, or a new set with the same elements
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <E> PersistentSet<E> from(final Iterable<? extends E> elements) {
+        if (elements instanceof PersistentSet) return (PersistentSet<E>) elements;
+        return PersistentSet.<E>empty().plusAll(elements);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(final Object element) {
+        return map.containsKey(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    /**
+     * Creates a set with the element added
+     *
+     * @param element The element to add
+     * @return A new set, or the set itself if the element has already been present
+     */
+    public PersistentSet<E> plus(final E element) {
+        return wrap(map.plus(element, Boolean.TRUE));
+    }
+
+    /**
+     * Creates a set with all the supplied elements added
+     *
+     * @param elements The elements to add
+     * @return A new set, or the set itself if all the elements have already been present
+     */
+    public PersistentSet<E> plusAll(final Iterable<? extends E> elements) {
+        PersistentMap<E, Boolean> result = map;
+        for (final E element : elements) {
+            result = result.plus(element, Boolean.TRUE);
+        }
+        return wrap(result);
+    }
+
+    /**
+     * Creates a set without the element
+     *
+     * @param element The element to remove
+     * @return A new set, or the set itself if the element has not been present
+     */
+    public PersistentSet<E> minus(final Object element) {
+        return wrap(map.minus(element));
+    }
+
+    private PersistentSet<E> wrap(final PersistentMap<E, Boolean> newMap) {
+        return newMap == map ? this : new PersistentSet<E>(newMap);
+    }
+}
@@ -0,0 +1,227 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent.persistent;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list implemented as a trie with 32-element wide nodes and a separately held tail.
+ * Appending, replacing and removing the last element return new versions of the vector, which share all but the O(log n)
+ * modified nodes with the original, while indexed access takes O(log n) as well.
+ * The standard mutating List methods throw UnsupportedOperationException.
+ *
+ * @param <E> The type of elements
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements PersistentCollection, RandomAccess, Serializable {
+    private static final long serialVersionUID = 6342810917455631250L;
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<Object> EMPTY = new PersistentVector<Object>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(final int size, final int shift, final Object[] root, final Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * @return An empty vector
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Creates a persistent vector holding the supplied elements
+     *
+     * @param elements The elements to hold
+     * @return The supplied elements, if they are a PersistentVector, or a new vector with the same elements
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <E> PersistentVector<E> from(final Iterable<? extends E> elements) {
+        if (elements instanceof PersistentVector) return (PersistentVector<E>) elements;
+        return PersistentVector.<E>empty().plusAll(elements);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Override
+    public E get(final int index) {
+        checkIndex(index, size);
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * Creates a vector with the element appended
+     *
+     * @param element The element to append
+     * @return A new vector
+     */
+    public PersistentVector<E> plus(final E element) {
+        if (size - tailOffset() < WIDTH) {
+            final Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<E>(size + 1, shift, root, newTail);
+        }
+        //the tail is full, push it into the trie
+        final Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else newRoot = pushTail(shift, root, tail);
+        return new PersistentVector<E>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * Creates a vector with all the supplied elements appended
+     *
+     * @param elements The elements to append
+     * @return A new vector, or the vector itself if there are no elements to append
+     */
+    public PersistentVector<E> plusAll(final Iterable<? extends E> elements) {
+        PersistentVector<E> result = this;
+        for (final E element : elements) {
+            result = result.plus(element);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a vector with the element at the given position replaced
+     *
+     * @param index   The position to set the element at, the size of the vector appends the element
+     * @param element The new element
+     * @return A new vector
+     */
+    public PersistentVector<E> replace(final int index, final E element) {
+        if (index == size) return plus(element);
+        checkIndex(index, size);
+        if (index >= tailOffset()) {
+            final Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<E>(size, shift, root, newTail);
+        }
+        return new PersistentVector<E>(size, shift, replace(shift, root, index, element), tail);
+    }
+
+    /**
+     * Creates a vector without the last element
+     *
+     * @return A new vector
+     * @throws IllegalStateException If the vector is empty
+     */
+    public PersistentVector<E> withoutLast() {
+        if (size == 0) throw new IllegalStateException("Cannot remove the last element of an empty vector.");
+        if (size == 1) return empty();
+        if (size - tailOffset() > 1) return new PersistentVector<E>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        //the tail gets empty, so the last leaf of the trie becomes the new tail
+        final Object[] newTail = arrayFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<E>(size - 1, newShift, newRoot, newTail);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] arrayFor(final int index) {
+        if (index >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(final int level, final Object[] parent, final Object[] tailNode) {
+        final int index = ((size - 1) >>> level) & MASK;
+        final Object[] result = parent.clone();
+        if (level == BITS) result[index] = tailNode;
+        else {
+            final Object[] child = (Object[]) parent[index];
+            result[index] = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        return result;
+    }
+
+    private static Object[] newPath(final int level, final Object[] node) {
+        if (level == 0) return node;
+        final Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, node);
+        return result;
+    }
+
+    private static Object[] replace(final int level, final Object[] node, final int index, final Object element) {
+        final Object[] result = node.clone();
+        if (level == 0) result[index & MASK] = element;
+        else {
+            final int childIndex = (index >>> level) & MASK;
+            result[childIndex] = replace(level - BITS, (Object[]) node[childIndex], index, element);
+        }
+        return result;
+    }
+
+    /**
+     * @return The node without the path to the last leaf, or null if the node became empty
+     */
+    private Object[] popTail(final int level, final Object[] node) {
+        final int index = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            final Object[] newChild = popTail(level - BITS, (Object[]) node[index]);
+            if (newChild == null && index == 0) return null;
+            final Object[] result = node.clone();
+            result[index] = newChild;
+            return result;
+        }
+        if (index == 0) return null;
+        final Object[] result = node.clone();
+        result[index] = null;
+        return result;
+    }
+
+    private static void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
@@ -0,0 +1,271 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents a thread-safe data flow stream with a limited capacity. Values or DataflowVariables are added using the '&lt;&lt;' operator
+ * and safely read once available using the 'val' property.
+ * <p>
+ * Unlike DataflowQueue, which buffers any number of values, BoundedDataflowQueue holds at most the given number of values.
+ * Writers, which find the buffer full, either block (bind() and '&lt;&lt;'), give up (offer()) or leave the value with the queue
+ * to be added once space frees up (bindAsync()). Waiting writers are admitted in the order they arrived.
+ * Operators writing to a full BoundedDataflowQueue through bindOutput() do not block their thread, they stop reading their inputs
+ * until the queue accepts the value instead.
+ * </p>
+ */
+@SuppressWarnings({"ClassWithTooManyMethods"})
+public final class BoundedDataflowQueue<T> extends DataflowQueue<T> {
+
+    private static final AtomicIntegerFieldUpdater<BoundedDataflowQueue> availableUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(BoundedDataflowQueue.class, "available");
+    private static final AtomicReferenceFieldUpdater<BoundedDataflowQueue, Thread> admitterUpdater
+            = AtomicReferenceFieldUpdater.newUpdater(BoundedDataflowQueue.class, Thread.class, "admitter");
+
+    private final int capacity;
+
+    /**
+     * The number of values that can be written without waiting
+     */
+    private volatile int available;
+
+    /**
+     * Writers waiting for space in the buffer
+     */
+    private final ConcurrentLinkedQueue<Writer> writers = new ConcurrentLinkedQueue<Writer>();
+
+    /**
+     * The only thread allowed to admit waiting writers, null if no writers are being admitted
+     */
+    private volatile Thread admitter = null;
+
+    /**
+     * Creates a new queue
+     *
+     * @param capacity The maximum number of values the queue can hold
+     */
+    public BoundedDataflowQueue(final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("The capacity of a BoundedDataflowQueue must be a positive number.");
+        this.capacity = capacity;
+        this.available = capacity;
+    }
+
+    /**
+     * Retrieves the maximum number of values the queue can hold
+     *
+     * @return The capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds the value to the queue, if there's space available. Never blocks.
+     *
+     * @param value The value to add
+     * @return True, if the value has been added, false if the queue is full
+     */
+    public boolean offer(final T value) {
+        if (!mayBypassWriters() || !tryAcquire()) return false;
+        doBind(value);
+        return true;
+    }
+
+    /**
+     * Adds the value to the queue without blocking the caller. If the queue is full, the value is kept aside
+     * and added once space frees up, preserving the order of writes.
+     *
+     * @param value The value to add
+     * @return A promise, which gets bound to the value once the value has been added to the queue
+     */
+    public Promise<T> bindAsync(final T value) {
+        final DataflowVariable<T> result = new DataflowVariable<T>();
+        if (mayBypassWriters() && tryAcquire()) {
+            doBind(value);
+            result.bind(value);
+        } else {
+            writers.offer(new AsyncWriter(value, result));
+            admitWriters();
+        }
+        return result;
+    }
+
+    @Override
+    boolean blocksWriters() {
+        return true;
+    }
+
+    /**
+     * Blocks the writer until there's space in the buffer.
+     * A writer that had to wait is admitted together with the right to admit the writers queued behind it,
+     * which it exercises in afterBind(), once its value has been stored.
+     */
+    @Override
+    void beforeBind() {
+        final Thread current = Thread.currentThread();
+        if (admitter == current) {
+            //a listener writing to the queue while the current thread admits writers
+            if (tryAcquire()) return;
+            admitter = null;
+        } else if (mayBypassWriters() && tryAcquire()) return;
+        final BlockedWriter writer = new BlockedWriter(current);
+        writers.offer(writer);
+        admitWriters();
+        boolean interrupted = false;
+        while (!writer.admitted) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) interrupted = true;
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Lets a writer admitted from the waiting queue admit the writers queued behind it
+     */
+    @Override
+    void afterBind() {
+        if (admitter == Thread.currentThread()) admit();
+    }
+
+    /**
+     * Frees the space taken by the value and admits the next waiting writer, if there is any
+     */
+    @Override
+    void afterTake() {
+        availableUpdater.incrementAndGet(this);
+        if (!writers.isEmpty()) admitWriters();
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = available;
+            if (current <= 0) return false;
+        } while (!availableUpdater.compareAndSet(this, current, current - 1));
+        return true;
+    }
+
+    /**
+     * Writers may only skip the waiting queue if nobody is waiting and no waiting writer is being admitted,
+     * since the admitted writer may not have stored its value yet
+     *
+     * @return True, if the writer doesn't have to wait behind other writers
+     */
+    private boolean mayBypassWriters() {
+        return writers.isEmpty() && admitter == null;
+    }
+
+    /**
+     * Passes free space over to waiting writers.
+     * Both writers and readers call the method after changing their part of the state, so no writer can be left waiting
+     * while there's space in the buffer.
+     */
+    private void admitWriters() {
+        if (admitterUpdater.compareAndSet(this, null, Thread.currentThread())) admit();
+    }
+
+    /**
+     * Admits waiting writers in the order they arrived. Only invoked by the current admitter.
+     * Values left by bindAsync() are stored right away, a blocked writer takes the admitter role over
+     * and stores its value itself before admitting anybody else.
+     * The listeners of the asynchronously written values are notified only after the admitter role has been given up.
+     */
+    private void admit() {
+        final Thread current = Thread.currentThread();
+        List<AsyncWriter> written = null;
+        boolean admitting = true;
+        while (admitting) {
+            while (!writers.isEmpty() && tryAcquire()) {
+                final Writer writer = writers.poll();
+                if (writer == null) {
+                    availableUpdater.incrementAndGet(this);
+                    break;
+                }
+                if (writer instanceof BlockedWriter) {
+                    admitter = ((BlockedWriter) writer).thread;
+                    ((BlockedWriter) writer).admit();
+                    admitting = false;
+                    break;
+                }
+                final AsyncWriter asyncWriter = (AsyncWriter) writer;
+                store(asyncWriter.value);
+                if (written == null) written = new ArrayList<AsyncWriter>();
+                written.add(asyncWriter);
+                if (admitter != current) {
+                    //a listener writing to the queue has given the admitter role up
+                    admitting = false;
+                    break;
+                }
+            }
+            if (admitting) {
+                admitting = admitterUpdater.compareAndSet(this, current, null)
+                        && !writers.isEmpty() && available > 0
+                        && admitterUpdater.compareAndSet(this, null, current);
+            }
+        }
+        if (written != null) {
+            for (final AsyncWriter asyncWriter : written) {
+                fireOnMessage(asyncWriter.value);
+                asyncWriter.result.bind(asyncWriter.value);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedDataflowQueue(capacity=" + capacity + ", queue=" + bufferToString() + ')';
+    }
+
+    private abstract static class Writer {
+    }
+
+    /**
+     * A thread blocked in bind(), which writes the value itself once admitted
+     */
+    private static final class BlockedWriter extends Writer {
+        private final Thread thread;
+        private volatile boolean admitted = false;
+
+        private BlockedWriter(final Thread thread) {
+            this.thread = thread;
+        }
+
+        void admit() {
+            admitted = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * A value left with the queue by bindAsync(), which gets written by the thread that admits it
+     */
+    private final class AsyncWriter extends Writer {
+        private final T value;
+        private final DataflowVariable<T> result;
+
+        private AsyncWriter(final T value, final DataflowVariable<T> result) {
+            this.value = value;
+            this.result = result;
+        }
+    }
+}
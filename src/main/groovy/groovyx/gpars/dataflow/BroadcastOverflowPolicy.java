@@ -0,0 +1,37 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow;
+
+/**
+ * Determines what a RingBufferBroadcast does with a value written while the slowest of its readers
+ * is still a full buffer behind the writers.
+ */
+public enum BroadcastOverflowPolicy {
+    /**
+     * The writer waits until the slowest reader consumes a value and so frees a slot
+     */
+    BLOCK,
+    /**
+     * The value being written gets discarded and none of the readers will receive it
+     */
+    DROP,
+    /**
+     * The value overwrites the oldest slot regardless of the readers. Readers, which have been lapped by the writers,
+     * skip ahead to the oldest value still held in the buffer and count the values they have missed.
+     */
+    LAP
+}
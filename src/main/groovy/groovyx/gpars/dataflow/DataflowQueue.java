@@ -22,13 +22,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import groovy.lang.Closure;
 import groovyx.gpars.actor.impl.MessageStream;
@@ -55,6 +58,13 @@ import groovyx.gpars.serial.WithSerialId;
  * of the stream at the time of calling the particular method.
  * For actors and Dataflow Operators the asynchronous non-blocking variants of the getValAsync() methods can be used.
  * They register the request to read a value and will send a message to the actor or operator once the value is available.
+ * <p>
+ * The buffer holds the written values directly and unsatisfied reads are queued as light-weight requests.
+ * Writers and readers never block each other - the balance counter decides atomically, whether a writer hands its value
+ * over to a waiting request or appends it to the buffer, and whether a reader takes a buffered value or enqueues a request.
+ * Only values written through the '&lt;&lt;' operator as DataflowVariables and all values of queues that require variables
+ * for the data exchange, like SyncDataflowQueue, are stored in the buffer as DataflowVariables.
+ * </p>
  *
  * @author Vaclav Pech
  *         Date: Jun 5, 2009
@@ -63,19 +73,31 @@ import groovyx.gpars.serial.WithSerialId;
 public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T> {
 
     /**
-     * Internal lock
+     * Represents a null value in the buffer
      */
-    private final Object queueLock = new Object();
+    private static final Object NULL = new Object();
+
+    private static final String ATTACHMENT = "attachment";
+    private static final String RESULT = "result";
+
+    private static final AtomicIntegerFieldUpdater<DataflowQueue> balanceUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(DataflowQueue.class, "balance");
+
+    /**
+     * The number of values in the buffer, if positive, or the number of unsatisfied requests, if negative.
+     * Values and requests include those, whose owners have already updated the balance but not yet added them to the respective queue.
+     */
+    private volatile int balance = 0;
 
     /**
-     * Stores the received DataflowVariables in the buffer.
+     * Stores the received values in the buffer. Values are stored directly, nulls as NULL and variables wrapped in BufferedVariable.
      */
-    private final LinkedBlockingQueue<DataflowVariable<T>> queue = new LinkedBlockingQueue<DataflowVariable<T>>();
+    private final ItemBuffer buffer = new ItemBuffer();
 
     /**
-     * Stores unsatisfied requests for values
+     * Stores unsatisfied requests for values, including the cancelled ones
      */
-    private final Queue<DataflowVariable<T>> requests = new LinkedList<DataflowVariable<T>>();
+    private final ConcurrentLinkedQueue<Request> requests = new ConcurrentLinkedQueue<Request>();
 
     /**
      * A collection of listeners who need to be informed each time the stream is bound to a value
@@ -92,8 +114,11 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
     @Override
     @SuppressWarnings("unchecked")
     public final DataflowWriteChannel<T> leftShift(final DataflowReadChannel<T> ref) {
-        final DataflowVariable<T> originalRef = retrieveForBind();
+        beforeBind();
+        final DataflowVariable<T> originalRef = createVariable();
         hookWheneverBoundListeners(originalRef);
+        offer(new BufferedVariable<T>(originalRef));
+        afterBind();
 
         ref.getValAsync(new MessageStream() {
             private static final long serialVersionUID = -4966523895011173569L;
@@ -115,22 +140,111 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final DataflowWriteChannel<T> leftShift(final T value) {
-        hookWheneverBoundListeners(retrieveForBind()).bind(value);
-        fireOnMessage(value);
+        bind(value);
         return this;
     }
 
     /**
-     * Adds a DataflowVariable representing the passed in value to the buffer.
+     * Hands the passed in value over to the first waiting reader or adds it to the buffer.
      *
      * @param value The value to bind to the head of the stream
      */
     @Override
     public final void bind(final T value) {
-        hookWheneverBoundListeners(retrieveForBind()).bind(value);
+        beforeBind();
+        store(value);
+        afterBind();
         fireOnMessage(value);
     }
 
+    /**
+     * Hands the passed in value over to the first waiting reader or adds it to the buffer, once the writer has been admitted
+     *
+     * @param value The value to bind to the head of the stream
+     */
+    final void doBind(final T value) {
+        store(value);
+        fireOnMessage(value);
+    }
+
+    /**
+     * Adds all the supplied values to the buffer or hands them over to waiting readers, preserving their order.
+     * Unlike repeated calls to bind(), the values of a plain queue claim their slots through a single atomic operation,
+     * get appended to the buffer at once and the listeners are notified in a single pass.
+     *
+     * @param values The values to bind
+     */
+    public final void bindAll(final Collection<? extends T> values) {
+        if (values.isEmpty()) return;
+        if (requiresVariables() || blocksWriters()) {
+            for (final T value : values) {
+                beforeBind();
+                store(value);
+                afterBind();
+            }
+        } else {
+            storeAll(values.toArray());
+        }
+        fireOnMessages(values);
+    }
+
+    /**
+     * Hands the values over to waiting readers and appends the rest to the buffer
+     *
+     * @param values The values to store
+     */
+    private void storeAll(final Object[] values) {
+        final int previous = balanceUpdater.getAndAdd(this, values.length);
+        final int matched = previous < 0 ? Math.min(-previous, values.length) : 0;
+        for (int i = 0; i < matched; i++) {
+            final Object item = values[i] == null ? NULL : values[i];
+            final Request request = takeRequest();
+            if (request.compareAndSet(false, true)) {
+                request.deliver(item);
+                afterTake();
+            } else {
+                //the request has been cancelled, so the value needs a new slot
+                offer(item);
+            }
+        }
+        if (matched < values.length) {
+            final List<Object> items = new ArrayList<Object>(values.length - matched);
+            for (int i = matched; i < values.length; i++) {
+                items.add(values[i] == null ? NULL : values[i]);
+            }
+            buffer.addAll(items);
+        }
+        for (final MessageStream listener : wheneverBoundListeners) {
+            for (final Object value : values) {
+                listener.send(value);
+            }
+        }
+    }
+
+    /**
+     * Hands the value over to the first waiting reader or adds it to the buffer without notifying the channel listeners
+     *
+     * @param value The value to store
+     */
+    final void store(final T value) {
+        final Request request = reserve();
+        if (request == null && requiresVariables()) {
+            final DataflowVariable<T> variable = createVariable();
+            hookWheneverBoundListeners(variable);
+            buffer.offer(new BufferedVariable<T>(variable));
+            variable.bind(value);
+        } else {
+            final Object item = value == null ? NULL : value;
+            if (request != null) {
+                request.deliver(item);
+                afterTake();
+            } else buffer.offer(item);
+            for (final MessageStream listener : wheneverBoundListeners) {
+                listener.send(value);
+            }
+        }
+    }
+
     /**
      * Hooks the registered when bound handlers to the supplied dataflow expression
      *
@@ -145,25 +259,94 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
     }
 
     /**
-     * Takes the first unsatisfied value request and binds a value on it.
-     * If there are no unsatisfied value requests, a new DFV is stored in the queue.
+     * Hands the supplied item over to the first unsatisfied value request or appends it to the buffer,
+     * if there are no unsatisfied value requests.
      *
-     * @return The DFV to bind the value on
+     * @param item The item to pass to readers
      */
-    private DataflowVariable<T> retrieveForBind() {
-        return copyDFV(requests, queue);
+    private void offer(final Object item) {
+        final Request request = reserve();
+        if (request != null) {
+            request.deliver(item);
+            afterTake();
+        } else buffer.offer(item);
     }
 
-    private DataflowVariable<T> copyDFV(final Queue<DataflowVariable<T>> from, final Queue<DataflowVariable<T>> to) {
-        DataflowVariable<T> ref;
-        synchronized (queueLock) {
-            ref = from.poll();
-            if (ref == null) {
-                ref = createVariable();
-                to.offer(ref);
-            }
+    /**
+     * Reserves a slot for a new value. Claims the first live unsatisfied request, if there is any.
+     * Otherwise the caller must append the value to the buffer.
+     *
+     * @return The claimed request or null, if the value should be buffered
+     */
+    private Request reserve() {
+        while (balanceUpdater.getAndIncrement(this) < 0) {
+            final Request request = takeRequest();
+            if (request.compareAndSet(false, true)) return request;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the head of the requests queue.
+     * The request may not have been added yet by a reader, which has already updated the balance, so we need to spin a bit.
+     */
+    private Request takeRequest() {
+        Request request;
+        while ((request = requests.poll()) == null) {
+            Thread.yield();
+        }
+        return request;
+    }
+
+    /**
+     * Removes the head of the buffer.
+     * The value may not have been added yet by a writer, which has already updated the balance, so we need to spin a bit.
+     */
+    private Object takeItem() {
+        Object item;
+        while ((item = buffer.poll()) == null) {
+            Thread.yield();
         }
-        return ref;
+        afterTake();
+        return item;
+    }
+
+    /**
+     * Indicates whether writers may have to wait in beforeBind(), in which case batches of values get admitted one value at a time
+     *
+     * @return False for unbounded queues
+     */
+    boolean blocksWriters() {
+        return false;
+    }
+
+    /**
+     * Invoked by writers before a value gets written. Bounded queues block the writer here until there's space in the buffer.
+     */
+    void beforeBind() {
+    }
+
+    /**
+     * Invoked by writers once the value admitted by beforeBind() has been stored, before the listeners get notified.
+     */
+    void afterBind() {
+    }
+
+    /**
+     * Invoked whenever a value has been taken by a reader, either from the buffer or directly from the writer.
+     */
+    void afterTake() {
+    }
+
+    /**
+     * Indicates, whether all values must be exchanged through variables created by the createVariable() method,
+     * if no reader is waiting for them.
+     * Plain queues keep values in the buffer directly.
+     *
+     * @return False, subclasses relying on the createVariable() method should return true
+     */
+    protected boolean requiresVariables() {
+        return false;
     }
 
     /**
@@ -183,7 +366,17 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final T getVal() throws InterruptedException {
-        return retrieveOrCreateVariable().getVal();
+        if (balanceUpdater.getAndDecrement(this) > 0) return valueOf(takeItem());
+        final Request request = new Request(Thread.currentThread(), null, null);
+        requests.offer(request);
+        while (request.item == null) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                if (request.compareAndSet(false, true)) throw new InterruptedException();
+                Thread.currentThread().interrupt();
+            }
+        }
+        return valueOf(request.item);
     }
 
     /**
@@ -196,15 +389,89 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final T getVal(final long timeout, final TimeUnit units) throws InterruptedException {
-        final DataflowVariable<T> variable = retrieveOrCreateVariable();
-        variable.getVal(timeout, units);
-        synchronized (queueLock) {
-            if (!variable.isBound()) {
-                requests.remove(variable);
-                return null;
+        final long deadline = System.nanoTime() + units.toNanos(timeout);
+        final Object item = awaitItem(deadline);
+        if (item == null) return null;
+        if (item instanceof BufferedVariable) {
+            final DataflowVariable<T> variable = ((BufferedVariable<T>) item).variable;
+            variable.getVal(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return variable.isBound() ? variable.getVal() : null;
+        }
+        return valueOf(item);
+    }
+
+    /**
+     * Takes the item at the head of the buffer, waiting for it until the deadline
+     *
+     * @param deadline The System.nanoTime() value to give up at
+     * @return The item or null, if the deadline passed
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    private Object awaitItem(final long deadline) throws InterruptedException {
+        if (balanceUpdater.getAndDecrement(this) > 0) return takeItem();
+        final Request request = new Request(Thread.currentThread(), null, null);
+        requests.offer(request);
+        while (request.item == null) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L && request.compareAndSet(false, true)) return null;
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                if (request.compareAndSet(false, true)) throw new InterruptedException();
+                Thread.currentThread().interrupt();
             }
         }
-        return variable.getVal();
+        return request.item;
+    }
+
+    /**
+     * Moves the values available in the buffer, at most maxElements of them, to the supplied collection.
+     * The values are claimed through a single atomic operation. Never waits for values to arrive,
+     * only for claimed values written to the queue as DataflowVariables to get bound.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @return The number of values moved
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    public final int drainTo(final Collection<? super T> target, final int maxElements) throws InterruptedException {
+        if (maxElements <= 0) return 0;
+        int current;
+        int count;
+        do {
+            current = balance;
+            if (current <= 0) return 0;
+            count = Math.min(current, maxElements);
+        } while (!balanceUpdater.compareAndSet(this, current, current - count));
+
+        final Object[] items = new Object[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = takeItem();
+        }
+        for (final Object item : items) {
+            target.add(valueOf(item));
+        }
+        return count;
+    }
+
+    /**
+     * Moves the values available in the buffer, at most maxElements of them, to the supplied collection.
+     * If the buffer is empty, waits up to the given timeout for the first value to arrive.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @param timeout     The timeout value
+     * @param units       Units for the timeout
+     * @return The number of values moved, zero if no value arrived in time
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    public final int drainTo(final Collection<? super T> target, final int maxElements, final long timeout, final TimeUnit units) throws InterruptedException {
+        if (maxElements <= 0) return 0;
+        final int drained = drainTo(target, maxElements);
+        if (drained > 0) return drained;
+        final Object item = awaitItem(System.nanoTime() + units.toNanos(timeout));
+        if (item == null) return 0;
+        target.add(valueOf(item));
+        return 1 + drainTo(target, maxElements - 1);
     }
 
     /**
@@ -214,16 +481,52 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final DataflowExpression<T> poll() {
-        synchronized (queueLock) {
-            final DataflowVariable<T> df = queue.peek();
-            if (df != null && df.isBound()) {
-                queue.poll();
-                return df;
+        while (true) {
+            final ItemBuffer.Node first = buffer.first();
+            if (first == null) return null;
+            final Object head = first.item;
+            if (head == null) continue;  //taken by a concurrent reader
+            if (head instanceof BufferedVariable && !((BufferedVariable<T>) head).variable.isBound()) return null;
+            int current;
+            do {
+                current = balance;
+                if (current <= 0) return null;
+            } while (!balanceUpdater.compareAndSet(this, current, current - 1));
+
+            //a concurrent reader may have taken the checked head in the meantime, leaving a possibly unbound variable at the head
+            if (buffer.removeFirst(first)) {
+                afterTake();
+                if (head instanceof BufferedVariable) return ((BufferedVariable<T>) head).variable;
+                final DataflowVariable<T> result = new DataflowVariable<T>();
+                result.bind(head == NULL ? null : (T) head);
+                return result;
             }
-            return null;
+            releaseClaim();
         }
     }
 
+    /**
+     * Gives back a slot claimed through the balance counter, which the reader has not taken an item for.
+     * Readers, which have registered a request meanwhile, since they found the balance exhausted, get served from the buffer.
+     */
+    private void releaseClaim() {
+        final Request request = reserve();
+        if (request != null) request.deliver(takeItem());
+    }
+
+    /**
+     * Retrieves the value held by a buffer item, blocking until a buffered variable gets bound
+     *
+     * @param item The item taken from the buffer
+     * @return The value represented by the item
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    private T valueOf(final Object item) throws InterruptedException {
+        if (item == NULL) return null;
+        if (item instanceof BufferedVariable) return ((BufferedVariable<T>) item).variable.getVal();
+        return (T) item;
+    }
+
     /**
      * Asynchronously retrieves the value at the head of the buffer. Sends the actual value of the variable as a message
      * back the the supplied actor once the value has been bound.
@@ -249,7 +552,38 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final void getValAsync(final Object attachment, final MessageStream callback) {
-        retrieveOrCreateVariable().getValAsync(attachment, callback);
+        if (callback == null) {
+            throw new NullPointerException();
+        }
+        if (balanceUpdater.getAndDecrement(this) > 0) {
+            deliver(takeItem(), attachment, callback);
+        } else {
+            requests.offer(new Request(null, attachment, callback));
+        }
+    }
+
+    /**
+     * Sends the value held by a buffer item to an asynchronous reader in the same format DataflowVariables use,
+     * or registers the reader with a buffered variable.
+     *
+     * @param item       The item taken from the buffer
+     * @param attachment An arbitrary value to identify operator channels and so match requests and replies
+     * @param callback   The actor / operator to notify when a value is bound
+     */
+    private static void deliver(final Object item, final Object attachment, final MessageStream callback) {
+        if (item instanceof BufferedVariable) {
+            ((BufferedVariable<?>) item).variable.getValAsync(attachment, callback);
+            return;
+        }
+        final Object value = item == NULL ? null : item;
+        if (attachment == null) {
+            callback.send(value);
+        } else {
+            final Map<String, Object> message = new HashMap<String, Object>(2);
+            message.put(ATTACHMENT, attachment);
+            message.put(RESULT, value);
+            callback.send(message);
+        }
     }
 
     /**
@@ -766,27 +1100,17 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      */
     @Override
     public final boolean isBound() {
-        return !queue.isEmpty();
-    }
-
-    /**
-     * Checks whether there's a DFV waiting in the queue and retrieves it. If not, a new unmatched value request, represented
-     * by a new DFV, is added to the requests queue.
-     *
-     * @return The DFV to wait for value on
-     */
-    private DataflowVariable<T> retrieveOrCreateVariable() {
-        return copyDFV(queue, requests);
+        return balance > 0;
     }
 
     /**
      * Returns the current size of the buffer
      *
-     * @return Number of DFVs in the queue
+     * @return Number of values in the queue
      */
     @Override
     public final int length() {
-        return queue.size();
+        return Math.max(balance, 0);
     }
 
     /**
@@ -796,7 +1120,7 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
      * @return AN iterator over all DFVs in the queue
      */
     public final Iterator<T> iterator() {
-        final Iterator<DataflowVariable<T>> iterator = queue.iterator();
+        final Iterator<Object> iterator = buffer.iterator();
         return new Iterator<T>() {
 
             @Override
@@ -807,7 +1131,7 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
             @Override
             public T next() {
                 try {
-                    return iterator.next().getVal();
+                    return valueOf(iterator.next());
                 } catch (InterruptedException e) {
                     throw new IllegalStateException("The thread has been interrupted, which prevented the iterator from retrieving the next element.", e);
                 }
@@ -830,23 +1154,235 @@ public class DataflowQueue<T> extends WithSerialId implements DataflowChannel<T>
         return eventManager;
     }
 
-    private void fireOnMessage(final T value) {
+    final void fireOnMessage(final T value) {
         if (eventManager != null) {
             eventManager.fireOnMessage(value);
         }
     }
 
-    final LinkedBlockingQueue<DataflowVariable<T>> getQueue() {
-        return queue;
+    private void fireOnMessages(final Collection<? extends T> values) {
+        if (eventManager != null) {
+            eventManager.fireOnMessages(values);
+        }
+    }
+
+    /**
+     * Renders a snapshot of the buffer, showing each value the way a DataflowVariable holding it would be shown
+     *
+     * @return The string representation of the buffered values
+     */
+    final String bufferToString() {
+        final List<String> items = new ArrayList<String>();
+        for (final Object item : buffer) {
+            if (item instanceof BufferedVariable) items.add(((BufferedVariable<T>) item).variable.toString());
+            else items.add("DataflowVariable(value=" + (item == NULL ? null : item) + ')');
+        }
+        return items.toString();
     }
 
     @Override
     public String toString() {
-        return "DataflowQueue(queue=" + new ArrayList<DataflowVariable<T>>(queue).toString() + ')';
+        return "DataflowQueue(queue=" + bufferToString() + ')';
     }
 
     @Override
     public Class<RemoteDataflowQueue> getRemoteClass() {
         return RemoteDataflowQueue.class;
     }
+
+    /**
+     * Wraps variables stored in the buffer to distinguish them from values, which may be variables themselves
+     */
+    private static final class BufferedVariable<T> {
+        private final DataflowVariable<T> variable;
+
+        private BufferedVariable(final DataflowVariable<T> variable) {
+            this.variable = variable;
+        }
+    }
+
+    /**
+     * An unsatisfied request for a value, either from a blocked thread or from an asynchronous reader.
+     * The writer, which successfully switches the flag, hands the next value over to the request.
+     * A blocked reader switches the flag itself to cancel the request on timeout or interruption.
+     */
+    @SuppressWarnings({"serial"})
+    private static final class Request extends AtomicBoolean {
+        private final Thread thread;
+        private final Object attachment;
+        private final MessageStream callback;
+        private volatile Object item;
+
+        private Request(final Thread thread, final Object attachment, final MessageStream callback) {
+            this.thread = thread;
+            this.attachment = attachment;
+            this.callback = callback;
+        }
+
+        private void deliver(final Object item) {
+            if (callback != null) {
+                DataflowQueue.deliver(item, attachment, callback);
+            } else {
+                this.item = item;
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * A lock-free FIFO queue of buffer items, which besides taking the head also allows for taking a particular head node,
+     * so that a reader can check the head item and take exactly that item.
+     * Taken nodes have their item cleared.
+     */
+    private static final class ItemBuffer implements Iterable<Object> {
+        private static final AtomicReferenceFieldUpdater<ItemBuffer, Node> headUpdater
+                = AtomicReferenceFieldUpdater.newUpdater(ItemBuffer.class, Node.class, "head");
+        private static final AtomicReferenceFieldUpdater<ItemBuffer, Node> tailUpdater
+                = AtomicReferenceFieldUpdater.newUpdater(ItemBuffer.class, Node.class, "tail");
+
+        /**
+         * A node, whose successor holds the first item
+         */
+        private volatile Node head;
+
+        /**
+         * The last node or, while a writer is appending, one of the nodes shortly before the last one
+         */
+        private volatile Node tail;
+
+        private ItemBuffer() {
+            final Node sentinel = new Node(null);
+            head = sentinel;
+            tail = sentinel;
+        }
+
+        void offer(final Object item) {
+            final Node node = new Node(item);
+            append(node, node);
+        }
+
+        void addAll(final List<Object> items) {
+            if (items.isEmpty()) return;
+            final Node first = new Node(items.get(0));
+            Node last = first;
+            for (int i = 1; i < items.size(); i++) {
+                final Node node = new Node(items.get(i));
+                last.next = node;
+                last = node;
+            }
+            append(first, last);
+        }
+
+        /**
+         * Links a chain of nodes at once behind the last node
+         */
+        private void append(final Node first, final Node last) {
+            while (true) {
+                final Node currentTail = tail;
+                final Node next = currentTail.next;
+                if (next == null) {
+                    if (currentTail.casNext(first)) {
+                        tailUpdater.compareAndSet(this, currentTail, last);
+                        return;
+                    }
+                } else tailUpdater.compareAndSet(this, currentTail, next);
+            }
+        }
+
+        /**
+         * Takes the first item
+         *
+         * @return The item or null, if the buffer is empty
+         */
+        Object poll() {
+            while (true) {
+                final Node currentHead = head;
+                final Node first = currentHead.next;
+                if (first == null) return null;
+                if (headUpdater.compareAndSet(this, currentHead, first)) {
+                    final Object item = first.item;
+                    first.item = null;
+                    return item;
+                }
+            }
+        }
+
+        /**
+         * @return The node holding the first item or null, if the buffer is empty. The item may get taken at any time.
+         */
+        Node first() {
+            return head.next;
+        }
+
+        /**
+         * Takes the item of the given node, if the node still holds the first item
+         *
+         * @param node The node obtained from first()
+         * @return True, if the node's item has been taken, false if some other reader has taken it
+         */
+        boolean removeFirst(final Node node) {
+            final Node currentHead = head;
+            if (currentHead.next != node || !headUpdater.compareAndSet(this, currentHead, node)) return false;
+            node.item = null;
+            return true;
+        }
+
+        /**
+         * @return A weakly consistent iterator over the items
+         */
+        @Override
+        public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+                private Node node = head;
+                private Object nextItem = advance();
+
+                /**
+                 * Moves to the next node, which still holds an item
+                 *
+                 * @return The item or null, if there are no more items
+                 */
+                private Object advance() {
+                    while ((node = node.next) != null) {
+                        final Object item = node.item;
+                        if (item != null) return item;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextItem != null;
+                }
+
+                @Override
+                public Object next() {
+                    final Object item = nextItem;
+                    if (item == null) throw new NoSuchElementException();
+                    nextItem = node != null ? advance() : null;
+                    return item;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Remove not available");
+                }
+            };
+        }
+
+        private static final class Node {
+            private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater
+                    = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+            private Object item;
+            private volatile Node next = null;
+
+            private Node(final Object item) {
+                this.item = item;
+            }
+
+            boolean casNext(final Node node) {
+                return nextUpdater.compareAndSet(this, null, node);
+            }
+        }
+    }
 }
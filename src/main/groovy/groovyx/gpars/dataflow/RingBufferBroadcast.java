@@ -0,0 +1,389 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow;
+
+import groovyx.gpars.actor.impl.MessageStream;
+
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A one-to-many and many-to-many messaging alternative to DataflowBroadcast built on a pre-allocated ring buffer.
+ * Writers claim consecutive sequence numbers through a CAS and store the values directly into the buffer,
+ * so writing neither allocates a stream cell nor takes a monitor. Each read channel obtained through createReadChannel()
+ * keeps its own sequence cursor and receives all messages written to the broadcast since its creation.
+ * <p>
+ * Since the buffer is bounded, writers may get a full buffer ahead of the slowest reader.
+ * The BroadcastOverflowPolicy chosen at construction time decides, whether the writer waits for the slowest reader,
+ * drops the value or overwrites the oldest value, leaving the lagging readers to skip ahead.
+ * With the BLOCK policy, read channels that are no longer used should be closed, otherwise they hold the writers back.
+ * </p>
+ * <p>
+ * Typical use:
+ * </p>
+ * <pre>
+ * def broadcast = new RingBufferBroadcast(256, BroadcastOverflowPolicy.BLOCK)
+ * DataflowReadChannel stream1 = broadcast.createReadChannel()
+ * DataflowReadChannel stream2 = broadcast.createReadChannel()
+ * broadcast &lt;&lt; 'Message'
+ * assert stream1.val == stream2.val
+ * </pre>
+ *
+ * @param <T> The type of messages to pass through the broadcast
+ */
+@SuppressWarnings({"FieldMayBeFinal", "unchecked"})
+public final class RingBufferBroadcast<T> implements DataflowWriteChannel<T> {
+
+    /**
+     * The capacity used by the no-arg constructor
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPINS_BEFORE_WAIT = 100;
+
+    /**
+     * Returned by tryRead() when the requested value has not been published yet
+     */
+    static final Object UNAVAILABLE = new Object();
+
+    /**
+     * Returned by tryRead() when the requested value has already been overwritten
+     */
+    static final Object LAPPED = new Object();
+
+    private final AtomicReferenceArray<Object> slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int capacity;
+    private final BroadcastOverflowPolicy overflowPolicy;
+
+    private volatile long claimed = -1L;
+    private static final AtomicLongFieldUpdater<RingBufferBroadcast> claimedUpdater = AtomicLongFieldUpdater.newUpdater(RingBufferBroadcast.class, "claimed");
+
+    /**
+     * The last known position of the slowest reader, refreshed only when writers reach it
+     */
+    private volatile long gatingSequence = -1L;
+
+    private final Collection<RingBufferBroadcastReadAdapter<T>> readers = new CopyOnWriteArrayList<RingBufferBroadcastReadAdapter<T>>();
+    private final LongAdder dropped = new LongAdder();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition valuePublished = lock.newCondition();
+    private final Condition slotReleased = lock.newCondition();
+    private final AtomicInteger waitingReaders = new AtomicInteger(0);
+    private final AtomicInteger waitingWriters = new AtomicInteger(0);
+    private final AtomicInteger waitingPublishers = new AtomicInteger(0);
+
+    /**
+     * Creates a broadcast with the default capacity, which blocks writers on the slowest reader
+     */
+    public RingBufferBroadcast() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a broadcast, which blocks writers on the slowest reader
+     *
+     * @param capacity The requested capacity, which gets rounded up to the nearest power of two
+     */
+    public RingBufferBroadcast(final int capacity) {
+        this(capacity, BroadcastOverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a broadcast
+     *
+     * @param capacity       The requested capacity, which gets rounded up to the nearest power of two
+     * @param overflowPolicy Determines the fate of values written while the slowest reader is a full buffer behind
+     */
+    public RingBufferBroadcast(final int capacity, final BroadcastOverflowPolicy overflowPolicy) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity of the broadcast must be between 1 and 2^30.");
+        if (overflowPolicy == null) throw new IllegalArgumentException("The overflow policy must not be null.");
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.slots = new AtomicReferenceArray<Object>(this.capacity);
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, (long) i - this.capacity);
+        }
+    }
+
+    /**
+     * @return The maximum number of values the slowest reader may lag behind the writers
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public BroadcastOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return The number of values discarded under the DROP policy
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Retrieves an implementation of DataflowReadChannel to read all messages submitted to the broadcast chanel.
+     * Each read channel keeps its own position in the buffer and should only be used by one party at a time.
+     *
+     * @return A read channel to receive messages submitted to the broadcast channel from now on.
+     */
+    public RingBufferBroadcastReadAdapter<T> createReadChannel() {
+        final RingBufferBroadcastReadAdapter<T> reader = new RingBufferBroadcastReadAdapter<T>(this, claimed);
+        readers.add(reader);
+        //Writers that have not seen the reader yet might have claimed more sequences in the meantime
+        reader.startAt(claimed);
+        return reader;
+    }
+
+    @Override
+    public DataflowWriteChannel<T> leftShift(final T value) {
+        bind(value);
+        return this;
+    }
+
+    @Override
+    public void bind(final T value) {
+        final long sequence = claim();
+        if (sequence >= 0L) publish(sequence, value);
+    }
+
+    /**
+     * The slot for the value is claimed right away, so readers receive the value in the order of the leftShift() calls.
+     *
+     * @param ref The channel to read the value from
+     * @return The broadcast itself
+     */
+    @Override
+    public DataflowWriteChannel<T> leftShift(final DataflowReadChannel<T> ref) {
+        final long sequence = claim();
+        if (sequence < 0L) return this;
+        ref.getValAsync(new MessageStream() {
+            private static final long serialVersionUID = -4966523895011173569L;
+
+            @Override
+            public MessageStream send(final Object message) {
+                publish(sequence, (T) message);
+                return this;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Claims the next sequence number, respecting the overflow policy
+     *
+     * @return The claimed sequence or -1, if the value should be dropped
+     */
+    private long claim() {
+        if (overflowPolicy == BroadcastOverflowPolicy.LAP) return claimedUpdater.incrementAndGet(this);
+        int spins = 0;
+        while (true) {
+            final long current = claimed;
+            final long wrapPoint = current + 1L - capacity;
+            if (wrapPoint > gatingSequence) {
+                gatingSequence = minimumConsumed(current);
+                if (wrapPoint > gatingSequence) {
+                    if (overflowPolicy == BroadcastOverflowPolicy.DROP) {
+                        dropped.increment();
+                        return -1L;
+                    }
+                    if (spins < SPINS_BEFORE_WAIT) {
+                        spins++;
+                        Thread.yield();
+                    } else awaitReaders(wrapPoint);
+                    continue;
+                }
+            }
+            if (claimedUpdater.compareAndSet(this, current, current + 1L)) return current + 1L;
+        }
+    }
+
+    /**
+     * Stores the value into the claimed slot and makes it visible to the readers
+     *
+     * @param sequence The claimed sequence
+     * @param value    The value to store
+     */
+    private void publish(final long sequence, final T value) {
+        final int index = (int) sequence & mask;
+        final long previous = sequence - capacity;
+        //A writer of the previous lap may still be storing its value into the same slot
+        if (published.get(index) < previous) awaitSlot(index, previous);
+        if (overflowPolicy == BroadcastOverflowPolicy.LAP) {
+            published.set(index, marker(sequence));
+            slots.set(index, value);
+        } else slots.lazySet(index, value);
+        published.set(index, sequence);
+
+        if (waitingReaders.get() > 0 || waitingPublishers.get() > 0) signalAll(valuePublished);
+        for (final RingBufferBroadcastReadAdapter<T> reader : readers) {
+            reader.onPublished(value);
+        }
+    }
+
+    /**
+     * Reads the value with the given sequence number
+     *
+     * @param sequence The sequence to read
+     * @return The value, UNAVAILABLE, if it has not been published yet, or LAPPED, if it has already been overwritten
+     */
+    Object tryRead(final long sequence) {
+        final int index = (int) sequence & mask;
+        final long current = published.get(index);
+        if (current == sequence) {
+            final Object value = slots.get(index);
+            if (overflowPolicy != BroadcastOverflowPolicy.LAP || published.get(index) == sequence) return value;
+            return LAPPED;
+        }
+        if (current > sequence) return LAPPED;
+        if (current < -capacity && -current - capacity - 2L > sequence) return LAPPED;
+        return UNAVAILABLE;
+    }
+
+    /**
+     * @return The oldest sequence a lapped reader can still find in the buffer
+     */
+    long oldestRetained() {
+        return claimed - mask;
+    }
+
+    /**
+     * Waits until the value with the given sequence number gets published or overwritten
+     *
+     * @param sequence     The sequence to wait for
+     * @param timeout      The maximum time to wait, negative values to wait forever
+     * @param units        Units for the timeout
+     * @return False, if the timeout has expired
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    boolean awaitPublished(final long sequence, final long timeout, final TimeUnit units) throws InterruptedException {
+        for (int i = 0; i < SPINS_BEFORE_WAIT; i++) {
+            if (tryRead(sequence) != UNAVAILABLE) return true;
+            Thread.yield();
+        }
+        long nanos = timeout < 0L ? -1L : units.toNanos(timeout);
+        lock.lockInterruptibly();
+        waitingReaders.incrementAndGet();
+        try {
+            while (tryRead(sequence) == UNAVAILABLE) {
+                if (nanos < 0L) valuePublished.await();
+                else if (nanos == 0L) return false;
+                else nanos = Math.max(0L, valuePublished.awaitNanos(nanos));
+            }
+            return true;
+        } finally {
+            waitingReaders.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by readers after moving their cursor forward to let the waiting writers re-check the free space
+     */
+    void released() {
+        if (waitingWriters.get() > 0) signalAll(slotReleased);
+    }
+
+    void removeReader(final RingBufferBroadcastReadAdapter<T> reader) {
+        readers.remove(reader);
+        released();
+    }
+
+    /**
+     * Waits for the writer of the previous lap to publish its value into the slot.
+     * The writer may be waiting for a DataflowReadChannel passed to leftShift() to get bound, so the wait doesn't spin for long.
+     *
+     * @param index    The index of the slot
+     * @param previous The sequence written into the slot in the previous lap
+     */
+    private void awaitSlot(final int index, final long previous) {
+        for (int i = 0; i < SPINS_BEFORE_WAIT; i++) {
+            Thread.yield();
+            if (published.get(index) >= previous) return;
+        }
+        lock.lock();
+        waitingPublishers.incrementAndGet();
+        try {
+            while (published.get(index) < previous) {
+                valuePublished.awaitUninterruptibly();
+            }
+        } finally {
+            waitingPublishers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void awaitReaders(final long wrapPoint) {
+        lock.lock();
+        waitingWriters.incrementAndGet();
+        try {
+            while (wrapPoint > (gatingSequence = minimumConsumed(claimed))) {
+                slotReleased.awaitUninterruptibly();
+            }
+        } finally {
+            waitingWriters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private long minimumConsumed(final long defaultValue) {
+        long minimum = defaultValue;
+        for (final RingBufferBroadcastReadAdapter<T> reader : readers) {
+            final long consumed = reader.getConsumed();
+            if (consumed < minimum) minimum = consumed;
+        }
+        return minimum;
+    }
+
+    private void signalAll(final Condition condition) {
+        lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a slot, into which a value with the given sequence is being written.
+     * The markers lie below the initial values of the slots, which range from -capacity to -1.
+     */
+    private long marker(final long sequence) {
+        return -sequence - capacity - 2L;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferBroadcast(capacity=" + capacity + ", overflowPolicy=" + overflowPolicy + ", readers=" + readers.size() + ')';
+    }
+}
@@ -0,0 +1,807 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow;
+
+import groovy.lang.Closure;
+import groovyx.gpars.MessagingRunnable;
+import groovyx.gpars.actor.impl.MessageStream;
+import groovyx.gpars.dataflow.expression.DataflowExpression;
+import groovyx.gpars.dataflow.impl.DataflowChannelEventListenerManager;
+import groovyx.gpars.dataflow.impl.DataflowChannelEventOrchestrator;
+import groovyx.gpars.dataflow.impl.ThenMessagingRunnable;
+import groovyx.gpars.dataflow.operator.BinaryChoiceClosure;
+import groovyx.gpars.dataflow.operator.ChainWithClosure;
+import groovyx.gpars.dataflow.operator.ChoiceClosure;
+import groovyx.gpars.dataflow.operator.CopyChannelsClosure;
+import groovyx.gpars.dataflow.operator.FilterClosure;
+import groovyx.gpars.dataflow.operator.SeparationClosure;
+import groovyx.gpars.group.DefaultPGroup;
+import groovyx.gpars.group.PGroup;
+import groovyx.gpars.scheduler.Pool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * A read channel of a RingBufferBroadcast. It keeps its own sequence cursor into the broadcast's buffer,
+ * which the writers respect under the BLOCK and DROP overflow policies.
+ * Like DataflowStreamReadAdapter, the class should only be used by one party at a time.
+ * Asynchronous reads (getValAsync(), whenBound(), then()) are served in the order they were requested,
+ * as soon as the writers publish the values.
+ * <p>
+ * Under the BLOCK policy a read channel that is no longer needed must be closed through the close() method,
+ * otherwise the writers would eventually wait for it forever.
+ * </p>
+ *
+ * @param <T> The type of messages to pass through the broadcast
+ */
+@SuppressWarnings({"unchecked", "NonAtomicOperationOnVolatileField"})
+public final class RingBufferBroadcastReadAdapter<T> implements DataflowReadChannel<T> {
+
+    private final RingBufferBroadcast<T> broadcast;
+
+    /**
+     * The sequence number of the last value taken by this reader
+     */
+    private volatile long consumed;
+    private volatile long missed = 0L;
+
+    private final Queue<DataflowVariable<T>> pendingRequests = new ArrayDeque<DataflowVariable<T>>();
+    private volatile int pendingCount = 0;
+
+    /**
+     * The read channels feeding the wheneverBound() handlers, which get closed together with this channel
+     */
+    private final Collection<RingBufferBroadcastReadAdapter<T>> subscriptions = new CopyOnWriteArrayList<RingBufferBroadcastReadAdapter<T>>();
+    private volatile boolean closed = false;
+
+    RingBufferBroadcastReadAdapter(final RingBufferBroadcast<T> broadcast, final long consumed) {
+        this.broadcast = broadcast;
+        this.consumed = consumed;
+    }
+
+    void startAt(final long sequence) {
+        consumed = sequence;
+    }
+
+    long getConsumed() {
+        return consumed;
+    }
+
+    /**
+     * @return The number of values the reader has missed, because writers overwrote them under the LAP policy
+     */
+    public long getMissedCount() {
+        return missed;
+    }
+
+    /**
+     * Detaches the reader from the broadcast, so that the writers no longer wait for it.
+     * The handlers registered through wheneverBound() stop receiving values as well.
+     * Pending asynchronous reads will never be served afterwards.
+     */
+    public void close() {
+        closed = true;
+        broadcast.removeReader(this);
+        for (final RingBufferBroadcastReadAdapter<T> subscription : subscriptions) {
+            subscription.close();
+        }
+        subscriptions.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferBroadcastReadAdapter at " + (consumed + 1L) + " of " + broadcast;
+    }
+
+    @Override
+    public T getVal() throws InterruptedException {
+        if (pendingCount > 0) return requestValue().getVal();
+        while (true) {
+            final long sequence = consumed + 1L;
+            final Object value = broadcast.tryRead(sequence);
+            if (value == RingBufferBroadcast.UNAVAILABLE) broadcast.awaitPublished(sequence, -1L, TimeUnit.NANOSECONDS);
+            else if (value == RingBufferBroadcast.LAPPED) skipLapped(sequence);
+            else {
+                advance(sequence);
+                return (T) value;
+            }
+        }
+    }
+
+    @Override
+    public T getVal(final long timeout, final TimeUnit units) throws InterruptedException {
+        if (pendingCount > 0) {
+            final DataflowVariable<T> request = requestValue();
+            return request.getVal(timeout, units);
+        }
+        final long deadline = System.nanoTime() + units.toNanos(timeout);
+        while (true) {
+            final long sequence = consumed + 1L;
+            final Object value = broadcast.tryRead(sequence);
+            if (value == RingBufferBroadcast.UNAVAILABLE) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L || !broadcast.awaitPublished(sequence, remaining, TimeUnit.NANOSECONDS))
+                    return null;
+            } else if (value == RingBufferBroadcast.LAPPED) skipLapped(sequence);
+            else {
+                advance(sequence);
+                return (T) value;
+            }
+        }
+    }
+
+    /**
+     * Moves the values already published to the broadcast, at most maxElements of them, to the supplied collection.
+     * Never waits for values to arrive.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @return The number of values moved
+     */
+    public int drainTo(final Collection<? super T> target, final int maxElements) {
+        if (pendingCount > 0) return 0;
+        int count = 0;
+        long sequence = consumed;
+        while (count < maxElements) {
+            final Object value = broadcast.tryRead(sequence + 1L);
+            if (value == RingBufferBroadcast.UNAVAILABLE) break;
+            if (value == RingBufferBroadcast.LAPPED) {
+                skipLapped(sequence + 1L);
+                sequence = consumed;
+                continue;
+            }
+            target.add((T) value);
+            sequence++;
+            count++;
+            //Release the slots gradually so that writers blocked on this reader can proceed
+            if ((count & 63) == 0) advance(sequence);
+        }
+        if (sequence != consumed) advance(sequence);
+        return count;
+    }
+
+    /**
+     * Moves the values already published to the broadcast, at most maxElements of them, to the supplied collection.
+     * If there are no values, waits up to the given timeout for the first value to arrive.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @param timeout     The timeout value
+     * @param units       Units for the timeout
+     * @return The number of values moved, zero if no value arrived in time
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    public int drainTo(final Collection<? super T> target, final int maxElements, final long timeout, final TimeUnit units) throws InterruptedException {
+        if (maxElements <= 0) return 0;
+        final int drained = drainTo(target, maxElements);
+        if (drained > 0) return drained;
+        final long originalPosition = consumed;
+        final T value = getVal(timeout, units);
+        if (consumed == originalPosition) return 0;
+        target.add(value);
+        return 1 + drainTo(target, maxElements - 1);
+    }
+
+    @Override
+    public void getValAsync(final MessageStream callback) {
+        requestValue().getValAsync(callback);
+    }
+
+    @Override
+    public void getValAsync(final Object attachment, final MessageStream callback) {
+        requestValue().getValAsync(attachment, callback);
+    }
+
+    @Override
+    public <V> Promise<V> rightShift(final Closure<V> closure) {
+        return then(closure);
+    }
+
+    @Override
+    public <V> void whenBound(final Closure<V> closure) {
+        requestValue().whenBound(closure);
+    }
+
+    @Override
+    public <V> void whenBound(final Pool pool, final Closure<V> closure) {
+        requestValue().whenBound(pool, closure);
+    }
+
+    @Override
+    public <V> void whenBound(final PGroup group, final Closure<V> closure) {
+        requestValue().whenBound(group, closure);
+    }
+
+    @Override
+    public void whenBound(final MessageStream stream) {
+        requestValue().whenBound(stream);
+    }
+
+    @Override
+    public <V> Promise<V> then(final Closure<V> closure) {
+        final DataflowVariable<V> result = new DataflowVariable<V>();
+        whenBound(new ThenMessagingRunnable<T, V>(result, closure));
+        return result;
+    }
+
+    @Override
+    public <V> Promise<V> then(final Pool pool, final Closure<V> closure) {
+        final DataflowVariable<V> result = new DataflowVariable<V>();
+        whenBound(pool, new ThenMessagingRunnable<T, V>(result, closure));
+        return result;
+    }
+
+    @Override
+    public <V> Promise<V> then(final PGroup group, final Closure<V> closure) {
+        final DataflowVariable<V> result = new DataflowVariable<V>();
+        whenBound(group, new ThenMessagingRunnable<T, V>(result, closure));
+        return result;
+    }
+
+    /**
+     * The closure receives all values written to the broadcast from now on through a separate read channel,
+     * so it does not interfere with the values read through this channel.
+     * Under the BLOCK policy the separate channel holds the writers back like any other reader, until this channel gets closed.
+     *
+     * @param closure closure to execute when data becomes available. The closure should take at most one argument.
+     */
+    @Override
+    public <V> void wheneverBound(final Closure<V> closure) {
+        final RingBufferBroadcastReadAdapter<T> subscription = broadcast.createReadChannel();
+        subscriptions.add(subscription);
+        if (closed) {
+            close();
+            return;
+        }
+        subscription.whenBound(new MessagingRunnable<T>() {
+            private static final long serialVersionUID = 2186513924372460142L;
+
+            @Override
+            protected void doRun(final T argument) {
+                if (subscription.closed) return;
+                closure.call(argument);
+                if (!subscription.closed) subscription.whenBound(this);
+            }
+        });
+    }
+
+    /**
+     * The stream receives all values written to the broadcast from now on through a separate read channel,
+     * so it does not interfere with the values read through this channel.
+     *
+     * @param stream stream where to send result
+     */
+    @Override
+    public void wheneverBound(final MessageStream stream) {
+        wheneverBound(new MessagingRunnable<T>() {
+            private static final long serialVersionUID = -3079311235462193519L;
+
+            @Override
+            protected void doRun(final T argument) {
+                stream.send(argument);
+            }
+        });
+    }
+
+    @Override
+    public final <V> DataflowReadChannel<V> chainWith(final Closure<V> closure) {
+        return chainWith(Dataflow.retrieveCurrentDFPGroup(), closure);
+    }
+
+    @Override
+    public final <V> DataflowReadChannel<V> chainWith(final Pool pool, final Closure<V> closure) {
+        return chainWith(new DefaultPGroup(pool), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> chainWith(final PGroup group, final Closure<V> closure) {
+        final DataflowQueue<V> result = new DataflowQueue<V>();
+        group.operator(this, result, new ChainWithClosure<V>(closure));
+        return result;
+    }
+
+    @Override
+    public final <V> DataflowReadChannel<V> chainWith(final Map<String, Object> params, final Closure<V> closure) {
+        return chainWith(Dataflow.retrieveCurrentDFPGroup(), params, closure);
+    }
+
+    @Override
+    public final <V> DataflowReadChannel<V> chainWith(final Pool pool, final Map<String, Object> params, final Closure<V> closure) {
+        return chainWith(new DefaultPGroup(pool), params, closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> chainWith(final PGroup group, final Map<String, Object> params, final Closure<V> closure) {
+        final DataflowQueue<V> result = new DataflowQueue<V>();
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(result));
+
+        group.operator(parameters, new ChainWithClosure<V>(closure));
+        return result;
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> or(final Closure<V> closure) {
+        return chainWith(closure);
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final Closure<Boolean> closure) {
+        return chainWith(new FilterClosure(closure));
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final Pool pool, final Closure<Boolean> closure) {
+        return chainWith(pool, new FilterClosure(closure));
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final PGroup group, final Closure<Boolean> closure) {
+        return chainWith(group, new FilterClosure(closure));
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final Map<String, Object> params, final Closure<Boolean> closure) {
+        return chainWith(params, new FilterClosure(closure));
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final Pool pool, final Map<String, Object> params, final Closure<Boolean> closure) {
+        return chainWith(pool, params, new FilterClosure(closure));
+    }
+
+    @Override
+    public DataflowReadChannel<T> filter(final PGroup group, final Map<String, Object> params, final Closure<Boolean> closure) {
+        return chainWith(group, params, new FilterClosure(closure));
+    }
+
+    @Override
+    public void into(final DataflowWriteChannel<T> target) {
+        into(Dataflow.retrieveCurrentDFPGroup(), target);
+    }
+
+    @Override
+    public void into(final Pool pool, final DataflowWriteChannel<T> target) {
+        into(new DefaultPGroup(pool), target);
+    }
+
+    @Override
+    public void into(final PGroup group, final DataflowWriteChannel<T> target) {
+        group.operator(this, target, new ChainWithClosure(new CopyChannelsClosure()));
+    }
+
+    @Override
+    public void into(final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        into(Dataflow.retrieveCurrentDFPGroup(), params, target);
+    }
+
+    @Override
+    public void into(final Pool pool, final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        into(new DefaultPGroup(pool), params, target);
+    }
+
+    @Override
+    public void into(final PGroup group, final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(target));
+        group.operator(parameters, new ChainWithClosure(new CopyChannelsClosure()));
+    }
+
+    @Override
+    public void or(final DataflowWriteChannel<T> target) {
+        into(target);
+    }
+
+    @Override
+    public void split(final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(Dataflow.retrieveCurrentDFPGroup(), target1, target2);
+    }
+
+    @Override
+    public void split(final Pool pool, final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(new DefaultPGroup(pool), target1, target2);
+    }
+
+    @Override
+    public void split(final PGroup group, final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(group, asList(target1, target2));
+    }
+
+    @Override
+    public void split(final List<DataflowWriteChannel<T>> targets) {
+        split(Dataflow.retrieveCurrentDFPGroup(), targets);
+    }
+
+    @Override
+    public void split(final Pool pool, final List<DataflowWriteChannel<T>> targets) {
+        split(new DefaultPGroup(pool), targets);
+    }
+
+    @Override
+    public void split(final PGroup group, final List<DataflowWriteChannel<T>> targets) {
+        group.operator(asList(this), targets, new ChainWithClosure(new CopyChannelsClosure()));
+    }
+
+    @Override
+    public void split(final Map<String, Object> params, final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(Dataflow.retrieveCurrentDFPGroup(), params, target1, target2);
+    }
+
+    @Override
+    public void split(final Pool pool, final Map<String, Object> params, final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(new DefaultPGroup(pool), params, target1, target2);
+    }
+
+    @Override
+    public void split(final PGroup group, final Map<String, Object> params, final DataflowWriteChannel<T> target1, final DataflowWriteChannel<T> target2) {
+        split(group, params, asList(target1, target2));
+    }
+
+    @Override
+    public void split(final Map<String, Object> params, final List<DataflowWriteChannel<T>> targets) {
+        split(Dataflow.retrieveCurrentDFPGroup(), params, targets);
+    }
+
+    @Override
+    public void split(final Pool pool, final Map<String, Object> params, final List<DataflowWriteChannel<T>> targets) {
+        split(new DefaultPGroup(pool), params, targets);
+    }
+
+    @Override
+    public void split(final PGroup group, final Map<String, Object> params, final List<DataflowWriteChannel<T>> targets) {
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(targets));
+
+        group.operator(parameters, new ChainWithClosure(new CopyChannelsClosure()));
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final DataflowWriteChannel<T> target) {
+        return tap(Dataflow.retrieveCurrentDFPGroup(), target);
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final Pool pool, final DataflowWriteChannel<T> target) {
+        return tap(new DefaultPGroup(pool), target);
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final PGroup group, final DataflowWriteChannel<T> target) {
+        final DataflowQueue<T> result = new DataflowQueue<T>();
+        group.operator(asList(this), asList(result, target), new ChainWithClosure(new CopyChannelsClosure()));
+        return result;
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        return tap(Dataflow.retrieveCurrentDFPGroup(), params, target);
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final Pool pool, final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        return tap(new DefaultPGroup(pool), params, target);
+    }
+
+    @Override
+    public DataflowReadChannel<T> tap(final PGroup group, final Map<String, Object> params, final DataflowWriteChannel<T> target) {
+        final DataflowQueue<T> result = new DataflowQueue<T>();
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(result, target));
+
+        group.operator(parameters, new ChainWithClosure(new CopyChannelsClosure()));
+        return result;
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Pool pool, final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(pool, asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final PGroup group, final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(group, asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        return merge(Dataflow.retrieveCurrentDFPGroup(), others, closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Pool pool, final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        return merge(new DefaultPGroup(pool), others, closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final PGroup group, final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        final DataflowQueue<V> result = new DataflowQueue<V>();
+        final List<DataflowReadChannel<?>> inputs = new ArrayList<DataflowReadChannel<?>>();
+        inputs.add(this);
+        inputs.addAll(others);
+        group.operator(inputs, asList(result), new ChainWithClosure(closure));
+        return result;
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Map<String, Object> params, final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(params, asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Pool pool, final Map<String, Object> params, final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(pool, params, asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final PGroup group, final Map<String, Object> params, final DataflowReadChannel<Object> other, final Closure<V> closure) {
+        return merge(group, params, asList(other), closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Map<String, Object> params, final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        return merge(Dataflow.retrieveCurrentDFPGroup(), params, others, closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final Pool pool, final Map<String, Object> params, final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        return merge(new DefaultPGroup(pool), params, others, closure);
+    }
+
+    @Override
+    public <V> DataflowReadChannel<V> merge(final PGroup group, final Map<String, Object> params, final List<DataflowReadChannel<Object>> others, final Closure<V> closure) {
+        final DataflowQueue<V> result = new DataflowQueue<V>();
+        final Collection<DataflowReadChannel<?>> inputs = new ArrayList<DataflowReadChannel<?>>();
+        inputs.add(this);
+        inputs.addAll(others);
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", inputs);
+        parameters.put("outputs", asList(result));
+        group.operator(parameters, new ChainWithClosure(closure));
+        return result;
+    }
+
+    @Override
+    public void binaryChoice(final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        binaryChoice(Dataflow.retrieveCurrentDFPGroup(), trueBranch, falseBranch, code);
+    }
+
+    @Override
+    public void binaryChoice(final Pool pool, final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        binaryChoice(new DefaultPGroup(pool), trueBranch, falseBranch, code);
+    }
+
+    @Override
+    public void binaryChoice(final PGroup group, final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        group.operator(asList(this), asList(trueBranch, falseBranch), new BinaryChoiceClosure(code));
+    }
+
+    @Override
+    public void binaryChoice(final Map<String, Object> params, final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        binaryChoice(Dataflow.retrieveCurrentDFPGroup(), params, trueBranch, falseBranch, code);
+    }
+
+    @Override
+    public void binaryChoice(final Pool pool, final Map<String, Object> params, final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        binaryChoice(new DefaultPGroup(pool), params, trueBranch, falseBranch, code);
+    }
+
+    @Override
+    public void binaryChoice(final PGroup group, final Map<String, Object> params, final DataflowWriteChannel<T> trueBranch, final DataflowWriteChannel<T> falseBranch, final Closure<Boolean> code) {
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(trueBranch, falseBranch));
+
+        group.operator(parameters, new BinaryChoiceClosure(code));
+    }
+
+    @Override
+    public void choice(final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        choice(Dataflow.retrieveCurrentDFPGroup(), outputs, code);
+    }
+
+    @Override
+    public void choice(final Pool pool, final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        choice(new DefaultPGroup(pool), outputs, code);
+    }
+
+    @Override
+    public void choice(final PGroup group, final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        group.operator(asList(this), outputs, new ChoiceClosure(code));
+    }
+
+    @Override
+    public void choice(final Map<String, Object> params, final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        choice(Dataflow.retrieveCurrentDFPGroup(), params, outputs, code);
+    }
+
+    @Override
+    public void choice(final Pool pool, final Map<String, Object> params, final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        choice(new DefaultPGroup(pool), params, outputs, code);
+    }
+
+    @Override
+    public void choice(final PGroup group, final Map<String, Object> params, final List<DataflowWriteChannel<T>> outputs, final Closure<Integer> code) {
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(outputs));
+
+        group.operator(parameters, new ChoiceClosure(code));
+    }
+
+    @Override
+    public void separate(final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        separate(Dataflow.retrieveCurrentDFPGroup(), outputs, code);
+    }
+
+    @Override
+    public void separate(final Pool pool, final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        separate(new DefaultPGroup(pool), outputs, code);
+    }
+
+    @Override
+    public void separate(final PGroup group, final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        group.operator(asList(this), outputs, new SeparationClosure(code));
+    }
+
+    @Override
+    public void separate(final Map<String, Object> params, final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        separate(Dataflow.retrieveCurrentDFPGroup(), params, outputs, code);
+    }
+
+    @Override
+    public void separate(final Pool pool, final Map<String, Object> params, final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        separate(new DefaultPGroup(pool), params, outputs, code);
+    }
+
+    @Override
+    public void separate(final PGroup group, final Map<String, Object> params, final List<DataflowWriteChannel<?>> outputs, final Closure<List<Object>> code) {
+        final Map<String, Object> parameters = new HashMap<String, Object>(params);
+        parameters.put("inputs", asList(this));
+        parameters.put("outputs", asList(outputs));
+
+        group.operator(parameters, new SeparationClosure(code));
+    }
+
+    private volatile DataflowChannelEventOrchestrator<T> eventManager;
+
+    @Override
+    public synchronized DataflowChannelEventListenerManager<T> getEventManager() {
+        if (eventManager != null) return eventManager;
+        eventManager = new DataflowChannelEventOrchestrator<T>();
+        return eventManager;
+    }
+
+    @Override
+    public boolean isBound() {
+        return broadcast.tryRead(consumed + 1L) != RingBufferBroadcast.UNAVAILABLE;
+    }
+
+    /**
+     * Returns the number of values published to the broadcast, but not yet read through this channel
+     *
+     * @return Number of values available to the reader
+     */
+    @Override
+    public int length() {
+        final int capacity = broadcast.getCapacity();
+        long sequence = consumed + 1L;
+        int length = 0;
+        while (length < capacity && broadcast.tryRead(sequence) != RingBufferBroadcast.UNAVAILABLE) {
+            length++;
+            sequence++;
+        }
+        return length;
+    }
+
+    @Override
+    public DataflowExpression<T> poll() {
+        if (pendingCount > 0) return null;
+        while (true) {
+            final long sequence = consumed + 1L;
+            final Object value = broadcast.tryRead(sequence);
+            if (value == RingBufferBroadcast.UNAVAILABLE) return null;
+            if (value == RingBufferBroadcast.LAPPED) skipLapped(sequence);
+            else {
+                advance(sequence);
+                final DataflowVariable<T> result = new DataflowVariable<T>();
+                result.bind((T) value);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Invoked by the writers each time a value has been published
+     *
+     * @param value The value just published
+     */
+    void onPublished(final T value) {
+        if (eventManager != null) eventManager.fireOnMessage(value);
+        if (pendingCount > 0) serveRequests();
+    }
+
+    /**
+     * Registers an asynchronous read, which gets served once all the previously requested values have been delivered
+     *
+     * @return A DataflowVariable to receive the value
+     */
+    private DataflowVariable<T> requestValue() {
+        final DataflowVariable<T> request = new DataflowVariable<T>();
+        synchronized (pendingRequests) {
+            pendingRequests.add(request);
+            pendingCount++;
+        }
+        //The value may have been published before the writer could see the request
+        serveRequests();
+        return request;
+    }
+
+    private void serveRequests() {
+        boolean served = false;
+        synchronized (pendingRequests) {
+            while (!pendingRequests.isEmpty()) {
+                final long sequence = consumed + 1L;
+                final Object value = broadcast.tryRead(sequence);
+                if (value == RingBufferBroadcast.UNAVAILABLE) break;
+                if (value == RingBufferBroadcast.LAPPED) {
+                    skipLapped(sequence);
+                    continue;
+                }
+                consumed = sequence;
+                pendingCount--;
+                pendingRequests.poll().bind((T) value);
+                served = true;
+            }
+        }
+        if (served) broadcast.released();
+    }
+
+    private void advance(final long sequence) {
+        consumed = sequence;
+        broadcast.released();
+    }
+
+    /**
+     * Moves the cursor to the oldest value still held in the buffer
+     *
+     * @param sequence The sequence of the value that has been overwritten
+     */
+    private void skipLapped(final long sequence) {
+        final long oldest = Math.max(broadcast.oldestRetained(), sequence + 1L);
+        missed += oldest - sequence;
+        consumed = oldest - 1L;
+    }
+}
@@ -53,6 +53,16 @@ public final class SyncDataflowQueue<T> extends DataflowQueue<T> {
         return new SyncDataflowVariable<T>(1);
     }
 
+    /**
+     * Values must be exchanged through SyncDataflowVariables to block writers until the values get read
+     *
+     * @return True
+     */
+    @Override
+    protected boolean requiresVariables() {
+        return true;
+    }
+
     @Override
     public <V> DataflowReadChannel<V> chainWith(final PGroup group, final Closure<V> closure) {
         final SyncDataflowQueue<V> result = new SyncDataflowQueue<V>();
@@ -79,6 +89,6 @@ public final class SyncDataflowQueue<T> extends DataflowQueue<T> {
 
     @Override
     public String toString() {
-        return "SyncDataflowQueue(queue=" + new ArrayList<DataflowVariable<T>>(getQueue()).toString() + ')';
+        return "SyncDataflowQueue(queue=" + bufferToString() + ')';
     }
 }
@@ -16,9 +16,13 @@
 
 package groovyx.gpars.dataflow.impl;
 
+import java.util.Collection;
+
 /**
  * @author Vaclav Pech
  */
 public interface DataflowChannelEventDistributor<T> {
     void fireOnMessage(T message);
+
+    void fireOnMessages(Collection<? extends T> messages);
 }
@@ -59,6 +59,20 @@ public final class DataflowChannelEventOrchestrator<T> implements DataflowChanne
         }
     }
 
+    /**
+     * Notifies all listeners about a batch of messages, passing through the listeners once
+     *
+     * @param messages The messages just added to the channel
+     */
+    @Override
+    public void fireOnMessages(final Collection<? extends T> messages) {
+        for (final DataflowChannelListener<T> listener : listeners) {
+            for (final T message : messages) {
+                listener.onMessage(message);
+            }
+        }
+    }
+
     @Override
     public void addBindErrorListener(final BindErrorListener<T> listener) {
         BindErrorListener.add(listener);
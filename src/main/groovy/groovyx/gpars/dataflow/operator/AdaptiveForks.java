@@ -0,0 +1,178 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovyx.gpars.dataflow.DataflowReadChannel;
+import groovyx.gpars.scheduler.DefaultPool;
+import groovyx.gpars.scheduler.FJPool;
+import groovyx.gpars.scheduler.Pool;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Adjusts the number of concurrently run bodies of a forking processor between minForks and maxForks.
+ * An AIMD controller is consulted after every window of finished runs:
+ * <ul>
+ * <li>the limit shrinks multiplicatively, once the average body latency of the window has grown to twice the long-term latency
+ * or the thread pool has tasks waiting for a thread</li>
+ * <li>the limit grows by one, if values are waiting in the inputs</li>
+ * <li>the limit shrinks by one, if the inputs are empty</li>
+ * </ul>
+ * The long-term latency is an exponentially weighted moving average of the window latencies, so that after a lasting change
+ * in the latency of the body the baseline catches up and the limit recovers.
+ * The changes get reported to the processor's listeners through the forksChanged() event.
+ */
+@SuppressWarnings({"RawUseOfParameterizedType"})
+final class AdaptiveForks {
+    private static final int WINDOW = 16;
+    private static final double CONGESTION_GRADIENT = 0.5;
+
+    /**
+     * The weight of the latest window in the long-term latency
+     */
+    private static final double LONG_TERM_SMOOTHING = 0.1;
+
+    private final DataflowProcessor owningProcessor;
+    private final List inputs;
+    private final Pool threadPool;
+    private final int minForks;
+    private final int maxForks;
+    private final AdjustableSemaphore semaphore;
+
+    /**
+     * Guarded by this
+     */
+    private int forks;
+    private int runs = 0;
+    private long latency = 0L;
+    private double longTermLatency = 0.0;
+    private boolean frozen = false;
+
+    AdaptiveForks(final DataflowProcessor owningProcessor, final List inputs, final Pool threadPool, final int minForks, final int maxForks) {
+        this.owningProcessor = owningProcessor;
+        this.inputs = inputs;
+        this.threadPool = threadPool;
+        this.minForks = minForks;
+        this.maxForks = maxForks;
+        this.forks = minForks;
+        this.semaphore = new AdjustableSemaphore(minForks);
+    }
+
+    /**
+     * The semaphore guarding the number of concurrently run bodies
+     *
+     * @return The semaphore, the number of permits of which follows the current limit
+     */
+    Semaphore getSemaphore() {
+        return semaphore;
+    }
+
+    /**
+     * Records the latency of a finished body and adjusts the limit at the end of a window
+     *
+     * @param startTime The System.nanoTime() value captured before the body was run
+     */
+    void runFinished(final long startTime) {
+        runFinished(startTime, System.nanoTime());
+    }
+
+    /**
+     * Records the latency of a finished body and adjusts the limit at the end of a window
+     *
+     * @param startTime The System.nanoTime() value captured before the body was run
+     * @param endTime   The System.nanoTime() value captured after the body was run
+     */
+    void runFinished(final long startTime, final long endTime) {
+        final long duration = endTime - startTime;
+        final int previousForks;
+        final int newForks;
+        synchronized (this) {
+            latency += duration;
+            runs++;
+            if (runs < WINDOW || frozen) return;
+            final double averageLatency = (double) latency / (double) runs;
+            runs = 0;
+            latency = 0L;
+            if (longTermLatency == 0.0) longTermLatency = averageLatency;
+            else longTermLatency += (averageLatency - longTermLatency) * LONG_TERM_SMOOTHING;
+            previousForks = forks;
+            newForks = calculateForks(longTermLatency / averageLatency, countWaitingValues(), isPoolSaturated());
+            if (newForks == previousForks) return;
+            if (newForks > previousForks) semaphore.release(newForks - previousForks);
+            else semaphore.reducePermits(previousForks - newForks);
+            forks = newForks;
+        }
+        owningProcessor.fireForksChanged(previousForks, newForks);
+    }
+
+    private int calculateForks(final double gradient, final int waitingValues, final boolean poolSaturated) {
+        if (gradient < CONGESTION_GRADIENT || poolSaturated) return Math.max(minForks, Math.min(forks - 1, forks * 3 / 4));
+        if (waitingValues > 0) return Math.min(maxForks, forks + 1);
+        return Math.max(minForks, forks - 1);
+    }
+
+    /**
+     * Stops further adjustments, so that the caller can acquire all the permits
+     *
+     * @return The number of permits to acquire to wait for all the running bodies to finish
+     */
+    synchronized int freeze() {
+        frozen = true;
+        return forks;
+    }
+
+    private int countWaitingValues() {
+        int count = 0;
+        for (final Object input : inputs) {
+            count += ((DataflowReadChannel) input).length();
+        }
+        return count;
+    }
+
+    private boolean isPoolSaturated() {
+        if (threadPool instanceof FJPool) {
+            final ForkJoinPool pool = ((FJPool) threadPool).getForkJoinPool();
+            return pool.hasQueuedSubmissions() || pool.getQueuedTaskCount() > 0L;
+        }
+        if (threadPool instanceof DefaultPool) {
+            final ExecutorService executor = ((DefaultPool) threadPool).getExecutorService();
+            return executor instanceof ThreadPoolExecutor && !((ThreadPoolExecutor) executor).getQueue().isEmpty();
+        }
+        return false;
+    }
+
+    /**
+     * Exposes the ability to take permits away from a semaphore
+     */
+    private static final class AdjustableSemaphore extends Semaphore {
+        private static final long serialVersionUID = -1766425391548296311L;
+
+        private AdjustableSemaphore(final int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovyx.gpars.actor.Actor;
+import groovyx.gpars.util.GeneralTimer;
+
+/**
+ * Flushes a partially collected batch of a batching operator or selector once the maxBatchDelay elapses.
+ * The deadline sends itself to the processor's actor, which ignores deadlines of batches that have been flushed already.
+ */
+final class BatchDeadline implements Runnable {
+    private final Actor actor;
+    private final GeneralTimer.Timeout timeout;
+
+    BatchDeadline(final Actor actor, final GeneralTimer timer, final long maxBatchDelay) {
+        this.actor = actor;
+        this.timeout = timer.scheduleTimeout(this, maxBatchDelay);
+    }
+
+    void cancel() {
+        timeout.cancel();
+    }
+
+    @Override
+    public void run() {
+        try {
+            actor.send(this);
+        } catch (IllegalStateException ignore) {
+            //the actor has stopped in the meantime
+        }
+    }
+}
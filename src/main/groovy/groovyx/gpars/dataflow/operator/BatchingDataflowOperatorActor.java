@@ -0,0 +1,104 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovy.lang.Closure;
+import groovyx.gpars.group.PGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An operator's internal actor, which collects the values of batchSize runs and passes them to the operator's body at once.
+ * The body receives a list of values for each of the inputs.
+ * A partially collected batch is passed to the body once the maxBatchDelay elapses or when a poison pill arrives.
+ * A gentle stop request passes the partially collected batch to the body right away. The values of the run after it
+ * get passed to the body without waiting for more values, before the actor stops.
+ */
+@SuppressWarnings({"RawUseOfParameterizedType"})
+final class BatchingDataflowOperatorActor extends DataflowOperatorActor {
+    private final int batchSize;
+    private final long maxBatchDelay;
+    private List<Object>[] batch;
+    private int batched = 0;
+    private BatchDeadline deadline = null;
+
+    BatchingDataflowOperatorActor(final DataflowOperator owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int batchSize, final long maxBatchDelay) {
+        super(owningOperator, group, outputs, inputs, code);
+        this.batchSize = batchSize;
+        this.maxBatchDelay = maxBatchDelay;
+        this.batch = createBatch();
+    }
+
+    @Override
+    public void onMessage(final Object message) {
+        if (message instanceof BatchDeadline) {
+            if (message == deadline) {
+                flush();
+                continueAfterRun();
+            }
+            return;
+        }
+        super.onMessage(message);
+    }
+
+    @Override
+    void inputsArrived(final Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            batch[i].add(values[i]);
+        }
+        batched++;
+        if (batched == batchSize) flush();
+        else if (batched == 1 && maxBatchDelay > 0L) deadline = new BatchDeadline(this, timer, maxBatchDelay);
+    }
+
+    @Override
+    void flushPendingBatch() {
+        flush();
+    }
+
+    @Override
+    protected void forwardPoisonPill(final Object data) {
+        flush();
+        super.forwardPoisonPill(data);
+    }
+
+    /**
+     * Passes the values collected so far to the body
+     */
+    private void flush() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+        if (batched == 0) return;
+        final Object[] arguments = batch;
+        batch = createBatch();
+        batched = 0;
+        super.inputsArrived(arguments);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private List<Object>[] createBatch() {
+        final List<Object>[] lists = new List[inputs.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new ArrayList<Object>(batchSize);
+        }
+        return lists;
+    }
+}
@@ -0,0 +1,95 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovy.lang.Closure;
+import groovyx.gpars.group.PGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A selector's internal actor, which collects batchSize selected values and passes them to the selector's body at once.
+ * The body receives a list of values and, if it accepts two arguments, a list of the indexes of the inputs the values came from.
+ * A partially collected batch is passed to the body once the maxBatchDelay elapses or when a poison pill arrives.
+ * A gentle stop request passes the partially collected batch to the body right away. The values of the run after it
+ * get passed to the body without waiting for more values, before the actor stops.
+ */
+@SuppressWarnings({"RawUseOfParameterizedType"})
+final class BatchingDataflowSelectorActor extends DataflowSelectorActor {
+    private final int batchSize;
+    private final long maxBatchDelay;
+    private List<Object> values;
+    private List<Integer> indexes;
+    private BatchDeadline deadline = null;
+
+    BatchingDataflowSelectorActor(final DataflowSelector owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int batchSize, final long maxBatchDelay) {
+        super(owningOperator, group, outputs, inputs, code);
+        this.batchSize = batchSize;
+        this.maxBatchDelay = maxBatchDelay;
+        this.values = new ArrayList<Object>(batchSize);
+        this.indexes = new ArrayList<Integer>(batchSize);
+    }
+
+    @Override
+    public void onMessage(final Object message) {
+        if (message instanceof BatchDeadline) {
+            if (message == deadline) {
+                flush();
+                continueAfterRun();
+            }
+            return;
+        }
+        super.onMessage(message);
+    }
+
+    @Override
+    void valueSelected(final int index, final Object value) {
+        values.add(value);
+        indexes.add(index);
+        if (values.size() == batchSize) flush();
+        else if (values.size() == 1 && maxBatchDelay > 0L) deadline = new BatchDeadline(this, timer, maxBatchDelay);
+    }
+
+    @Override
+    void flushPendingBatch() {
+        flush();
+    }
+
+    @Override
+    protected void forwardPoisonPill(final Object data) {
+        flush();
+        super.forwardPoisonPill(data);
+    }
+
+    /**
+     * Passes the values collected so far to the body
+     */
+    private void flush() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+        if (values.isEmpty()) return;
+        final List<Object> batchValues = values;
+        final List<Integer> batchIndexes = indexes;
+        values = new ArrayList<Object>(batchSize);
+        indexes = new ArrayList<Integer>(batchSize);
+        runBody(fireBeforeRun(batchValues), batchIndexes);
+    }
+}
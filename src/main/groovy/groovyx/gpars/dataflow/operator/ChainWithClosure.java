@@ -19,9 +19,12 @@ package groovyx.gpars.dataflow.operator;
 import groovy.lang.Closure;
 import org.codehaus.groovy.runtime.NullObject;
 
+import java.util.Collection;
+
 /**
  * Used by the chainWith() method to wrap the supplied closure inside the operator's body.
  * This wrapper closure is responsible for writing the calculated result into the operator's output through its bind() methods.
+ * Batching operators bind results, which are collections, as a batch of values.
  *
  * @author Vaclav Pech
  */
@@ -59,21 +62,31 @@ public final class ChainWithClosure<V> extends Closure {
     @Override
     public Object call(final Object arguments) {
         final V result = (V) code.call(arguments);
-        if (result != NullObject.getNullObject()) ((DataflowProcessor) getDelegate()).bindAllOutputsAtomically(result);
+        bindResult(result);
         return result;
     }
 
     @Override
     public Object call(final Object... args) {
         final V result = (V) code.call(args);
-        if (result != NullObject.getNullObject()) ((DataflowProcessor) getDelegate()).bindAllOutputsAtomically(result);
+        bindResult(result);
         return result;
     }
 
     @Override
     public Object call() {
         final V result = (V) code.call();
-        if (result != NullObject.getNullObject()) ((DataflowProcessor) getDelegate()).bindAllOutputsAtomically(result);
+        bindResult(result);
         return result;
     }
+
+    private void bindResult(final V result) {
+        if (result == NullObject.getNullObject()) return;
+        final DataflowProcessor processor = (DataflowProcessor) getDelegate();
+        if (processor.isBatching() && result instanceof Collection) {
+            processor.bindAllOutputsBatchAtomically((Collection<?>) result);
+        } else {
+            processor.bindAllOutputsAtomically(result);
+        }
+    }
 }
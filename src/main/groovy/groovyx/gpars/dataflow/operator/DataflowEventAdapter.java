@@ -134,6 +134,18 @@ public class DataflowEventAdapter implements DataflowEventListener {
     public void afterRun(final DataflowProcessor processor, final List<Object> messages) {
     }
 
+    /**
+     * Invoked when a processor with adaptive concurrency (minForks and maxForks) changes the number of bodies allowed to run concurrently.
+     * The method is invoked from threads running the forks.
+     *
+     * @param processor     The reporting dataflow operator/selector
+     * @param previousForks The previous limit
+     * @param forks         The new limit
+     */
+    @Override
+    public void forksChanged(final DataflowProcessor processor, final int previousForks, final int forks) {
+    }
+
     /**
      * Invoked when the fireCustomEvent() method is triggered manually on a dataflow operator/selector.
      * This implementation returns the original piece of data.
@@ -113,6 +113,31 @@ public interface DataflowEventListener {
      */
     void afterRun(DataflowProcessor processor, List<Object> messages);
 
+    /**
+     * Invoked when the operator completes a single run, together with the time the body took to run.
+     * The run time doesn't include waiting for a free fork nor, for batching processors, collecting the batch.
+     * When using maxForks, the method may be invoked from threads running the forks.
+     * By default, the method delegates to afterRun(processor, messages).
+     *
+     * @param processor The reporting dataflow operator/selector
+     * @param messages  The incoming messages that have been processed
+     * @param runTime   The time the body took to run in nanoseconds
+     */
+    default void afterRun(final DataflowProcessor processor, final List<Object> messages, final long runTime) {
+        afterRun(processor, messages);
+    }
+
+    /**
+     * Invoked when a processor with adaptive concurrency (minForks and maxForks) changes the number of bodies allowed to run concurrently.
+     * The method is invoked from threads running the forks.
+     *
+     * @param processor     The reporting dataflow operator/selector
+     * @param previousForks The previous limit
+     * @param forks         The new limit
+     */
+    default void forksChanged(final DataflowProcessor processor, final int previousForks, final int forks) {
+    }
+
     /**
      * Invoked when the fireCustomEvent() method is triggered manually on a dataflow operator/selector
      * When using maxForks, the method may be invoked from threads running the forks.
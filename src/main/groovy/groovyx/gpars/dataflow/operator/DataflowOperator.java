@@ -55,12 +55,15 @@ public final class DataflowOperator extends DataflowProcessor {
         final int parameters = code.getMaximumNumberOfParameters();
         if (verifyChannelParameters(channels, parameters, code.getParameterTypes()))
             throw new IllegalArgumentException("The operator's body accepts " + parameters + " parameters while it is given " + countInputChannels(channels) + " input streams. The numbers must match.");
-        if (shouldBeMultiThreaded(channels)) {
+        if (shouldBatch(channels)) {
+            this.actor = new BatchingDataflowOperatorActor(this, group, extractOutputs(channels), extractInputs(channels), (Closure) code.clone(), extractBatchSize(channels), extractMaxBatchDelay(channels));
+        } else if (shouldBeMultiThreaded(channels)) {
             checkMaxForks(channels);
-            this.actor = new ForkingDataflowOperatorActor(this, group, extractOutputs(channels), extractInputs(channels), (Closure) code.clone(), (Integer) channels.get(MAX_FORKS));
+            this.actor = new ForkingDataflowOperatorActor(this, group, extractOutputs(channels), extractInputs(channels), (Closure) code.clone(), (Integer) channels.get(MAX_FORKS), extractMinForks(channels), shouldOrder(channels));
         } else {
             this.actor = new DataflowOperatorActor(this, group, extractOutputs(channels), extractInputs(channels), (Closure) code.clone());
         }
+        if (group != null) listeners.addAll(group.getDataflowEventListeners());
         for (final DataflowEventListener listener : listeners) {
             listener.registered(this);
         }
@@ -18,32 +18,55 @@ package groovyx.gpars.dataflow.operator;
 
 
 import groovy.lang.Closure;
+import groovyx.gpars.actor.impl.MessageStream;
 import groovyx.gpars.dataflow.DataflowReadChannel;
 import groovyx.gpars.dataflow.DataflowVariable;
 import groovyx.gpars.group.PGroup;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * An operator's internal actor. Repeatedly polls inputs and once they're all available it performs the operator's body.
  * <p>
  * Iteratively waits for enough values from inputs.
  * Once all required inputs are available (received as messages), the operator's body is run.
+ * The values are collected in a slot array indexed by the input position, which is reused between runs.
  * </p>
  *
  * @author Vaclav Pech
  */
 @SuppressWarnings({"RawUseOfParameterizedType", "unchecked"})
 class DataflowOperatorActor extends DataflowProcessorActor {
-    private Map values = new HashMap(10);
+    /**
+     * Marks slots of inputs, which haven't delivered a value for the next run yet
+     */
+    private static final Object EMPTY = new Object();
+
+    /**
+     * Values of the inputs for the next run, indexed by the input position
+     */
+    private final Object[] slots;
+    private int arrived = 0;
+
+    /**
+     * Indicates the inputs have been asked for the values of the next run
+     */
+    private boolean querying = false;
+
+    /**
+     * Callbacks registered with the inputs, one per input, turning the delivered values into InputValue messages
+     */
+    private final MessageStream[] callbacks;
 
     DataflowOperatorActor(final DataflowOperator owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code) {
         super(owningOperator, group, outputs, inputs, code);
+        slots = new Object[inputs.size()];
+        Arrays.fill(slots, EMPTY);
+        callbacks = new MessageStream[inputs.size()];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = new InputCallback(i);
+        }
     }
 
     @Override
@@ -54,13 +77,15 @@ class DataflowOperatorActor extends DataflowProcessorActor {
     }
 
     private void queryInputs(final boolean initialRun) {
+        querying = true;
         for (int i = 0; i < inputs.size(); i++) {
             final DataflowReadChannel input = (DataflowReadChannel) inputs.get(i);
             if (initialRun || !(input instanceof DataflowVariable)) {
-                input.getValAsync(i, this);
+                input.getValAsync(callbacks[i]);
             } else {
                 try {
-                    values.put(i, input.getVal());
+                    slots[i] = input.getVal();
+                    arrived++;
                 } catch (InterruptedException e) {
                     throw new IllegalStateException("couldn't read the value of a DataflowVariable inside an operator.", e);
                 }
@@ -69,59 +94,114 @@ class DataflowOperatorActor extends DataflowProcessorActor {
     }
 
     @Override
-    public final void onMessage(final Object message) {
+    public void onMessage(final Object message) {
         if (message instanceof StopGently) {
             stoppingGently = true;
+            flushPendingBatch();
+            return;
+        }
+        if (message == OUTPUT_WRITTEN) {
+            continueAfterRun();
             return;
         }
-        final Map msg = (Map) message;
-        Object result = msg.get("result");
-        final Object attachment = msg.get("attachment");
+        final InputValue msg = (InputValue) message;
+        final int index = msg.index;
+        Object result = msg.value;
 
         if (isControlMessage(result)) {
-            result = fireMessageArrived(result, (Integer) attachment, true);
+            result = fireMessageArrived(result, index, true);
             checkPoison(result);
             if (isControlMessage(result)) return;
         }
 
-        final Object verifiedValue = fireMessageArrived(result, (Integer) attachment, false);
-
-        values.put(attachment, verifiedValue);
-        if (values.size() > inputs.size())
-            throw new IllegalStateException("The DataflowOperatorActor is in an inconsistent state. values.size()=" + values.size() + ", inputs.size()=" + inputs.size());
-        if (values.size() == inputs.size()) {
-            final List<Map.Entry<Comparable, Object>> arrivedMessages = new ArrayList<Map.Entry<Comparable, Object>>(values.entrySet());
-            Collections.sort(arrivedMessages, new Comparator<Map.Entry<Comparable, Object>>() {
-                @Override
-                public int compare(final Map.Entry<Comparable, Object> o1, final Map.Entry<Comparable, Object> o2) {
-                    return o1.getKey().compareTo(o2.getKey());
-                }
-            });
-
-            final List<Object> arrivedValues = new ArrayList<Object>(arrivedMessages.size());
-            for (final Map.Entry entry : arrivedMessages) {
-                arrivedValues.add(entry.getValue());
-            }
+        final Object verifiedValue = fireMessageArrived(result, index, false);
+
+        if (slots[index] != EMPTY)
+            throw new IllegalStateException("The DataflowOperatorActor is in an inconsistent state. A value for the input " + index + " has already arrived.");
+        slots[index] = verifiedValue;
+        arrived++;
+        if (arrived == slots.length) {
+            arrived = 0;
+            querying = false;
+            inputsArrived(slots);
+            Arrays.fill(slots, EMPTY);
+            continueAfterRun();
+        }
+    }
 
-            final List<Object> verifiedValues = owningProcessor.fireBeforeRun(arrivedValues);
+    /**
+     * Stops gently or reads the next set of inputs, once all outputs of the run have been written
+     */
+    final void continueAfterRun() {
+        if (!outputsWritten()) return;
+        if (stoppingGently) {
+            flushPendingBatch();
+            if (!outputsWritten()) return;
+            stop();
+        }
+        if (!hasBeenStopped() && !querying) queryInputs(false);
+    }
 
-            startTask(verifiedValues);
-            values = new HashMap(values.size());
-            if (stoppingGently) {
-                stop();
-            }
-            if (!hasBeenStopped()) queryInputs(false);
+    /**
+     * Notifies the listeners and runs the body, once a value has arrived on each of the inputs
+     *
+     * @param values The values read from the inputs. The array may be reused for subsequent runs, once the method returns.
+     */
+    void inputsArrived(final Object[] values) {
+        if (owningProcessor.listeners.isEmpty()) {
+            startTask(values, null);
+        } else {
+            final List<Object> verifiedValues = owningProcessor.fireBeforeRun(Arrays.asList(values.clone()));
+            startTask(verifiedValues.toArray(), verifiedValues);
         }
     }
 
+    /**
+     * Runs the body
+     *
+     * @param arguments The values to pass to the body. The array may be reused for subsequent runs, once the method returns.
+     * @param results   The values to report to the listeners after the run, null if there are no listeners
+     */
     @SuppressWarnings({"CatchGenericClass"})
-    void startTask(final List<Object> results) {
+    void startTask(final Object[] arguments, final List<Object> results) {
+        final long startTime = results != null ? System.nanoTime() : 0L;
         try {
-            code.call(results.toArray(new Object[results.size()]));
+            code.call(arguments);
         } catch (Throwable e) {
             reportException(e);
         } finally {
-            owningProcessor.fireAfterRun(results);
+            if (results != null) owningProcessor.fireAfterRun(results, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * A value delivered by an input
+     */
+    private static final class InputValue {
+        private final int index;
+        private final Object value;
+
+        private InputValue(final int index, final Object value) {
+            this.index = index;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Receives values from the input of the given index on behalf of the actor
+     */
+    private final class InputCallback extends MessageStream {
+        private static final long serialVersionUID = -2617232487613421624L;
+        private final int index;
+
+        private InputCallback(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public MessageStream send(final Object message) {
+            DataflowOperatorActor.this.send(new InputValue(index, message));
+            return this;
         }
     }
 }
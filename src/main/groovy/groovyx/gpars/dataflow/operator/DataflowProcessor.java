@@ -17,16 +17,22 @@
 package groovyx.gpars.dataflow.operator;
 
 import groovy.lang.Closure;
+import groovyx.gpars.dataflow.BoundedDataflowQueue;
 import groovyx.gpars.dataflow.DataflowChannelListener;
+import groovyx.gpars.dataflow.DataflowQueue;
 import groovyx.gpars.dataflow.DataflowReadChannel;
 import groovyx.gpars.dataflow.DataflowWriteChannel;
+import groovyx.gpars.dataflow.Promise;
+import groovyx.gpars.dataflow.stream.DataflowStreamWriteAdapter;
 import groovyx.gpars.group.PGroup;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Dataflow selectors and operators (processors) form the basic units in dataflow networks. They are typically combined into oriented graphs that transform data.
@@ -51,6 +57,10 @@ public abstract class DataflowProcessor {
     public static final String OUTPUTS = "outputs";
     public static final String MAX_FORKS = "maxForks";
     public static final String STATE_OBJECT = "stateObject";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final String MAX_BATCH_DELAY = "maxBatchDelay";
+    public static final String ORDERED = "ordered";
+    public static final String MIN_FORKS = "minForks";
     private static final String LISTENERS = "listeners";
 
     /**
@@ -65,6 +75,18 @@ public abstract class DataflowProcessor {
 
     protected final Collection<DataflowEventListener> listeners = new CopyOnWriteArrayList<DataflowEventListener>();
 
+    /**
+     * Indicates the body receives lists of values gathered over multiple runs
+     */
+    private final boolean batching;
+
+    /**
+     * Indicates the outputs of concurrently run bodies are bound in the order the inputs were read
+     */
+    private final boolean ordered;
+
+    private final LongAdder outputWaitTime = new LongAdder();
+
     /**
      * Creates a processor
      * After creation the processor needs to be started using the start() method.
@@ -78,6 +100,8 @@ public abstract class DataflowProcessor {
 
         stateObject = extractState(channels);
         listeners.addAll(extractListeners(channels));
+        batching = channels != null && channels.get(BATCH_SIZE) != null;
+        ordered = channels != null && shouldBeMultiThreaded(channels) && Boolean.TRUE.equals(channels.get(ORDERED));
         if (channels == null) return;
         final Collection<?> inputs = (Collection<?>) channels.get(INPUTS);
         if (inputs == null || inputs.isEmpty()) {
@@ -113,6 +137,46 @@ public abstract class DataflowProcessor {
         return listeners != null ? listeners : Collections.<DataflowEventListener>emptyList();
     }
 
+    /**
+     * Retrieves the lower bound for processors adapting the number of concurrently run bodies
+     *
+     * @param channels The processor's parameters
+     * @return The minForks parameter or the maxForks parameter, if no minForks has been specified
+     */
+    static int extractMinForks(final Map<String, Object> channels) {
+        final Integer maxForks = (Integer) channels.get(MAX_FORKS);
+        final Integer minForks = (Integer) channels.get(MIN_FORKS);
+        if (minForks == null) return maxForks;
+        if (minForks < 1 || minForks > maxForks)
+            throw new IllegalArgumentException("The minForks argument must be a positive value not greater than maxForks. " + minForks + " was provided.");
+        return minForks;
+    }
+
+    static boolean shouldOrder(final Map<String, Object> channels) {
+        return Boolean.TRUE.equals(channels.get(ORDERED));
+    }
+
+    static boolean shouldBatch(final Map<String, Object> channels) {
+        return channels.get(BATCH_SIZE) != null;
+    }
+
+    static int extractBatchSize(final Map<String, Object> channels) {
+        final int batchSize = ((Number) channels.get(BATCH_SIZE)).intValue();
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batchSize argument must be a positive value. " + batchSize + " was provided.");
+        if (shouldBeMultiThreaded(channels))
+            throw new IllegalArgumentException("The batchSize argument cannot be combined with maxForks.");
+        return batchSize;
+    }
+
+    static long extractMaxBatchDelay(final Map<String, Object> channels) {
+        final Number maxBatchDelay = (Number) channels.get(MAX_BATCH_DELAY);
+        if (maxBatchDelay == null) return 0L;
+        if (maxBatchDelay.longValue() < 0L)
+            throw new IllegalArgumentException("The maxBatchDelay argument must not be negative. " + maxBatchDelay + " was provided.");
+        return maxBatchDelay.longValue();
+    }
+
     protected static void checkMaxForks(final Map<?, ?> channels) {
         if ((Integer) channels.get(MAX_FORKS) < 1)
             throw new IllegalArgumentException("The maxForks argument must be a positive value. " + channels.get(MAX_FORKS) + " was provided.");
@@ -172,7 +236,7 @@ public abstract class DataflowProcessor {
      */
     public final void bindOutput(final int idx, final Object value) {
         final DataflowWriteChannel<Object> channel = (DataflowWriteChannel<Object>) actor.outputs.get(idx);
-        channel.bind(fireMessageSentOut(channel, idx, value));
+        bindChannel(channel, fireMessageSentOut(channel, idx, value));
     }
 
     /**
@@ -184,6 +248,72 @@ public abstract class DataflowProcessor {
         bindOutput(0, value);
     }
 
+    /**
+     * Used by the processor's body to send a batch of values to the given output channel.
+     * Dataflow queues and broadcasts receive the whole batch in a single bindAll() call.
+     *
+     * @param idx    The index of the channel to bind
+     * @param values The values to bind
+     */
+    public final void bindOutputBatch(final int idx, final Collection<?> values) {
+        final DataflowWriteChannel<Object> channel = (DataflowWriteChannel<Object>) actor.outputs.get(idx);
+        bindChannelBatch(channel, idx, values);
+    }
+
+    /**
+     * Used by the processor's body to send a batch of values to the first / only output channel
+     *
+     * @param values The values to bind
+     */
+    public final void bindOutputBatch(final Collection<?> values) {
+        bindOutputBatch(0, values);
+    }
+
+    /**
+     * Used by the processor's body to send a batch of values to all output channels
+     *
+     * @param values The values to bind
+     */
+    public final void bindAllOutputsBatch(final Collection<?> values) {
+        final List<DataflowWriteChannel<?>> outputs = getOutputs();
+        for (int i = 0; i < outputs.size(); i++) {
+            bindChannelBatch((DataflowWriteChannel<Object>) outputs.get(i), i, values);
+        }
+    }
+
+    /**
+     * Used by the processor's body to send a batch of values to all output channels, while guaranteeing atomicity of the operation
+     * and preventing other calls to bindAllOutputsAtomically() from interfering with one another.
+     *
+     * @param values The values to bind
+     */
+    public final synchronized void bindAllOutputsBatchAtomically(final Collection<?> values) {
+        final List<DataflowWriteChannel<?>> outputs = getOutputs();
+        for (int i = 0; i < outputs.size(); i++) {
+            bindChannelBatch((DataflowWriteChannel<Object>) outputs.get(i), i, values);
+        }
+    }
+
+    /**
+     * Indicates whether the processor's body receives lists of values gathered over multiple runs,
+     * as requested through the batchSize parameter
+     *
+     * @return True for batching processors
+     */
+    public final boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Indicates whether the values bound by concurrently run bodies reach the outputs in the order the inputs were read,
+     * as requested through the ordered parameter together with maxForks
+     *
+     * @return True for ordered processors
+     */
+    public final boolean isOrdered() {
+        return ordered;
+    }
+
     /**
      * Used by the processor's body to send a value to all output channels.
      * If the maxForks value is set to a value greater than 1, calls to bindAllOutputs may result in values written to different
@@ -196,7 +326,7 @@ public abstract class DataflowProcessor {
         final List<DataflowWriteChannel<?>> outputs = getOutputs();
         for (int i = 0; i < outputs.size(); i++) {
             final DataflowWriteChannel<Object> channel = (DataflowWriteChannel<Object>) outputs.get(i);
-            channel.bind(fireMessageSentOut(channel, i, value));
+            bindChannel(channel, fireMessageSentOut(channel, i, value));
         }
     }
 
@@ -215,7 +345,56 @@ public abstract class DataflowProcessor {
         final List<DataflowWriteChannel<?>> outputs = getOutputs();
         for (int i = 0; i < outputs.size(); i++) {
             final DataflowWriteChannel channel = outputs.get(i);
-            channel.bind(fireMessageSentOut(channel, i, values[i]));
+            bindChannel(channel, fireMessageSentOut(channel, i, values[i]));
+        }
+    }
+
+    /**
+     * Binds all the values to the channel, using the channel's bulk bind operation if there's one
+     *
+     * @param channel The channel to bind
+     * @param idx     The index of the channel
+     * @param values  The values to bind
+     */
+    private void bindChannelBatch(final DataflowWriteChannel<Object> channel, final int idx, final Collection<?> values) {
+        final Collection<Object> verifiedValues = new ArrayList<Object>(values.size());
+        for (final Object value : values) {
+            verifiedValues.add(fireMessageSentOut(channel, idx, value));
+        }
+        if (ordered) {
+            for (final Object value : verifiedValues) {
+                bindChannel(channel, value);
+            }
+        } else if (channel instanceof DataflowQueue && !(channel instanceof BoundedDataflowQueue)) {
+            ((DataflowQueue<Object>) channel).bindAll(verifiedValues);
+        } else if (channel instanceof DataflowStreamWriteAdapter) {
+            ((DataflowStreamWriteAdapter<Object>) channel).bindAll(verifiedValues);
+        } else {
+            for (final Object value : verifiedValues) {
+                bindChannel(channel, value);
+            }
+        }
+    }
+
+    /**
+     * Binds the value to the channel. Full bounded queues don't block the processor's actor,
+     * the actor stops reading inputs until the queue accepts the value instead.
+     *
+     * @param channel The channel to bind
+     * @param value   The value to bind
+     */
+    private void bindChannel(final DataflowWriteChannel<Object> channel, final Object value) {
+        if (actor.deferOutput(channel, value)) return;
+        if (channel instanceof BoundedDataflowQueue && actor.isActorThread()) {
+            final Promise<Object> written = ((BoundedDataflowQueue<Object>) channel).bindAsync(value);
+            if (!written.isBound()) actor.awaitOutput(written);
+        } else if (channel instanceof BoundedDataflowQueue) {
+            if (((BoundedDataflowQueue<Object>) channel).offer(value)) return;
+            final long startTime = System.nanoTime();
+            channel.bind(value);
+            recordOutputWait(System.nanoTime() - startTime);
+        } else {
+            channel.bind(value);
         }
     }
 
@@ -251,6 +430,28 @@ public abstract class DataflowProcessor {
         return (DataflowWriteChannel<?>) actor.outputs.get(idx);
     }
 
+    /**
+     * The processor's all input channels
+     *
+     * @return A List holding all input channels
+     */
+    public final List<DataflowReadChannel<?>> getInputs() {
+        return actor.inputs;
+    }
+
+    /**
+     * The time the processor has spent waiting for full bounded output channels to accept values
+     *
+     * @return The total waiting time in nanoseconds
+     */
+    public final long getOutputWaitTime() {
+        return outputWaitTime.sum();
+    }
+
+    final void recordOutputWait(final long nanos) {
+        outputWaitTime.add(nanos);
+    }
+
     /**
      * The processor's all output channels
      *
@@ -373,9 +574,15 @@ public abstract class DataflowProcessor {
         return result;
     }
 
-    protected final void fireAfterRun(final List<Object> messages) {
+    protected final void fireAfterRun(final List<Object> messages, final long runTime) {
+        for (final DataflowEventListener listener : listeners) {
+            listener.afterRun(this, messages, runTime);
+        }
+    }
+
+    protected final void fireForksChanged(final int previousForks, final int forks) {
         for (final DataflowEventListener listener : listeners) {
-            listener.afterRun(this, messages);
+            listener.forksChanged(this, previousForks, forks);
         }
     }
 }
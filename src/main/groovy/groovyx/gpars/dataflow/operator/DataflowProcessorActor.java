@@ -21,8 +21,11 @@ import groovyx.gpars.actor.StaticDispatchActor;
 import groovyx.gpars.actor.impl.MessageStream;
 import groovyx.gpars.dataflow.DataflowChannelListener;
 import groovyx.gpars.dataflow.DataflowReadChannel;
+import groovyx.gpars.dataflow.DataflowWriteChannel;
+import groovyx.gpars.dataflow.Promise;
 import groovyx.gpars.group.PGroup;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -40,6 +43,17 @@ abstract class DataflowProcessorActor extends StaticDispatchActor<Object> {
     protected final DataflowProcessor owningProcessor;
     protected boolean stoppingGently = false;
 
+    /**
+     * The message the actor sends to itself once a value written to a full bounded output has been accepted
+     */
+    static final Object OUTPUT_WRITTEN = new Object();
+
+    /**
+     * Values written by the body to full bounded outputs, which have not been accepted yet. Only accessed from the actor's thread.
+     */
+    private final List<Promise<?>> pendingOutputs = new ArrayList<Promise<?>>();
+    private long outputWaitStart = 0L;
+
     @SuppressWarnings({"AssignmentToCollectionOrArrayFieldFromParameter"})
     DataflowProcessorActor(final DataflowProcessor owningProcessor, final PGroup group, final List outputs, final List inputs, final Closure code) {
         super();
@@ -68,6 +82,50 @@ abstract class DataflowProcessorActor extends StaticDispatchActor<Object> {
             ((DataflowReadChannel<Object>) input).getEventManager().addDataflowChannelListener(handler);
         }
     }
+
+    /**
+     * Remembers a value written to a full bounded output, so that the actor doesn't read more inputs until the value is accepted
+     *
+     * @param written The promise to get bound once the value has been accepted by the output
+     */
+    final void awaitOutput(final Promise<?> written) {
+        if (pendingOutputs.isEmpty()) outputWaitStart = System.nanoTime();
+        pendingOutputs.add(written);
+    }
+
+    /**
+     * Checks whether all values written to bounded outputs have been accepted.
+     * If not, the actor will receive the OUTPUT_WRITTEN message once the first pending value gets accepted.
+     *
+     * @return True, if the actor may read more inputs
+     */
+    final boolean outputsWritten() {
+        while (!pendingOutputs.isEmpty()) {
+            final Promise<?> written = pendingOutputs.get(0);
+            if (!written.isBound()) {
+                written.whenBound(new MessageStream() {
+                    private static final long serialVersionUID = 6253046125624016353L;
+
+                    @Override
+                    public MessageStream send(final Object message) {
+                        //runs on the thread of the downstream reader, which must not fail because the operator has terminated meanwhile
+                        if (!isActive()) return this;
+                        try {
+                            DataflowProcessorActor.this.send(OUTPUT_WRITTEN);
+                        } catch (IllegalStateException e) {
+                            if (isActive()) throw e;
+                        }
+                        return this;
+                    }
+                });
+                return false;
+            }
+            pendingOutputs.remove(0);
+            if (pendingOutputs.isEmpty()) owningProcessor.recordOutputWait(System.nanoTime() - outputWaitStart);
+        }
+        return true;
+    }
+
     final void onException(final Throwable e) {
         reportException(e);
         terminate();
@@ -99,6 +157,23 @@ abstract class DataflowProcessorActor extends StaticDispatchActor<Object> {
         throw new IllegalStateException("The dataflow actor doesn't recognize the message $message");
     }
 
+    /**
+     * Gives the actor a chance to hold back a value bound by the body, so that it can be bound later
+     *
+     * @param channel The channel to bind the value to
+     * @param value   The value to bind
+     * @return True, if the value will be bound later by the actor
+     */
+    boolean deferOutput(final DataflowWriteChannel<Object> channel, final Object value) {
+        return false;
+    }
+
+    /**
+     * Passes the values collected for a batched body so far to the body, since the actor is stopping gently
+     */
+    void flushPendingBatch() {
+    }
+
     static boolean isControlMessage(final Object message) {
         return message instanceof ControlMessage;
     }
@@ -69,9 +69,11 @@ public class DataflowSelector extends DataflowProcessor {
         final List inputs = extractInputs(channels);
         final List outputs = extractOutputs(channels);
 
-        if (shouldBeMultiThreaded(channels)) {
+        if (shouldBatch(channels)) {
+            this.actor = new BatchingDataflowSelectorActor(this, group, outputs, inputs, (Closure) code.clone(), extractBatchSize(channels), extractMaxBatchDelay(channels));
+        } else if (shouldBeMultiThreaded(channels)) {
             checkMaxForks(channels);
-            this.actor = new ForkingDataflowSelectorActor(this, group, outputs, inputs, (Closure) code.clone(), (Integer) channels.get(MAX_FORKS));
+            this.actor = new ForkingDataflowSelectorActor(this, group, outputs, inputs, (Closure) code.clone(), (Integer) channels.get(MAX_FORKS), extractMinForks(channels), shouldOrder(channels));
         } else {
             this.actor = new DataflowSelectorActor(this, group, outputs, inputs, (Closure) code.clone());
         }
@@ -87,6 +89,7 @@ public class DataflowSelector extends DataflowProcessor {
             //noinspection UnusedDeclaration
             for (final Object input : inputs) guards.add(Boolean.TRUE);
         }
+        if (group != null) listeners.addAll(group.getDataflowEventListeners());
         for (final DataflowEventListener listener : listeners) {
             listener.registered(this);
         }
@@ -36,6 +36,11 @@ import java.util.List;
 class DataflowSelectorActor extends DataflowProcessorActor {
     protected final boolean passIndex;
 
+    /**
+     * Indicates a value has been requested from the inputs and hasn't arrived yet
+     */
+    private boolean selecting = false;
+
     DataflowSelectorActor(final DataflowSelector owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code) {
         super(owningOperator, group, outputs, inputs, code);
         passIndex = code.getMaximumNumberOfParameters() == 2;
@@ -45,16 +50,22 @@ class DataflowSelectorActor extends DataflowProcessorActor {
     @SuppressWarnings({"UnusedDeclaration"})
     final void afterStart() {
         super.afterStart();
-        ((DataflowSelector) owningProcessor).doSelect();
+        select();
     }
 
     @Override
-    public final void onMessage(final Object message) {
+    public void onMessage(final Object message) {
         if (message instanceof StopGently) {
             stoppingGently = true;
+            flushPendingBatch();
+            return;
+        }
+        if (message == OUTPUT_WRITTEN) {
+            continueAfterRun();
             return;
         }
         final SelectResult msg = (SelectResult) message;
+        selecting = false;
         final int index = msg.getIndex();
         Object value = msg.getValue();
 
@@ -65,13 +76,27 @@ class DataflowSelectorActor extends DataflowProcessorActor {
         }
 
         final Object verifiedValue = fireMessageArrived(value, index, false);
-        final List<Object> verifiedValues = owningProcessor.fireBeforeRun(Arrays.asList(verifiedValue));
 
-        startTask(index, verifiedValues.get(0));
+        valueSelected(index, verifiedValue);
+        continueAfterRun();
+    }
+
+    /**
+     * Stops gently or selects the next value, once all outputs of the run have been written
+     */
+    final void continueAfterRun() {
+        if (!outputsWritten()) return;
         if (stoppingGently) {
+            flushPendingBatch();
+            if (!outputsWritten()) return;
             stop();
         }
-        if (!hasBeenStopped()) ((DataflowSelector) owningProcessor).doSelect();
+        if (!hasBeenStopped() && !selecting) select();
+    }
+
+    private void select() {
+        selecting = true;
+        ((DataflowSelector) owningProcessor).doSelect();
     }
 
     private void handlePoisonPillInSelector(final int index, final Object value) {
@@ -82,13 +107,44 @@ class DataflowSelectorActor extends DataflowProcessorActor {
             selector.setGuard(index, false);
             if (selector.allGuardsClosed()) checkPoison(value);
             else {
-                if (!hasBeenStopped()) ((DataflowSelector) owningProcessor).doSelect();
+                if (!hasBeenStopped()) select();
             }
         }
     }
 
-    @SuppressWarnings({"CatchGenericClass"})
+    /**
+     * Notifies the listeners and runs the body with a value selected from the inputs
+     *
+     * @param index The index of the input the value came from
+     * @param value The selected value
+     */
+    void valueSelected(final int index, final Object value) {
+        startTask(index, fireBeforeRun(value));
+    }
+
     void startTask(final int index, final Object result) {
+        runBody(result, index);
+    }
+
+    /**
+     * Notifies the listeners that the body is about to run with the given value
+     *
+     * @param value The value to pass to the body
+     * @return The value to pass to the body, as possibly altered by the listeners
+     */
+    final Object fireBeforeRun(final Object value) {
+        return owningProcessor.fireBeforeRun(Arrays.asList(value)).get(0);
+    }
+
+    /**
+     * Runs the body
+     *
+     * @param result The value to pass to the body
+     * @param index  The index of the input the value came from, passed to bodies accepting two arguments
+     */
+    @SuppressWarnings({"CatchGenericClass"})
+    final void runBody(final Object result, final Object index) {
+        final long startTime = System.nanoTime();
         try {
             if (passIndex) {
                 code.call(new Object[]{result, index});
@@ -98,7 +154,7 @@ class DataflowSelectorActor extends DataflowProcessorActor {
         } catch (Throwable e) {
             reportException(e);
         } finally {
-            owningProcessor.fireAfterRun(Arrays.asList(result));
+            owningProcessor.fireAfterRun(Arrays.asList(result), System.nanoTime() - startTime);
         }
     }
 }
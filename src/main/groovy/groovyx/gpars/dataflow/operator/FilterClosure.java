@@ -19,10 +19,14 @@ package groovyx.gpars.dataflow.operator;
 import groovy.lang.Closure;
 import org.codehaus.groovy.runtime.NullObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Used by the filter() method to wrap the supplied closure and use it for filtering data.
  * This wrapper closure returns the original data, if the supplied function returns true.
  * A NullObject.getNullObject() value is return to indicate the current piece of data should be filtered out.
+ * Batching operators pass lists of values, which get filtered element by element.
  *
  * @author Vaclav Pech
  */
@@ -52,6 +56,7 @@ public final class FilterClosure<V> extends Closure {
 
     @Override
     public Object call(final Object arguments) {
+        if (arguments instanceof List && isBatching()) return filterBatch((List<?>) arguments);
         final boolean decision = wiseMan.call(arguments);
         return decision ? arguments : NullObject.getNullObject();
     }
@@ -59,6 +64,7 @@ public final class FilterClosure<V> extends Closure {
     @SuppressWarnings({"OverloadedVarargsMethod"})
     @Override
     public Object call(final Object... args) {
+        if (args.length == 1 && args[0] instanceof List && isBatching()) return filterBatch((List<?>) args[0]);
         final boolean decision = wiseMan.call(args);
         return decision ? args[0] : NullObject.getNullObject();
     }
@@ -68,4 +74,17 @@ public final class FilterClosure<V> extends Closure {
         final boolean decision = wiseMan.call();
         return decision ? null : NullObject.getNullObject();
     }
+
+    private boolean isBatching() {
+        final Object delegate = getDelegate();
+        return delegate instanceof DataflowProcessor && ((DataflowProcessor) delegate).isBatching();
+    }
+
+    private List<Object> filterBatch(final List<?> batch) {
+        final List<Object> result = new ArrayList<Object>(batch.size());
+        for (final Object value : batch) {
+            if (wiseMan.call(value)) result.add(value);
+        }
+        return result;
+    }
 }
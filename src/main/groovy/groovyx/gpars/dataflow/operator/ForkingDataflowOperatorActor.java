@@ -18,6 +18,7 @@ package groovyx.gpars.dataflow.operator;
 
 
 import groovy.lang.Closure;
+import groovyx.gpars.dataflow.DataflowWriteChannel;
 import groovyx.gpars.group.PGroup;
 import groovyx.gpars.scheduler.Pool;
 
@@ -28,6 +29,8 @@ import java.util.concurrent.Semaphore;
  * An operator's internal actor. Repeatedly polls inputs and once they're all available it performs the operator's body.
  * The operator's body is executed in as a separate task, allowing multiple copies of the body to be run concurrently.
  * The maxForks property guards the maximum number or concurrently run copies.
+ * With the minForks property set, the number of concurrently run copies adapts to the load between minForks and maxForks.
+ * With the ordered flag set, the values bound by the copies are released to the outputs in the order the inputs were read.
  *
  * @author Vaclav Pech
  */
@@ -36,42 +39,80 @@ final class ForkingDataflowOperatorActor extends DataflowOperatorActor {
     private final Semaphore semaphore;
     private final Pool threadPool;
     private final int maxForks;
+    private final OrderedOutputs orderedOutputs;
+    private final AdaptiveForks adaptiveForks;
 
-    ForkingDataflowOperatorActor(final DataflowOperator owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int maxForks) {
+    ForkingDataflowOperatorActor(final DataflowOperator owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int maxForks, final int minForks, final boolean ordered) {
         super(owningOperator, group, outputs, inputs, code);
         this.maxForks = maxForks;
-        this.semaphore = new Semaphore(maxForks);
         this.threadPool = group.getThreadPool();
+        this.adaptiveForks = minForks < maxForks ? new AdaptiveForks(owningOperator, inputs, threadPool, minForks, maxForks) : null;
+        this.semaphore = adaptiveForks != null ? adaptiveForks.getSemaphore() : new Semaphore(maxForks);
+        this.orderedOutputs = ordered ? new OrderedOutputs(semaphore, maxForks) : null;
     }
 
     @Override
-    void startTask(final List<Object> results) {
+    void startTask(final Object[] arguments, final List<Object> results) {
+        final Object[] copy = arguments.clone();
         try {
             semaphore.acquire();
         } catch (InterruptedException e) {
             throw new IllegalStateException(CANNOT_OBTAIN_THE_SEMAPHORE_TO_FORK_OPERATOR_S_BODY, e);
         }
+        if (orderedOutputs != null) {
+            startOrderedTask(copy, results);
+            return;
+        }
         threadPool.execute(new Runnable() {
             @Override
             public void run() {
+                final long startTime = System.nanoTime();
                 try {
-                    ForkingDataflowOperatorActor.super.startTask(results);
+                    ForkingDataflowOperatorActor.super.startTask(copy, results);
                 } finally {
                     semaphore.release();
+                    runFinished(startTime);
+                }
+            }
+        });
+    }
+
+    private void startOrderedTask(final Object[] arguments, final List<Object> results) {
+        final OrderedOutputs.Run run = orderedOutputs.start();
+        threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.nanoTime();
+                orderedOutputs.enter(run);
+                try {
+                    ForkingDataflowOperatorActor.super.startTask(arguments, results);
+                } finally {
+                    orderedOutputs.exit(run);
+                    runFinished(startTime);
                 }
             }
         });
     }
 
+    private void runFinished(final long startTime) {
+        if (adaptiveForks != null) adaptiveForks.runFinished(startTime);
+    }
+
+    @Override
+    boolean deferOutput(final DataflowWriteChannel<Object> channel, final Object value) {
+        return orderedOutputs != null && orderedOutputs.defer(channel, value);
+    }
+
     @Override
     protected void forwardPoisonPill(final Object data) {
+        final int forks = adaptiveForks != null ? adaptiveForks.freeze() : maxForks;
         try {
-            semaphore.acquire(maxForks);
+            semaphore.acquire(forks);
         } catch (InterruptedException e) {
             owningProcessor.reportError(e);
         } finally {
             super.forwardPoisonPill(data);
-            semaphore.release(maxForks);
+            semaphore.release(forks);
         }
     }
 }
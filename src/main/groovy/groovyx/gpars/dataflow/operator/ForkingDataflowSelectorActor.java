@@ -17,6 +17,7 @@
 package groovyx.gpars.dataflow.operator;
 
 import groovy.lang.Closure;
+import groovyx.gpars.dataflow.DataflowWriteChannel;
 import groovyx.gpars.group.PGroup;
 import groovyx.gpars.scheduler.Pool;
 
@@ -27,6 +28,8 @@ import java.util.concurrent.Semaphore;
  * An selector's internal actor. Repeatedly polls inputs and once they're all available it performs the selector's body.
  * The selector's body is executed in as a separate task, allowing multiple copies of the body to be run concurrently.
  * The maxForks property guards the maximum number or concurrently run copies.
+ * With the minForks property set, the number of concurrently run copies adapts to the load between minForks and maxForks.
+ * With the ordered flag set, the values bound by the copies are released to the outputs in the order the inputs were read.
  *
  * @author Vaclav Pech
  */
@@ -35,13 +38,17 @@ final class ForkingDataflowSelectorActor extends DataflowSelectorActor {
     private final Semaphore semaphore;
     private final Pool threadPool;
     private final int maxForks;
+    private final OrderedOutputs orderedOutputs;
+    private final AdaptiveForks adaptiveForks;
 
     @SuppressWarnings({"ConstructorWithTooManyParameters"})
-    ForkingDataflowSelectorActor(final DataflowSelector owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int maxForks) {
+    ForkingDataflowSelectorActor(final DataflowSelector owningOperator, final PGroup group, final List outputs, final List inputs, final Closure code, final int maxForks, final int minForks, final boolean ordered) {
         super(owningOperator, group, outputs, inputs, code);
         this.maxForks = maxForks;
-        this.semaphore = new Semaphore(maxForks);
         this.threadPool = group.getThreadPool();
+        this.adaptiveForks = minForks < maxForks ? new AdaptiveForks(owningOperator, inputs, threadPool, minForks, maxForks) : null;
+        this.semaphore = adaptiveForks != null ? adaptiveForks.getSemaphore() : new Semaphore(maxForks);
+        this.orderedOutputs = ordered ? new OrderedOutputs(semaphore, maxForks) : null;
     }
 
     @Override
@@ -51,27 +58,60 @@ final class ForkingDataflowSelectorActor extends DataflowSelectorActor {
         } catch (InterruptedException e) {
             throw new IllegalStateException(CANNOT_OBTAIN_THE_SEMAPHORE_TO_FORK_OPERATOR_S_BODY, e);
         }
+        if (orderedOutputs != null) {
+            startOrderedTask(index, result);
+            return;
+        }
         threadPool.execute(new Runnable() {
             @Override
             public void run() {
+                final long startTime = System.nanoTime();
                 try {
                     ForkingDataflowSelectorActor.super.startTask(index, result);
                 } finally {
                     semaphore.release();
+                    runFinished(startTime);
                 }
             }
         });
     }
 
+    private void startOrderedTask(final int index, final Object result) {
+        final OrderedOutputs.Run run = orderedOutputs.start();
+        threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.nanoTime();
+                orderedOutputs.enter(run);
+                try {
+                    ForkingDataflowSelectorActor.super.startTask(index, result);
+                } finally {
+                    orderedOutputs.exit(run);
+                    runFinished(startTime);
+                }
+            }
+        });
+    }
+
+    private void runFinished(final long startTime) {
+        if (adaptiveForks != null) adaptiveForks.runFinished(startTime);
+    }
+
+    @Override
+    boolean deferOutput(final DataflowWriteChannel<Object> channel, final Object value) {
+        return orderedOutputs != null && orderedOutputs.defer(channel, value);
+    }
+
     @Override
     protected void forwardPoisonPill(final Object data) {
+        final int forks = adaptiveForks != null ? adaptiveForks.freeze() : maxForks;
         try {
-            semaphore.acquire(maxForks);
+            semaphore.acquire(forks);
         } catch (InterruptedException e) {
             owningProcessor.reportError(e);
         } finally {
             super.forwardPoisonPill(data);
-            semaphore.release(maxForks);
+            semaphore.release(forks);
         }
     }
 }
@@ -0,0 +1,109 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovy.lang.Closure;
+import org.codehaus.groovy.runtime.NullObject;
+
+import java.util.Arrays;
+
+/**
+ * Used by fusing pipelines to run the closures of consecutive stages back to back inside a single operator's body.
+ * The result of each closure is passed to the next one. A NullObject.getNullObject() value returned from any of the closures,
+ * e.g. from a filter, stops the processing of the current piece of data.
+ * The operator gets created with the first stage and more stages can be appended until the operator processes its first value.
+ */
+final class FusedClosure extends Closure {
+    private static final Class[] PARAMETER_TYPES = {Object.class};
+
+    private volatile Closure[] stages;
+
+    /**
+     * Set once the operator has started processing values, after which no more stages can be appended
+     */
+    private volatile boolean started = false;
+
+    FusedClosure(final Closure stage) {
+        super(null, null);
+        this.stages = new Closure[]{stage};
+    }
+
+    /**
+     * Adds a stage to run after the current ones, unless the operator has started processing values already
+     *
+     * @param stage The closure of the stage
+     * @return True, if the stage has been appended, false if a new operator is needed for the stage
+     */
+    synchronized boolean append(final Closure stage) {
+        if (started) return false;
+        if (getDelegate() != null) stage.setDelegate(getDelegate());
+        stage.setResolveStrategy(getResolveStrategy());
+        final Closure[] extended = Arrays.copyOf(stages, stages.length + 1);
+        extended[stages.length] = stage;
+        stages = extended;
+        return true;
+    }
+
+    private synchronized void start() {
+        started = true;
+    }
+
+    @Override
+    public int getMaximumNumberOfParameters() {
+        return 1;
+    }
+
+    @SuppressWarnings({"ReturnOfCollectionOrArrayField"})
+    @Override
+    public Class[] getParameterTypes() {
+        return PARAMETER_TYPES;
+    }
+
+    @Override
+    public synchronized void setDelegate(final Object delegate) {
+        super.setDelegate(delegate);
+        for (final Closure stage : stages) {
+            stage.setDelegate(delegate);
+        }
+    }
+
+    @Override
+    public synchronized void setResolveStrategy(final int resolveStrategy) {
+        super.setResolveStrategy(resolveStrategy);
+        for (final Closure stage : stages) {
+            stage.setResolveStrategy(resolveStrategy);
+        }
+    }
+
+    @Override
+    public Object call(final Object arguments) {
+        if (!started) start();
+        Object value = arguments;
+        for (final Closure stage : stages) {
+            value = stage.call(value);
+            if (value == NullObject.getNullObject()) break;
+        }
+        return value;
+    }
+
+    @SuppressWarnings({"OverloadedVarargsMethod"})
+    @Override
+    public Object call(final Object... args) {
+        return call(args[0]);
+    }
+}
@@ -0,0 +1,133 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator;
+
+import groovyx.gpars.dataflow.DataflowWriteChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A reorder buffer for processors with maxForks greater than 1 and the ordered flag set.
+ * Each run of the body gets a sequence number in the order the inputs were read.
+ * Values bound by the body are held back until all the runs with lower sequence numbers have released theirs.
+ * The permit of a run is only returned to the semaphore once its outputs have been released,
+ * so the number of runs waiting in the buffer never exceeds maxForks and a slow run holds back new ones.
+ */
+final class OrderedOutputs {
+    private final Semaphore semaphore;
+
+    /**
+     * Runs, which have started and haven't released their outputs yet, indexed by their sequence number modulo the buffer size
+     */
+    private final Run[] runs;
+    private final ThreadLocal<Run> currentRun = new ThreadLocal<Run>();
+
+    /**
+     * Only accessed from the actor's thread
+     */
+    private long nextSequence = 0L;
+
+    private long nextToRelease = 0L;
+
+    OrderedOutputs(final Semaphore semaphore, final int maxForks) {
+        this.semaphore = semaphore;
+        this.runs = new Run[maxForks];
+    }
+
+    /**
+     * Registers a new run. Must be called from the actor's thread after the run's permit has been acquired.
+     *
+     * @return The run to pass to enter() and exit() on the thread running the body
+     */
+    Run start() {
+        final Run run = new Run(nextSequence);
+        nextSequence++;
+        synchronized (this) {
+            runs[(int) (run.sequence % runs.length)] = run;
+        }
+        return run;
+    }
+
+    /**
+     * Makes the values bound by the current thread go to the given run
+     *
+     * @param run The run the current thread is about to perform
+     */
+    void enter(final Run run) {
+        currentRun.set(run);
+    }
+
+    /**
+     * Holds the value back, if the current thread is performing a run
+     *
+     * @param channel The channel to bind the value to
+     * @param value   The value to bind
+     * @return True, if the value will be bound later
+     */
+    boolean defer(final DataflowWriteChannel<Object> channel, final Object value) {
+        final Run run = currentRun.get();
+        if (run == null) return false;
+        run.channels.add(channel);
+        run.values.add(value);
+        return true;
+    }
+
+    /**
+     * Marks the run as finished and releases the outputs of all finished runs, which are next in order
+     *
+     * @param run The run performed by the current thread
+     */
+    synchronized void exit(final Run run) {
+        currentRun.remove();
+        run.finished = true;
+        while (true) {
+            final int index = (int) (nextToRelease % runs.length);
+            final Run head = runs[index];
+            if (head == null || head.sequence != nextToRelease || !head.finished) return;
+            runs[index] = null;
+            nextToRelease++;
+            try {
+                head.release();
+            } finally {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * The values bound by a single run of the body
+     */
+    static final class Run {
+        private final long sequence;
+        private final List<DataflowWriteChannel<Object>> channels = new ArrayList<DataflowWriteChannel<Object>>(1);
+        private final List<Object> values = new ArrayList<Object>(1);
+        private boolean finished = false;
+
+        private Run(final long sequence) {
+            this.sequence = sequence;
+        }
+
+        private void release() {
+            for (int i = 0; i < channels.size(); i++) {
+                channels.get(i).bind(values.get(i));
+            }
+        }
+    }
+}
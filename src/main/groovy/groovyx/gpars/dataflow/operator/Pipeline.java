@@ -30,6 +30,13 @@ import java.util.Map;
 /**
  * A builder for operator pipelines. The greatest benefit of using the Pipeline class compared to chaining the channels directly is
  * the ease with which a custom thread pool/group can be applied to all the operators along the constructed chain.
+ * <p>
+ * In the fusion mode, turned on by the fuse() method, consecutive chainWith() and filter() stages without parameters are run
+ * back to back by a single operator, saving the intermediate channels and the handoffs between operators.
+ * The fused operator gets created right away with the first of the stages, the subsequent ones get appended to it.
+ * A stage starts a new operator, if the current one has already started processing values, or once the output
+ * of the pipeline has been exposed - by getOutput(), tap() or a stage, which cannot be fused.
+ * </p>
  *
  * @author Vaclav Pech
  */
@@ -37,6 +44,12 @@ public final class Pipeline {
     private final PGroup group;
     private DataflowReadChannel output;
     private boolean complete = false;
+    private boolean fusing = false;
+
+    /**
+     * The body of the fused operator, which produces the current output of the pipeline, null if no stages can be appended to it
+     */
+    private FusedClosure fused = null;
 
     public Pipeline(final DataflowReadChannel output) {
         this(Dataflow.retrieveCurrentDFPGroup(), output);
@@ -59,6 +72,7 @@ public final class Pipeline {
     }
 
     public DataflowReadChannel getOutput() {
+        fused = null;
         return output;
     }
 
@@ -66,10 +80,55 @@ public final class Pipeline {
         return complete;
     }
 
-    private void checkState() {
+    public boolean isFusing() {
+        return fusing;
+    }
+
+    /**
+     * Turns on the fusion mode for the stages added to the pipeline subsequently
+     *
+     * @return This Pipeline instance
+     */
+    public Pipeline fuse() {
+        checkComplete();
+        fusing = true;
+        return this;
+    }
+
+    private void checkComplete() {
         if (complete) throw new IllegalStateException("The pipeline has been closed already.");
     }
 
+    private void checkState() {
+        checkComplete();
+        fused = null;
+    }
+
+    /**
+     * Appends the stage to the current fused operator or creates a new fused operator for it
+     *
+     * @param stage The closure of the stage
+     */
+    private void fuseStage(final Closure stage) {
+        checkComplete();
+        if (fused != null && fused.append(stage)) return;
+        fused = new FusedClosure(stage);
+        output = output.chainWith(group, fused);
+    }
+
+    /**
+     * Stages with no parameters other than maxForks of 1 and a single-argument closure can be fused
+     */
+    private boolean canFuse(final Map<String, Object> params, final Closure<?> closure) {
+        if (!fusing || closure.getMaximumNumberOfParameters() != 1) return false;
+        if (params == null) return true;
+        for (final Map.Entry<String, Object> param : params.entrySet()) {
+            if (!DataflowProcessor.MAX_FORKS.equals(param.getKey()) || !Integer.valueOf(1).equals(param.getValue()))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Creates and attaches a new operator
      *
@@ -78,6 +137,10 @@ public final class Pipeline {
      * @return This Pipeline instance
      */
     public <V> Pipeline chainWith(final Closure<V> closure) {
+        if (canFuse(null, closure)) {
+            fuseStage(closure);
+            return this;
+        }
         checkState();
         output = output.chainWith(group, closure);
         return this;
@@ -86,12 +149,17 @@ public final class Pipeline {
     /**
      * Creates and attaches a new operator
      *
-     * @param params  Additional parameters to initialize the operator with (e.g. listeners or maxForks)
+     * @param params  Additional parameters to initialize the operator with (e.g. listeners, maxForks or batchSize).
+     *                With batchSize the closure receives lists of values and may return a list of results to bind at once.
      * @param closure The function to invoke on all incoming values as part of the new operator's body
      * @param <V>     The type of values returned from the supplied closure
      * @return This Pipeline instance
      */
     public <V> Pipeline chainWith(final Map<String, Object> params, final Closure<V> closure) {
+        if (canFuse(params, closure)) {
+            fuseStage(closure);
+            return this;
+        }
         checkState();
         output = output.chainWith(group, params, closure);
         return this;
@@ -115,6 +183,10 @@ public final class Pipeline {
      * @return This Pipeline instance
      */
     public Pipeline filter(final Closure<Boolean> closure) {
+        if (canFuse(null, closure)) {
+            fuseStage(new FilterClosure(closure));
+            return this;
+        }
         checkState();
         output = output.filter(group, closure);
         return this;
@@ -123,11 +195,15 @@ public final class Pipeline {
     /**
      * Creates and attaches a new operator that will filter data using the provided closure
      *
-     * @param params  Additional parameters to initialize the operator with (e.g. listeners or maxForks)
+     * @param params  Additional parameters to initialize the operator with (e.g. listeners, maxForks or batchSize)
      * @param closure The filter function to invoke on all incoming values to decide whether to pass the value on or not
      * @return This Pipeline instance
      */
     public Pipeline filter(final Map<String, Object> params, final Closure<Boolean> closure) {
+        if (canFuse(params, closure)) {
+            fuseStage(new FilterClosure(closure));
+            return this;
+        }
         checkState();
         output = output.filter(group, params, closure);
         return this;
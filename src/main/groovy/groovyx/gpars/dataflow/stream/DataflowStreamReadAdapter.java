@@ -116,6 +116,46 @@ public class DataflowStreamReadAdapter<T> implements DataflowReadChannel<T> {
         }
     }
 
+    /**
+     * Moves the values already bound in the stream, at most maxElements of them, to the supplied collection.
+     * Never waits for values to arrive.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @return The number of values moved
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    public int drainTo(final Collection<? super T> target, final int maxElements) throws InterruptedException {
+        int count = 0;
+        while (count < maxElements && isBound()) {
+            target.add(getVal());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the values already bound in the stream, at most maxElements of them, to the supplied collection.
+     * If there are no values, waits up to the given timeout for the first value to arrive.
+     *
+     * @param target      The collection to add the values to
+     * @param maxElements The maximum number of values to move
+     * @param timeout     The timeout value
+     * @param units       Units for the timeout
+     * @return The number of values moved, zero if no value arrived in time
+     * @throws InterruptedException If the current thread is interrupted
+     */
+    public int drainTo(final Collection<? super T> target, final int maxElements, final long timeout, final TimeUnit units) throws InterruptedException {
+        if (maxElements <= 0) return 0;
+        final int drained = drainTo(target, maxElements);
+        if (drained > 0) return drained;
+        final StreamCore<T> originalHead = head;
+        final T value = getVal(timeout, units);
+        if (head == originalHead) return 0;
+        target.add(value);
+        return 1 + drainTo(target, maxElements - 1);
+    }
+
     private boolean shouldReportTimeout() {
         final DataflowVariable<T> firstDFV = head.getFirstDFV();
         if (!firstDFV.isBound()) return true;
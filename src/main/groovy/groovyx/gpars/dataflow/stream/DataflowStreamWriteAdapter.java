@@ -24,6 +24,7 @@ import groovyx.gpars.remote.RemoteHost;
 import groovyx.gpars.serial.SerialMsg;
 import groovyx.gpars.serial.WithSerialId;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -74,6 +75,35 @@ public class DataflowStreamWriteAdapter<T> extends WithSerialId implements Dataf
         notifyRemote(value);
     }
 
+    /**
+     * Binds all the supplied values in the given order. The head is moved past all of them at once,
+     * so values from concurrent writers cannot interleave with the batch.
+     *
+     * @param values The values to bind
+     */
+    public final void bindAll(final Collection<? extends T> values) {
+        StreamCore<T> current = updateHead(values.size());
+        for (final T value : values) {
+            current.leftShift(value);
+            notifyRemote(value);
+            current = (StreamCore<T>) current.getRest();
+        }
+    }
+
+    /**
+     * Moves head past the given number of elements
+     *
+     * @param count The number of elements to skip
+     * @return The old head
+     */
+    private synchronized StreamCore<T> updateHead(final int count) {
+        final StreamCore<T> oldHead = head;
+        for (int i = 0; i < count; i++) {
+            head = (StreamCore<T>) head.getRest();
+        }
+        return oldHead;
+    }
+
     /**
      * Moves head
      *
@@ -24,9 +24,15 @@ import groovyx.gpars.actor.BlockingActor;
 import groovyx.gpars.actor.DefaultActor;
 import groovyx.gpars.actor.DynamicDispatchActor;
 import groovyx.gpars.actor.ReactiveActor;
+import groovyx.gpars.actor.Router;
+import groovyx.gpars.actor.RoutingStrategy;
 import groovyx.gpars.actor.StaticDispatchActor;
 import groovyx.gpars.actor.impl.RunnableBackedBlockingActor;
 import groovyx.gpars.agent.Agent;
+import groovyx.gpars.agent.DurableAgent;
+import groovyx.gpars.agent.ShardedAgent;
+import groovyx.gpars.agent.ShardedCounter;
+import groovyx.gpars.agent.ShardedMap;
 import groovyx.gpars.dataflow.Dataflow;
 import groovyx.gpars.dataflow.DataflowReadChannel;
 import groovyx.gpars.dataflow.DataflowVariable;
@@ -35,18 +41,27 @@ import groovyx.gpars.dataflow.LazyDataflowVariable;
 import groovyx.gpars.dataflow.Promise;
 import groovyx.gpars.dataflow.Select;
 import groovyx.gpars.dataflow.SelectableChannel;
+import groovyx.gpars.dataflow.operator.DataflowEventListener;
 import groovyx.gpars.dataflow.operator.DataflowOperator;
 import groovyx.gpars.dataflow.operator.DataflowPrioritySelector;
 import groovyx.gpars.dataflow.operator.DataflowProcessor;
 import groovyx.gpars.dataflow.operator.DataflowProcessorAtomicBoundAllClosure;
 import groovyx.gpars.dataflow.operator.DataflowSelector;
 import groovyx.gpars.scheduler.Pool;
+import groovyx.gpars.util.DefaultMessageQueue;
+import groovyx.gpars.util.MessageQueue;
+import groovyx.gpars.util.MessageQueueFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static java.util.Arrays.asList;
 
@@ -66,6 +81,11 @@ public abstract class PGroup {
      */
     private final Pool threadPool;
 
+    /**
+     * Listeners to attach to all dataflow operators and selectors subsequently created by the group
+     */
+    private final List<DataflowEventListener> dataflowEventListeners = new CopyOnWriteArrayList<DataflowEventListener>();
+
     public Pool getThreadPool() {
         return threadPool;
     }
@@ -79,6 +99,53 @@ public abstract class PGroup {
         this.threadPool = threadPool;
     }
 
+    /**
+     * Creates message queues for actors and agents of the group, null means DefaultMessageQueue will be used
+     */
+    private volatile MessageQueueFactory messageQueueFactory = null;
+
+    public MessageQueueFactory getMessageQueueFactory() {
+        return messageQueueFactory;
+    }
+
+    /**
+     * Sets the factory to create message queues for actors and agents subsequently created by or assigned to the group.
+     * Actors and agents already running keep their current message queues.
+     *
+     * @param messageQueueFactory The factory to use or null to use the DefaultMessageQueue
+     */
+    public void setMessageQueueFactory(final MessageQueueFactory messageQueueFactory) {
+        this.messageQueueFactory = messageQueueFactory;
+    }
+
+    public List<DataflowEventListener> getDataflowEventListeners() {
+        return Collections.unmodifiableList(dataflowEventListeners);
+    }
+
+    /**
+     * Attaches the listener to all dataflow operators and selectors subsequently created by the group, in addition to their own listeners.
+     * Processors already running keep their current listeners.
+     *
+     * @param listener The listener to add
+     */
+    public void addDataflowEventListener(final DataflowEventListener listener) {
+        dataflowEventListeners.add(listener);
+    }
+
+    public void removeDataflowEventListener(final DataflowEventListener listener) {
+        dataflowEventListeners.remove(listener);
+    }
+
+    /**
+     * Creates a new message queue for an actor or agent belonging to the group.
+     *
+     * @return A message queue created by the group's message queue factory or a new DefaultMessageQueue, if no factory has been set
+     */
+    public final MessageQueue createMessageQueue() {
+        final MessageQueueFactory factory = messageQueueFactory;
+        return factory != null ? factory.createMessageQueue() : new DefaultMessageQueue();
+    }
+
     /**
      * Creates a new instance of DefaultActor, using the passed-in runnable/closure as the body of the actor's act() method.
      * The created actor will belong to the pooled parallel group.
@@ -222,6 +289,53 @@ public abstract class PGroup {
         return actor;
     }
 
+    /**
+     * Creates a router spreading messages among StaticDispatchActors, each of which handles its messages with the supplied code.
+     *
+     * @param size     The initial number of worker actors
+     * @param strategy The strategy to pick workers for messages
+     * @param code     The closure specifying the only statically dispatched message handler of the workers.
+     * @return The new started router
+     */
+    public final Router router(final int size, final RoutingStrategy strategy, @DelegatesTo(Actor.class) final Closure code) {
+        final Router router = new Router(this, strategy, size, new Callable<StaticDispatchActor<Object>>() {
+            @Override
+            public StaticDispatchActor<Object> call() {
+                final Closure workerCode = (Closure) code.clone();
+                final StaticDispatchActor<Object> actor = new StaticDispatchActor<Object>() {
+                    @Override
+                    public void onMessage(final Object message) {
+                        workerCode.call(message);
+                    }
+                };
+                workerCode.setDelegate(actor);
+                workerCode.setResolveStrategy(Closure.DELEGATE_FIRST);
+                return actor;
+            }
+        });
+        router.start();
+        return router;
+    }
+
+    /**
+     * Creates a router spreading messages among DynamicDispatchActors, each of which registers its message handlers through the supplied code.
+     *
+     * @param size     The initial number of worker actors
+     * @param strategy The strategy to pick workers for messages
+     * @param code     The closure specifying individual message handlers of the workers.
+     * @return The new started router
+     */
+    public final Router dynamicRouter(final int size, final RoutingStrategy strategy, @DelegatesTo(Actor.class) final Closure code) {
+        final Router router = new Router(this, strategy, size, new Callable<DynamicDispatchActor>() {
+            @Override
+            public DynamicDispatchActor call() {
+                return new DynamicDispatchActor().become(code);
+            }
+        });
+        router.start();
+        return router;
+    }
+
     /**
      * Creates an agent instance initialized with the given state
      *
@@ -230,7 +344,7 @@ public abstract class PGroup {
      */
     public final <T> Agent<T> agent(final T state) {
         final Agent<T> safe = new Agent<T>(state);
-        safe.attachToThreadPool(threadPool);
+        safe.setPGroup(this);
         return safe;
     }
 
@@ -243,7 +357,7 @@ public abstract class PGroup {
      */
     public final <T> Agent<T> agent(final T state, final Closure copy) {
         final Agent<T> safe = new Agent<T>(state, copy);
-        safe.attachToThreadPool(threadPool);
+        safe.setPGroup(this);
         return safe;
     }
 
@@ -272,6 +386,53 @@ public abstract class PGroup {
         return safe;
     }
 
+    /**
+     * Creates an agent, which keeps a journal of processed messages and snapshots of its state in the given directory.
+     * Recovers the state saved in the directory previously, if there is some.
+     *
+     * @param directory The directory to store the journal and snapshots in
+     * @param state     The initial internal state, if there is no state saved in the directory
+     * @return The created instance
+     * @throws IOException If the saved state cannot be read or the journal cannot be opened
+     */
+    public final <T extends Serializable> DurableAgent<T> durableAgent(final File directory, final T state) throws IOException {
+        final DurableAgent<T> safe = new DurableAgent<T>(directory, state);
+        safe.setPGroup(this);
+        return safe;
+    }
+
+    /**
+     * Creates an agent spreading its state across several internal agents
+     *
+     * @param shardCount   The number of internal agents
+     * @param stateFactory A closure returning the initial state for a new shard, invoked once for each shard
+     * @param merge        A closure combining a list of shard states into the value returned by reads
+     * @return The created instance
+     */
+    public final <T> ShardedAgent<T> shardedAgent(final int shardCount, final Closure stateFactory, final Closure merge) {
+        return new ShardedAgent<T>(this, shardCount, stateFactory, merge);
+    }
+
+    /**
+     * Creates a long counter spread across several internal agents
+     *
+     * @param shardCount The number of internal agents
+     * @return The created instance
+     */
+    public final ShardedCounter shardedCounter(final int shardCount) {
+        return new ShardedCounter(this, shardCount);
+    }
+
+    /**
+     * Creates a map spread across several internal agents by the hash of the keys
+     *
+     * @param shardCount The number of internal agents
+     * @return The created instance
+     */
+    public final <K, V> ShardedMap<K, V> shardedMap(final int shardCount) {
+        return new ShardedMap<K, V>(this, shardCount);
+    }
+
     /**
      * Creates a new task assigned to a thread from the current parallel group.
      * Tasks are a lightweight version of dataflow operators, which do not define their communication channels explicitly,
@@ -19,6 +19,7 @@ package groovyx.gpars.group;
 import groovyx.gpars.scheduler.DefaultPool;
 import groovyx.gpars.scheduler.FJPool;
 import groovyx.gpars.scheduler.Pool;
+import groovyx.gpars.scheduler.VirtualThreadPool;
 import java.util.concurrent.ForkJoinPool;
 
 import java.util.concurrent.ThreadPoolExecutor;
@@ -63,4 +64,15 @@ public abstract class PGroupBuilder {
         return new DefaultPGroup(new DefaultPool(pool));
     }
 
+    /**
+     * Builds a PGroup instance running its actors, tasks and dataflow tasks in virtual threads.
+     * Requires Java 21 or newer.
+     *
+     * @return The group wrapping a new VirtualThreadPool
+     * @throws UnsupportedOperationException If the JVM doesn't support virtual threads
+     */
+    public static PGroup createVirtualThreadGroup() {
+        return new DefaultPGroup(new VirtualThreadPool());
+    }
+
 }
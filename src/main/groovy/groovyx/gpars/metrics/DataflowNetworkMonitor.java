@@ -0,0 +1,545 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.metrics;
+
+import groovyx.gpars.dataflow.DataflowReadChannel;
+import groovyx.gpars.dataflow.operator.DataflowEventAdapter;
+import groovyx.gpars.dataflow.operator.DataflowProcessor;
+import groovyx.gpars.group.PGroup;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a network of dataflow operators and selectors, recording per processor the number of runs, throughput,
+ * the distribution of body latencies, the time spent waiting for full bounded outputs and the lengths of the input channels.
+ * The monitor is a dataflow event listener, which can be attached to a parallel group with attachTo() to watch all processors
+ * the group creates subsequently, to running processors with monitor() or passed to processors in the listeners parameter.
+ * Stopped processors are no longer watched and disappear from the metrics and the topology.
+ * <p>
+ * The topology of the network, the processors and the channels connecting them, can be exported together with the live metrics
+ * as JSON or in the DOT format of Graphviz, programmatically or through JMX, once registered with registerMBean().
+ * Channels are matched by identity, so processors connected through the read and write sides of a broadcast aren't linked.
+ * The export highlights the bottleneck, the processor with the highest utilisation,
+ * and the critical path, the chain of connected processors with the longest total mean body latency.
+ * </p>
+ * <p>
+ * Body latencies are measured by the processors around the run of the body and reported with the afterRun() event.
+ * They don't include waiting for a free fork. For batching processors the latency spans the run of the body over the whole batch.
+ * </p>
+ */
+public final class DataflowNetworkMonitor extends DataflowEventAdapter implements DataflowNetworkMonitorMBean {
+    private final String name;
+    private final ConcurrentMap<DataflowProcessor, ProcessorStats> processors = new ConcurrentHashMap<DataflowProcessor, ProcessorStats>();
+    private final ConcurrentMap<DataflowProcessor, String> names = new ConcurrentHashMap<DataflowProcessor, String>();
+
+    /**
+     * Guarded by this
+     */
+    private int registrations = 0;
+    private volatile ObjectName objectName = null;
+
+    private static final Comparator<Map.Entry<DataflowProcessor, ProcessorStats>> REGISTRATION_ORDER = new Comparator<Map.Entry<DataflowProcessor, ProcessorStats>>() {
+        @Override
+        public int compare(final Map.Entry<DataflowProcessor, ProcessorStats> first, final Map.Entry<DataflowProcessor, ProcessorStats> second) {
+            return Integer.compare(first.getValue().registration, second.getValue().registration);
+        }
+    };
+
+    /**
+     * @param name The name to identify the monitored network by
+     */
+    public DataflowNetworkMonitor(final String name) {
+        if (name == null) throw new IllegalArgumentException("The monitor needs a name.");
+        this.name = name;
+    }
+
+    /**
+     * Watches all processors subsequently created by the group
+     *
+     * @param group The group to watch
+     * @return The monitor itself
+     */
+    public DataflowNetworkMonitor attachTo(final PGroup group) {
+        group.addDataflowEventListener(this);
+        return this;
+    }
+
+    /**
+     * Starts watching a processor
+     *
+     * @param processor The processor to watch
+     * @return The monitor itself
+     */
+    public DataflowNetworkMonitor monitor(final DataflowProcessor processor) {
+        processor.addDataflowEventListener(this);
+        return this;
+    }
+
+    /**
+     * Starts watching a processor under the given name
+     *
+     * @param processor     The processor to watch
+     * @param processorName The name to report the processor under
+     * @return The monitor itself
+     */
+    public DataflowNetworkMonitor monitor(final DataflowProcessor processor, final String processorName) {
+        setProcessorName(processor, processorName);
+        return monitor(processor);
+    }
+
+    /**
+     * Sets the name to report the processor under instead of the generated one
+     *
+     * @param processor     The processor to name
+     * @param processorName The name to use
+     */
+    public synchronized void setProcessorName(final DataflowProcessor processor, final String processorName) {
+        names.put(processor, processorName);
+        final ProcessorStats stats = processors.get(processor);
+        if (stats != null) stats.name = processorName;
+    }
+
+    @Override
+    public void registered(final DataflowProcessor processor) {
+        synchronized (this) {
+            if (processors.containsKey(processor)) return;
+            registrations++;
+            final String processorName = names.get(processor);
+            processors.put(processor, new ProcessorStats(registrations, processorName != null ? processorName : processor.getClass().getSimpleName() + '-' + registrations));
+        }
+    }
+
+    /**
+     * Stops watching the processor, so that stopped processors don't accumulate in the monitor
+     *
+     * @param processor The reporting dataflow operator/selector
+     */
+    @Override
+    public synchronized void afterStop(final DataflowProcessor processor) {
+        processors.remove(processor);
+        names.remove(processor);
+    }
+
+    @Override
+    public void afterRun(final DataflowProcessor processor, final List<Object> messages, final long runTime) {
+        final ProcessorStats stats = processors.get(processor);
+        if (stats != null) stats.finished(runTime);
+    }
+
+    /**
+     * Captures the current metrics of all the watched processors
+     *
+     * @return Immutable copies of the metrics in the order the processors were registered
+     */
+    public List<DataflowProcessorMetrics> snapshot() {
+        return snapshot(copyProcessors());
+    }
+
+    /**
+     * @return A copy of the watched processors in the order they were registered
+     */
+    private Map<DataflowProcessor, ProcessorStats> copyProcessors() {
+        final List<Map.Entry<DataflowProcessor, ProcessorStats>> entries = new ArrayList<Map.Entry<DataflowProcessor, ProcessorStats>>(processors.entrySet());
+        Collections.sort(entries, REGISTRATION_ORDER);
+        final Map<DataflowProcessor, ProcessorStats> copy = new LinkedHashMap<DataflowProcessor, ProcessorStats>(entries.size() * 2);
+        for (final Map.Entry<DataflowProcessor, ProcessorStats> entry : entries) {
+            copy.put(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    private static List<DataflowProcessorMetrics> snapshot(final Map<DataflowProcessor, ProcessorStats> copy) {
+        final long now = System.nanoTime();
+        final List<DataflowProcessorMetrics> result = new ArrayList<DataflowProcessorMetrics>(copy.size());
+        for (final Map.Entry<DataflowProcessor, ProcessorStats> entry : copy.entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey(), now));
+        }
+        return result;
+    }
+
+    /**
+     * Exports the topology of the network together with the current metrics as a JSON document.
+     * Latencies and waiting times are in microseconds.
+     *
+     * @return The JSON document
+     */
+    public String toJson() {
+        final Topology topology = new Topology();
+        final StringBuilder json = new StringBuilder(256);
+        json.append("{\"name\":").append(quote(name)).append(",\"processors\":[");
+        for (int i = 0; i < topology.metrics.size(); i++) {
+            final DataflowProcessorMetrics metrics = topology.metrics.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(quote(metrics.getId()))
+                    .append(",\"name\":").append(quote(metrics.getName()))
+                    .append(",\"type\":").append(quote(metrics.getType()))
+                    .append(",\"firings\":").append(metrics.getFirings())
+                    .append(",\"throughput\":").append(round(metrics.getThroughput()))
+                    .append(",\"utilisation\":").append(round(metrics.getUtilisation()))
+                    .append(",\"meanLatency\":").append(toMicros(metrics.getBodyLatency().getMean()))
+                    .append(",\"p99Latency\":").append(toMicros(metrics.getBodyLatency().getPercentile(99.0)))
+                    .append(",\"maxLatency\":").append(toMicros(metrics.getBodyLatency().getMax()))
+                    .append(",\"outputWaitTime\":").append(toMicros(metrics.getOutputWaitTime()))
+                    .append(",\"inputLengths\":").append(metrics.getInputLengths().toString().replace(" ", ""))
+                    .append(",\"inputs\":");
+            appendIds(json, topology.inputs.get(i));
+            json.append(",\"outputs\":");
+            appendIds(json, topology.outputs.get(i));
+            json.append('}');
+        }
+        json.append("],\"channels\":[");
+        boolean first = true;
+        for (final Object channel : topology.channelOrder) {
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"id\":").append(quote(topology.channels.get(channel)))
+                    .append(",\"type\":").append(quote(channel.getClass().getSimpleName()))
+                    .append(",\"length\":").append(lengthOf(channel)).append('}');
+        }
+        json.append("],\"bottleneck\":").append(topology.bottleneck >= 0 ? quote(topology.metrics.get(topology.bottleneck).getId()) : "null");
+        json.append(",\"criticalPath\":[");
+        for (int i = 0; i < topology.criticalPath.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(quote(topology.metrics.get(topology.criticalPath.get(i)).getId()));
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Exports the topology of the network together with the current metrics in the DOT format.
+     * Processors are drawn as boxes, channels as ellipses. The bottleneck is filled red, the critical path is drawn in bold.
+     *
+     * @return The graph description
+     */
+    public String toDot() {
+        final Topology topology = new Topology();
+        final StringBuilder dot = new StringBuilder(256);
+        dot.append("digraph ").append(quote(name)).append(" {\n");
+        for (int i = 0; i < topology.metrics.size(); i++) {
+            final DataflowProcessorMetrics metrics = topology.metrics.get(i);
+            dot.append("  ").append(metrics.getId()).append(" [shape=box,label=")
+                    .append(quote(metrics.getName() + "\\n" + Math.round(metrics.getThroughput()) + "/s, " + toMicros(metrics.getBodyLatency().getMean()) + "us"));
+            final boolean critical = topology.criticalPath.contains(i);
+            if (i == topology.bottleneck) dot.append(critical ? ",style=\"bold,filled\"" : ",style=filled").append(",fillcolor=red");
+            else if (critical) dot.append(",style=bold");
+            dot.append("];\n");
+        }
+        for (final Object channel : topology.channelOrder) {
+            dot.append("  ").append(topology.channels.get(channel)).append(" [shape=ellipse,label=")
+                    .append(quote(channel.getClass().getSimpleName() + "\\n" + lengthOf(channel))).append("];\n");
+        }
+        for (int i = 0; i < topology.metrics.size(); i++) {
+            final String id = topology.metrics.get(i).getId();
+            for (final String input : topology.inputs.get(i)) dot.append("  ").append(input).append(" -> ").append(id).append(";\n");
+            for (final String output : topology.outputs.get(i)) dot.append("  ").append(id).append(" -> ").append(output).append(";\n");
+        }
+        return dot.append("}\n").toString();
+    }
+
+    /**
+     * Registers the monitor with the platform MBean server under the groovyx.gpars:type=DataflowNetwork,name=&lt;name&gt; object name.
+     *
+     * @return The monitor itself
+     */
+    public DataflowNetworkMonitor registerMBean() {
+        synchronized (this) {
+            if (objectName != null) return this;
+            try {
+                final ObjectName newName = new ObjectName(MessagingMetrics.JMX_DOMAIN + ":type=DataflowNetwork,name=" + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+                objectName = newName;
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register the monitor " + name + " with JMX.", e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes the monitor from the platform MBean server
+     */
+    public void unregisterMBean() {
+        synchronized (this) {
+            final ObjectName localName = objectName;
+            if (localName == null) return;
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(localName)) server.unregisterMBean(localName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot unregister the monitor " + name + " from JMX.", e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    /**
+     * @return The JMX object name, or null, if the monitor has not been registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getProcessorCount() {
+        return processors.size();
+    }
+
+    @Override
+    public long getTotalFirings() {
+        long total = 0L;
+        for (final DataflowProcessorMetrics metrics : snapshot()) total += metrics.getFirings();
+        return total;
+    }
+
+    /**
+     * @return The name of the processor with the highest utilisation, null if no processor has been registered
+     */
+    @Override
+    public String getBottleneck() {
+        final Topology topology = new Topology();
+        return topology.bottleneck >= 0 ? topology.metrics.get(topology.bottleneck).getName() : null;
+    }
+
+    /**
+     * @return The names of the processors on the chain with the longest total mean body latency, separated by arrows
+     */
+    @Override
+    public String getCriticalPath() {
+        final Topology topology = new Topology();
+        final StringBuilder path = new StringBuilder();
+        for (final Integer index : topology.criticalPath) {
+            if (path.length() > 0) path.append(" -> ");
+            path.append(topology.metrics.get(index).getName());
+        }
+        return path.toString();
+    }
+
+    @Override
+    public String getJson() {
+        return toJson();
+    }
+
+    @Override
+    public String getDot() {
+        return toDot();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + snapshot();
+    }
+
+    private static void appendIds(final StringBuilder json, final List<String> ids) {
+        json.append('[');
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(quote(ids.get(i)));
+        }
+        json.append(']');
+    }
+
+    private static int lengthOf(final Object channel) {
+        return channel instanceof DataflowReadChannel ? ((DataflowReadChannel<?>) channel).length() : 0;
+    }
+
+    private static String quote(final String text) {
+        final StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < ' ') quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static double round(final double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * The processors and channels of the network with the current metrics
+     */
+    private final class Topology {
+        private final List<DataflowProcessorMetrics> metrics;
+        private final List<List<String>> inputs = new ArrayList<List<String>>();
+        private final List<List<String>> outputs = new ArrayList<List<String>>();
+        private final Map<Object, String> channels = new IdentityHashMap<Object, String>();
+
+        /**
+         * The channels in the order they have been given ids
+         */
+        private final List<Object> channelOrder = new ArrayList<Object>();
+        private final int bottleneck;
+        private final List<Integer> criticalPath;
+
+        private Topology() {
+            final Map<DataflowProcessor, ProcessorStats> copy = copyProcessors();
+            final List<DataflowProcessor> watched = new ArrayList<DataflowProcessor>(copy.keySet());
+            metrics = snapshot(copy);
+            final int size = watched.size();
+            final Map<Object, List<Integer>> readers = new IdentityHashMap<Object, List<Integer>>();
+            for (int i = 0; i < size; i++) {
+                final DataflowProcessor processor = watched.get(i);
+                inputs.add(idsOf(processor.getInputs()));
+                outputs.add(idsOf(processor.getOutputs()));
+                for (final Object input : processor.getInputs()) {
+                    List<Integer> channelReaders = readers.get(input);
+                    if (channelReaders == null) {
+                        channelReaders = new ArrayList<Integer>(1);
+                        readers.put(input, channelReaders);
+                    }
+                    channelReaders.add(i);
+                }
+            }
+
+            int busiest = -1;
+            for (int i = 0; i < size; i++) {
+                if (busiest < 0 || metrics.get(i).getUtilisation() > metrics.get(busiest).getUtilisation()) busiest = i;
+            }
+            bottleneck = busiest;
+
+            final List<List<Integer>> successors = new ArrayList<List<Integer>>(size);
+            for (int i = 0; i < size; i++) {
+                final List<Integer> next = new ArrayList<Integer>();
+                for (final Object output : watched.get(i).getOutputs()) {
+                    final List<Integer> channelReaders = readers.get(output);
+                    if (channelReaders != null) next.addAll(channelReaders);
+                }
+                successors.add(next);
+            }
+            final long[] pathLatency = new long[size];
+            final int[] pathNext = new int[size];
+            final boolean[] visited = new boolean[size];
+            final boolean[] onStack = new boolean[size];
+            int start = -1;
+            for (int i = 0; i < size; i++) {
+                longestPath(i, successors, pathLatency, pathNext, visited, onStack);
+                if (start < 0 || pathLatency[i] > pathLatency[start]) start = i;
+            }
+            final List<Integer> path = new ArrayList<Integer>();
+            for (int i = start; i >= 0; i = pathNext[i]) path.add(i);
+            criticalPath = Collections.unmodifiableList(path);
+        }
+
+        private List<String> idsOf(final List<?> processorChannels) {
+            final List<String> ids = new ArrayList<String>(processorChannels.size());
+            for (final Object channel : processorChannels) {
+                String id = channels.get(channel);
+                if (id == null) {
+                    id = "c" + (channels.size() + 1);
+                    channels.put(channel, id);
+                    channelOrder.add(channel);
+                }
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        /**
+         * Finds the chain of processors starting at the given processor with the highest total mean body latency.
+         * Edges closing cycles are ignored.
+         */
+        private void longestPath(final int index, final List<List<Integer>> successors, final long[] pathLatency, final int[] pathNext,
+                                 final boolean[] visited, final boolean[] onStack) {
+            if (visited[index]) return;
+            visited[index] = true;
+            onStack[index] = true;
+            long best = 0L;
+            int bestNext = -1;
+            for (final Integer next : successors.get(index)) {
+                if (onStack[next]) continue;
+                longestPath(next, successors, pathLatency, pathNext, visited, onStack);
+                if (bestNext < 0 || pathLatency[next] > best) {
+                    best = pathLatency[next];
+                    bestNext = next;
+                }
+            }
+            onStack[index] = false;
+            pathLatency[index] = metrics.get(index).getBodyLatency().getMean() + best;
+            pathNext[index] = bestNext;
+        }
+    }
+
+    /**
+     * The metrics of a single processor
+     */
+    private static final class ProcessorStats {
+        private final int registration;
+        private final String id;
+        private volatile String name;
+        private final long startTime = System.nanoTime();
+
+        /**
+         * Guarded by this
+         */
+        private final LatencyHistogram bodyLatency = new LatencyHistogram();
+        private long busyTime = 0L;
+
+        private ProcessorStats(final int registration, final String name) {
+            this.registration = registration;
+            this.id = "p" + registration;
+            this.name = name;
+        }
+
+        private synchronized void finished(final long latency) {
+            bodyLatency.record(latency);
+            busyTime += latency;
+        }
+
+        private DataflowProcessorMetrics snapshot(final DataflowProcessor processor, final long now) {
+            final List<Integer> inputLengths = new ArrayList<Integer>(processor.getInputs().size());
+            for (final DataflowReadChannel<?> input : processor.getInputs()) {
+                inputLengths.add(input.length());
+            }
+            final LatencyHistogram.Snapshot latency;
+            final long busy;
+            synchronized (this) {
+                latency = bodyLatency.snapshot();
+                busy = busyTime;
+            }
+            final long elapsed = Math.max(now - startTime, 1L);
+            final double throughput = (double) latency.getCount() * (double) TimeUnit.SECONDS.toNanos(1L) / (double) elapsed;
+            return new DataflowProcessorMetrics(id, name, processor.getClass().getSimpleName(), latency.getCount(), throughput,
+                    (double) busy / (double) elapsed, processor.getOutputWaitTime(), Collections.unmodifiableList(inputLengths), latency);
+        }
+    }
+}
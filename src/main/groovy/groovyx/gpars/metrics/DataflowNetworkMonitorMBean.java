@@ -0,0 +1,38 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.metrics;
+
+/**
+ * The JMX view of a dataflow network monitor.
+ * Latencies are reported in microseconds.
+ */
+public interface DataflowNetworkMonitorMBean {
+    String getName();
+
+    int getProcessorCount();
+
+    long getTotalFirings();
+
+    String getBottleneck();
+
+    String getCriticalPath();
+
+    String getJson();
+
+    String getDot();
+}
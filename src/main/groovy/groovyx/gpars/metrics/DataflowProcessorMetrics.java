@@ -0,0 +1,116 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.metrics;
+
+import java.util.List;
+
+/**
+ * An immutable copy of the run-time metrics of a dataflow operator or selector taken at a particular moment.
+ * Durations are in nanoseconds.
+ */
+public final class DataflowProcessorMetrics {
+    private final String id;
+    private final String name;
+    private final String type;
+    private final long firings;
+    private final double throughput;
+    private final double utilisation;
+    private final long outputWaitTime;
+    private final List<Integer> inputLengths;
+    private final LatencyHistogram.Snapshot bodyLatency;
+
+    @SuppressWarnings({"ConstructorWithTooManyParameters"})
+    DataflowProcessorMetrics(final String id, final String name, final String type, final long firings,
+                             final double throughput, final double utilisation, final long outputWaitTime,
+                             final List<Integer> inputLengths, final LatencyHistogram.Snapshot bodyLatency) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.firings = firings;
+        this.throughput = throughput;
+        this.utilisation = utilisation;
+        this.outputWaitTime = outputWaitTime;
+        this.inputLengths = inputLengths;
+        this.bodyLatency = bodyLatency;
+    }
+
+    /**
+     * @return The identifier of the processor within the monitored network
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The simple class name of the processor, such as DataflowOperator
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return The number of completed runs of the body
+     */
+    public long getFirings() {
+        return firings;
+    }
+
+    /**
+     * @return The number of runs per second since the monitor started watching the processor
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return The average number of bodies running at the same time, 1.0 for a processor that has been busy all the time
+     */
+    public double getUtilisation() {
+        return utilisation;
+    }
+
+    /**
+     * @return The total time spent waiting for full bounded output channels
+     */
+    public long getOutputWaitTime() {
+        return outputWaitTime;
+    }
+
+    /**
+     * @return The number of values waiting in each of the input channels
+     */
+    public List<Integer> getInputLengths() {
+        return inputLengths;
+    }
+
+    /**
+     * @return The distribution of the time between the inputs being ready and the body finishing
+     */
+    public LatencyHistogram.Snapshot getBodyLatency() {
+        return bodyLatency;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": firings=" + firings + ", throughput=" + Math.round(throughput) + "/s, utilisation=" + utilisation + ", inputs=" + inputLengths + ", outputWait=" + outputWaitTime + "ns, body[" + bodyLatency + ']';
+    }
+}
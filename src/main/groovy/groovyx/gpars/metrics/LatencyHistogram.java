@@ -0,0 +1,158 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts recorded durations in buckets growing exponentially with the duration, four buckets per power of two.
+ * Recording is allocation-free and takes constant time. Percentiles calculated from the buckets
+ * are accurate to within 25% of the actual value.
+ * <p>
+ * Durations must be recorded by one thread at a time, such as the thread currently processing messages of an actor.
+ * Snapshots can be taken by any thread concurrently with the recording thread.
+ * </p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong total = new AtomicLong(0L);
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration in nanoseconds, negative values are ignored
+     */
+    public void record(final long nanos) {
+        if (nanos < 0L) return;
+        //a single writer only needs to publish the new values, no atomic read-modify-write operations are required
+        final int bucket = bucketOf(nanos);
+        counts.lazySet(bucket, counts.get(bucket) + 1L);
+        total.lazySet(total.get() + nanos);
+        if (nanos > max.get()) max.lazySet(nanos);
+        count.lazySet(count.get() + 1L);
+    }
+
+    /**
+     * @return The number of recorded durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Captures the current state of the histogram. Concurrently recorded durations may be only partially reflected.
+     *
+     * @return An immutable copy of the histogram
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        long copiedCount = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            copiedCount += copy[i];
+        }
+        return new Snapshot(copy, copiedCount, total.get(), max.get());
+    }
+
+    static int bucketOf(final long nanos) {
+        if (nanos < (long) SUB_BUCKETS) return (int) nanos;
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) return (long) bucket;
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1L;
+    }
+
+    /**
+     * An immutable state of a histogram
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        Snapshot(final long[] counts, final long count, final long total, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of recorded durations
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The mean of the recorded durations in nanoseconds, 0 if nothing has been recorded
+         */
+        public long getMean() {
+            return count == 0L ? 0L : total / count;
+        }
+
+        /**
+         * @return The longest recorded duration in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Estimates the duration, which the given fraction of recorded durations does not exceed
+         *
+         * @param percentile The required percentile, between 0 and 100
+         * @return The duration in nanoseconds, 0 if nothing has been recorded
+         */
+        public long getPercentile(final double percentile) {
+            if (percentile < 0.0 || percentile > 100.0)
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            if (count == 0L) return 0L;
+            final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * (double) count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + toMicros(getMean()) + "us, p50=" + toMicros(getPercentile(50.0)) + "us, p99=" + toMicros(getPercentile(99.0)) + "us, max=" + toMicros(max) + "us";
+        }
+
+        private static long toMicros(final long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.metrics;
+
+/**
+ * Receives notifications about messages passing through an actor or an agent, so that it can collect run-time metrics.
+ * Instrumentation is opt-in and only adds overhead to actors and agents, which have been given an instance.
+ * <p>
+ * The messageEnqueued() method is invoked by the sending threads, possibly concurrently.
+ * The other methods are invoked by the thread processing the messages, one at a time.
+ * </p>
+ */
+public interface MessagingInstrumentation {
+
+    /**
+     * A message has been stored in the mailbox
+     */
+    void messageEnqueued();
+
+    /**
+     * A message has been taken out of the mailbox for processing
+     *
+     * @param queueingTime The time in nanoseconds the message spent in the mailbox, or -1, if unknown
+     */
+    void messageDequeued(long queueingTime);
+
+    /**
+     * A message has been processed by the handler code
+     *
+     * @param handlerTime The time in nanoseconds spent processing the message
+     */
+    void messageHandled(long handlerTime);
+}
@@ -0,0 +1,193 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the run-time metrics of an actor or an agent - the number of messages sent and processed,
+ * the mailbox length, throughput, and the distributions of the time messages wait in the mailbox and the time spent processing them.
+ * The metrics can be read programmatically through snapshot() or through JMX, once registered with registerMBean().
+ * <p>
+ * Actors and agents collect metrics after their enableMetrics() method has been called.
+ * The overhead consists of an allocation, two clock readings and a few counter updates per message.
+ * </p>
+ */
+public final class MessagingMetrics implements MessagingInstrumentation, MessagingMetricsMBean {
+
+    /**
+     * The JMX domain of the registered MBeans
+     */
+    public static final String JMX_DOMAIN = "groovyx.gpars";
+
+    private final String name;
+    private final long startTime = System.nanoTime();
+    private final LongAdder enqueuedMessages = new LongAdder();
+    private final AtomicLong sweptMessages = new AtomicLong(0L);
+    private final LatencyHistogram queueingLatency = new LatencyHistogram();
+    private final LatencyHistogram handlerLatency = new LatencyHistogram();
+    private volatile ObjectName objectName = null;
+
+    /**
+     * @param name The name to identify the metrics by, such as the name of the actor or agent
+     */
+    public MessagingMetrics(final String name) {
+        if (name == null) throw new IllegalArgumentException("The metrics need a name.");
+        this.name = name;
+    }
+
+    @Override
+    public void messageEnqueued() {
+        enqueuedMessages.increment();
+    }
+
+    @Override
+    public void messageDequeued(final long queueingTime) {
+        if (queueingTime < 0L) sweptMessages.lazySet(sweptMessages.get() + 1L);
+        else queueingLatency.record(queueingTime);
+    }
+
+    @Override
+    public void messageHandled(final long handlerTime) {
+        handlerLatency.record(handlerTime);
+    }
+
+    /**
+     * Captures the current values of the metrics
+     *
+     * @return An immutable copy of the current metrics
+     */
+    public MessagingMetricsSnapshot snapshot() {
+        return new MessagingMetricsSnapshot(name, System.currentTimeMillis(), enqueuedMessages.sum(), getProcessedMessages(),
+                getQueueLength(), getThroughput(), queueingLatency.snapshot(), handlerLatency.snapshot());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under the groovyx.gpars:type=Messaging,name=&lt;name&gt; object name.
+     *
+     * @return The metrics themselves
+     */
+    public MessagingMetrics registerMBean() {
+        synchronized (this) {
+            if (objectName != null) return this;
+            try {
+                final ObjectName newName = new ObjectName(JMX_DOMAIN + ":type=Messaging,name=" + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+                objectName = newName;
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register the metrics " + name + " with JMX.", e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, typically once the actor or agent is no longer used
+     */
+    public void unregisterMBean() {
+        synchronized (this) {
+            final ObjectName localName = objectName;
+            if (localName == null) return;
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (server.isRegistered(localName)) server.unregisterMBean(localName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot unregister the metrics " + name + " from JMX.", e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    /**
+     * @return The JMX object name, or null, if the metrics have not been registered
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getEnqueuedMessages() {
+        return enqueuedMessages.sum();
+    }
+
+    @Override
+    public long getProcessedMessages() {
+        return handlerLatency.getCount();
+    }
+
+    @Override
+    public long getQueueLength() {
+        return Math.max(enqueuedMessages.sum() - queueingLatency.getCount() - sweptMessages.get(), 0L);
+    }
+
+    @Override
+    public double getThroughput() {
+        final long elapsed = System.nanoTime() - startTime;
+        return elapsed > 0L ? (double) getProcessedMessages() * (double) TimeUnit.SECONDS.toNanos(1L) / (double) elapsed : 0.0;
+    }
+
+    @Override
+    public long getMeanQueueingLatency() {
+        return toMicros(queueingLatency.snapshot().getMean());
+    }
+
+    @Override
+    public long get99thPercentileQueueingLatency() {
+        return toMicros(queueingLatency.snapshot().getPercentile(99.0));
+    }
+
+    @Override
+    public long getMaxQueueingLatency() {
+        return toMicros(queueingLatency.snapshot().getMax());
+    }
+
+    @Override
+    public long getMeanHandlerLatency() {
+        return toMicros(handlerLatency.snapshot().getMean());
+    }
+
+    @Override
+    public long get99thPercentileHandlerLatency() {
+        return toMicros(handlerLatency.snapshot().getPercentile(99.0));
+    }
+
+    @Override
+    public long getMaxHandlerLatency() {
+        return toMicros(handlerLatency.snapshot().getMax());
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
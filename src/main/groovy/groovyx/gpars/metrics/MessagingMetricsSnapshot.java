@@ -0,0 +1,97 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.metrics;
+
+/**
+ * An immutable copy of the run-time metrics of an actor or an agent taken at a particular moment.
+ * Durations are in nanoseconds.
+ */
+public final class MessagingMetricsSnapshot {
+    private final String name;
+    private final long timestamp;
+    private final long enqueuedMessages;
+    private final long processedMessages;
+    private final long queueLength;
+    private final double throughput;
+    private final LatencyHistogram.Snapshot queueingLatency;
+    private final LatencyHistogram.Snapshot handlerLatency;
+
+    MessagingMetricsSnapshot(final String name, final long timestamp, final long enqueuedMessages, final long processedMessages,
+                             final long queueLength, final double throughput,
+                             final LatencyHistogram.Snapshot queueingLatency, final LatencyHistogram.Snapshot handlerLatency) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.enqueuedMessages = enqueuedMessages;
+        this.processedMessages = processedMessages;
+        this.queueLength = queueLength;
+        this.throughput = throughput;
+        this.queueingLatency = queueingLatency;
+        this.handlerLatency = handlerLatency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The time of taking the snapshot in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getEnqueuedMessages() {
+        return enqueuedMessages;
+    }
+
+    public long getProcessedMessages() {
+        return processedMessages;
+    }
+
+    /**
+     * @return The number of messages waiting in the mailbox
+     */
+    public long getQueueLength() {
+        return queueLength;
+    }
+
+    /**
+     * @return The average number of messages processed per second since the metrics have been enabled
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return The distribution of the times messages spent waiting in the mailbox
+     */
+    public LatencyHistogram.Snapshot getQueueingLatency() {
+        return queueingLatency;
+    }
+
+    /**
+     * @return The distribution of the times spent processing individual messages
+     */
+    public LatencyHistogram.Snapshot getHandlerLatency() {
+        return handlerLatency;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": processed=" + processedMessages + ", queueLength=" + queueLength + ", throughput=" + Math.round(throughput) + "/s, queueing[" + queueingLatency + "], handler[" + handlerLatency + ']';
+    }
+}
@@ -0,0 +1,74 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.scheduler;
+
+/**
+ * Represents a thread pool running each task in its own virtual thread.
+ * Since blocking a virtual thread doesn't occupy an OS thread, blocking actors, tasks and dataflow tasks
+ * waiting for values can be created in numbers far exceeding the limits of the other pools.
+ * <p>
+ * Virtual threads require Java 21. This is the variant used on older JVMs, which only reports the lack of support.
+ * The gpars jar is a multi-release jar, which on Java 21 and newer provides the functional variant of the class.
+ * Use isSupported() to check, whether virtual threads are available.
+ * </p>
+ */
+public final class VirtualThreadPool implements Pool {
+    private static final String NOT_SUPPORTED = "Virtual threads require Java 21 or newer.";
+
+    /**
+     * Indicates whether the current JVM supports virtual threads
+     *
+     * @return False, since this variant of the class is only loaded on JVMs prior to Java 21
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates the pool
+     *
+     * @throws UnsupportedOperationException Since virtual threads are not available on the current JVM
+     */
+    public VirtualThreadPool() {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+
+    @Override
+    public void resize(final int poolSize) {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+
+    @Override
+    public void resetDefaultSize() {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+
+    @Override
+    public int getPoolSize() {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+
+    @Override
+    public void shutdown() {
+        throw new UnsupportedOperationException(NOT_SUPPORTED);
+    }
+}
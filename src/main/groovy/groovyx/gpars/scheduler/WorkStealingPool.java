@@ -0,0 +1,310 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.scheduler;
+
+import groovyx.gpars.util.PoolUtils;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread pool tailored for actors and agents, which keeps the actors woken by a send on the sender's thread.
+ * Each worker thread owns a local queue. Tasks submitted from a worker thread, typically activations of actors
+ * receiving a message from the actor currently running on the worker, are pushed to that worker's queue
+ * and the worker runs them once it finishes the current task, most recent first. Short chains of actors thus
+ * stay on the same core and find their data in warm caches.
+ * <p>
+ * Idle workers steal tasks from the opposite end of the other workers' queues. A worker's only queued task
+ * can only be stolen after it has waited for a short while, to give its owner the chance to run it first.
+ * Tasks submitted from outside of the pool go to a shared queue.
+ * </p>
+ */
+public final class WorkStealingPool implements Pool {
+    private static final long SHUTDOWN_TIMEOUT = 30L;
+
+    /**
+     * The time a single task must wait in a worker's queue before other workers may steal it
+     */
+    private static final long STEAL_DELAY = TimeUnit.MICROSECONDS.toNanos(50L);
+
+    private final Worker[] workers;
+    private final Queue<Runnable> submissions = new ConcurrentLinkedQueue<Runnable>();
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<Worker>();
+    private final AtomicInteger spinningWorkers = new AtomicInteger(0);
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates the pool with default number of daemon threads.
+     */
+    public WorkStealingPool() {
+        this(PoolUtils.retrieveDefaultPoolSize());
+    }
+
+    /**
+     * Creates the pool with specified number of daemon threads.
+     *
+     * @param poolSize The required size of the pool
+     */
+    public WorkStealingPool(final int poolSize) {
+        this(true, poolSize);
+    }
+
+    /**
+     * Creates the pool with specified number of threads.
+     *
+     * @param daemon   Sets the daemon flag of threads in the pool.
+     * @param poolSize The required size of the pool
+     */
+    public WorkStealingPool(final boolean daemon, final int poolSize) {
+        PoolUtils.checkValidPoolSize(poolSize);
+        workers = new Worker[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            workers[i] = new Worker(this, daemon);
+        }
+        for (final Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * The number of threads is fixed
+     *
+     * @param poolSize The new pool size
+     */
+    @Override
+    public void resize(final int poolSize) {
+        throw new UnsupportedOperationException("Work-stealing pools can't change size");
+    }
+
+    /**
+     * The number of threads is fixed
+     */
+    @Override
+    public void resetDefaultSize() {
+        resize(PoolUtils.retrieveDefaultPoolSize());
+    }
+
+    /**
+     * Retrieves the current thread pool size
+     *
+     * @return The pool size
+     */
+    @Override
+    public int getPoolSize() {
+        return workers.length;
+    }
+
+    /**
+     * Schedules a new task for processing with the pool.
+     * Tasks submitted from a worker thread of this pool are queued locally with that worker.
+     *
+     * @param task The task to schedule
+     */
+    @Override
+    public void execute(final Runnable task) {
+        if (shutdown) throw new RejectedExecutionException("The work-stealing pool has been shut down.");
+        final Thread thread = Thread.currentThread();
+        if (thread instanceof Worker && ((Worker) thread).pool == this) {
+            ((Worker) thread).push(task);
+        } else {
+            submissions.add(task);
+        }
+        wakeUpWorker();
+    }
+
+    /**
+     * Gently stops the pool, letting the workers finish the already submitted tasks
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (final Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT);
+        try {
+            for (final Worker worker : workers) {
+                if (worker == Thread.currentThread()) continue;
+                final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0L) break;
+                worker.join(remaining);
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();  // set the interrupted flag
+        }
+    }
+
+    /**
+     * Wakes up an idle worker, unless some other worker is already searching for tasks to steal
+     */
+    private void wakeUpWorker() {
+        if (idleWorkers.isEmpty() || !spinningWorkers.compareAndSet(0, 1)) return;
+        Worker worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            if (worker.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+        spinningWorkers.decrementAndGet();
+    }
+
+    private boolean hasQueuedTasks() {
+        if (!submissions.isEmpty()) return true;
+        for (final Worker worker : workers) {
+            if (worker.hasTasks()) return true;
+        }
+        return false;
+    }
+
+    private static final class Worker extends Thread {
+        private final WorkStealingPool pool;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+        private final AtomicBoolean idle = new AtomicBoolean(false);
+
+        /**
+         * Guarded by the tasks' monitor
+         */
+        private long lastPushTime = 0L;
+
+        /**
+         * Set when a steal attempt has skipped a task, which hadn't been waiting long enough
+         */
+        private boolean stealDeferred = false;
+
+        Worker(final WorkStealingPool pool, final boolean daemon) {
+            super(DefaultPool.createThreadName());
+            this.pool = pool;
+            setDaemon(daemon);
+        }
+
+        void push(final Runnable task) {
+            synchronized (tasks) {
+                tasks.addLast(task);
+                lastPushTime = System.nanoTime();
+            }
+        }
+
+        Runnable pop() {
+            synchronized (tasks) {
+                return tasks.pollLast();
+            }
+        }
+
+        boolean hasTasks() {
+            synchronized (tasks) {
+                return !tasks.isEmpty();
+            }
+        }
+
+        Runnable stealFrom(final Worker victim) {
+            synchronized (victim.tasks) {
+                if (victim.tasks.isEmpty()) return null;
+                if (victim.tasks.size() == 1 && System.nanoTime() - victim.lastPushTime < STEAL_DELAY) {
+                    stealDeferred = true;
+                    return null;
+                }
+                return victim.tasks.pollFirst();
+            }
+        }
+
+        Runnable findTask() {
+            stealDeferred = false;
+            Runnable task = pop();
+            if (task != null) return task;
+            task = pool.submissions.poll();
+            if (task != null) return task;
+            final Worker[] workers = pool.workers;
+            final int start = ThreadLocalRandom.current().nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                final Worker victim = workers[(start + i) % workers.length];
+                if (victim == this) continue;
+                task = stealFrom(victim);
+                if (task != null) return task;
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            boolean spinning = false;
+            boolean announced = false;
+            try {
+                while (true) {
+                    final Runnable task = findTask();
+                    if (announced) {
+                        if (task != null && idle.compareAndSet(true, false)) {
+                            //Withdraw the announcement, so that no submitting thread tries to wake us up while we're busy
+                            announced = false;
+                            pool.idleWorkers.remove(this);
+                        } else if (!idle.get()) {
+                            //A submitting thread has claimed us from the idle queue and counted us among the spinning workers
+                            announced = false;
+                            spinning = true;
+                        }
+                    }
+                    if (task != null) {
+                        if (spinning) {
+                            spinning = false;
+                            //The last searching worker hands over the search to another idle one, if there's more work
+                            if (pool.spinningWorkers.decrementAndGet() == 0 && pool.hasQueuedTasks()) pool.wakeUpWorker();
+                        }
+                        runTask(task);
+                        continue;
+                    }
+                    if (stealDeferred) {
+                        LockSupport.parkNanos(this, STEAL_DELAY);
+                        continue;
+                    }
+                    if (pool.shutdown) return;
+
+                    if (spinning) {
+                        spinning = false;
+                        pool.spinningWorkers.decrementAndGet();
+                    }
+                    if (!announced) {
+                        announced = true;
+                        idle.set(true);
+                        pool.idleWorkers.add(this);
+                    }
+                    //Re-check after announcing idleness, so that no concurrent submission gets missed
+                    if (pool.hasQueuedTasks() || pool.shutdown) continue;
+                    LockSupport.park(this);
+                }
+            } finally {
+                if (spinning || announced && !idle.get()) pool.spinningWorkers.decrementAndGet();
+            }
+        }
+
+        @SuppressWarnings({"CatchGenericClass", "UseOfSystemOutOrSystemErr"})
+        private static void runTask(final Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                System.err.println(Pool.UNCAUGHT_EXCEPTION_OCCURRED_IN_GPARS_POOL + Thread.currentThread().getName());
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+}
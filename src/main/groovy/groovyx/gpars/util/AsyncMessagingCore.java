@@ -16,6 +16,7 @@
 
 package groovyx.gpars.util;
 
+import groovyx.gpars.metrics.MessagingInstrumentation;
 import groovyx.gpars.scheduler.Pool;
 import org.codehaus.groovy.runtime.InvokerInvocationException;
 import org.codehaus.groovy.runtime.NullObject;
@@ -37,7 +38,16 @@ public abstract class AsyncMessagingCore implements Runnable {
 
 
     protected AsyncMessagingCore(final Pool threadPool) {
+        this(threadPool, new DefaultMessageQueue());
+    }
+
+    /**
+     * @param threadPool The thread pool to use
+     * @param queue      The message queue to hold incoming messages
+     */
+    protected AsyncMessagingCore(final Pool threadPool, final MessageQueue queue) {
         this.threadPool = threadPool;
+        this.queue = queue;
     }
 
     /**
@@ -76,7 +86,87 @@ public abstract class AsyncMessagingCore implements Runnable {
     /**
      * Incoming messages
      */
-    private final MessageQueue queue = new DefaultMessageQueue();
+    private volatile MessageQueue queue;
+
+    /**
+     * Guards the replacement of the message queue against concurrent senders.
+     * The first stored message seals the queue, so that no sender can add a message to a queue that is being replaced.
+     */
+    @SuppressWarnings({"FieldMayBeFinal", "unused"})
+    private volatile int queueState = AsyncMessagingCore.QUEUE_OPEN;
+    private static final AtomicIntegerFieldUpdater<AsyncMessagingCore> queueStateUpdater = AtomicIntegerFieldUpdater.newUpdater(AsyncMessagingCore.class, "queueState");
+    private static final int QUEUE_OPEN = 0;
+    private static final int QUEUE_REPLACING = 1;
+    private static final int QUEUE_SEALED = 2;
+
+    /**
+     * Replaces the message queue. Only allowed before the first message has been stored in the core.
+     *
+     * @param queue The new message queue to use
+     * @throws IllegalStateException If messages have already been sent through the core
+     */
+    public final void useMessageQueue(final MessageQueue queue) {
+        if (!tryUseMessageQueue(queue))
+            throw new IllegalStateException("The message queue can only be replaced before the first message has been sent.");
+    }
+
+    /**
+     * Replaces the message queue, unless a message has already been stored in the core.
+     *
+     * @param queue The new message queue to use
+     * @return True, if the queue has been replaced, false if messages have already been sent through the core
+     */
+    public final boolean tryUseMessageQueue(final MessageQueue queue) {
+        if (queue == null) throw new IllegalArgumentException("The message queue must not be null.");
+        if (!queueStateUpdater.compareAndSet(this, QUEUE_OPEN, QUEUE_REPLACING)) return false;
+        this.queue = queue;
+        queueState = QUEUE_OPEN;
+        return true;
+    }
+
+    /**
+     * Prevents further replacement of the message queue, waiting for a replacement in progress to finish
+     */
+    private void sealQueue() {
+        while (!queueStateUpdater.compareAndSet(this, QUEUE_OPEN, QUEUE_SEALED)) {
+            if (queueState == QUEUE_SEALED) return;
+            Thread.yield();
+        }
+    }
+
+    /**
+     * @return The message queue holding incoming messages
+     */
+    public final MessageQueue getMessageQueue() {
+        return queue;
+    }
+
+    /**
+     * Receives notifications about messages passing through the core, null, if the core is not instrumented
+     */
+    private volatile MessagingInstrumentation instrumentation = null;
+
+    /**
+     * Starts notifying the supplied instrumentation about messages passing through the core.
+     * The instrumentation cannot be removed or replaced afterwards.
+     * Messages stored before the core has been instrumented only get their handler time measured.
+     *
+     * @param instrumentation The instrumentation to notify
+     */
+    public final void instrument(final MessagingInstrumentation instrumentation) {
+        if (instrumentation == null) throw new IllegalArgumentException("The instrumentation must not be null.");
+        synchronized (this) {
+            if (this.instrumentation != null) throw new IllegalStateException("The messaging core has already been instrumented.");
+            this.instrumentation = instrumentation;
+        }
+    }
+
+    /**
+     * @return The instrumentation receiving notifications about messages passing through the core, or null
+     */
+    public final MessagingInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
 
     /**
      * Indicates, whether there's an active thread handling a message inside the agent's body
@@ -94,7 +184,13 @@ public abstract class AsyncMessagingCore implements Runnable {
      * @param message A value or a closure
      */
     public void store(final Object message) {
-        queue.add(message != null ? message : NullObject.getNullObject());
+        if (queueState != QUEUE_SEALED) sealQueue();
+        final MessagingInstrumentation localInstrumentation = instrumentation;
+        if (localInstrumentation == null) queue.add(message != null ? message : NullObject.getNullObject());
+        else {
+            queue.add(new TimedMessage(message != null ? message : NullObject.getNullObject(), System.nanoTime()));
+            localInstrumentation.messageEnqueued();
+        }
         if (activeUpdater.compareAndSet(this, PASSIVE, ACTIVE)) {  //we're not checking emptiness of the queue since the probability of useless scheduling is low and we avoid the overhead with the method call and synchronization on the inside queue size
             threadPool.execute(this);
         }
@@ -115,7 +211,12 @@ public abstract class AsyncMessagingCore implements Runnable {
      * @return The head message, or null, if the message queue is empty
      */
     public Object sweepNextMessage() {
-        return queue.poll();
+        final Object message = queue.poll();
+        if (message instanceof TimedMessage) {
+            instrumentation.messageDequeued(-1L);
+            return ((TimedMessage) message).message;
+        }
+        return message;
     }
 
     /**
@@ -127,13 +228,18 @@ public abstract class AsyncMessagingCore implements Runnable {
         try {
             threadAssigned();
             if (!continueProcessingMessages()) return;
-            Object message = queue.poll();
+            final MessageQueue messages = queue;
+            Object message = messages.poll();
+            long timestamp = 0L;
             while (message != null) {
-                handleMessage(message);
+                final MessagingInstrumentation localInstrumentation = instrumentation;
+                if (localInstrumentation == null) handleMessage(message);
+                else timestamp = handleInstrumented(message, localInstrumentation, timestamp);
                 if (Thread.interrupted()) throw new InterruptedException();
                 if (fair || !continueProcessingMessages()) break;
-                message = queue.poll();
+                message = messages.poll();
             }
+            activationFinished();
         } catch (InvokerInvocationException e) {
             registerError(e.getCause());
         } catch (Throwable e) {
@@ -145,6 +251,36 @@ public abstract class AsyncMessagingCore implements Runnable {
         }
     }
 
+    /**
+     * Handles a message measuring the time it has spent in the queue and in the handler.
+     * Messages stored before the core was instrumented carry no timestamp and so only their handler time gets measured.
+     *
+     * @param message         The message, possibly carrying the time it was stored
+     * @param instrumentation The instrumentation to notify
+     * @param timestamp       The time the previous message in the same activation has been handled, 0 for the first message
+     * @return The time the message has been handled
+     */
+    private long handleInstrumented(final Object message, final MessagingInstrumentation instrumentation, final long timestamp) {
+        //reading the clock dominates the cost of instrumentation, so the end of the previous message's handling
+        //serves as the start of the current one, unless the current message has only been sent after that
+        long dequeueTime = timestamp != 0L ? timestamp : System.nanoTime();
+        final Object payLoad;
+        if (message instanceof TimedMessage) {
+            final TimedMessage timedMessage = (TimedMessage) message;
+            if (timedMessage.enqueueTime > dequeueTime) dequeueTime = System.nanoTime();
+            instrumentation.messageDequeued(dequeueTime - timedMessage.enqueueTime);
+            payLoad = timedMessage.message;
+        } else payLoad = message;
+        long handledTime = dequeueTime;
+        try {
+            handleMessage(payLoad);
+        } finally {
+            handledTime = System.nanoTime();
+            instrumentation.messageHandled(handledTime - dequeueTime);
+        }
+        return handledTime;
+    }
+
     /**
      * Informs about a new thread being assigned to process the next message
      *
@@ -154,6 +290,14 @@ public abstract class AsyncMessagingCore implements Runnable {
         return true;
     }
 
+    /**
+     * Informs that the current thread is about to stop processing messages, either because the message queue has been drained
+     * or because a fair core gives up the thread. Not invoked if message processing ends with an exception.
+     */
+    @SuppressWarnings({"NoopMethodInAbstractClass"})
+    protected void activationFinished() {
+    }
+
     /**
      * Informs about a new thread being assigned to process the next message
      */
@@ -172,4 +316,17 @@ public abstract class AsyncMessagingCore implements Runnable {
     protected abstract void registerError(final Throwable e);
 
     protected abstract void handleMessage(final Object message);
+
+    /**
+     * Wraps messages stored in instrumented cores to remember the time they were sent
+     */
+    private static final class TimedMessage {
+        private final Object message;
+        private final long enqueueTime;
+
+        TimedMessage(final Object message, final long enqueueTime) {
+            this.message = message;
+            this.enqueueTime = enqueueTime;
+        }
+    }
 }
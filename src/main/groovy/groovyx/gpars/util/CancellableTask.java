@@ -0,0 +1,41 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps tasks scheduled with timers, which offer no way to remove a task, so that cancelled tasks don't run
+ */
+final class CancellableTask implements Runnable, GeneralTimer.Timeout {
+    private final Runnable task;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    CancellableTask(final Runnable task) {
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        if (done.compareAndSet(false, true)) task.run();
+    }
+
+    @Override
+    public boolean cancel() {
+        return done.compareAndSet(false, true);
+    }
+}
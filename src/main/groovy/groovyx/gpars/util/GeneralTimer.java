@@ -22,5 +22,31 @@ package groovyx.gpars.util;
 public interface GeneralTimer {
     void schedule(Runnable task, long timeout);
 
+    /**
+     * Schedules a task, which may be cancelled before it fires.
+     * Timers unable to remove scheduled tasks keep the cancelled task until its timeout elapses, but never run it.
+     *
+     * @param task    The task to run
+     * @param timeout The timeout in milliseconds
+     * @return A handle to cancel the task
+     */
+    default Timeout scheduleTimeout(final Runnable task, final long timeout) {
+        final CancellableTask cancellableTask = new CancellableTask(task);
+        schedule(cancellableTask, timeout);
+        return cancellableTask;
+    }
+
     void shutdown();
+
+    /**
+     * Represents a task scheduled with a timer
+     */
+    interface Timeout {
+        /**
+         * Prevents the task from running
+         *
+         * @return True, if the task has been cancelled, false if it had already run or been cancelled before
+         */
+        boolean cancel();
+    }
 }
@@ -0,0 +1,334 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A timer keeping scheduled tasks in a circular array of buckets, each bucket covering one tick of time.
+ * Both scheduling and cancelling a task take constant time, and cancelled tasks get unlinked from their bucket
+ * at the next tick instead of occupying memory until their original deadline.
+ * <p>
+ * The timer owns no thread. The wheel gets advanced and the expired tasks run by a tick task submitted to the supplied scheduler,
+ * so multiple timers may share the threads of a single scheduler, such as groovyx.gpars.scheduler.Timer.timer.
+ * The tasks should thus be short, such as sending a timeout message to an actor.
+ * Tasks fire no sooner than their timeout elapses and at most one tick later, tasks with no timeout get passed to the scheduler right away.
+ * While there are no tasks scheduled, the timer doesn't tick.
+ * </p>
+ */
+public final class HashedWheelTimer implements GeneralTimer {
+
+    /**
+     * The default duration of a tick in milliseconds
+     */
+    public static final long DEFAULT_TICK_DURATION = 10L;
+
+    /**
+     * The default number of buckets in the wheel
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+    private final AtomicInteger activeTimeouts = new AtomicInteger(0);
+    private final AtomicBoolean ticking = new AtomicBoolean(false);
+    private volatile boolean shutDown = false;
+
+    /**
+     * The tick to process next, only accessed by the tick task
+     */
+    private long tick = 0L;
+
+    private final Runnable tickTask = new Runnable() {
+        @Override
+        public void run() {
+            advance();
+        }
+    };
+
+    private final Runnable resumeTask = new Runnable() {
+        @Override
+        public void run() {
+            tick = elapsedTicks();
+            scheduleNextTick();
+        }
+    };
+
+    /**
+     * Creates a timer with the default tick duration and wheel size
+     *
+     * @param name      The name of the timer
+     * @param scheduler The scheduler to run the tick task and the expired tasks, which is not shut down together with the timer
+     */
+    public HashedWheelTimer(final String name, final ScheduledExecutorService scheduler) {
+        this(name, scheduler, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a timer
+     *
+     * @param name         The name of the timer
+     * @param scheduler    The scheduler to run the tick task and the expired tasks, which is not shut down together with the timer
+     * @param tickDuration The duration of a tick in milliseconds, which also bounds the precision of the timer
+     * @param wheelSize    The number of buckets in the wheel, rounded up to the nearest power of two
+     */
+    public HashedWheelTimer(final String name, final ScheduledExecutorService scheduler, final long tickDuration, final int wheelSize) {
+        if (scheduler == null) throw new IllegalArgumentException("The scheduler must not be null.");
+        if (tickDuration <= 0L) throw new IllegalArgumentException("The tick duration must be a positive number.");
+        if (wheelSize < 1 || wheelSize > 1 << 30)
+            throw new IllegalArgumentException("The wheel size must be between 1 and 2^30.");
+        this.name = name;
+        this.scheduler = scheduler;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        final int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void schedule(final Runnable task, final long timeout) {
+        scheduleTimeout(task, timeout);
+    }
+
+    @Override
+    public Timeout scheduleTimeout(final Runnable task, final long timeout) {
+        if (task == null) throw new IllegalArgumentException("Cannot schedule a null task.");
+        if (shutDown) throw new RejectedExecutionException("The timer " + name + " has been shut down.");
+
+        if (timeout <= 0L) {
+            final WheelTimeout immediateTimeout = new WheelTimeout(null, task, 0L);
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    immediateTimeout.fire();
+                }
+            });
+            return immediateTimeout;
+        }
+
+        final long delay = TimeUnit.MILLISECONDS.toNanos(timeout);
+        final long elapsed = System.nanoTime() - startTime;
+        final long deadline = delay > Long.MAX_VALUE - elapsed ? Long.MAX_VALUE : elapsed + delay;
+        final WheelTimeout wheelTimeout = new WheelTimeout(this, task, deadline);
+        activeTimeouts.incrementAndGet();
+        pendingTimeouts.add(wheelTimeout);
+        if (!ticking.get() && ticking.compareAndSet(false, true)) resume();
+        return wheelTimeout;
+    }
+
+    /**
+     * @return The number of scheduled tasks, which have neither fired nor been removed after cancellation
+     */
+    public int getActiveTimeouts() {
+        return activeTimeouts.get();
+    }
+
+    /**
+     * Stops the timer. The scheduler is left running, since other timers may share it.
+     */
+    @Override
+    public void shutdown() {
+        shutDown = true;
+    }
+
+    private long elapsedTicks() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    /**
+     * Starts ticking after the timer has been idle. The ticks skipped while idle had no tasks to expire.
+     */
+    private void resume() {
+        try {
+            scheduler.execute(resumeTask);
+        } catch (RejectedExecutionException ignore) {
+            ticking.set(false);
+        }
+    }
+
+    private void scheduleNextTick() {
+        final long delay = startTime + (tick + 1L) * tickNanos - System.nanoTime();
+        try {
+            scheduler.schedule(tickTask, Math.max(delay, 0L), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ignore) {
+            ticking.set(false);
+        }
+    }
+
+    /**
+     * Processes all ticks, which have elapsed since the previous run, and either schedules the next tick or lets the timer go idle
+     */
+    @SuppressWarnings({"MethodOnlyUsedFromInnerClass"})
+    private void advance() {
+        if (shutDown) {
+            pendingTimeouts.clear();
+            cancelledTimeouts.clear();
+            return;
+        }
+        final long elapsed = elapsedTicks();
+        while (tick < elapsed) {
+            removeCancelledTimeouts();
+            transferPendingTimeouts(tick);
+            expireTimeouts(wheel[(int) tick & mask]);
+            tick++;
+        }
+        if (activeTimeouts.get() > 0) {
+            scheduleNextTick();
+            return;
+        }
+        ticking.set(false);
+        //a task may have been scheduled while the timer was going idle
+        if (activeTimeouts.get() > 0 && ticking.compareAndSet(false, true)) scheduleNextTick();
+    }
+
+    private void removeCancelledTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                activeTimeouts.decrementAndGet();
+            }
+        }
+    }
+
+    private void transferPendingTimeouts(final long tick) {
+        WheelTimeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                activeTimeouts.decrementAndGet();
+                continue;
+            }
+            final long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            wheel[(int) Math.max(calculated, tick) & mask].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(final Bucket bucket) {
+        WheelTimeout timeout = bucket.head;
+        while (timeout != null) {
+            final WheelTimeout next = timeout.next;
+            if (timeout.isCancelled()) {
+                bucket.remove(timeout);
+                activeTimeouts.decrementAndGet();
+            } else if (timeout.remainingRounds <= 0L) {
+                bucket.remove(timeout);
+                activeTimeouts.decrementAndGet();
+                timeout.fire();
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A doubly-linked list of timeouts, only accessed by the tick task
+     */
+    private static final class Bucket {
+        private WheelTimeout head = null;
+        private WheelTimeout tail = null;
+
+        void add(final WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(final WheelTimeout timeout) {
+            final WheelTimeout next = timeout.next;
+            if (timeout.prev != null) timeout.prev.next = next;
+            if (next != null) next.prev = timeout.prev;
+            if (timeout == head) head = next;
+            if (timeout == tail) tail = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    @SuppressWarnings({"FieldMayBeFinal"})
+    private static final class WheelTimeout implements Timeout {
+        private static final int ST_SCHEDULED = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final HashedWheelTimer timer;  //null for tasks passed to the scheduler right away
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_SCHEDULED;
+
+        //Accessed by the tick task only
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTimeout prev;
+        private WheelTimeout next;
+
+        WheelTimeout(final HashedWheelTimer timer, final Runnable task, final long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!stateUpdater.compareAndSet(this, ST_SCHEDULED, ST_CANCELLED)) return false;
+            if (timer != null) timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        /**
+         * Runs the task, unless it has been cancelled
+         */
+        @SuppressWarnings({"CatchGenericClass"})
+        void fire() {
+            if (!stateUpdater.compareAndSet(this, ST_SCHEDULED, ST_EXPIRED)) return;
+            try {
+                task.run();
+            } catch (Throwable ignore) {
+                //the tasks are responsible for handling their own failures
+            }
+        }
+    }
+}
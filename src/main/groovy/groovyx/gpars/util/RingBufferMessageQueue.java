@@ -0,0 +1,175 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A lock-free, array-backed implementation of the message queue for actor and agent messaging.
+ * Multiple writers claim slots in a pre-allocated ring buffer through a CAS on the producer index,
+ * so neither a monitor nor a per-message node allocation is needed on the sending path.
+ * It leverages the fact that in any moment there's only one reading thread accessing the queue
+ * and that potential read thread swap at the actor or agent thread pool synchronizes thread memory.
+ * <p>
+ * The queue is bounded. The offer() method returns false when the buffer is full, while add() waits for the reader
+ * to free a slot. Since the reading thread cannot wait for itself, messages it adds to a full buffer, typically
+ * messages an actor or agent sends to itself, go to an unbounded overflow list instead. They get read in the order
+ * of their addition relative to the messages in the buffer.
+ * </p>
+ */
+@SuppressWarnings({"FieldMayBeFinal", "unused"})
+public final class RingBufferMessageQueue implements MessageQueue {
+
+    /**
+     * The capacity used by the no-arg constructor
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private final AtomicReferenceArray<Object> buffer;
+    private final int mask;
+
+    private final Queue<OverflowMessage> overflow = new ConcurrentLinkedQueue<OverflowMessage>();
+
+    /**
+     * The thread that has most recently read from the queue, only compared against the current thread
+     */
+    private Thread consumer = null;
+
+    private volatile long producerIndex = 0L;
+    private volatile long consumerIndex = 0L;
+    private static final AtomicLongFieldUpdater<RingBufferMessageQueue> producerIndexUpdater = AtomicLongFieldUpdater.newUpdater(RingBufferMessageQueue.class, "producerIndex");
+    private static final AtomicLongFieldUpdater<RingBufferMessageQueue> consumerIndexUpdater = AtomicLongFieldUpdater.newUpdater(RingBufferMessageQueue.class, "consumerIndex");
+
+    /**
+     * Creates a queue with the default capacity
+     */
+    public RingBufferMessageQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a queue holding up to the specified number of messages
+     *
+     * @param capacity The requested capacity, which gets rounded up to the nearest power of two
+     */
+    public RingBufferMessageQueue(final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity of the message queue must be between 1 and 2^30.");
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<Object>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return The maximum number of messages the queue can hold
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Retrieves an estimate of the number of messages currently held in the queue
+     *
+     * @return The number of claimed, but not yet removed slots
+     */
+    public int size() {
+        final long size = producerIndex - consumerIndex;
+        return (size > 0L ? (int) size : 0) + overflow.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex && overflow.isEmpty();
+    }
+
+    @Override
+    public Object poll() {
+        consumer = Thread.currentThread();
+        final long index = consumerIndex;
+        final OverflowMessage overflowMessage = overflow.peek();
+        //All messages added to the buffer before the overflowing one have been read
+        if (overflowMessage != null && overflowMessage.index <= index) return overflow.poll().message;
+        final int offset = (int) index & mask;
+        Object element = buffer.get(offset);
+        if (element == null) {
+            if (index == producerIndex) return null;
+            //A writer has claimed the slot, but not yet stored its message
+            do {
+                element = buffer.get(offset);
+            } while (element == null);
+        }
+        buffer.lazySet(offset, null);
+        consumerIndexUpdater.lazySet(this, index + 1L);
+        return element;
+    }
+
+    /**
+     * Adds the element to the queue, if there's a free slot in the buffer
+     *
+     * @param element The element to add
+     * @return True, if the element has been added, false if the queue was full
+     */
+    public boolean offer(final Object element) {
+        if (element == null) throw new IllegalArgumentException("Cannot add null into the message queue.");
+        final long capacity = (long) mask + 1L;
+        while (true) {
+            final long index = producerIndex;
+            if (index - consumerIndex >= capacity) return false;
+            if (producerIndexUpdater.compareAndSet(this, index, index + 1L)) {
+                buffer.lazySet((int) index & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the element to the queue, waiting for the reader to free a slot, if the queue is full.
+     * The reading thread itself never waits, it puts the element into the overflow list instead.
+     *
+     * @param element The element to add
+     */
+    @Override
+    public void add(final Object element) {
+        int spins = 0;
+        while (!offer(element)) {
+            if (Thread.currentThread() == consumer) {
+                overflow.add(new OverflowMessage(element, producerIndex));
+                return;
+            }
+            if (spins < SPINS_BEFORE_YIELD) spins++;
+            else Thread.yield();
+        }
+    }
+
+    /**
+     * A message that did not fit into the buffer, remembering the number of messages added to the buffer before it
+     */
+    private static final class OverflowMessage {
+        private final Object message;
+        private final long index;
+
+        OverflowMessage(final Object message, final long index) {
+            this.message = message;
+            this.index = index;
+        }
+    }
+}
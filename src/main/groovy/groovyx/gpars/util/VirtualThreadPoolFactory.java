@@ -0,0 +1,48 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util;
+
+import groovyx.gpars.scheduler.Pool;
+import groovyx.gpars.scheduler.VirtualThreadPool;
+
+/**
+ * Makes the default parallel groups run their actors, tasks and dataflow tasks in virtual threads,
+ * when registered through GParsConfig.setPoolFactory().
+ * Since virtual thread pools are unbounded and their threads are always daemon threads,
+ * the requested number of threads and the daemon flag are ignored.
+ */
+public final class VirtualThreadPoolFactory implements PoolFactory {
+    @Override
+    public Pool createPool() {
+        return new VirtualThreadPool();
+    }
+
+    @Override
+    public Pool createPool(final boolean daemon) {
+        return new VirtualThreadPool();
+    }
+
+    @Override
+    public Pool createPool(final int numberOfThreads) {
+        return new VirtualThreadPool();
+    }
+
+    @Override
+    public Pool createPool(final boolean daemon, final int numberOfThreads) {
+        return new VirtualThreadPool();
+    }
+}
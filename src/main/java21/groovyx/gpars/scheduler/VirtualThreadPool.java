@@ -0,0 +1,125 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a thread pool running each task in its own virtual thread.
+ * Since blocking a virtual thread doesn't occupy an OS thread, blocking actors, tasks and dataflow tasks
+ * waiting for values can be created in numbers far exceeding the limits of the other pools.
+ * <p>
+ * The pool has no upper limit on the number of threads, so it cannot be resized.
+ * The threads are always daemon threads.
+ * </p>
+ */
+public final class VirtualThreadPool implements Pool {
+    private static final long SHUTDOWN_TIMEOUT = 30L;
+
+    private final ExecutorService executor;
+    private final AtomicInteger runningTasks = new AtomicInteger(0);
+
+    /**
+     * Indicates whether the current JVM supports virtual threads
+     *
+     * @return True, since this variant of the class is only loaded on Java 21 and newer
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates the pool
+     */
+    public VirtualThreadPool() {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                .name("GPars Virtual Thread ", 1L)
+                .uncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    @SuppressWarnings({"UseOfSystemOutOrSystemErr"})
+                    public void uncaughtException(final Thread t, final Throwable e) {
+                        System.err.println(Pool.UNCAUGHT_EXCEPTION_OCCURRED_IN_GPARS_POOL + t.getName());
+                        e.printStackTrace(System.err);
+                    }
+                })
+                .factory());
+    }
+
+    /**
+     * Virtual thread pools are unbounded and cannot be resized
+     *
+     * @param poolSize The new pool size
+     */
+    @Override
+    public void resize(final int poolSize) {
+        throw new UnsupportedOperationException("Virtual thread pools can't change size");
+    }
+
+    /**
+     * Virtual thread pools are unbounded and cannot be resized
+     */
+    @Override
+    public void resetDefaultSize() {
+        throw new UnsupportedOperationException("Virtual thread pools can't change size");
+    }
+
+    /**
+     * Retrieves the number of virtual threads currently running a task
+     *
+     * @return The number of running tasks
+     */
+    @Override
+    public int getPoolSize() {
+        return runningTasks.get();
+    }
+
+    /**
+     * Starts a new virtual thread to process the task
+     *
+     * @param task The task to schedule
+     */
+    @Override
+    public void execute(final Runnable task) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runningTasks.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    runningTasks.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gently stops the pool
+     */
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();  // set the interrupted flag
+        }
+    }
+}
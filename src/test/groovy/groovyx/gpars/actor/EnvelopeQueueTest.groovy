@@ -0,0 +1,169 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.actor
+
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.util.DefaultMessageQueue
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+
+public class EnvelopeQueueTest extends GroovyTestCase {
+
+    public void testOrder() {
+        final EnvelopeQueue queue = new EnvelopeQueue()
+        assert queue.isEmpty()
+        assert queue.poll() == null
+        queue.add(new Envelope(1, null))
+        queue.add('two')
+        queue.add(new Envelope(3, null))
+        assert !queue.isEmpty()
+        assert queue.poll().payLoad == 1
+        queue.add(4)
+        assert queue.poll() == 'two'
+        assert queue.poll().payLoad == 3
+        assert queue.poll() == 4
+        assert queue.poll() == null
+        assert queue.isEmpty()
+    }
+
+    public void testQueuedEnvelopeGetsCarried() {
+        final EnvelopeQueue queue = new EnvelopeQueue()
+        final Envelope envelope = new Envelope(1, null)
+        queue.add(envelope)
+        queue.add(envelope)
+        assert queue.poll().is(envelope)
+        assert queue.poll().is(envelope)
+        assert queue.poll() == null
+    }
+
+    public void testConcurrentProducers() {
+        final EnvelopeQueue queue = new EnvelopeQueue()
+        final int producers = 4
+        final int messages = 10000
+        final CyclicBarrier barrier = new CyclicBarrier(producers)
+        final threads = (1..producers).collect {index ->
+            Thread.start {
+                barrier.await()
+                for (int i = 0; i < messages; i++) queue.add(new Envelope([index, i], null))
+            }
+        }
+        final Map<Integer, Integer> last = [:]
+        int received = 0
+        while (received < producers * messages) {
+            final Envelope envelope = queue.poll()
+            if (envelope == null) {
+                Thread.yield()
+                continue
+            }
+            final def (index, i) = envelope.payLoad
+            assert last.get(index, -1) == i - 1
+            last[index] = i
+            received++
+        }
+        threads*.join()
+        assert queue.isEmpty()
+    }
+
+    public void testActorsUseEnvelopes() {
+        final DefaultPGroup group = new DefaultPGroup(2)
+        try {
+            final def actor = new StaticDispatchActor<Object>() {
+                @Override
+                void onMessage(final Object message) {
+                }
+            }
+            assert actor.core.messageQueue instanceof EnvelopeQueue
+            assert group.reactor {}.core.messageQueue instanceof DefaultMessageQueue
+
+            final def customGroup = new DefaultPGroup(group.threadPool)
+            customGroup.messageQueueFactory = {new DefaultMessageQueue()}
+            assert customGroup.messageHandler {}.core.messageQueue instanceof DefaultMessageQueue
+        } finally {
+            group.shutdown()
+        }
+    }
+
+    public void testRepliesWithEnvelopes() {
+        final DefaultPGroup group = new DefaultPGroup(2)
+        try {
+            final def echo = group.messageHandler {
+                when {String message -> reply message.toUpperCase()}
+            }
+            final CountDownLatch latch = new CountDownLatch(1)
+            def result = null
+            group.actor {
+                echo << 'hello'
+                react {
+                    result = it
+                    latch.countDown()
+                }
+            }
+            latch.await()
+            assert result == 'HELLO'
+            assert echo.sendAndWait('abc') == 'ABC'
+            echo.stop()
+            echo.join()
+        } finally {
+            group.shutdown()
+        }
+    }
+
+    public void testMessagesWithoutSenderCannotBeReplied() {
+        final DefaultPGroup group = new DefaultPGroup(1)
+        try {
+            final CountDownLatch latch = new CountDownLatch(1)
+            def sender = 'unset'
+            final def actor = group.messageHandler {
+                when {message ->
+                    sender = delegate.sender
+                    latch.countDown()
+                }
+            }
+            actor << 'hello'
+            latch.await()
+            assert sender == null
+        } finally {
+            group.shutdown()
+        }
+    }
+
+    public void testUndeliveredMessagesCarrySenders() {
+        final DefaultPGroup group = new DefaultPGroup(1)
+        try {
+            final CountDownLatch latch = new CountDownLatch(1)
+            final def actor = group.messageHandler {
+                when {message ->
+                    latch.await()
+                    terminate()
+                }
+            }
+            final List undelivered = []
+            actor.onStop {undelivered.addAll(it)}
+            actor << 1
+            actor << 2
+            actor << 3
+            latch.countDown()
+            actor.join()
+            assert undelivered*.payLoad == [2, 3]
+            assert undelivered.every {it instanceof ActorMessage && it.sender == null}
+        } finally {
+            group.shutdown()
+        }
+    }
+}
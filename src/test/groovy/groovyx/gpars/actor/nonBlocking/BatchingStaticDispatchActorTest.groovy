@@ -0,0 +1,130 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.actor.nonBlocking
+
+import groovyx.gpars.actor.BatchingStaticDispatchActor
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.group.DefaultPGroup
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class BatchingStaticDispatchActorTest extends GroovyTestCase {
+    private DefaultPGroup group
+
+    protected void setUp() {
+        group = new DefaultPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testQueuedMessagesDeliveredAsBatch() {
+        final actor = new TestBatchingActor(100)
+        actor.parallelGroup = group
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..10).each {actor << it}
+        actor.gate.countDown()
+        assert [0] == actor.batches.val
+        assert (1..10).toList() == actor.batches.val
+        actor.terminate()
+        actor.join()
+    }
+
+    public void testMaxBatchSize() {
+        final actor = new TestBatchingActor(4)
+        actor.parallelGroup = group
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..10).each {actor << it}
+        actor.gate.countDown()
+        assert [0] == actor.batches.val
+        assert [1, 2, 3, 4] == actor.batches.val
+        assert [5, 6, 7, 8] == actor.batches.val
+        assert [9, 10] == actor.batches.val
+        actor.terminate()
+        actor.join()
+    }
+
+    public void testMaxLatency() {
+        final actor = new TestBatchingActor(100, 0L)
+        actor.parallelGroup = group
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..3).each {actor << it}
+        actor.gate.countDown()
+        assert [[0], [1], [2], [3]] == (1..4).collect {actor.batches.val}
+        actor.terminate()
+        actor.join()
+    }
+
+    public void testStopDeliversPendingBatch() {
+        final actor = new TestBatchingActor(100)
+        actor.parallelGroup = group
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..5).each {actor << it}
+        actor.stop()
+        actor.gate.countDown()
+        actor.join()
+        assert [0] == actor.batches.val
+        assert (1..5).toList() == actor.batches.val
+        assert actor.stopped
+    }
+
+    public void testInvalidArguments() {
+        shouldFail(IllegalArgumentException) {
+            new TestBatchingActor(0)
+        }
+        shouldFail(IllegalArgumentException) {
+            new TestBatchingActor(10, -1L)
+        }
+    }
+}
+
+final class TestBatchingActor extends BatchingStaticDispatchActor<Integer> {
+    final CountDownLatch entered = new CountDownLatch(1)
+    final CountDownLatch gate = new CountDownLatch(1)
+    final DataflowQueue batches = new DataflowQueue()
+    volatile boolean stopped = false
+
+    TestBatchingActor(final int maxBatchSize) {
+        super(maxBatchSize)
+    }
+
+    TestBatchingActor(final int maxBatchSize, final long maxLatency) {
+        super(maxBatchSize, maxLatency, TimeUnit.MILLISECONDS)
+    }
+
+    @Override
+    void onMessages(final List<Integer> messages) {
+        entered.countDown()
+        gate.await()
+        batches << messages
+    }
+
+    void afterStop(final List unprocessed) {
+        stopped = unprocessed.isEmpty()
+    }
+}
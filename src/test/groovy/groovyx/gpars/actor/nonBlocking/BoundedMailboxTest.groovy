@@ -0,0 +1,238 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.actor.nonBlocking
+
+import groovyx.gpars.actor.DefaultActor
+import groovyx.gpars.actor.DynamicDispatchActor
+import groovyx.gpars.actor.MailboxOverflowPolicy
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.actor.impl.MailboxOverflowException
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.group.DefaultPGroup
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+
+public class BoundedMailboxTest extends GroovyTestCase {
+    private DefaultPGroup group
+
+    protected void setUp() {
+        group = new DefaultPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testUnboundedByDefault() {
+        final actor = new GatedActor()
+        assert !actor.bounded
+        assert actor.mailboxCapacity == -1
+        assert actor.mailboxDepth == -1
+        assert actor.droppedMessageCount == 0
+    }
+
+    public void testBoundingOnlyBeforeStart() {
+        final actor = new GatedActor()
+        actor.parallelGroup = group
+        shouldFail(IllegalArgumentException) {
+            actor.makeBounded(0, MailboxOverflowPolicy.FAIL)
+        }
+        shouldFail(IllegalArgumentException) {
+            actor.makeBounded(10, MailboxOverflowPolicy.DEAD_LETTER)
+        }
+        actor.makeBounded(10, MailboxOverflowPolicy.FAIL)
+        assert actor.bounded
+        assert actor.mailboxCapacity == 10
+        actor.start()
+        shouldFail(IllegalStateException) {
+            actor.makeBounded(20, MailboxOverflowPolicy.FAIL)
+        }
+        actor.gate.countDown()
+        actor.terminate()
+    }
+
+    public void testFail() {
+        final actor = fillMailbox(MailboxOverflowPolicy.FAIL)
+        shouldFail(MailboxOverflowException) {
+            actor << 4
+        }
+        assert actor.droppedMessageCount == 0
+        assert actor.mailboxDepth == 3
+        actor.gate.countDown()
+        assert [0, 1, 2, 3] == (1..4).collect {actor.processed.val}
+        actor.terminate()
+    }
+
+    public void testDropNewest() {
+        final actor = fillMailbox(MailboxOverflowPolicy.DROP_NEWEST)
+        actor << 4
+        actor << 5
+        assert actor.droppedMessageCount == 2
+        assert actor.mailboxDepth == 3
+        actor.gate.countDown()
+        assert [0, 1, 2, 3] == (1..4).collect {actor.processed.val}
+        actor << 6
+        assert 6 == actor.processed.val
+        actor.terminate()
+    }
+
+    public void testDropOldest() {
+        final actor = fillMailbox(MailboxOverflowPolicy.DROP_OLDEST)
+        actor << 4
+        actor << 5
+        assert actor.droppedMessageCount == 2
+        assert actor.mailboxDepth == 3
+        actor.gate.countDown()
+        assert [0, 3, 4, 5] == (1..4).collect {actor.processed.val}
+        assert actor.mailboxDepth == 0
+        actor.terminate()
+    }
+
+    public void testDeadLetters() {
+        final deadLetters = new CopyOnWriteArrayList()
+        final deadLetterActor = group.staticMessageHandler {
+            deadLetters << it
+            reply 'dead'
+        }
+
+        final actor = new GatedActor()
+        actor.parallelGroup = group
+        actor.makeBounded(3, deadLetterActor)
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..3).each {actor << it}
+
+        assert 'dead' == actor.sendAndWait(4)
+        assert deadLetters == [4]
+        assert actor.droppedMessageCount == 1
+        actor.gate.countDown()
+        assert [0, 1, 2, 3] == (1..4).collect {actor.processed.val}
+        actor.terminate()
+        deadLetterActor.terminate()
+    }
+
+    public void testBlock() {
+        final actor = fillMailbox(MailboxOverflowPolicy.BLOCK)
+        final CountDownLatch sent = new CountDownLatch(1)
+        final sender = Thread.start {
+            actor << 4
+            sent.countDown()
+        }
+        Thread.sleep 200
+        assert sent.count == 1
+        actor.gate.countDown()
+        sent.await()
+        sender.join()
+        assert [0, 1, 2, 3, 4] == (1..5).collect {actor.processed.val}
+        assert actor.droppedMessageCount == 0
+        actor.terminate()
+    }
+
+    public void testBlockedSenderFailsWhenActorStops() {
+        final actor = fillMailbox(MailboxOverflowPolicy.BLOCK)
+        final DataflowQueue failure = new DataflowQueue()
+        Thread.start {
+            try {
+                actor << 4
+                failure << null
+            } catch (IllegalStateException e) {
+                failure << e
+            }
+        }
+        Thread.sleep 100
+        actor.stop()
+        assert failure.val instanceof IllegalStateException
+        actor.gate.countDown()
+        actor.join()
+    }
+
+    public void testControlMessagesIgnoreCapacity() {
+        final actor = fillMailbox(MailboxOverflowPolicy.FAIL)
+        actor.stop()
+        actor.gate.countDown()
+        actor.join()
+        assert !actor.active
+    }
+
+    public void testDynamicDispatchActor() {
+        final results = new DataflowQueue()
+        final gate = new CountDownLatch(1)
+        final actor = new DynamicDispatchActor()
+        actor.parallelGroup = group
+        actor.become {
+            when {Integer msg -> gate.await(); results << msg}
+        }
+        actor.makeBounded(2, MailboxOverflowPolicy.DROP_NEWEST)
+        actor.start()
+        (1..10).each {actor << it}
+        gate.countDown()
+        final received = []
+        while (received.size() < 10 - actor.droppedMessageCount) received << results.val
+        assert received == (1..received.size()).toList()
+        assert actor.droppedMessageCount >= 7
+        actor.terminate()
+    }
+
+    public void testDefaultActor() {
+        final results = new DataflowQueue()
+        final gate = new CountDownLatch(1)
+        final actor = new DefaultActor({
+            gate.await()
+            loop {
+                react {results << it}
+            }
+        })
+        actor.parallelGroup = group
+        actor.makeBounded(2, MailboxOverflowPolicy.DROP_OLDEST)
+        actor.start()
+        (1..10).each {actor << it}
+        gate.countDown()
+        //The actor is stalled, so only a single capacity of messages can be doomed before the newest get dropped
+        assert 3 == results.val
+        assert 4 == results.val
+        assert actor.droppedMessageCount == 8
+        actor.terminate()
+    }
+
+    private GatedActor fillMailbox(final MailboxOverflowPolicy policy) {
+        final actor = new GatedActor()
+        actor.parallelGroup = group
+        actor.makeBounded(3, policy)
+        actor.start()
+        actor << 0
+        actor.entered.await()
+        (1..3).each {actor << it}
+        assert actor.mailboxDepth == 3
+        return actor
+    }
+}
+
+final class GatedActor extends StaticDispatchActor<Integer> {
+    final CountDownLatch entered = new CountDownLatch(1)
+    final CountDownLatch gate = new CountDownLatch(1)
+    final DataflowQueue processed = new DataflowQueue()
+
+    @Override
+    void onMessage(final Integer message) {
+        entered.countDown()
+        gate.await()
+        processed << message
+    }
+}
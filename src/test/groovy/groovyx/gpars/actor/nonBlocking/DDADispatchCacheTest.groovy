@@ -0,0 +1,180 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor.nonBlocking
+
+import groovyx.gpars.actor.DynamicDispatchActor
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.dataflow.DataflowVariable
+
+/**
+ * Verifies that the cached message handler resolution picks the same handlers as Groovy's dynamic dispatch
+ */
+public class DDADispatchCacheTest extends GroovyTestCase {
+
+    public void testOverloadsResolvedRepeatedly() {
+        final def actor = new CachedDispatchActor().start()
+        3.times {
+            actor 1
+            actor ''
+            actor([1, 2])
+            actor([a: 1])
+            actor 1.0G
+            assert 'Integer' == actor.results.val
+            assert 'String' == actor.results.val
+            assert 'List' == actor.results.val
+            assert 'Object' == actor.results.val
+            assert 'Object' == actor.results.val
+        }
+        actor.terminate()
+    }
+
+    public void testCachedPathAvoidsDynamicDispatch() {
+        final def actor = new CachedDispatchActor().start()
+        actor 'check stack'
+        assert 'String' == actor.results.val
+        assert !actor.dynamicallyDispatched.val
+
+        final def modified = new CachedDispatchActor()
+        modified.metaClass.onMessage { BigDecimal num -> results << 'BigDecimal' }
+        modified.start()
+        modified 'check stack'
+        assert 'String' == modified.results.val
+        assert modified.dynamicallyDispatched.val
+        modified 1.0G
+        assert 'BigDecimal' == modified.results.val
+
+        actor.terminate()
+        modified.terminate()
+    }
+
+    public void testMetaClassChangedAfterFirstDispatch() {
+        final def actor = new CachedDispatchActor().start()
+        actor 1.0G
+        assert 'Object' == actor.results.val
+
+        actor.metaClass.onMessage { BigDecimal num -> results << 'BigDecimal' }
+        actor 1.0G
+        assert 'BigDecimal' == actor.results.val
+        actor 1
+        assert 'Integer' == actor.results.val
+        actor.terminate()
+    }
+
+    public void testWhenHandlersCombinedWithOverloads() {
+        final def actor = new CachedDispatchActor()
+        actor.when { Map msg -> results << 'Map' }
+        actor.start()
+
+        2.times {
+            actor([a: 1])
+            actor([1])
+            assert 'Map' == actor.results.val
+            assert 'List' == actor.results.val
+        }
+
+        actor.when { List msg -> results << 'List2' }
+        actor([1])
+        assert 'List2' == actor.results.val
+        actor.terminate()
+    }
+
+    public void testWhenHandlersOnly() {
+        final def results = new DataflowQueue()
+        final def actor = new DynamicDispatchActor().become {
+            when { CharSequence msg -> results << 'CharSequence' }
+            when { Collection msg -> results << 'Collection' }
+            when { Set msg -> results << 'Set' }
+            when { msg -> results << 'Object' }
+        }.start()
+
+        2.times {
+            actor 'a'
+            actor new StringBuilder('a')
+            actor([1])
+            actor([1] as Set)
+            actor 1
+            assert 'CharSequence' == results.val
+            assert 'CharSequence' == results.val
+            assert 'Collection' == results.val
+            assert 'Set' == results.val
+            assert 'Object' == results.val
+        }
+        actor.terminate()
+    }
+
+    public void testCoercedArguments() {
+        final def results = new DataflowQueue()
+        final def actor = new DynamicDispatchActor().become {
+            when { long msg -> results << 'long' }
+            when { String msg -> results << 'String' }
+            when { Runnable msg -> results << 'Runnable' }
+        }.start()
+
+        final def name = 'GString'
+        2.times {
+            actor 1
+            actor "Hello $name"
+            actor { -> }
+            assert 'long' == results.val
+            assert 'String' == results.val
+            assert 'Runnable' == results.val
+        }
+        actor.terminate()
+    }
+
+    public void testExceptionsFromCachedHandlers() {
+        final def error = new DataflowVariable()
+        final def actor = new FailingActor(error).start()
+        actor 'fail'
+        assert error.val instanceof IOException
+        actor.join()
+    }
+}
+
+final class CachedDispatchActor extends DynamicDispatchActor {
+    final results = new DataflowQueue()
+    final dynamicallyDispatched = new DataflowQueue()
+
+    void onMessage(Integer message) { results << 'Integer' }
+
+    void onMessage(String message) {
+        if (message == 'check stack') {
+            dynamicallyDispatched << Thread.currentThread().stackTrace.any { it.className.startsWith('groovyx.gpars.actor.impl.DDAClosure') }
+        }
+        results << 'String'
+    }
+
+    void onMessage(List message) { results << 'List' }
+
+    void onMessage(Object message) { results << 'Object' }
+}
+
+final class FailingActor extends DynamicDispatchActor {
+    private final error
+
+    FailingActor(error) {
+        this.error = error
+    }
+
+    void onMessage(String message) throws IOException {
+        throw new IOException(message)
+    }
+
+    void onException(Throwable e) {
+        error << e
+    }
+}
@@ -0,0 +1,252 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.actor.nonBlocking
+
+import groovyx.gpars.actor.MailboxOverflowPolicy
+import groovyx.gpars.actor.Router
+import groovyx.gpars.actor.RoutingStrategy
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.actor.impl.MailboxOverflowException
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.group.DefaultPGroup
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class RouterTest extends GroovyTestCase {
+    DefaultPGroup group
+
+    protected void setUp() {
+        group = new DefaultPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testRoundRobin() {
+        final def results = new DataflowQueue()
+        final Router router = group.router(4, RoutingStrategy.ROUND_ROBIN) { msg -> results << delegate }
+
+        40.times { router it }
+        final def counts = (1..40).collect { results.val }.countBy { it }
+        assert 4 == counts.size()
+        assert counts.values().every { it == 10 }
+        router.stop()
+        router.join()
+        assert !router.active
+    }
+
+    public void testRandom() {
+        final def results = new DataflowQueue()
+        final Router router = group.router(3, RoutingStrategy.RANDOM) { msg -> results << msg }
+        100.times { router it }
+        assert (0..<100) as Set == (1..100).collect { results.val } as Set
+        router.stop()
+    }
+
+    public void testRepliesGoToTheOriginalSender() {
+        final Router router = group.router(3, RoutingStrategy.ROUND_ROBIN) { msg -> reply msg * 2 }
+        assert [2, 4, 6, 8] == [1, 2, 3, 4].collect { router.sendAndWait it }
+
+        final def replies = new DataflowQueue()
+        final def client = group.actor {
+            router 10
+            react { replies << it }
+        }
+        assert 20 == replies.val
+        client.join()
+        router.terminate()
+        router.join()
+    }
+
+    public void testConsistentHashKeepsKeysOnOneWorker() {
+        final def workers = new ConcurrentHashMap()
+        final def received = new ConcurrentHashMap()
+        final def latch = new CountDownLatch(400)
+        final Router router = group.router(4, RoutingStrategy.CONSISTENT_HASH) { msg ->
+            workers.computeIfAbsent(msg.key, { new ConcurrentHashMap().newKeySet() }).add(delegate)
+            received.computeIfAbsent(msg.key, { Collections.synchronizedList([]) }).add(msg.value)
+            latch.countDown()
+        }
+        router.hashKey { it.key }
+
+        (0..<100).each { value -> (0..<4).each { key -> router new MapEntry(key, value) } }
+        assert latch.await(30, TimeUnit.SECONDS)
+        assert workers.values().every { it.size() == 1 }
+        assert received.values().every { it == (0..<100) }
+        router.stop()
+    }
+
+    public void testSmallestMailboxAvoidsBusyWorker() {
+        final def blocker = new CountDownLatch(1)
+        final def busy = new DataflowQueue()
+        final def results = new DataflowQueue()
+        final Router router = group.router(3, RoutingStrategy.SMALLEST_MAILBOX) { msg ->
+            if (msg == 'block') {
+                busy << delegate
+                blocker.await()
+            } else results << delegate
+        }
+
+        router 'block'
+        final def busyWorker = busy.val
+        final def workers = (1..30).collect {
+            router it
+            final def worker = results.val
+            while (worker.mailboxDepth > 0) Thread.yield()
+            worker
+        }
+        assert workers.count { it == busyWorker } == 0
+        blocker.countDown()
+        router.stop()
+        router.join()
+    }
+
+    public void testResize() {
+        final def results = new DataflowQueue()
+        final Router router = group.router(2, RoutingStrategy.ROUND_ROBIN) { msg -> results << delegate }
+        router.resize(5)
+        assert 5 == router.size
+        50.times { router it }
+        assert 5 == (1..50).collect { results.val }.toSet().size()
+
+        router.resize(1)
+        assert 1 == router.size
+        10.times { router it }
+        assert 1 == (1..10).collect { results.val }.toSet().size()
+        router.stop()
+        router.join()
+    }
+
+    public void testAutoResizeUnderMailboxPressure() {
+        final def blocker = new CountDownLatch(1)
+        final def done = new CountDownLatch(2000)
+        final Router router = group.router(1, RoutingStrategy.ROUND_ROBIN) { msg ->
+            blocker.await()
+            done.countDown()
+        }
+        router.autoResize(1, 4, 10)
+        2000.times { router it }
+        assert 4 == router.size
+
+        blocker.countDown()
+        assert done.await(30, TimeUnit.SECONDS)
+        1000.times { router it }
+        router.stop()
+        router.join()
+    }
+
+    public void testStoppedWorkersGetReplaced() {
+        final def results = new DataflowQueue()
+        final Router router = group.router(2, RoutingStrategy.ROUND_ROBIN) { msg ->
+            if (msg == 'die') stop()
+            else results << msg
+        }
+        router 'die'
+        router 'die'
+        20.times { router it }
+        assert (0..<20) as Set == (1..20).collect { results.val } as Set
+        assert 2 == router.size
+        router.stop()
+        router.join()
+        assert !router.active
+    }
+
+    public void testMailboxOverflowIsNotRerouted() {
+        final def blocker = new CountDownLatch(1)
+        final Router router = new Router(group, RoutingStrategy.ROUND_ROBIN, 1, {
+            final actor = new BlockingActor(blocker)
+            actor.makeBounded(1, MailboxOverflowPolicy.FAIL)
+            actor
+        })
+        router.start()
+        shouldFail(MailboxOverflowException) {
+            10.times { router 'message' }
+        }
+        blocker.countDown()
+        router.stop()
+        router.join()
+    }
+
+    public void testDynamicRouter() {
+        final def results = new DataflowQueue()
+        final Router router = group.dynamicRouter(2, RoutingStrategy.ROUND_ROBIN) {
+            when { String msg -> results << 'String' }
+            when { Integer msg -> results << 'Integer' }
+        }
+        router 'a'
+        router 1
+        router 'b'
+        assert ['Integer', 'String', 'String'] == (1..3).collect { results.val }.sort()
+        router.stop()
+        router.join()
+    }
+
+    public void testCustomWorkers() {
+        final def results = new DataflowQueue()
+        final Router router = new Router(group, RoutingStrategy.RANDOM, 3, { new CollectingActor(results) })
+        router.silentStart()
+        router 'hello'
+        assert 'hello' == results.val
+        shouldFail(IllegalStateException) {
+            router.start()
+        }
+        router.stop()
+        router.join()
+        shouldFail(IllegalStateException) {
+            router 'too late'
+        }
+    }
+
+    public void testSendingToNonStartedRouter() {
+        final Router router = new Router(group, RoutingStrategy.RANDOM, 1, { new CollectingActor(new DataflowQueue()) })
+        shouldFail(IllegalStateException) {
+            router 'hello'
+        }
+        shouldFail(IllegalStateException) {
+            new Router(group, RoutingStrategy.RANDOM, 1, { new CollectingActor(new DataflowQueue()).start() })
+        }
+    }
+}
+
+final class CollectingActor extends StaticDispatchActor<String> {
+    private final results
+
+    CollectingActor(results) {
+        this.results = results
+    }
+
+    @Override
+    void onMessage(final String message) {
+        results << message
+    }
+}
+
+final class BlockingActor extends StaticDispatchActor<String> {
+    private final CountDownLatch blocker
+
+    BlockingActor(final CountDownLatch blocker) {
+        this.blocker = blocker
+    }
+
+    @Override
+    void onMessage(final String message) {
+        blocker.await()
+    }
+}
@@ -0,0 +1,124 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent
+
+import groovyx.gpars.group.NonDaemonPGroup
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class BatchedAgentTest extends GroovyTestCase {
+    private NonDaemonPGroup group
+
+    protected void setUp() {
+        group = new NonDaemonPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testBatchedUpdates() {
+        final agent = group.agent(0)
+        agent.makeBatched(50)
+        assert agent.maxBatchSize == 50
+        1000.times {agent << {updateValue(it + 1)}}
+        assert agent.val == 1000
+        assert agent.instantVal == 1000
+    }
+
+    public void testReadersDoNotSeeStateInsideBatch() {
+        final agent = group.agent(0)
+        agent.makeBatched(10, 1, TimeUnit.MINUTES)
+        final CountDownLatch updated = new CountDownLatch(1)
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {updateValue(1); updated.countDown(); gate.await()}
+        agent << {updateValue(2)}
+        assert updated.await(10, TimeUnit.SECONDS)
+        assert agent.instantVal == 0
+        gate.countDown()
+        assert agent.val == 2
+        assert agent.instantVal == 2
+    }
+
+    public void testReadersDoNotWaitForBatch() {
+        final agent = group.agent(0)
+        agent.makeBatched(10, 1, TimeUnit.MINUTES)
+        final CountDownLatch entered = new CountDownLatch(1)
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {entered.countDown(); gate.await(); updateValue(1)}
+        assert entered.await(10, TimeUnit.SECONDS)
+        def value = null
+        final reader = Thread.start {
+            value = agent.instantVal
+        }
+        reader.join(10000)
+        final boolean returned = !reader.alive
+        gate.countDown()
+        reader.join()
+        assert returned
+        assert value == 0
+        assert agent.val == 1
+    }
+
+    public void testPublishedStateIsCopied() {
+        final agent = group.agent([], {it.clone()})
+        agent.makeBatched(10)
+        agent << {it << 1}
+        agent << {updateValue(it + [2])}
+        assert agent.val == [2]
+        final List state = agent.instantVal
+        assert state == [2]
+        state << 3
+        assert agent.instantVal == [2]
+    }
+
+    public void testFailedUpdateReleasesLock() {
+        final agent = group.agent(0)
+        agent.makeBatched(10)
+        agent << {throw new IllegalStateException('test')}
+        agent << {updateValue(5)}
+        assert agent.val == 5
+        assert agent.instantVal == 5
+        assert agent.hasErrors()
+    }
+
+    public void testValidatorsAndListeners() {
+        final agent = group.agent(0)
+        agent.makeBatched(10)
+        final changes = []
+        agent.addValidator {o, n -> if (n < 0) throw new IllegalArgumentException('negative')}
+        agent.addListener {o, n -> changes << [o, n]}
+        agent << 1
+        agent << -1
+        agent << 2
+        agent.await()
+        assert changes == [[0, 1], [1, 2]]
+        assert agent.errors.size() == 1
+    }
+
+    public void testInvalidArguments() {
+        final agent = group.agent(0)
+        shouldFail(IllegalArgumentException) {
+            agent.makeBatched(0)
+        }
+        shouldFail(IllegalArgumentException) {
+            agent.makeBatched(10, -1, TimeUnit.SECONDS)
+        }
+    }
+}
@@ -0,0 +1,116 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent
+
+import groovyx.gpars.dataflow.DataflowVariable
+import groovyx.gpars.group.NonDaemonPGroup
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class CoalescingAgentTest extends GroovyTestCase {
+    private NonDaemonPGroup group
+
+    protected void setUp() {
+        group = new NonDaemonPGroup(2)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testSingleNotificationPerBatch() {
+        final agent = group.agent(0)
+        agent.makeCoalescing()
+        assert agent.coalescing
+        final notifications = [].asSynchronized()
+        final CountDownLatch notified = new CountDownLatch(1)
+        agent.addListener {o, n ->
+            notifications << [o, n]
+            notified.countDown()
+        }
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {gate.await()}
+        100.times {agent << {updateValue(it + 1)}}
+        gate.countDown()
+        notified.await()
+        assert agent.val == 100
+        assert notifications == [[0, 100]]
+    }
+
+    public void testListenersNotifiedBeforeReads() {
+        final agent = group.agent(0)
+        agent.makeCoalescing()
+        final notifications = [].asSynchronized()
+        agent.addListener {o, n -> notifications << [o, n]}
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {gate.await()}
+        10.times {agent << {updateValue(it + 1)}}
+        final DataflowVariable read = new DataflowVariable()
+        agent.valAsync {read << [it, new ArrayList(notifications)]}
+        10.times {agent << {updateValue(it + 1)}}
+        gate.countDown()
+        assert read.getVal(10, TimeUnit.SECONDS) == [10, [[0, 10]]]
+        assert agent.val == 20
+        assert notifications == [[0, 10], [10, 20]]
+        agent.await()
+        assert notifications == [[0, 10], [10, 20]]
+    }
+
+    public void testValidatorsCheckEachUpdate() {
+        final agent = group.agent(0)
+        agent.makeCoalescing()
+        final checked = []
+        final notifications = [].asSynchronized()
+        final CountDownLatch notified = new CountDownLatch(1)
+        agent.addValidator {o, n ->
+            checked << [o, n]
+            if (n == 2) throw new IllegalArgumentException('two')
+        }
+        agent.addListener {o, n ->
+            notifications << [o, n]
+            notified.countDown()
+        }
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {gate.await()}
+        agent << 1
+        agent << 2
+        agent << 3
+        gate.countDown()
+        notified.await()
+        assert checked == [[0, 1], [1, 2], [1, 3]]
+        assert notifications == [[0, 3]]
+        assert agent.errors.size() == 1
+    }
+
+    public void testListenerErrorsRegistered() {
+        final agent = group.agent(0)
+        agent.makeCoalescing()
+        final CountDownLatch notified = new CountDownLatch(1)
+        agent.addListener {o, n ->
+            notified.countDown()
+            throw new IllegalStateException('listener')
+        }
+        agent << 1
+        notified.await()
+        agent << 2
+        assert agent.val == 2
+        while (!agent.hasErrors()) Thread.sleep(10)
+        assert agent.errors[0].message == 'listener'
+    }
+}
@@ -0,0 +1,119 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent
+
+import groovyx.gpars.agent.persistent.PersistentMap
+import groovyx.gpars.group.NonDaemonPGroup
+
+public class DurableAgentTest extends GroovyTestCase {
+    private NonDaemonPGroup group
+    private File directory
+
+    protected void setUp() {
+        group = new NonDaemonPGroup(2)
+        directory = File.createTempDir('gpars-durable', '')
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+        directory.deleteDir()
+    }
+
+    public void testRecoveryFromJournal() {
+        final agent = group.durableAgent(directory, 0)
+        100.times {agent << {updateValue(it + 1)}}
+        agent << 1000
+        agent << {updateValue(it + 1)}
+        agent.sync()
+        assert agent.val == 1001
+        agent.close()
+
+        final recovered = group.durableAgent(directory, 0)
+        assert recovered.instantVal == 1001
+        recovered << {updateValue(it * 2)}
+        assert recovered.val == 2002
+        recovered.close()
+        assert group.durableAgent(directory, 0).val == 2002
+    }
+
+    public void testJournalSpanningSeveralRegions() {
+        final agent = group.durableAgent(directory, '')
+        final String chunk = 'x' * (1024 * 1024)
+        10.times {agent << chunk + it}
+        agent.close()
+        assert directory.list().contains('journal-0.log')
+
+        final recovered = group.durableAgent(directory, '')
+        assert recovered.val == chunk + 9
+        recovered << 'done'
+        recovered.close()
+        assert group.durableAgent(directory, '').val == 'done'
+    }
+
+    public void testRecoveryFromSnapshot() {
+        final agent = group.durableAgent(directory, PersistentMap.empty())
+        agent.snapshotInterval = 10
+        (1..25).each {index -> agent << {updateValue(it.plus(index, "value $index".toString()))}}
+        agent.sync()
+        assert directory.list().findAll {it.startsWith('snapshot-')} == ['snapshot-2.bin']
+        assert directory.list().findAll {it.startsWith('journal-')} == ['journal-2.log']
+        agent.close()
+
+        final recovered = group.durableAgent(directory, PersistentMap.empty())
+        assert recovered.val.size() == 25
+        assert recovered.val[17] == 'value 17'
+        recovered.snapshot()
+        recovered.close()
+        assert group.durableAgent(directory, PersistentMap.empty()).val.size() == 25
+    }
+
+    public void testFailedMessagesNotJournaled() {
+        final agent = group.durableAgent(directory, 0)
+        agent.addValidator {o, n -> if (n < 0) throw new IllegalArgumentException('negative')}
+        agent << 5
+        agent << -1
+        agent << {throw new IllegalStateException('test')}
+        agent << {updateValue(it + 1)}
+        agent.sync()
+        assert agent.errors.size() == 2
+        agent.close()
+        assert group.durableAgent(directory, 0).val == 6
+    }
+
+    public void testTornJournalRecordIgnored() {
+        final agent = group.durableAgent(directory, 0)
+        10.times {agent << {updateValue(it + 1)}}
+        agent.close()
+        final journal = new File(directory, 'journal-0.log')
+        final length = journal.length()
+        new RandomAccessFile(journal, 'rw').withCloseable {it.setLength(length - 3)}
+
+        final recovered = group.durableAgent(directory, 0)
+        assert recovered.val == 9
+        recovered << {updateValue(it + 100)}
+        recovered.close()
+        assert group.durableAgent(directory, 0).val == 109
+    }
+
+    public void testNullMessages() {
+        final agent = group.durableAgent(directory, 'value')
+        agent << null
+        agent.close()
+        assert group.durableAgent(directory, 'other').val == null
+    }
+}
@@ -0,0 +1,108 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent
+
+import groovyx.gpars.agent.persistent.PersistentMap
+import groovyx.gpars.group.NonDaemonPGroup
+
+import java.util.concurrent.CyclicBarrier
+
+public class ShardedAgentTest extends GroovyTestCase {
+    private NonDaemonPGroup group
+
+    protected void setUp() {
+        group = new NonDaemonPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    public void testShardedAgent() {
+        final agent = group.shardedAgent(4, {[]}, {states -> states.flatten().sort()})
+        assert agent.shardCount == 4
+        (1..100).each {value -> agent.send(value, {it << value})}
+        assert agent.val == (1..100).toList()
+        assert agent.instantVal == (1..100).toList()
+        100.times {
+            assert agent.shardFor(it).is(agent.shardFor(it))
+        }
+    }
+
+    public void testThreadsUpdateShards() {
+        final agent = group.shardedAgent(3, {0}, {states -> states.sum()})
+        final CyclicBarrier barrier = new CyclicBarrier(5)
+        final threads = (1..5).collect {
+            Thread.start {
+                barrier.await()
+                1000.times {agent << {updateValue(it + 1)}}
+            }
+        }
+        threads*.join()
+        assert agent.val == 5000
+    }
+
+    public void testListenersValidatorsAndErrors() {
+        final agent = group.shardedAgent(2, {0}, {states -> states})
+        final changes = [].asSynchronized()
+        agent.addValidator {o, n -> if (n < 0) throw new IllegalArgumentException('negative')}
+        agent.addListener {o, n -> changes << n}
+        agent.send('a', 1)
+        agent.send('a', -1)
+        agent.await()
+        assert changes == [1]
+        assert agent.hasErrors()
+        assert agent.errors.size() == 1
+        assert !agent.hasErrors()
+    }
+
+    public void testCounter() {
+        final counter = group.shardedCounter(4)
+        final CyclicBarrier barrier = new CyclicBarrier(4)
+        final threads = (1..4).collect {
+            Thread.start {
+                barrier.await()
+                1000.times {counter.increment()}
+                10.times {counter.decrement()}
+                counter.add(100)
+            }
+        }
+        threads*.join()
+        assert counter.val == 4 * (1000 - 10 + 100)
+        assert counter.instantSum == 4 * (1000 - 10 + 100)
+    }
+
+    public void testMap() {
+        final ShardedMap<String, Integer> map = group.shardedMap(4)
+        (1..100).each {map.put("key$it".toString(), it)}
+        map.remove('key1')
+        map.compute('key2') {it * 10}
+        map.compute('key3') {null}
+        map.compute('new') {it == null ? 0 : -1}
+        final PersistentMap<String, Integer> all = map.val
+        assert all.size() == 99
+        assert all.key2 == 20
+        assert !all.containsKey('key1')
+        assert map.get('key50') == 50
+        assert map.get('new') == 0
+        assert map.containsKey('key4')
+        assert !map.containsKey('key3')
+        assert map.size() == 99
+        assert map.instantVal == all
+    }
+}
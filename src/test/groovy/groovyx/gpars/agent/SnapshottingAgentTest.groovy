@@ -0,0 +1,126 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent
+
+import groovyx.gpars.agent.persistent.PersistentVector
+import groovyx.gpars.group.NonDaemonPGroup
+
+import java.util.concurrent.CountDownLatch
+
+public class SnapshottingAgentTest extends GroovyTestCase {
+    private NonDaemonPGroup group
+
+    protected void setUp() {
+        group = new NonDaemonPGroup(4)
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+    }
+
+    private static final Closure immutable = {it}
+
+    public void testUpdates() {
+        final agent = group.agent(0, immutable)
+        assert !agent.snapshotting
+        agent.makeSnapshotting()
+        assert agent.snapshotting
+        assert agent.instantVal == 0
+        1000.times {agent << {updateValue(it + 1)}}
+        assert agent.val == 1000
+        assert agent.instantVal == 1000
+        agent << null
+        assert agent.val == null
+        assert agent.instantVal == null
+    }
+
+    public void testReadsDoNotBlockDuringUpdate() {
+        final agent = group.agent(0, immutable)
+        agent.makeSnapshotting()
+        final CountDownLatch entered = new CountDownLatch(1)
+        final CountDownLatch gate = new CountDownLatch(1)
+        agent << {updateValue(1); entered.countDown(); gate.await(); updateValue(2)}
+        entered.await()
+        def value = null
+        final reader = Thread.start {
+            value = agent.instantVal
+        }
+        reader.join()
+        assert value == 1
+        gate.countDown()
+        assert agent.val == 2
+    }
+
+    public void testCopyCalledOncePerUpdate() {
+        int copies = 0
+        final agent = group.agent([1], {copies++; new ArrayList(it)})
+        agent.makeSnapshotting()
+        agent << {updateValue(it + 2)}
+        agent.await()
+        final int copiesAfterUpdate = copies
+        final snapshot = agent.instantVal
+        assert snapshot == [1, 2]
+        100.times {assert agent.instantVal.is(snapshot)}
+        assert copies == copiesAfterUpdate
+    }
+
+    public void testValidatorsAndListeners() {
+        final agent = group.agent(0, immutable)
+        agent.makeSnapshotting()
+        final changes = []
+        agent.addValidator {o, n -> if (n < 0) throw new IllegalArgumentException('negative')}
+        agent.addListener {o, n -> changes << [o, n]}
+        agent << 1
+        agent << -1
+        agent << 2
+        agent.await()
+        assert changes == [[0, 1], [1, 2]]
+        assert agent.instantVal == 2
+        assert agent.errors.size() == 1
+    }
+
+    public void testSwitchingBatchedAgent() {
+        final agent = group.agent(0, immutable)
+        agent.makeBatched(10)
+        100.times {agent << {updateValue(it + 1)}}
+        agent.makeSnapshotting()
+        100.times {agent << {updateValue(it + 1)}}
+        assert agent.val == 200
+        assert agent.instantVal == 200
+    }
+
+    public void testMutableStateRequiresCopy() {
+        final agent = group.agent([1])
+        shouldFail(IllegalStateException) {
+            agent.makeSnapshotting()
+        }
+        assert !agent.snapshotting
+    }
+
+    public void testPersistentStateWithoutCopy() {
+        final PersistentVector state = PersistentVector.empty().plus(1)
+        final agent = group.agent(PersistentVector.empty())
+        agent.makeSnapshotting()
+        agent << state
+        assert agent.val.is(state)
+        agent << [2]
+        assert agent.val.is(state)
+        assert agent.instantVal.is(state)
+        assert agent.errors*.class == [IllegalArgumentException]
+    }
+}
@@ -0,0 +1,171 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.agent.persistent
+
+import groovyx.gpars.group.NonDaemonPGroup
+
+public class PersistentCollectionsTest extends GroovyTestCase {
+
+    public void testMap() {
+        final PersistentMap<String, Integer> empty = PersistentMap.empty()
+        assert empty.isEmpty()
+        final map = empty.plus('a', 1).plus('b', 2)
+        assert empty.isEmpty()
+        assert map == [a: 1, b: 2]
+        assert map.a == 1
+        assert map.get('c') == null
+        assert map.plus('a', 3) == [a: 3, b: 2]
+        assert map == [a: 1, b: 2]
+        assert map.minus('a') == [b: 2]
+        assert map.minus('c').is(map)
+        assert map.minus('a').minus('b').isEmpty()
+        assert map.plus([c: 3, d: 4]).size() == 4
+        assert map.plus(null, 0).get(null) == 0
+        shouldFail(UnsupportedOperationException) {
+            map.put('c', 3)
+        }
+    }
+
+    public void testLargeMap() {
+        final Map<Integer, Integer> reference = [:]
+        PersistentMap<Integer, Integer> map = PersistentMap.empty()
+        final Random random = new Random(42)
+        10000.times {
+            final int key = random.nextInt(5000)
+            if (random.nextInt(3) == 0) {
+                reference.remove(key)
+                map = map.minus(key)
+            } else {
+                reference[key] = it
+                map = map.plus(key, it)
+            }
+        }
+        assert map.size() == reference.size()
+        assert map == reference
+        assert new HashMap(map) == reference
+        reference.each {key, value -> assert map[key] == value}
+    }
+
+    public void testHashCollisions() {
+        final keys = (1..50).collect {new CollidingKey(it)}
+        PersistentMap map = PersistentMap.empty()
+        keys.each {map = map.plus(it, it.id)}
+        map = map.plus('other', 0)
+        assert map.size() == 51
+        keys.each {assert map[it] == it.id}
+        keys.each {map = map.minus(it)}
+        assert map == [other: 0]
+    }
+
+    public void testVector() {
+        final PersistentVector<Integer> empty = PersistentVector.empty()
+        final vector = empty.plus(1).plus(2).plus(3)
+        assert empty.isEmpty()
+        assert vector == [1, 2, 3]
+        assert vector[1] == 2
+        assert vector.replace(1, 5) == [1, 5, 3]
+        assert vector.replace(3, 4) == [1, 2, 3, 4]
+        assert vector.withoutLast() == [1, 2]
+        assert vector == [1, 2, 3]
+        shouldFail(IndexOutOfBoundsException) {
+            vector.get(3)
+        }
+        shouldFail(IllegalStateException) {
+            empty.withoutLast()
+        }
+        shouldFail(UnsupportedOperationException) {
+            vector.add(4)
+        }
+    }
+
+    public void testLargeVector() {
+        final int size = 40000
+        final vector = PersistentVector.from(0..<size)
+        assert vector.size() == size
+        assert vector == (0..<size).toList()
+        final replaced = vector.replace(1234, -1).replace(size - 1, -2)
+        assert replaced[1234] == -1
+        assert replaced[size - 1] == -2
+        assert vector[1234] == 1234
+        PersistentVector shrunk = vector
+        while (shrunk.size() > 10) {
+            shrunk = shrunk.withoutLast()
+            assert shrunk.last() == shrunk.size() - 1
+        }
+        assert shrunk == (0..<10).toList()
+    }
+
+    public void testSet() {
+        final PersistentSet<String> empty = PersistentSet.empty()
+        final set = empty.plus('a').plus('b')
+        assert set == ['a', 'b'] as Set
+        assert set.plus('a').is(set)
+        assert set.minus('a') == ['b'] as Set
+        assert set.contains('b')
+        assert PersistentSet.from(1..1000).size() == 1000
+        assert empty.isEmpty()
+    }
+
+    public void testAgentSkipsCopy() {
+        final group = new NonDaemonPGroup(1)
+        try {
+            int copies = 0
+            final agent = group.agent(PersistentMap.empty(), {copies++; new HashMap(it)})
+            final changes = []
+            agent.addListener {o, n -> changes << [o.size(), n.size()]}
+            100.times {index -> agent << {updateValue(it.plus(index, index.toString()))}}
+            final state = agent.val
+            assert state instanceof PersistentMap
+            assert state.size() == 100
+            assert agent.instantVal.is(state)
+            assert copies == 0
+            assert changes.size() == 100
+            assert changes[-1] == [99, 100]
+        } finally {
+            group.shutdown()
+        }
+    }
+
+    public void testSerialization() {
+        final map = PersistentMap.from((1..100).collectEntries {[it, it.toString()]})
+        final vector = PersistentVector.from(1..100)
+        final bytes = new ByteArrayOutputStream()
+        new ObjectOutputStream(bytes).withStream {it.writeObject([map, vector])}
+        final def (restoredMap, restoredVector) = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject()
+        assert restoredMap == map
+        assert restoredVector == vector
+    }
+}
+
+final class CollidingKey implements Serializable {
+    final int id
+
+    CollidingKey(final int id) {
+        this.id = id
+    }
+
+    @Override
+    boolean equals(final Object other) {
+        other instanceof CollidingKey && other.id == id
+    }
+
+    @Override
+    int hashCode() {
+        7
+    }
+}
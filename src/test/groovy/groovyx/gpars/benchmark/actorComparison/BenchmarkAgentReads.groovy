@@ -0,0 +1,68 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.agent.Agent
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//Reader threads polling the instant values of agents, which keep being updated, with and without published snapshots
+
+final def concurrencyLevel = 8
+final def numOfAgents = 1000
+final def numOfReaders = 4
+final def readsPerReader = 2000000
+final def updatesPerAgent = 1000
+
+4.times {
+    [locking: false, snapshotting: true].each { name, snapshotting ->
+        final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+        final def agents = (1..numOfAgents).collect {
+            final def agent = new Agent<List<Integer>>([0], { new ArrayList<Integer>(it) })
+            agent.attachToThreadPool group.threadPool
+            if (snapshotting) agent.makeSnapshotting()
+            agent
+        }
+        final def updatesDone = new CountDownLatch(numOfAgents)
+        final def update = { updateValue([it[0] + 1]) }
+        final def finish = { updatesDone.countDown() }
+
+        final def t1 = System.currentTimeMillis()
+        agents.each { agent ->
+            updatesPerAgent.times { agent << update }
+            agent << finish
+        }
+        final def readers = (1..numOfReaders).collect {
+            Thread.start {
+                long sum = 0
+                for (int i = 0; i < readsPerReader; i++) sum += agents[i % numOfAgents].instantVal[0]
+                sum
+            }
+        }
+        readers*.join()
+        final def t2 = System.currentTimeMillis()
+        updatesDone.await(1000, TimeUnit.SECONDS)
+        final def t3 = System.currentTimeMillis()
+        println "$name: reads ${t2 - t1} ms, updates ${t3 - t1} ms"
+
+        group.shutdown()
+    }
+}
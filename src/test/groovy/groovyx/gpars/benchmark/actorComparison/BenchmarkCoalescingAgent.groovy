@@ -0,0 +1,52 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.atomic.AtomicLong
+
+//Bursts of value messages sent to agents with listeners, notified either per update or once per batch of messages
+
+final def numOfAgents = 100
+final def burstSize = 200
+final def numOfBursts = 20
+
+4.times {
+    [regular: false, coalescing: true].each { name, coalescing ->
+        final def group = new DefaultPGroup(new FJPool(4))
+        final def notifications = new AtomicLong()
+        final def agents = (1..numOfAgents).collect {
+            final def agent = group.agent(0)
+            if (coalescing) agent.makeCoalescing()
+            3.times { agent.addListener { o, n -> notifications.incrementAndGet(); Thread.yield() } }
+            agent
+        }
+
+        final def t1 = System.currentTimeMillis()
+        numOfBursts.times {
+            agents.each { agent -> for (int i = 0; i < burstSize; i++) agent << i }
+        }
+        agents*.await()
+        final def t2 = System.currentTimeMillis()
+        println "$name: ${t2 - t1} ms, ${notifications.get()} notifications"
+
+        group.shutdown()
+    }
+}
@@ -0,0 +1,107 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.actor.DynamicDispatchActor
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//The client/destination ping-pong of BenchmarkThroughputDynamicDispatchActorCaliper, comparing the cached handler
+//resolution with the dynamic dispatch, which actors with a per-instance metaClass fall back to
+
+final def concurrencyLevel = 8
+final def numOfClients = 8
+final def messagesPerClient = 500000
+
+4.times {
+    [cached: false, dynamic: true].each {name, forceDynamicDispatch ->
+        final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+        final def latch = new CountDownLatch(numOfClients)
+
+        final def clients = (1..numOfClients).collect {
+            final def destination = new PingPongDestination()
+            final def client = new PingPongClient(destination, latch, messagesPerClient)
+            [destination, client].each {actor ->
+                actor.parallelGroup = group
+                if (forceDynamicDispatch) actor.metaClass.dynamic = true
+                actor.silentStart()
+            }
+            client
+        }
+
+        final def t1 = System.currentTimeMillis()
+        clients*.send(new PingPongRun())
+        latch.await(1000, TimeUnit.SECONDS)
+        final def t2 = System.currentTimeMillis()
+        println "$name: ${t2 - t1}"
+
+        group.shutdown()
+    }
+}
+
+final class PingPongRun {}
+
+final class PingPongMessage {}
+
+final class PingPongClient extends DynamicDispatchActor {
+    private final PingPongDestination destination
+    private final CountDownLatch latch
+    private final long repeats
+    private long sent = 0L
+    private long received = 0L
+
+    PingPongClient(final PingPongDestination destination, final CountDownLatch latch, final long repeats) {
+        this.destination = destination
+        this.latch = latch
+        this.repeats = repeats
+    }
+
+    void onMessage(final PingPongMessage msg) {
+        received += 1L
+        if (sent < repeats) {
+            destination.send(msg)
+            sent += 1L
+        } else if (received >= repeats) {
+            latch.countDown()
+        }
+    }
+
+    void onMessage(final PingPongRun msg) {
+        final def message = new PingPongMessage()
+        for (int i = 0; i < Math.min(repeats, 1000L); i++) {
+            destination.send(message)
+            sent += 1L
+        }
+    }
+
+    void onMessage(final Object msg) {
+        throw new IllegalStateException("Unexpected message $msg")
+    }
+}
+
+final class PingPongDestination extends DynamicDispatchActor {
+    void onMessage(final PingPongMessage msg) {
+        sender.send(msg)
+    }
+
+    void onMessage(final String msg) {
+        throw new IllegalStateException("Unexpected message $msg")
+    }
+}
@@ -0,0 +1,53 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+//Updates of a durable agent, whose journal gets flushed once per batch of messages drained from the queue, compared to a plain agent
+
+final def updates = 200000
+
+4.times {
+    final def group = new DefaultPGroup(new FJPool(2))
+    final def directory = File.createTempDir('gpars-durable', '')
+
+    final def plain = group.agent(0L)
+    final def t1 = System.currentTimeMillis()
+    for (int i = 0; i < updates; i++) plain << { updateValue(it + 1) }
+    plain.await()
+    final def t2 = System.currentTimeMillis()
+
+    final def durable = group.durableAgent(directory, 0L)
+    final def t3 = System.currentTimeMillis()
+    for (int i = 0; i < updates; i++) durable << { updateValue(it + 1) }
+    durable.sync()
+    final def t4 = System.currentTimeMillis()
+    durable.close()
+
+    final def t5 = System.currentTimeMillis()
+    final def recovered = group.durableAgent(directory, 0L)
+    assert recovered.val == updates
+    final def t6 = System.currentTimeMillis()
+    recovered.close()
+
+    println "plain: ${t2 - t1} ms, durable: ${t4 - t3} ms, recovery: ${t6 - t5} ms"
+    group.shutdown()
+    directory.deleteDir()
+}
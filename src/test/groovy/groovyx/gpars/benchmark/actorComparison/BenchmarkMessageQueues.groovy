@@ -0,0 +1,94 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+import groovyx.gpars.util.DefaultMessageQueue
+import groovyx.gpars.util.FQMessageQueue
+import groovyx.gpars.util.MessageQueueFactory
+import groovyx.gpars.util.RingBufferMessageQueue
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+
+//Fan-in of many producer threads hammering a handful of agents and actors, compared across message queue implementations
+
+final def concurrencyLevel = 8
+final def numOfProducers = 32
+final def numOfTargets = 4
+final def messagesPerProducer = 200000
+
+final def factories = [
+        'DefaultMessageQueue'   : {new DefaultMessageQueue()} as MessageQueueFactory,
+        'FQMessageQueue'        : {new FQMessageQueue()} as MessageQueueFactory,
+        'RingBufferMessageQueue': {new RingBufferMessageQueue(8192)} as MessageQueueFactory
+]
+
+4.times {
+    factories.each {name, factory ->
+        final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+        group.messageQueueFactory = factory
+
+        final def cdl = new CountDownLatch(2 * numOfProducers * messagesPerProducer)
+        final def agents = (1..numOfTargets).collect {group.agent(0L)}
+        final def actors = (1..numOfTargets).collect {
+            final def actor = new FanInCounter(cdl)
+            actor.parallelGroup = group
+            actor.silentStart()
+        }
+        final def barrier = new CyclicBarrier(numOfProducers + 1)
+        final Closure increment = {updateValue(it + 1); cdl.countDown()}
+
+        final def producers = (0..<numOfProducers).collect {index ->
+            Thread.start {
+                final def agent = agents[index % numOfTargets]
+                final def actor = actors[index % numOfTargets]
+                barrier.await()
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    agent.send(increment)
+                    actor.send(i)
+                }
+            }
+        }
+
+        final def t1 = System.currentTimeMillis()
+        barrier.await()
+        producers*.join()
+        cdl.await(1000, TimeUnit.SECONDS)
+        final def t2 = System.currentTimeMillis()
+        println "$name: ${t2 - t1}"
+
+        actors*.terminate()
+        group.shutdown()
+    }
+}
+
+final class FanInCounter extends StaticDispatchActor<Integer> {
+    private final def cdl
+
+    def FanInCounter(final def cdl) {
+        this.cdl = cdl
+    }
+
+    @Override
+    void onMessage(final Integer message) {
+        cdl.countDown()
+    }
+}
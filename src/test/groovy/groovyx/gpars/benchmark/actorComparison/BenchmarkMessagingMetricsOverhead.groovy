@@ -0,0 +1,76 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//Pairs of actors bouncing a message, measuring the overhead of collecting run-time metrics
+
+final def concurrencyLevel = 8
+final def numOfPairs = 8
+final def bouncesPerPair = 1000000
+
+4.times {
+    [disabled: false, enabled: true].each { name, metricsEnabled ->
+        final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+        final def latch = new CountDownLatch(numOfPairs)
+
+        final def pairs = (1..numOfPairs).collect {
+            final def first = new BouncingActor(latch, bouncesPerPair)
+            final def second = new BouncingActor(latch, bouncesPerPair)
+            first.partner = second
+            second.partner = first
+            [first, second].each { actor ->
+                actor.parallelGroup = group
+                if (metricsEnabled) actor.enableMetrics("bouncer")
+                actor.silentStart()
+            }
+            first
+        }
+
+        final def t1 = System.currentTimeMillis()
+        pairs*.send(0)
+        latch.await(1000, TimeUnit.SECONDS)
+        final def t2 = System.currentTimeMillis()
+        println "$name: ${t2 - t1}"
+        if (metricsEnabled) println pairs[0].instrumentation
+
+        group.shutdown()
+    }
+}
+
+final class BouncingActor extends StaticDispatchActor<Integer> {
+    private final CountDownLatch latch
+    private final int bounces
+    BouncingActor partner
+
+    BouncingActor(final CountDownLatch latch, final int bounces) {
+        this.latch = latch
+        this.bounces = bounces
+    }
+
+    @Override
+    void onMessage(final Integer message) {
+        if (message < bounces) partner.send(message + 1)
+        else latch.countDown()
+    }
+}
@@ -0,0 +1,56 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.agent.Agent
+import groovyx.gpars.agent.persistent.PersistentMap
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+//Updates of a large map held by an agent with a copy closure, comparing a HashMap copied on each update with a persistent map
+
+final def entries = 100000
+final def updates = 500
+
+4.times {
+    final def group = new DefaultPGroup(new FJPool(1))
+
+    final Map<Integer, Integer> initial = [:]
+    for (int i = 0; i < entries; i++) initial[i] = i
+    final def copyingAgent = new Agent<Map<Integer, Integer>>(initial, { new HashMap<Integer, Integer>(it) })
+    copyingAgent.attachToThreadPool group.threadPool
+    final def persistentAgent = new Agent<Map<Integer, Integer>>(PersistentMap.from(initial), { new HashMap<Integer, Integer>(it) })
+    persistentAgent.attachToThreadPool group.threadPool
+
+    final def t1 = System.currentTimeMillis()
+    for (int i = 0; i < updates; i++) {
+        final int key = i
+        copyingAgent << { it[key] = -key; updateValue(it) }
+    }
+    copyingAgent.await()
+    final def t2 = System.currentTimeMillis()
+    for (int i = 0; i < updates; i++) {
+        final int key = i
+        persistentAgent << { updateValue(it.plus(key, -key)) }
+    }
+    persistentAgent.await()
+    final def t3 = System.currentTimeMillis()
+    println "copied HashMap: ${t2 - t1} ms, PersistentMap: ${t3 - t2} ms"
+
+    group.shutdown()
+}
@@ -0,0 +1,67 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.actor.Actor
+import groovyx.gpars.actor.RoutingStrategy
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//Spreads messages from several sending threads among stateless workers, comparing the hand-picked targets
+//of an actor array with the routing strategies of a router
+
+final def concurrencyLevel = 8
+final def numOfWorkers = 8
+final def numOfSenders = 4
+final def messagesPerSender = 1000000
+
+final def work = { msg, CountDownLatch latch ->
+    Math.sqrt(msg as double)
+    latch.countDown()
+}
+
+4.times {
+    (['array'] + RoutingStrategy.values()*.name()).each { name ->
+        final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+        final def latch = new CountDownLatch(numOfSenders * messagesPerSender)
+
+        def target
+        if (name == 'array') {
+            final Actor[] workers = (1..numOfWorkers).collect { group.staticMessageHandler { work(it, latch) } }
+            target = { int msg -> workers[msg % numOfWorkers].send(msg) }
+        } else {
+            final def router = group.router(numOfWorkers, RoutingStrategy.valueOf(name)) { work(it, latch) }
+            target = { int msg -> router.send(msg) }
+        }
+
+        final def t1 = System.currentTimeMillis()
+        final def senders = (1..numOfSenders).collect {
+            Thread.start {
+                for (int i = 0; i < messagesPerSender; i++) target(i)
+            }
+        }
+        senders*.join()
+        latch.await(1000, TimeUnit.SECONDS)
+        final def t2 = System.currentTimeMillis()
+        println "$name: ${t2 - t1}"
+
+        group.shutdown()
+    }
+}
@@ -0,0 +1,81 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+import groovyx.gpars.util.DefaultMessageQueue
+import groovyx.gpars.util.MessageQueueFactory
+import groovyx.gpars.util.RingBufferMessageQueue
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//Measures the heap allocated per message sent to an actor, for the individual message queue implementations
+
+final def messages = 2000000
+final def message = 'message'
+final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+
+final def totalAllocatedBytes = {
+    threadBean.getThreadAllocatedBytes(threadBean.allThreadIds).findAll { it > 0 }.sum() as long
+}
+
+final Map<String, MessageQueueFactory> queues = [
+        envelope: null,
+        default : { new DefaultMessageQueue() } as MessageQueueFactory,
+        ring    : { new RingBufferMessageQueue() } as MessageQueueFactory
+]
+
+4.times {
+    queues.each { name, factory ->
+        final def group = new DefaultPGroup(new FJPool(1))
+        group.messageQueueFactory = factory
+        final def latch = new CountDownLatch(1)
+        final def actor = new CountingActor(latch, messages)
+        actor.parallelGroup = group
+        actor.silentStart()
+
+        final def allocatedBefore = totalAllocatedBytes()
+        final def t1 = System.nanoTime()
+        for (int i = 0; i < messages; i++) actor.send(message)
+        latch.await(1000, TimeUnit.SECONDS)
+        final def t2 = System.nanoTime()
+        final def allocated = totalAllocatedBytes() - allocatedBefore
+        println "$name: ${(t2 - t1) / messages} ns/message, ${allocated / messages} bytes/message"
+
+        group.shutdown()
+    }
+}
+
+final class CountingActor extends StaticDispatchActor<String> {
+    private final CountDownLatch latch
+    private int remaining
+
+    CountingActor(final CountDownLatch latch, final int messages) {
+        this.latch = latch
+        this.remaining = messages
+    }
+
+    @Override
+    void onMessage(final String message) {
+        if (--remaining == 0) latch.countDown()
+    }
+}
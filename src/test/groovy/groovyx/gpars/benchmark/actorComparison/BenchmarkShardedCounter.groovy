@@ -0,0 +1,59 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.agent.Agent
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+import java.util.concurrent.CyclicBarrier
+
+//Threads incrementing a shared counter, held either by a single agent or by a sharded counter
+
+final def concurrencyLevel = 8
+final def numOfThreads = 8
+final def incrementsPerThread = 200000
+
+final def run = { String name, Closure increment, Closure result ->
+    final def barrier = new CyclicBarrier(numOfThreads + 1)
+    final def threads = (1..numOfThreads).collect {
+        Thread.start {
+            barrier.await()
+            for (int i = 0; i < incrementsPerThread; i++) increment()
+        }
+    }
+    barrier.await()
+    final def t1 = System.currentTimeMillis()
+    threads*.join()
+    assert result() == numOfThreads * incrementsPerThread
+    final def t2 = System.currentTimeMillis()
+    println "$name: ${t2 - t1} ms"
+}
+
+4.times {
+    final def group = new DefaultPGroup(new FJPool(concurrencyLevel))
+
+    final def agent = group.agent(0L)
+    final def increment = { updateValue(it + 1) }
+    run('single agent', { agent << increment }, { agent.val })
+
+    final def counter = group.shardedCounter(concurrencyLevel)
+    run('sharded counter', { counter.increment() }, { counter.val })
+
+    group.shutdown()
+}
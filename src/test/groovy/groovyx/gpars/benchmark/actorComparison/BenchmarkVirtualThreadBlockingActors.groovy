@@ -0,0 +1,65 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.actorComparison
+
+import groovyx.gpars.group.PGroupBuilder
+import groovyx.gpars.scheduler.VirtualThreadPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+//Keeps 100k blocking actors alive at the same time, each waiting in receive() for a token passed along a ring.
+//Requires Java 21 and the multi-release gpars jar on the classpath.
+
+final def numOfActors = 100000
+final def rounds = 3
+
+if (!VirtualThreadPool.supported) {
+    println 'Virtual threads are not supported by this JVM, run the benchmark on Java 21 or newer.'
+    return
+}
+
+4.times {
+    final def group = PGroupBuilder.createVirtualThreadGroup()
+    final def done = new CountDownLatch(1)
+    final def t1 = System.currentTimeMillis()
+
+    final def actors = new Object[numOfActors]
+    for (int i = numOfActors - 1; i >= 0; i--) {
+        final int index = i
+        actors[index] = group.blockingActor {
+            while (true) {
+                final int token = receive()
+                if (token == 0) {
+                    done.countDown()
+                    return
+                }
+                if (index == numOfActors - 1) actors[0] << token - 1
+                else actors[index + 1] << token
+            }
+        }
+    }
+    final def t2 = System.currentTimeMillis()
+
+    actors[0] << rounds
+    done.await(1000, TimeUnit.SECONDS)
+    final def t3 = System.currentTimeMillis()
+    println "Started ${numOfActors} actors in ${t2 - t1} ms, passed the token ${rounds} times around the ring in ${t3 - t2} ms"
+
+    actors.each { it.terminate() }
+    group.shutdown()
+}
@@ -25,7 +25,10 @@ import com.google.caliper.api.Benchmark;
 
 import groovyx.gpars.actor.Actor;
 import groovyx.gpars.group.DefaultPGroup;
+import groovyx.gpars.scheduler.DefaultPool;
 import groovyx.gpars.scheduler.FJPool;
+import groovyx.gpars.scheduler.Pool;
+import groovyx.gpars.scheduler.WorkStealingPool;
 
 public abstract class BenchmarkCaliper extends Benchmark {
     public static final int STATIC_RUN = 1;
@@ -34,6 +37,9 @@ public abstract class BenchmarkCaliper extends Benchmark {
     public static final DynamicRun DYNAMIC_RUN = new DynamicRun();
     public static final DynamicMessage DYNAMIC_MESSAGE = new DynamicMessage();
     public static final Poison DYNAMIC_POISON = new Poison();
+    public static final String FJ_POOL = "FJPool";
+    public static final String DEFAULT_POOL = "DefaultPool";
+    public static final String WORK_STEALING_POOL = "WorkStealingPool";
 
     final Object RUN;
     final Object POISON;
@@ -80,8 +86,18 @@ public abstract class BenchmarkCaliper extends Benchmark {
         return repeat;
     }
 
+    static Pool createPool(final String poolType, final int poolSize) {
+        if (DEFAULT_POOL.equals(poolType)) return new DefaultPool(true, poolSize);
+        if (WORK_STEALING_POOL.equals(poolType)) return new WorkStealingPool(poolSize);
+        return new FJPool(poolSize);
+    }
+
     public long timeThroughput(final int reps, final int numberOfClients) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException, InterruptedException {
-        group = new DefaultPGroup(new FJPool(maxClients));
+        return timeThroughput(reps, numberOfClients, FJ_POOL);
+    }
+
+    public long timeThroughput(final int reps, final int numberOfClients, final String poolType) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException, InterruptedException {
+        group = new DefaultPGroup(createPool(poolType, maxClients));
         repeatsPerClient = repeat / numberOfClients;//MESSAGE quota for each pair of actors
 
         long totalTime = 0L;
@@ -122,7 +138,11 @@ public abstract class BenchmarkCaliper extends Benchmark {
     }
 
     public long timeLatency(final int numberOfClients) throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException, InterruptedException {
-        setupLatencyBenchmark(numberOfClients);
+        return timeLatency(numberOfClients, FJ_POOL);
+    }
+
+    public long timeLatency(final int numberOfClients, final String poolType) throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException, InterruptedException {
+        setupLatencyBenchmark(numberOfClients, poolType);
 
         for (final Actor client : clients) {
             client.start();
@@ -136,10 +156,10 @@ public abstract class BenchmarkCaliper extends Benchmark {
         }
     }
 
-    private void setupLatencyBenchmark(final int numberOfClients) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
+    private void setupLatencyBenchmark(final int numberOfClients, final String poolType) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
 
         totalDuration = 0L;
-        group = new DefaultPGroup(new FJPool(maxClients));
+        group = new DefaultPGroup(createPool(poolType, maxClients));
         latch = new CountDownLatch(numberOfClients);
         repeatsPerClient = repeat / numberOfClients;
         clients = new ArrayList<Actor>();
@@ -32,6 +32,8 @@ public class BenchmarkLatencyDynamicDispatchActorCaliper extends BenchmarkCalipe
 
     @Param({"1", "2", "4"})
     int numberOfClients;
+    @Param({BenchmarkCaliper.FJ_POOL, BenchmarkCaliper.DEFAULT_POOL, BenchmarkCaliper.WORK_STEALING_POOL})
+    String pool;
 
     @VmParam
     String server;
@@ -49,7 +51,7 @@ public class BenchmarkLatencyDynamicDispatchActorCaliper extends BenchmarkCalipe
     public long latencyLatencyDynamicDispatchActor(final int dummy) {
         long time = 0;
         try {
-            time = timeLatency(numberOfClients);
+            time = timeLatency(numberOfClients, pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -32,6 +32,8 @@ import java.util.concurrent.CountDownLatch;
 public class BenchmarkLatencyStaticDispatchActorCaliper extends BenchmarkCaliper {
     @Param({"1", "2", "4"})
     int numberOfClients;
+    @Param({BenchmarkCaliper.FJ_POOL, BenchmarkCaliper.DEFAULT_POOL, BenchmarkCaliper.WORK_STEALING_POOL})
+    String pool;
     @VmParam
     String server;
     @VmParam
@@ -48,7 +50,7 @@ public class BenchmarkLatencyStaticDispatchActorCaliper extends BenchmarkCaliper
     public long latencyLatencyStaticDispatchActor(final int dummy) {
         long time = 0;
         try {
-            time = timeLatency(numberOfClients);
+            time = timeLatency(numberOfClients, pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -34,6 +34,8 @@ public class BenchmarkThroughputComputationDynamicActorCaliper extends Benchmark
             "40", "42", "44", "46", "48"}
     )
     int numberOfClients;
+    @Param({BenchmarkCaliper.FJ_POOL, BenchmarkCaliper.DEFAULT_POOL, BenchmarkCaliper.WORK_STEALING_POOL})
+    String pool;
     @VmParam
     String server;
     @VmParam
@@ -51,7 +53,7 @@ public class BenchmarkThroughputComputationDynamicActorCaliper extends Benchmark
     public long timeThroughputComputationDynamicActor(final int reps) {
         long time = 0;
         try {
-            time = super.timeThroughput(reps, numberOfClients);
+            time = super.timeThroughput(reps, numberOfClients, pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -35,6 +35,8 @@ public class BenchmarkThroughputComputationStaticActorCaliper extends BenchmarkC
             "40", "42", "44", "46", "48"}
     )
     int numberOfClients;
+    @Param({BenchmarkCaliper.FJ_POOL, BenchmarkCaliper.DEFAULT_POOL, BenchmarkCaliper.WORK_STEALING_POOL})
+    String pool;
 
     @VmParam
     String server;
@@ -52,7 +54,7 @@ public class BenchmarkThroughputComputationStaticActorCaliper extends BenchmarkC
     public long timeThroughputComputationStaticActor(final int reps) {
         long time = 0;
         try {
-            time = timeThroughput(reps, numberOfClients);
+            time = timeThroughput(reps, numberOfClients, pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
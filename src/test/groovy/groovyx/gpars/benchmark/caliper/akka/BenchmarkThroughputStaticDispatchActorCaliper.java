@@ -35,6 +35,8 @@ public class BenchmarkThroughputStaticDispatchActorCaliper extends BenchmarkCali
             "40", "42", "44", "46", "48"}
     )
     int numberOfClients;
+    @Param({BenchmarkCaliper.FJ_POOL, BenchmarkCaliper.DEFAULT_POOL, BenchmarkCaliper.WORK_STEALING_POOL})
+    String pool;
 
     @VmParam
     String server;
@@ -53,7 +55,7 @@ public class BenchmarkThroughputStaticDispatchActorCaliper extends BenchmarkCali
     public long timeThroughputStaticDispatchActor(final int reps) {
         long time = 0L;
         try {
-            time = timeThroughput(reps, numberOfClients);
+            time = timeThroughput(reps, numberOfClients, pool);
         } catch (Exception e) {
             e.printStackTrace();
         }
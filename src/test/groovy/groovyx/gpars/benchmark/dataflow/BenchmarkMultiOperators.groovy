@@ -37,6 +37,40 @@ final def concurrencyLevel = 8
     perform("Early graceful shutdown", concurrencyLevel, monitor, new GracefulShutdownListener(monitor), true)
 }
 
+3.times {
+    performFourInputs("Four inputs", concurrencyLevel)
+}
+
+private void performFourInputs(String title, int concurrencyLevel) {
+    group = new DefaultPGroup(new FJPool(concurrencyLevel))
+
+    final List<DataflowQueue> inputs = (1..4).collect { new DataflowQueue() }
+    final DataflowQueue result = new DataflowQueue()
+
+    (1..1000000).each { value ->
+        inputs.each { it << value }
+    }
+    inputs.each { it << -1 }
+
+    final def t1 = System.currentTimeMillis()
+
+    long sum = 0
+    def op = group.operator(inputs: inputs, outputs: [result]) {a, b, c, d ->
+        if (a == -1) {
+            bindOutput sum
+        } else {
+            sum += a + b + c + d
+        }
+    }
+
+    assert 2000002000000 == result.val
+    op.terminate()
+    op.join()
+    group.shutdown()
+    final def t2 = System.currentTimeMillis()
+    println(title + ": " + (t2 - t1))
+}
+
 private void perform(String title, int concurrencyLevel, GracefulShutdownMonitor monitor, GracefulShutdownListener listener, boolean shutdownEarly=false) {
     group = new DefaultPGroup(new FJPool(concurrencyLevel))
 
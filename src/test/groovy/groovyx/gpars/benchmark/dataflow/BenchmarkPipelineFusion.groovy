@@ -0,0 +1,53 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.benchmark.dataflow
+
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.dataflow.operator.Pipeline
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.FJPool
+
+final def concurrencyLevel = 8
+final def count = 1000000
+
+long measure(final group, final boolean fusing, final int count) {
+    final DataflowQueue queue = new DataflowQueue()
+    final DataflowQueue result = new DataflowQueue()
+    final pipeline = new Pipeline(group, queue)
+    if (fusing) pipeline.fuse()
+    pipeline.chainWith { it + 1 }.chainWith { it * 2 }.filter { it > 0 }.chainWith { it - 1 }.filter { it % 2 == 1 }.chainWith { it + 0 } into result
+
+    final def t1 = System.currentTimeMillis()
+    for (int i = 0; i < count; i++) {
+        queue << i
+    }
+    long sum = 0
+    for (int i = 0; i < count; i++) {
+        sum += result.val
+    }
+    final def t2 = System.currentTimeMillis()
+    assert sum == (long) count * count
+    return t2 - t1
+}
+
+final group = new DefaultPGroup(new FJPool(concurrencyLevel))
+3.times {
+    println "Six separate operators: ${measure(group, false, count)} ms"
+    println "Six fused stages: ${measure(group, true, count)} ms"
+}
+group.shutdown()
@@ -0,0 +1,60 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.benchmark.dataflow
+
+import groovyx.gpars.dataflow.BroadcastOverflowPolicy
+import groovyx.gpars.dataflow.DataflowBroadcast
+import groovyx.gpars.dataflow.DataflowReadChannel
+import groovyx.gpars.dataflow.RingBufferBroadcast
+
+final def readerCount = 4
+final def count = 1000000
+
+long measure(final Closure<List<DataflowReadChannel>> factory, final int readerCount, final int count) {
+    final List<DataflowReadChannel> readers = []
+    final def broadcast = factory(readers)
+    final List<Thread> threads = readers.collect { reader ->
+        Thread.start {
+            long sum = 0
+            for (int i = 0; i < count; i++) {
+                sum += reader.val
+            }
+            assert sum == (long) count * (count - 1) / 2
+        }
+    }
+
+    final def t1 = System.currentTimeMillis()
+    for (int i = 0; i < count; i++) {
+        broadcast << i
+    }
+    threads*.join()
+    final def t2 = System.currentTimeMillis()
+    return t2 - t1
+}
+
+3.times {
+    println "DataflowBroadcast: " + measure({ readers ->
+        final broadcast = new DataflowBroadcast()
+        readerCount.times { readers << broadcast.createReadChannel() }
+        broadcast
+    }, readerCount, count) + " ms"
+    println "RingBufferBroadcast: " + measure({ readers ->
+        final broadcast = new RingBufferBroadcast(4096, BroadcastOverflowPolicy.BLOCK)
+        readerCount.times { readers << broadcast.createReadChannel() }
+        broadcast
+    }, readerCount, count) + " ms"
+}
@@ -0,0 +1,124 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow
+
+import groovyx.gpars.group.DefaultPGroup
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class BoundedDataflowQueueTest extends GroovyTestCase {
+
+    public void testInvalidCapacity() {
+        shouldFail(IllegalArgumentException) {
+            new BoundedDataflowQueue(0)
+        }
+    }
+
+    public void testOffer() {
+        final BoundedDataflowQueue queue = new BoundedDataflowQueue(2)
+        assert queue.offer(1)
+        assert queue.offer(2)
+        assert !queue.offer(3)
+        assert 2 == queue.length()
+        assert 1 == queue.val
+        assert queue.offer(3)
+        assert 2 == queue.val
+        assert 3 == queue.val
+        assert 'BoundedDataflowQueue(capacity=2, queue=[])' == queue.toString()
+    }
+
+    public void testBlockingBind() {
+        final BoundedDataflowQueue queue = new BoundedDataflowQueue(1)
+        queue << 1
+        final CountDownLatch written = new CountDownLatch(1)
+        Thread.start {
+            queue << 2
+            written.countDown()
+        }
+        assert !written.await(200, TimeUnit.MILLISECONDS)
+        assert 1 == queue.val
+        assert written.await(10, TimeUnit.SECONDS)
+        assert 2 == queue.val
+    }
+
+    public void testBindAsync() {
+        final BoundedDataflowQueue queue = new BoundedDataflowQueue(1)
+        final Promise first = queue.bindAsync(1)
+        final Promise second = queue.bindAsync(2)
+        final Promise third = queue.bindAsync(3)
+        assert first.bound
+        assert !second.bound
+        assert !queue.offer(4)
+        assert 1 == queue.val
+        assert 2 == second.get(10, TimeUnit.SECONDS)
+        assert !third.bound
+        assert 2 == queue.val
+        assert 3 == queue.val
+        assert third.bound
+    }
+
+    public void testWaitingReaders() {
+        final BoundedDataflowQueue queue = new BoundedDataflowQueue(1)
+        final reader = Thread.start {
+            assert (1..100).collect { queue.val } == (1..100)
+        }
+        for (i in 1..100) queue << i
+        reader.join()
+        assert 0 == queue.length()
+    }
+
+    public void testConcurrentReadersKeepTheOrderOfWrites() {
+        final BoundedDataflowQueue queue = new BoundedDataflowQueue(2)
+        final int count = 20000
+        for (i in 0..<count) queue.bindAsync(i)
+        final List<List<Integer>> reads = (1..4).collect { [] }
+        final threads = reads.collect { read ->
+            Thread.start {
+                for (i in 0..<(count / reads.size())) read << queue.val
+            }
+        }
+        threads*.join()
+        reads.each { read ->
+            assert count / reads.size() == read.size()
+            assert read == read.sort(false)
+        }
+        assert (0..<count) == reads.flatten().sort()
+    }
+
+    public void testOperatorSuspendsOnFullOutput() {
+        final group = new DefaultPGroup(1)
+        try {
+            final DataflowQueue input = new DataflowQueue()
+            final BoundedDataflowQueue output = new BoundedDataflowQueue(2)
+            group.operator(input, output) { bindOutput it }
+            for (i in 1..10) input << i
+            Thread.sleep 500
+            assert 2 == output.length()
+            assert 7 == input.length()
+
+            final DataflowVariable result = new DataflowVariable()
+            group.task { result << 'pool thread available' }
+            assert 'pool thread available' == result.get(10, TimeUnit.SECONDS)
+
+            assert (1..10).collect { output.val } == (1..10)
+            assert 0 == input.length()
+        } finally {
+            group.shutdown()
+        }
+    }
+}
@@ -18,6 +18,7 @@ package groovyx.gpars.dataflow
 
 import groovyx.gpars.actor.Actor
 import groovyx.gpars.actor.Actors
+import groovyx.gpars.dataflow.expression.DataflowExpression
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.CyclicBarrier
 import java.util.concurrent.TimeUnit
@@ -80,6 +81,53 @@ public class DataflowQueueTest extends GroovyTestCase {
         assert stream.poll() == null
     }
 
+    public void testPollRacingWithReaders() {
+        500.times {
+            final DataflowQueue stream = new DataflowQueue()
+            final DataflowVariable variable = new DataflowVariable()
+            stream << 1
+            stream << variable
+            final CyclicBarrier barrier = new CyclicBarrier(2)
+            final DataflowVariable read = new DataflowVariable()
+            final Thread reader = Thread.start {
+                barrier.await()
+                read << stream.val
+            }
+            barrier.await()
+            final DataflowExpression polled = stream.poll()
+            assert polled == null || polled.bound
+            variable << 2
+            reader.join()
+            final def values = [read.val, polled != null ? polled.val : stream.val]
+            assert [1, 2] == values.sort()
+            assert 0 == stream.length()
+        }
+    }
+
+    public void testPollRacingWithReadersOverEqualValues() {
+        500.times {
+            final DataflowQueue stream = new DataflowQueue()
+            final String first = new String('a')
+            final String last = new String('a')
+            stream << first
+            stream << 'b'
+            stream << last
+            final CyclicBarrier barrier = new CyclicBarrier(2)
+            final DataflowVariable read = new DataflowVariable()
+            final Thread reader = Thread.start {
+                barrier.await()
+                read << stream.val
+            }
+            barrier.await()
+            final DataflowExpression polled = stream.poll()
+            reader.join()
+            assert ['a', 'b'] == [read.val, polled.val].sort()
+            //the equal value at the tail must stay at the tail
+            assert 1 == stream.length()
+            assert last.is(stream.val)
+        }
+    }
+
     public void testNullValues() {
         final CountDownLatch latch = new CountDownLatch(1)
 
@@ -305,4 +353,139 @@ public class DataflowQueueTest extends GroovyTestCase {
         assert result.val == 1
 
     }
+
+    public void testInterruptedReaderDoesNotConsumeValues() {
+        final DataflowQueue stream = new DataflowQueue()
+        final CountDownLatch started = new CountDownLatch(1)
+        def interrupted = false
+        final Thread reader = Thread.start {
+            started.countDown()
+            try {
+                stream.val
+            } catch (InterruptedException ignore) {
+                interrupted = true
+            }
+        }
+        started.await()
+        Thread.sleep 100
+        reader.interrupt()
+        reader.join()
+        assert interrupted
+        stream << 1
+        stream << 2
+        assert 1 == stream.val
+        assert 2 == stream.val
+    }
+
+    public void testVariablesAsValues() {
+        final DataflowQueue stream = new DataflowQueue()
+        final DataflowVariable variable = new DataflowVariable()
+        stream.bind(variable)
+        assert stream.val.is(variable)
+        assert !variable.bound
+    }
+
+    public void testAsyncReadersWithAttachments() {
+        final DataflowQueue stream = new DataflowQueue()
+        final DataflowQueue results = new DataflowQueue()
+        final Actor reader = Actors.actor {
+            loop {
+                react {
+                    results << it
+                }
+            }
+        }
+        stream.getValAsync('first', reader)
+        stream << 10
+        stream << 20
+        stream.getValAsync('second', reader)
+        assert [attachment: 'first', result: 10] == results.val
+        assert [attachment: 'second', result: 20] == results.val
+        reader.stop()
+    }
+
+    public void testConcurrentWritersAndReaders() {
+        final DataflowQueue stream = new DataflowQueue()
+        final DataflowQueue sums = new DataflowQueue()
+        final writers = (1..4).collect {
+            Thread.start {
+                for (i in 1..1000) stream << i
+            }
+        }
+        (1..4).each {
+            Thread.start {
+                long sum = 0
+                for (i in 1..1000) sum += stream.val
+                sums << sum
+            }
+        }
+        writers*.join()
+        assert 4 * 500500 == (1..4).sum { sums.val }
+        assert 0 == stream.length()
+        assert !stream.bound
+    }
+
+    public void testBindAllAndDrainTo() {
+        final DataflowQueue stream = new DataflowQueue()
+        final List received = Collections.synchronizedList([])
+        stream.wheneverBound {received << it}
+        final List fired = []
+        stream.eventManager.addDataflowChannelListener([onMessage: {fired << it}] as DataflowChannelListener)
+        stream.bindAll([1, 2, null, 4])
+        assert 4 == stream.length()
+        assert [1, 2, null, 4] == fired
+
+        final List values = []
+        assert 3 == stream.drainTo(values, 3)
+        assert [1, 2, null] == values
+        assert 1 == stream.drainTo(values, 10)
+        assert [1, 2, null, 4] == values
+        assert 0 == stream.drainTo(values, 10)
+        assert 0 == stream.drainTo(values, 10, 10, TimeUnit.MILLISECONDS)
+        assert !stream.bound
+        Thread.sleep 500
+        assert 4 == received.size()
+        assert received.containsAll([1, 2, null, 4])
+    }
+
+    public void testBindAllWithWaitingReaders() {
+        final DataflowQueue stream = new DataflowQueue()
+        final DataflowQueue results = new DataflowQueue()
+        final CountDownLatch started = new CountDownLatch(2)
+        2.times {
+            Thread.start {
+                started.countDown()
+                results << stream.val
+            }
+        }
+        started.await()
+        Thread.sleep 100
+        stream.bindAll([1, 2, 3])
+        assert [1, 2] == [results.val, results.val].sort()
+        assert 3 == stream.val
+        assert 0 == stream.length()
+    }
+
+    public void testTimedDrainToWaitsForValues() {
+        final DataflowQueue stream = new DataflowQueue()
+        Thread.start {
+            Thread.sleep 100
+            stream.bindAll([1, 2])
+        }
+        final List values = []
+        assert 1 <= stream.drainTo(values, 10, 10, TimeUnit.SECONDS)
+        stream.drainTo(values, 10)
+        assert [1, 2] == values
+    }
+
+    public void testBindAllToSyncQueue() {
+        final SyncDataflowQueue stream = new SyncDataflowQueue()
+        final writer = Thread.start {
+            stream.bindAll([1, 2, 3])
+        }
+        final List values = []
+        while (values.size() < 3) stream.drainTo(values, 10, 10, TimeUnit.SECONDS)
+        writer.join()
+        assert [1, 2, 3] == values
+    }
 }
@@ -0,0 +1,195 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.dataflow
+
+import groovyx.gpars.group.DefaultPGroup
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+
+public class RingBufferBroadcastTest extends GroovyTestCase {
+
+    public void testMultipleReaders() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(16)
+        final DataflowReadChannel stream1 = broadcast.createReadChannel()
+        final DataflowReadChannel stream2 = broadcast.createReadChannel()
+        broadcast << 'Message1'
+        broadcast << 'Message2'
+        broadcast << null
+        assert stream1.val == stream2.val
+        assert stream1.val == stream2.val
+        assert stream1.val == null
+        assert stream2.val == null
+        assert !stream1.bound
+        assert null == stream1.getVal(10, TimeUnit.MILLISECONDS)
+
+        final DataflowReadChannel lateStream = broadcast.createReadChannel()
+        broadcast << 'Message4'
+        assert 1 == lateStream.length()
+        assert 'Message4' == lateStream.val
+        assert 'Message4' == stream1.poll().val
+        assert null == stream1.poll()
+    }
+
+    public void testMultipleThreadedWriteWithSlowReaders() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(4)
+        final RingBufferBroadcastReadAdapter stream1 = broadcast.createReadChannel()
+        final RingBufferBroadcastReadAdapter stream2 = broadcast.createReadChannel()
+
+        final CyclicBarrier barrier = new CyclicBarrier(5)
+        final List<Thread> writers = (0..<5).collect {writer ->
+            Thread.start {
+                barrier.await()
+                100.times {broadcast << writer * 100 + it}
+            }
+        }
+        final Promise reader2 = Dataflow.task {(1..500).collect {stream2.val}}
+        final List values1 = (1..500).collect {stream1.val}
+        final List values2 = reader2.val
+        writers*.join()
+        assert values1 == values2
+        assert (0..<500) as List == values1.sort()
+        (0..<5).each {writer ->
+            assert values2.findAll {it.intdiv(100) == writer} == (writer * 100..<(writer + 1) * 100) as List
+        }
+        assert 0 == stream1.missedCount
+    }
+
+    public void testBlockingOnTheSlowestReader() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(2, BroadcastOverflowPolicy.BLOCK)
+        final RingBufferBroadcastReadAdapter fastStream = broadcast.createReadChannel()
+        final RingBufferBroadcastReadAdapter slowStream = broadcast.createReadChannel()
+        final CountDownLatch written = new CountDownLatch(1)
+        final Thread writer = Thread.start {
+            5.times {broadcast << it}
+            written.countDown()
+        }
+        assert [0, 1] == [fastStream.val, fastStream.val]
+        assert !written.await(200, TimeUnit.MILLISECONDS)
+        assert 0 == slowStream.val
+        assert 2 == fastStream.val
+        slowStream.close()
+        assert [3, 4] == [fastStream.val, fastStream.val]
+        assert written.await(10, TimeUnit.SECONDS)
+        writer.join()
+    }
+
+    public void testDropping() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(2, BroadcastOverflowPolicy.DROP)
+        final DataflowReadChannel stream = broadcast.createReadChannel()
+        5.times {broadcast << it}
+        assert 3 == broadcast.droppedCount
+        assert 2 == stream.length()
+        assert [0, 1] == [stream.val, stream.val]
+        broadcast << 5
+        assert 5 == stream.val
+    }
+
+    public void testLapping() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(4, BroadcastOverflowPolicy.LAP)
+        final RingBufferBroadcastReadAdapter stream = broadcast.createReadChannel()
+        10.times {broadcast << it}
+        assert [6, 7, 8, 9] == (1..4).collect {stream.val}
+        assert 6 == stream.missedCount
+        broadcast << 10
+        assert 10 == stream.val
+    }
+
+    public void testAsynchronousReads() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(8)
+        final DataflowReadChannel stream = broadcast.createReadChannel()
+        final Promise first = stream.then {it * 10}
+        final Promise second = stream.then {it * 10}
+        final DataflowQueue whenever = new DataflowQueue()
+        stream.wheneverBound {whenever << it}
+        broadcast << 1
+        broadcast << 2
+        broadcast << 3
+        assert 10 == first.val
+        assert 20 == second.val
+        assert 3 == stream.val
+        assert [1, 2, 3] == [whenever.val, whenever.val, whenever.val]
+    }
+
+    public void testWriterWaitingForAnUnboundSlotOfThePreviousLap() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(2, BroadcastOverflowPolicy.DROP)
+        final DataflowVariable variable = new DataflowVariable()
+        broadcast << variable
+        broadcast << 1
+        final Thread writer = Thread.start {broadcast << 2}
+        writer.join(100)
+        assert writer.alive
+        assert Thread.State.WAITING == writer.state
+        variable << 0
+        writer.join()
+    }
+
+    public void testClosingStopsWheneverBoundHandlers() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(2, BroadcastOverflowPolicy.BLOCK)
+        final RingBufferBroadcastReadAdapter stream = broadcast.createReadChannel()
+        final DataflowQueue whenever = new DataflowQueue()
+        stream.wheneverBound {whenever << it}
+        final Thread writer = Thread.start {5.times {broadcast << it}}
+        assert 0 == stream.val
+        assert 0 == whenever.val
+        stream.close()
+        writer.join()
+        Thread.sleep(100)
+        assert whenever.length() < 5
+    }
+
+    public void testDrainTo() {
+        final RingBufferBroadcast broadcast = new RingBufferBroadcast(8)
+        final RingBufferBroadcastReadAdapter stream = broadcast.createReadChannel()
+        [1, 2, 3].each {broadcast << it}
+        final List values = []
+        assert 2 == stream.drainTo(values, 2)
+        assert 1 == stream.drainTo(values, 10)
+        assert 0 == stream.drainTo(values, 10, 10, TimeUnit.MILLISECONDS)
+        assert [1, 2, 3] == values
+    }
+
+    public void testOperatorsAndSelect() {
+        final DefaultPGroup group = new DefaultPGroup(2)
+        try {
+            final RingBufferBroadcast broadcast = new RingBufferBroadcast(4)
+            final DataflowQueue doubled = broadcast.createReadChannel().chainWith(group) {it * 2}
+            final DataflowQueue squared = broadcast.createReadChannel().chainWith(group) {it * it}
+            final Select select = group.select(broadcast.createReadChannel())
+
+            final Thread writer = Thread.start {(1..20).each {broadcast << it}}
+            final Promise selected = Dataflow.task {(1..20).collect {select().value}}
+            assert (1..20).collect {it * 2} == (1..20).collect {doubled.val}
+            assert (1..20).collect {it * it} == (1..20).collect {squared.val}
+            assert (1..20) as List == selected.val
+            writer.join()
+        } finally {
+            group.shutdown()
+        }
+    }
+
+    public void testInvalidArguments() {
+        shouldFail(IllegalArgumentException) {
+            new RingBufferBroadcast(0)
+        }
+        shouldFail(IllegalArgumentException) {
+            new RingBufferBroadcast(16, null)
+        }
+        assert 16 == new RingBufferBroadcast(9).capacity
+    }
+}
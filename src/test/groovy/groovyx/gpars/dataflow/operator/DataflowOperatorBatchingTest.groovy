@@ -0,0 +1,232 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator
+
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.group.PGroup
+
+import java.util.concurrent.TimeUnit
+
+public class DataflowOperatorBatchingTest extends GroovyTestCase {
+
+    private PGroup group
+
+    protected void setUp() {
+        group = new DefaultPGroup(2)
+        super.setUp()
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+        super.tearDown()
+    }
+
+    public void testOperatorBatches() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowQueue c = new DataflowQueue()
+
+        def op = group.operator(inputs: [a, b], outputs: [c], batchSize: 3) {x, y ->
+            assert x.size() == 3
+            bindOutputBatch([x, y].transpose().collect { it[0] + it[1] })
+        }
+        assert op.batching
+
+        (1..6).each { a << it; b << 10 * it }
+        assert [11, 22, 33, 44, 55, 66] == (1..6).collect { c.val }
+        op.terminate()
+    }
+
+    public void testPartialBatchFlushedAfterDelay() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        def op = group.operator(inputs: [a], outputs: [b], batchSize: 100, maxBatchDelay: 100) {x ->
+            bindOutput x
+        }
+
+        a << 1
+        a << 2
+        assert [1, 2] == b.getVal(10, TimeUnit.SECONDS)
+        a << 3
+        assert [3] == b.getVal(10, TimeUnit.SECONDS)
+        op.terminate()
+    }
+
+    public void testPoisonFlushesPartialBatch() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        def op = group.operator(inputs: [a], outputs: [b], batchSize: 3) {x ->
+            bindOutput x
+        }
+
+        (1..4).each { a << it }
+        a << PoisonPill.instance
+        assert [1, 2, 3] == b.val
+        assert [4] == b.val
+        assert PoisonPill.instance == b.val
+        op.join()
+    }
+
+    public void testGentleStopFlushesPartialBatch() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        def op = group.operator(inputs: [a], outputs: [b], batchSize: 3) {x ->
+            bindOutput x
+        }
+
+        (1..4).each { a << it }
+        assert [1, 2, 3] == b.val
+        Thread.sleep 100
+        assert !b.bound
+        op.terminateAfterNextRun()
+        assert [4] == b.getVal(10, TimeUnit.SECONDS)
+        a << 5
+        assert [5] == b.getVal(10, TimeUnit.SECONDS)
+        op.join()
+        a << 6
+        Thread.sleep 100
+        assert !b.bound
+        assert 6 == a.val
+    }
+
+    public void testGentleStopOfSelectorFlushesPartialBatch() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        def op = group.selector(inputs: [a], outputs: [b], batchSize: 3) {values ->
+            bindOutput values
+        }
+
+        a << 1
+        Thread.sleep 100
+        op.terminateAfterNextRun()
+        assert [1] == b.getVal(10, TimeUnit.SECONDS)
+        a << 2
+        assert [2] == b.getVal(10, TimeUnit.SECONDS)
+        op.join()
+    }
+
+    public void testSelectorBatches() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowQueue c = new DataflowQueue()
+
+        def op = group.selector(inputs: [a, b], outputs: [c], batchSize: 4) {values, indexes ->
+            bindOutput([values, indexes])
+        }
+
+        a << 1
+        a << 2
+        b << 3
+        b << 4
+        def (values, indexes) = c.val
+        assert [1, 2, 3, 4] == values.sort()
+        assert [0, 0, 1, 1] == indexes.sort()
+        op.terminate()
+    }
+
+    public void testListenersNotifiedOncePerBatch() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowQueue c = new DataflowQueue()
+        final List before = [].asSynchronized()
+        final List after = [].asSynchronized()
+        final listener = new BatchListener(before, after)
+
+        def op = group.operator(inputs: [a, b], outputs: [c], batchSize: 2, listeners: [listener]) {x, y ->
+            bindOutput([x, y])
+        }
+
+        (1..4).each { a << it; b << 10 * it }
+        assert [[1, 2], [10, 20]] == c.val
+        assert [[3, 4], [30, 40]] == c.val
+        op.terminate()
+        op.join()
+        assert [[[1, 2], [10, 20]], [[3, 4], [30, 40]]] == before
+        assert before == after
+    }
+
+    public void testSelectorListenersNotifiedOncePerBatch() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final List before = [].asSynchronized()
+        final List after = [].asSynchronized()
+        final listener = new BatchListener(before, after)
+
+        def op = group.selector(inputs: [a], outputs: [b], batchSize: 3, listeners: [listener]) {values ->
+            bindOutput values
+        }
+
+        (1..6).each { a << it }
+        assert [1, 2, 3] == b.val
+        assert [4, 5, 6] == b.val
+        op.terminate()
+        op.join()
+        assert [[[1, 2, 3]], [[4, 5, 6]]] == before
+        assert before == after
+    }
+
+    public void testPipelineBatches() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        new Pipeline(group, a).filter(batchSize: 2) { it % 2 == 0 }.chainWith(batchSize: 2) { batch -> batch*.multiply(10) } into b
+
+        (1..8).each { a << it }
+        assert [20, 40, 60, 80] == (1..4).collect { b.val }
+    }
+
+    public void testInvalidParameters() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        shouldFail(IllegalArgumentException) {
+            group.operator(inputs: [a], outputs: [b], batchSize: 0) {}
+        }
+        shouldFail(IllegalArgumentException) {
+            group.operator(inputs: [a], outputs: [b], batchSize: 2, maxBatchDelay: -1) {}
+        }
+        shouldFail(IllegalArgumentException) {
+            group.operator(inputs: [a], outputs: [b], batchSize: 2, maxForks: 2) {}
+        }
+    }
+}
+
+class BatchListener extends DataflowEventAdapter {
+    private final List before
+    private final List after
+
+    BatchListener(final List before, final List after) {
+        this.before = before
+        this.after = after
+    }
+
+    @Override
+    List<Object> beforeRun(final DataflowProcessor processor, final List<Object> messages) {
+        before << messages.collect { new ArrayList(it) }
+        return messages
+    }
+
+    @Override
+    void afterRun(final DataflowProcessor processor, final List<Object> messages) {
+        after << messages.collect { new ArrayList(it) }
+    }
+}
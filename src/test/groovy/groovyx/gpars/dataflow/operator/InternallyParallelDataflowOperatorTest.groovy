@@ -23,7 +23,10 @@ import groovyx.gpars.dataflow.DataflowVariable
 import groovyx.gpars.group.DefaultPGroup
 import groovyx.gpars.group.PGroup
 
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * @author Vaclav Pech
@@ -209,4 +212,112 @@ public class InternallyParallelDataflowOperatorTest extends GroovyTestCase {
         stream << 'invalidValue'
         op.join()
     }
+
+    public void testOrderedOutput() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowQueue c = new DataflowQueue()
+
+        def op = group.operator(inputs: [a], outputs: [b, c], maxForks: 5, ordered: true) {x ->
+            Thread.sleep((10 - x % 10) * 5)
+            bindOutput 0, x
+            bindOutput 1, -x
+        }
+        assert op.ordered
+
+        (1..50).each { a << it }
+        assert (1..50).collect { b.val } == (1..50).collect { it }
+        assert (1..50).collect { c.val } == (1..50).collect { -it }
+        a << PoisonPill.instance
+        assert PoisonPill.instance == b.val
+        op.join()
+    }
+
+    public void testOrderedOutputBackpressure() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowVariable slowStarted = new DataflowVariable()
+        final DataflowVariable releaseSlow = new DataflowVariable()
+        final started = new AtomicInteger()
+
+        def op = group.operator(inputs: [a], outputs: [b], maxForks: 3, ordered: true) {x ->
+            started.incrementAndGet()
+            if (x == 1) {
+                slowStarted << true
+                releaseSlow.val
+            }
+            bindOutput x
+        }
+
+        (1..10).each { a << it }
+        slowStarted.val
+        Thread.sleep 200
+        assert 3 == started.get()
+        assert !b.bound
+        releaseSlow << true
+        assert (1..10).collect { b.val } == (1..10).collect { it }
+        op.terminate()
+    }
+
+    public void testAdaptiveForks() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final running = new AtomicInteger()
+        final maxRunning = new AtomicInteger()
+        final changes = new CopyOnWriteArrayList()
+        final listener = new DataflowEventAdapter() {
+            @Override
+            void forksChanged(final DataflowProcessor processor, final int previousForks, final int forks) {
+                changes << [previousForks, forks]
+            }
+        }
+
+        def op = group.operator(inputs: [a], outputs: [b], minForks: 1, maxForks: 4, listeners: [listener]) {x ->
+            final current = running.incrementAndGet()
+            if (current > maxRunning.get()) maxRunning.set(current)
+            Thread.sleep 10
+            running.decrementAndGet()
+            bindOutput x
+        }
+
+        (1..300).each { a << it }
+        assert (1..300).collect { b.val }.sort() == (1..300).collect { it }
+        assert changes[0] == [1, 2]
+        assert changes.every { it[1] >= 1 && it[1] <= 4 }
+        assert maxRunning.get() > 1
+        assert maxRunning.get() <= 4
+        a << PoisonPill.instance
+        assert PoisonPill.instance == b.val
+        op.join()
+    }
+
+    public void testAdaptiveForksRecoverAfterLatencyStepsUp() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        final DataflowQueue waiting = new DataflowQueue()
+        (1..10).each { waiting << it }
+
+        def op = group.operator(inputs: [a], outputs: [b], maxForks: 8) {}
+        final AdaptiveForks adaptiveForks = new AdaptiveForks(op, [waiting], group.threadPool, 1, 8)
+        final runWindows = {int windows, long millis ->
+            (windows * 16).times { adaptiveForks.runFinished(0L, TimeUnit.MILLISECONDS.toNanos(millis)) }
+            adaptiveForks.semaphore.availablePermits()
+        }
+
+        assert 5 == runWindows(4, 1)
+        assert runWindows(1, 3) < 5
+        assert 8 == runWindows(20, 3)
+        op.terminate()
+    }
+
+    public void testInvalidMinForks() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+        shouldFail(IllegalArgumentException) {
+            group.operator(inputs: [a], outputs: [b], minForks: 0, maxForks: 4) {}
+        }
+        shouldFail(IllegalArgumentException) {
+            group.operator(inputs: [a], outputs: [b], minForks: 5, maxForks: 4) {}
+        }
+    }
 }
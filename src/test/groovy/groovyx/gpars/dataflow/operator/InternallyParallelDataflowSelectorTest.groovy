@@ -160,4 +160,18 @@ public class InternallyParallelDataflowSelectorTest extends GroovyTestCase {
         stream << 'invalidValue'
         op.join()
     }
+
+    public void testOrderedOutput() {
+        final DataflowQueue a = new DataflowQueue()
+        final DataflowQueue b = new DataflowQueue()
+
+        def op = group.selector(inputs: [a], outputs: [b], maxForks: 4, ordered: true) {x ->
+            Thread.sleep((5 - x % 5) * 10)
+            bindOutput x
+        }
+
+        (1..20).each { a << it }
+        assert (1..20).collect { b.val } == (1..20).collect { it }
+        op.terminate()
+    }
 }
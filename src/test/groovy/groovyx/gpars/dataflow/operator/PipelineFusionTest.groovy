@@ -0,0 +1,121 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.dataflow.operator
+
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.group.NonDaemonPGroup
+import groovyx.gpars.group.PGroup
+
+public class PipelineFusionTest extends GroovyTestCase {
+
+    private PGroup group
+
+    public void setUp() throws Exception {
+        group = new NonDaemonPGroup()
+    }
+
+    public void tearDown() throws Exception {
+        group.shutdown()
+    }
+
+    public void testFusedStages() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue queue2 = new DataflowQueue()
+
+        final pipeline = new Pipeline(group, queue1).fuse()
+        pipeline.chainWith { it * 2 }.filter { it % 3 != 0 }.chainWith { it + 1 }
+        assert pipeline.fusing
+        pipeline.into queue2
+
+        (1..6).each { queue1 << it }
+        assert [3, 5, 9, 11] == (1..4).collect { queue2.val }
+    }
+
+    public void testFusedStagesShareSingleOperator() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final operators = [] as Set
+
+        final pipeline = new Pipeline(group, queue1).fuse()
+        pipeline.chainWith { operators << delegate; it + 1 }.chainWith { operators << delegate; it * 10 }.filter { it > 20 }.chainWith { operators << delegate; it - 1 }
+        final output = pipeline.output
+        assert output.is(pipeline.output)
+
+        (1..3).each { queue1 << it }
+        assert [29, 39] == (1..2).collect { output.val }
+        assert 1 == operators.size()
+        assert operators.iterator().next() instanceof DataflowOperator
+    }
+
+    public void testTapMaterializesChannel() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue queue2 = new DataflowQueue()
+        final DataflowQueue tapped = new DataflowQueue()
+
+        new Pipeline(group, queue1).fuse().chainWith { it * 2 }.tap(tapped).chainWith { it + 1 }.filter { it > 3 } into queue2
+
+        (1..3).each { queue1 << it }
+        assert [2, 4, 6] == (1..3).collect { tapped.val }
+        assert [5, 7] == (1..2).collect { queue2.val }
+    }
+
+    public void testNonFusibleStage() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue queue2 = new DataflowQueue()
+
+        new Pipeline(group, queue1).fuse().chainWith { it * 2 }.chainWith(maxForks: 2) { it + 1 }.chainWith(maxForks: 1) { it * 10 } into queue2
+
+        (1..3).each { queue1 << it }
+        assert [30, 50, 70] == (1..3).collect { queue2.val }.sort()
+    }
+
+    public void testPoisonPassesFusedStages() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue queue2 = new DataflowQueue()
+
+        new Pipeline(group, queue1).fuse().chainWith { it * 2 }.filter { true }.chainWith { it + 1 } into queue2
+
+        queue1 << 1
+        queue1 << PoisonPill.instance
+        assert 3 == queue2.val
+        assert PoisonPill.instance == queue2.val
+    }
+
+    public void testSideEffectingLastStageRuns() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue results = new DataflowQueue()
+
+        new Pipeline(group, queue1).fuse().chainWith { it * 2 }.chainWith { results << it; it }
+
+        (1..3).each { queue1 << it }
+        assert [2, 4, 6] == (1..3).collect { results.val }
+    }
+
+    public void testStagesAddedAfterProcessingStartedSeeAllValues() {
+        final DataflowQueue queue1 = new DataflowQueue()
+        final DataflowQueue processed = new DataflowQueue()
+        final DataflowQueue queue2 = new DataflowQueue()
+
+        final pipeline = new Pipeline(group, queue1).fuse().chainWith { processed << it; it * 2 }
+        queue1 << 1
+        assert 1 == processed.val
+        pipeline.chainWith { it + 1 }.filter { it > 0 }
+        (2..3).each { queue1 << it }
+        pipeline.into queue2
+        assert [3, 5, 7] == (1..3).collect { queue2.val }
+    }
+}
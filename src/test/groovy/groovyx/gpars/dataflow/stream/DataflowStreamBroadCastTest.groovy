@@ -21,6 +21,7 @@ import groovyx.gpars.dataflow.DataflowBroadcast
 import groovyx.gpars.dataflow.DataflowReadChannel
 import groovyx.gpars.dataflow.DataflowWriteChannel
 import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
 
 public class DataflowStreamBroadCastTest extends GroovyTestCase {
 
@@ -67,6 +68,33 @@ public class DataflowStreamBroadCastTest extends GroovyTestCase {
         assert stream2.val == 'Message3'
     }
 
+    public void testBindAllAndDrain() {
+        final DataflowBroadcast broadcast = new DataflowBroadcast()
+        final DataflowStreamReadAdapter stream1 = broadcast.createReadChannel()
+        final DataflowStreamReadAdapter stream2 = broadcast.createReadChannel()
+        broadcast << 0
+        broadcast.bindAll([1, 2, null, 4])
+        final List values1 = []
+        assert 3 == stream1.drainTo(values1, 3)
+        assert 2 == stream1.drainTo(values1, 10)
+        assert [0, 1, 2, null, 4] == values1
+        assert 0 == stream1.drainTo(values1, 10)
+        assert 0 == stream1.drainTo(values1, 10, 10, TimeUnit.MILLISECONDS)
+
+        final List values2 = []
+        assert 5 == stream2.drainTo(values2, 10, 10, TimeUnit.MILLISECONDS)
+        assert values1 == values2
+
+        Thread.start {
+            Thread.sleep 100
+            broadcast.bindAll([5, 6])
+        }
+        final List values3 = []
+        assert 1 <= stream1.drainTo(values3, 10, 10, TimeUnit.SECONDS)
+        while (values3.size() < 2) stream1.drainTo(values3, 10, 10, TimeUnit.SECONDS)
+        assert [5, 6] == values3
+    }
+
     private def checkResult(DataflowReadChannel stream) {
         def result = (1..10).collect {
             stream.val
@@ -20,6 +20,7 @@ import groovyx.gpars.group.PGroup
 import groovyx.gpars.group.PGroupBuilder
 import groovyx.gpars.scheduler.DefaultPool
 import groovyx.gpars.scheduler.Pool
+import groovyx.gpars.scheduler.VirtualThreadPool
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
 import java.util.concurrent.ForkJoinPool
@@ -52,4 +53,21 @@ class PGroupBuilderTest extends GroovyTestCase {
         group.threadPool.execute({->})
         group.shutdown()
     }
+
+    public void testVirtualThreadGroup() {
+        if (!VirtualThreadPool.supported) {
+            shouldFail(UnsupportedOperationException) {
+                PGroupBuilder.createVirtualThreadGroup()
+            }
+            return
+        }
+        PGroup group = PGroupBuilder.createVirtualThreadGroup()
+        assert group.threadPool instanceof VirtualThreadPool
+        final def actor = group.blockingActor {
+            reply receive() * 2
+        }
+        assert 20 == actor.sendAndWait(10)
+        assert 'done' == group.task { 'done' }.get()
+        group.shutdown()
+    }
 }
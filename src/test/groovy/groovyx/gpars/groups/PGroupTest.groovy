@@ -18,10 +18,16 @@ package groovyx.gpars.groups
 
 import groovyx.gpars.actor.Actors
 import groovyx.gpars.actor.BlockingActor
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.agent.AgentCore
 import groovyx.gpars.dataflow.DataflowVariable
 import groovyx.gpars.group.DefaultPGroup
 import groovyx.gpars.group.NonDaemonPGroup
 import groovyx.gpars.group.PGroup
+import groovyx.gpars.util.DefaultMessageQueue
+import groovyx.gpars.util.FQMessageQueue
+import groovyx.gpars.util.MessageQueueFactory
+import groovyx.gpars.util.RingBufferMessageQueue
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -139,6 +145,82 @@ public class PGroupTest extends GroovyTestCase {
         nonDaemonGroup2.shutdown()
     }
 
+    void testMessageQueueFactory() {
+        final group = new NonDaemonPGroup(4)
+        assert group.createMessageQueue() instanceof DefaultMessageQueue
+        group.messageQueueFactory = {new RingBufferMessageQueue(64)} as MessageQueueFactory
+
+        final DataflowVariable result = new DataflowVariable()
+        final actor = group.messageHandler {
+            when {Integer msg -> result << msg * 2}
+        }
+        assert actor.core.messageQueue instanceof RingBufferMessageQueue
+        actor << 10
+        assert result.val == 20
+
+        final agent = group.agent(0)
+        final coreField = AgentCore.getDeclaredField('core')
+        coreField.accessible = true
+        assert coreField.get(agent).messageQueue instanceof RingBufferMessageQueue
+        100.times {agent << {updateValue(it + 1)}}
+        assert agent.val == 100
+
+        actor.terminate()
+        group.shutdown()
+    }
+
+    void testMessageQueuePerActor() {
+        final group = new NonDaemonPGroup(4)
+        final DataflowVariable result = new DataflowVariable()
+        final actor = new StaticTestActor(result)
+        actor.parallelGroup = group
+        actor.messageQueue = new FQMessageQueue()
+        assert actor.core.messageQueue instanceof FQMessageQueue
+        actor.start()
+        shouldFail(IllegalStateException) {
+            actor.messageQueue = new RingBufferMessageQueue()
+        }
+        actor << 'Hello'
+        assert result.val == 'Hello'
+        actor.terminate()
+        group.shutdown()
+    }
+
+    void testMessageQueueCannotBeReplacedAfterFirstMessage() {
+        final group = new NonDaemonPGroup(4)
+        final agent = group.agent(0)
+        agent.messageQueue = new RingBufferMessageQueue(16)
+        agent << {updateValue(it + 1)}
+        assert agent.val == 1
+        shouldFail(IllegalStateException) {
+            agent.messageQueue = new DefaultMessageQueue()
+        }
+        group.messageQueueFactory = {new FQMessageQueue()} as MessageQueueFactory
+        agent.PGroup = group
+        final coreField = AgentCore.getDeclaredField('core')
+        coreField.accessible = true
+        assert coreField.get(agent).messageQueue instanceof RingBufferMessageQueue
+        group.shutdown()
+    }
+
+    void testActorSendingToItselfWithFullRingBuffer() {
+        final group = new NonDaemonPGroup(4)
+        group.messageQueueFactory = {new RingBufferMessageQueue(2)} as MessageQueueFactory
+        final DataflowVariable result = new DataflowVariable()
+        final List received = []
+        final actor = group.messageHandler {
+            when {String msg -> 10.times {send it}}
+            when {Integer msg ->
+                received << msg
+                if (received.size() == 10) result << received
+            }
+        }
+        actor << 'start'
+        assert result.val == (0..<10) as List
+        actor.terminate()
+        group.shutdown()
+    }
+
     void testWhenAllBound() {
         final group = new NonDaemonPGroup(4)
         final promises = (1..5).collect {new DataflowVariable()}
@@ -172,6 +254,19 @@ public class PGroupTest extends GroovyTestCase {
     }
 }
 
+class StaticTestActor extends StaticDispatchActor<String> {
+    private final DataflowVariable result
+
+    StaticTestActor(final DataflowVariable result) {
+        this.result = result
+    }
+
+    @Override
+    void onMessage(final String message) {
+        result << message
+    }
+}
+
 class GroupTestActor extends BlockingActor {
 
     def GroupTestActor(PGroup group) {
@@ -0,0 +1,74 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.groups
+
+import groovyx.gpars.dataflow.DataflowVariable
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.VirtualThreadPool
+import groovyx.gpars.util.VirtualThreadPoolFactory
+
+/**
+ * Runs fully on Java 21 and newer through the testJava21 build task, which puts the Java 21 variant of the pool on the classpath
+ */
+public class VirtualThreadGroupTest extends GroovyTestCase {
+
+    public void testUnsupportedJvm() {
+        if (VirtualThreadPool.supported) return
+        shouldFail(UnsupportedOperationException) {
+            new VirtualThreadPool()
+        }
+        shouldFail(UnsupportedOperationException) {
+            new VirtualThreadPoolFactory().createPool(true, 10)
+        }
+    }
+
+    public void testTasksRunInVirtualThreads() {
+        if (!VirtualThreadPool.supported) return
+        final def pool = new VirtualThreadPool()
+        final def virtual = new DataflowVariable()
+        pool.execute { virtual << Thread.currentThread().virtual }
+        assert virtual.val
+        shouldFail(UnsupportedOperationException) {
+            pool.resize(5)
+        }
+        pool.shutdown()
+    }
+
+    public void testManyBlockingActors() {
+        if (!VirtualThreadPool.supported) return
+        final def group = new DefaultPGroup(new VirtualThreadPool())
+        //more actors than the default resizeable pool allows threads for
+        final def actors = (1..5000).collect {
+            group.blockingActor {
+                reply receive() + 1
+            }
+        }
+        assert actors.every { it.sendAndWait(1) == 2 }
+        group.shutdown()
+    }
+
+    public void testBlockingDataflowTasks() {
+        if (!VirtualThreadPool.supported) return
+        final def group = new DefaultPGroup(new VirtualThreadPoolFactory().createPool())
+        final def trigger = new DataflowVariable()
+        final def results = (1..2000).collect { group.task { trigger.val * 2 } }
+        trigger << 21
+        assert results.every { it.get() == 42 }
+        group.shutdown()
+    }
+}
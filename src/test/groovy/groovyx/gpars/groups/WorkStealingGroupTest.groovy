@@ -0,0 +1,189 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.groups
+
+import groovyx.gpars.actor.StaticDispatchActor
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.scheduler.WorkStealingPool
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+public class WorkStealingGroupTest extends GroovyTestCase {
+
+    public void testActorsAndTasks() {
+        final DefaultPGroup group = new DefaultPGroup(new WorkStealingPool(4))
+        final def actor = group.actor {
+            loop {
+                react {
+                    reply it * 2
+                }
+            }
+        }
+        assert 20 == actor.sendAndWait(10)
+        assert 30 == group.task { 15 * 2 }.get()
+        actor.terminate()
+        group.shutdown()
+    }
+
+    public void testChainStaysOnSenderThread() {
+        final DefaultPGroup group = new DefaultPGroup(new WorkStealingPool(4))
+        final int rounds = 200
+        final def localHops = new AtomicInteger(0)
+        final def latch = new CountDownLatch(rounds)
+
+        final def last = new ChainActor(null, localHops, latch)
+        final def middle = new ChainActor(last, localHops, latch)
+        final def first = new ChainActor(middle, localHops, latch)
+        [last, middle, first].each {
+            it.parallelGroup = group
+            it.silentStart()
+        }
+
+        rounds.times {
+            first << Thread.currentThread()
+            Thread.sleep(1)
+        }
+        assert latch.await(30, TimeUnit.SECONDS)
+        //the woken actors may occasionally get stolen, but most hops should stay on the sender's thread
+        assert localHops.get() > rounds
+        [first, middle, last]*.terminate()
+        group.shutdown()
+    }
+
+    public void testIdleWorkersStealWork() {
+        final int poolSize = 4
+        final def pool = new WorkStealingPool(poolSize)
+        final def barrier = new CyclicBarrier(poolSize)
+        final def done = new CountDownLatch(poolSize)
+
+        pool.execute {
+            //all tasks are submitted from a worker thread, so they would all land in its local queue
+            poolSize.times {
+                pool.execute {
+                    barrier.await(30, TimeUnit.SECONDS)
+                    done.countDown()
+                }
+            }
+        }
+        assert done.await(30, TimeUnit.SECONDS)
+        pool.shutdown()
+    }
+
+    public void testLongRunningTasksWithConcurrentSubmissions() {
+        final int poolSize = 4
+        final def pool = new WorkStealingPool(poolSize)
+        try {
+            1000.times {
+                final def barrier = new CyclicBarrier(poolSize)
+                final def done = new CountDownLatch(poolSize)
+                //each task blocks until all the others submitted from outside have started, so all workers must get woken up
+                final def submitters = (1..poolSize).collect {
+                    Thread.start {
+                        pool.execute {
+                            barrier.await(10, TimeUnit.SECONDS)
+                            done.countDown()
+                        }
+                    }
+                }
+                submitters*.join()
+                assert done.await(30, TimeUnit.SECONDS)
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    public void testManyMessages() {
+        final DefaultPGroup group = new DefaultPGroup(new WorkStealingPool(3))
+        final int numOfActors = 20
+        final int numOfMessages = 10000
+        final def counter = new AtomicInteger(0)
+        final def latch = new CountDownLatch(numOfActors * numOfMessages)
+        final def actors = (1..numOfActors).collect {
+            group.messageHandler {
+                when { Integer msg ->
+                    counter.incrementAndGet()
+                    latch.countDown()
+                }
+            }
+        }
+
+        final def producers = (1..4).collect {
+            Thread.start {
+                for (int i = 0; i < numOfMessages / 4; i++) {
+                    actors.each { it << i }
+                }
+            }
+        }
+        producers*.join()
+        assert latch.await(60, TimeUnit.SECONDS)
+        assert numOfActors * numOfMessages == counter.get()
+        actors*.terminate()
+        group.shutdown()
+    }
+
+    public void testDataflowOnWorkStealingGroup() {
+        final DefaultPGroup group = new DefaultPGroup(new WorkStealingPool(2))
+        final def result = group.task {
+            final def a = group.task { 10 }
+            final def b = group.task { 20 }
+            a.get() + b.get()
+        }
+        assert 30 == result.get()
+        group.shutdown()
+    }
+
+    public void testShutdown() {
+        final def pool = new WorkStealingPool(2)
+        final def latch = new CountDownLatch(100)
+        100.times {
+            pool.execute { latch.countDown() }
+        }
+        pool.shutdown()
+        assert 0 == latch.count
+        shouldFail(RejectedExecutionException) {
+            pool.execute {}
+        }
+        shouldFail(UnsupportedOperationException) {
+            pool.resize(5)
+        }
+        assert 2 == pool.poolSize
+    }
+}
+
+final class ChainActor extends StaticDispatchActor<Thread> {
+    private final def next
+    private final def localHops
+    private final def latch
+
+    ChainActor(next, localHops, latch) {
+        this.next = next
+        this.localHops = localHops
+        this.latch = latch
+    }
+
+    @Override
+    void onMessage(final Thread senderThread) {
+        if (senderThread == Thread.currentThread()) localHops.incrementAndGet()
+        if (next != null) next << Thread.currentThread()
+        else latch.countDown()
+    }
+}
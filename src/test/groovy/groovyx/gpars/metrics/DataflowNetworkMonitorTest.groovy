@@ -0,0 +1,145 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package groovyx.gpars.metrics
+
+import groovyx.gpars.dataflow.BoundedDataflowQueue
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.dataflow.operator.PoisonPill
+import groovyx.gpars.group.DefaultPGroup
+import groovyx.gpars.group.PGroup
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+
+public class DataflowNetworkMonitorTest extends GroovyTestCase {
+
+    private PGroup group
+
+    protected void setUp() {
+        group = new DefaultPGroup(4)
+        super.setUp()
+    }
+
+    protected void tearDown() {
+        group.shutdown()
+        super.tearDown()
+    }
+
+    public void testGroupMonitoring() {
+        final def monitor = new DataflowNetworkMonitor('network').attachTo(group)
+        final def a = new DataflowQueue()
+        final def b = new DataflowQueue()
+        final def c = new DataflowQueue()
+        final def d = new DataflowQueue()
+
+        final def fast = group.operator(a, b) { bindOutput it + 1 }
+        final def slow = group.operator(b, c) { Thread.sleep 5; bindOutput it * 2 }
+        group.selector(inputs: [c], outputs: [d]) { bindOutput it }
+        monitor.setProcessorName(slow, 'slow')
+
+        (1..20).each { a << it }
+        assert (1..20).collect { d.val } == (1..20).collect { (it + 1) * 2 }
+        Thread.sleep 50
+
+        final def metrics = monitor.snapshot()
+        assert 3 == metrics.size()
+        assert ['DataflowOperator-1', 'slow', 'DataflowSelector-3'] == metrics*.name
+        assert metrics.every { it.firings == 20 }
+        assert metrics[1].bodyLatency.mean >= 5000000
+        assert metrics[1].utilisation > metrics[0].utilisation
+        assert [0] == metrics[0].inputLengths
+
+        assert 'slow' == monitor.bottleneck
+        assert 'DataflowOperator-1 -> slow -> DataflowSelector-3' == monitor.criticalPath
+        assert 60 == monitor.totalFirings
+
+        final def json = monitor.toJson()
+        assert json.startsWith('{"name":"network","processors":[{"id":"p1","name":"DataflowOperator-1","type":"DataflowOperator","firings":20,')
+        assert json.contains('"inputs":["c1"],"outputs":["c2"]}')
+        assert json.contains('{"id":"p2","name":"slow",')
+        assert json.contains('"inputs":["c2"],"outputs":["c3"]}')
+        assert json.contains('{"id":"c4","type":"DataflowQueue","length":0}]')
+        assert json.endsWith('"bottleneck":"p2","criticalPath":["p1","p2","p3"]}')
+
+        final def dot = monitor.toDot()
+        assert dot.startsWith('digraph "network" {')
+        assert dot.contains('p2 [shape=box,label="slow')
+        assert dot.contains('fillcolor=red')
+        assert dot.contains('p1 -> c2;')
+        assert dot.contains('c2 -> p2;')
+    }
+
+    public void testMonitoringSelectedProcessors() {
+        final def monitor = new DataflowNetworkMonitor('selected')
+        final def a = new DataflowQueue()
+        final def b = new BoundedDataflowQueue(1)
+        final def c = new DataflowQueue()
+
+        final def op = group.operator(a, b) { bindOutput it }
+        final def other = group.operator(b, c) { bindOutput it }
+        monitor.monitor(op, 'writer')
+        (1..5).each { a << it }
+        (1..5).each { c.val }
+
+        final def metrics = monitor.snapshot()
+        assert 1 == metrics.size()
+        assert 'writer' == metrics[0].name
+        assert metrics[0].outputWaitTime >= 0
+        assert 'writer' == monitor.criticalPath
+
+        a << PoisonPill.instance
+        op.join()
+        other.join()
+        assert monitor.snapshot().empty
+        assert 0 == monitor.processorCount
+    }
+
+    public void testForkedLatencyExcludesWaitingForFork() {
+        final def monitor = new DataflowNetworkMonitor('forked')
+        final def a = new DataflowQueue()
+        final def b = new DataflowQueue()
+
+        final def op = group.operator(inputs: [a], outputs: [b], maxForks: 2) { Thread.sleep 100; bindOutput it }
+        monitor.monitor(op)
+        (1..8).each { a << it }
+        assert (1..8).collect { it } == (1..8).collect { b.val }.sort()
+        Thread.sleep 50
+
+        final def latency = monitor.snapshot()[0].bodyLatency
+        assert 8 == latency.count
+        assert latency.mean >= TimeUnit.MILLISECONDS.toNanos(100)
+        assert latency.max < TimeUnit.MILLISECONDS.toNanos(180)
+        op.terminate()
+    }
+
+    public void testJmx() {
+        final def monitor = new DataflowNetworkMonitor('jmxNetwork').registerMBean()
+        try {
+            final def server = ManagementFactory.platformMBeanServer
+            final def name = new ObjectName('groovyx.gpars:type=DataflowNetwork,name="jmxNetwork"')
+            assert name == monitor.objectName
+            assert 0 == server.getAttribute(name, 'ProcessorCount')
+            assert server.getAttribute(name, 'Json').startsWith('{"name":"jmxNetwork"')
+            assert null == server.getAttribute(name, 'Bottleneck')
+        } finally {
+            monitor.unregisterMBean()
+        }
+        assert null == monitor.objectName
+    }
+}
@@ -0,0 +1,213 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.metrics
+
+import groovyx.gpars.actor.Actors
+import groovyx.gpars.actor.DynamicDispatchActor
+import groovyx.gpars.agent.Agent
+import groovyx.gpars.dataflow.DataflowQueue
+import groovyx.gpars.scheduler.DefaultPool
+import groovyx.gpars.util.AsyncMessagingCore
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+public class MessagingMetricsTest extends GroovyTestCase {
+
+    public void testHistogramPercentiles() {
+        final def histogram = new LatencyHistogram()
+        (1..1000).each { histogram.record(it * 1000L) }
+        histogram.record(-1L)
+        final def snapshot = histogram.snapshot()
+        assert 1000 == snapshot.count
+        assert 500500 == snapshot.mean
+        assert 1000000 == snapshot.max
+        assert Math.abs(snapshot.getPercentile(50.0) - 500000) <= 125000
+        assert Math.abs(snapshot.getPercentile(99.0) - 990000) <= 250000
+        assert snapshot.getPercentile(100.0) == 1000000
+        assert 0 == new LatencyHistogram().snapshot().getPercentile(99.0)
+    }
+
+    public void testHistogramBuckets() {
+        [0L, 1L, 3L, 4L, 7L, 8L, 9L, 1000L, 123456789L, Long.MAX_VALUE].each {
+            final int bucket = LatencyHistogram.bucketOf(it)
+            assert LatencyHistogram.upperBoundOf(bucket) >= it
+            assert bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < it
+        }
+    }
+
+    public void testActorMetrics() {
+        final def latch = new CountDownLatch(1)
+        final def done = new DataflowQueue()
+        final def actor = new DynamicDispatchActor().become {
+            when { String msg -> latch.await(); done << msg }
+            when { Integer msg -> Thread.sleep(msg); done << msg }
+        }
+        final MessagingMetrics metrics = actor.enableMetrics('testActor')
+        actor.start()
+
+        actor 'block'
+        10.times { actor 'queued' }
+        Thread.sleep(50)
+        assert metrics.queueLength >= 9
+        latch.countDown()
+        11.times { done.val }
+        actor 20
+        done.val
+        actor.stop()
+        actor.join()
+        awaitProcessed(metrics, 14)
+
+        //the start and stop messages get measured, too
+        final def snapshot = metrics.snapshot()
+        assert 'testActor' == snapshot.name
+        assert 14 == snapshot.enqueuedMessages
+        assert 14 == snapshot.processedMessages
+        assert 0 == snapshot.queueLength
+        assert snapshot.throughput > 0.0
+        assert snapshot.queueingLatency.count == 14
+        assert snapshot.queueingLatency.max >= TimeUnit.MILLISECONDS.toNanos(40)
+        assert snapshot.handlerLatency.max >= TimeUnit.MILLISECONDS.toNanos(20)
+        assert actor.instrumentation.is(metrics)
+        shouldFail(IllegalStateException) {
+            actor.enableMetrics('again')
+        }
+    }
+
+    public void testAgentMetrics() {
+        final def agent = new Agent(0)
+        final MessagingMetrics metrics = agent.enableMetrics('testAgent')
+        100.times { agent { updateValue(it + 1) } }
+        assert 100 == agent.val
+        //reading the value goes through the message queue, too
+        final def snapshot = metrics.snapshot()
+        assert 101 == snapshot.enqueuedMessages
+        assert snapshot.processedMessages >= 100
+        assert 101 == snapshot.queueingLatency.count
+        assert 0 == snapshot.queueLength
+    }
+
+    public void testMessagesSentAfterTheHandlerFinished() {
+        final def pool = new DefaultPool(false, 1)
+        final def handled = new DataflowQueue()
+        final def queueingTimes = Collections.synchronizedList([])
+        final def core = new AsyncMessagingCore(pool) {
+            @Override
+            protected void registerError(final Throwable e) {
+                handled << e
+            }
+
+            @Override
+            protected void handleMessage(final Object message) {
+                handled << message
+            }
+        }
+        core.instrument(new MessagingInstrumentation() {
+            @Override
+            void messageEnqueued() {
+            }
+
+            @Override
+            void messageDequeued(final long queueingTime) {
+                queueingTimes << queueingTime
+            }
+
+            @Override
+            void messageHandled(final long handlerTime) {
+                //sent after the previous message's handling has been timed, but before the next message is taken
+                if (queueingTimes.size() == 1) core.store('second')
+            }
+        })
+        try {
+            core.store('first')
+            assert 'first' == handled.val
+            assert 'second' == handled.val
+            assert 2 == queueingTimes.size()
+            assert queueingTimes.every { it >= 0L }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    public void testBlockingActorMetrics() {
+        final def results = new DataflowQueue()
+        final def actor = Actors.blockingActor {
+            3.times {
+                final def msg = receive()
+                Thread.sleep(20)
+                results << msg
+            }
+        }
+        shouldFail(IllegalStateException) {
+            actor.enableMetrics('tooLate')
+        }
+
+        final def instrumented = new groovyx.gpars.actor.impl.RunnableBackedBlockingActor({
+            3.times {
+                final def msg = receive()
+                Thread.sleep(20)
+                results << msg
+            }
+        })
+        final MessagingMetrics metrics = instrumented.enableMetrics('testBlockingActor')
+        instrumented.start()
+        3.times { instrumented it }
+        instrumented.join()
+        3.times { results.val }
+        actor.terminate()
+
+        final def snapshot = metrics.snapshot()
+        assert 4 == snapshot.enqueuedMessages
+        assert 0 == snapshot.queueLength
+        assert 4 == snapshot.queueingLatency.count
+        assert 4 == snapshot.handlerLatency.count
+        assert snapshot.handlerLatency.max >= TimeUnit.MILLISECONDS.toNanos(20)
+    }
+
+    public void testJmxRegistration() {
+        final def actor = new DynamicDispatchActor().become {
+            when { msg -> reply msg }
+        }
+        final MessagingMetrics metrics = actor.enableMetrics('jmx "actor"').registerMBean()
+        actor.start()
+        5.times { actor.sendAndWait it }
+        awaitProcessed(metrics, 6)
+
+        final def server = ManagementFactory.getPlatformMBeanServer()
+        final ObjectName name = metrics.objectName
+        assert name.domain == MessagingMetrics.JMX_DOMAIN
+        assert server.isRegistered(name)
+        assert 6L == server.getAttribute(name, 'ProcessedMessages')
+        assert 0L == server.getAttribute(name, 'QueueLength')
+        assert server.getAttribute(name, 'MaxHandlerLatency') >= 0L
+
+        metrics.unregisterMBean()
+        assert !server.isRegistered(name)
+        assert null == metrics.objectName
+        actor.terminate()
+    }
+
+    /**
+     * The handler time gets recorded after the handler code replies or the actor's join latch gets bound
+     */
+    private static void awaitProcessed(final MessagingMetrics metrics, final long count) {
+        final long deadline = System.currentTimeMillis() + 10000
+        while (metrics.processedMessages < count && System.currentTimeMillis() < deadline) Thread.sleep(10)
+    }
+}
@@ -143,4 +143,15 @@ class GParsConfigTest extends Specification {
         GParsConfig.timerFactory = null
         GParsConfig.timerFactoryFlag = false
     }
+
+    def "hashed wheel timer should be used without a timer factory"() {
+        when:
+        def timer = GParsConfig.retrieveDefaultTimer("Test timer", true)
+
+        then:
+        timer instanceof HashedWheelTimer
+
+        cleanup:
+        timer.shutdown()
+    }
 }
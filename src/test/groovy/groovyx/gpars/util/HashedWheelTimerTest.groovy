@@ -0,0 +1,164 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class HashedWheelTimerTest extends GroovyTestCase {
+
+    private ScheduledExecutorService scheduler
+    private HashedWheelTimer timer
+
+    @Override
+    protected void setUp() {
+        super.setUp()
+        scheduler = Executors.newSingleThreadScheduledExecutor()
+        timer = new HashedWheelTimer('Test wheel timer', scheduler, 5L, 8)
+    }
+
+    @Override
+    protected void tearDown() {
+        timer.shutdown()
+        scheduler.shutdownNow()
+        super.tearDown()
+    }
+
+    public void testTaskFiresAfterTimeout() {
+        final def latch = new CountDownLatch(1)
+        final long start = System.nanoTime()
+        timer.schedule({ latch.countDown() } as Runnable, 50L)
+        assert latch.await(10, TimeUnit.SECONDS)
+        assert TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50L
+        assert 0 == timer.activeTimeouts
+    }
+
+    public void testTimeoutsSpanningSeveralRounds() {
+        final def fired = Collections.synchronizedList([])
+        final def latch = new CountDownLatch(3)
+        [120L, 10L, 60L].each { timeout ->
+            timer.schedule({ fired << timeout; latch.countDown() } as Runnable, timeout)
+        }
+        assert latch.await(10, TimeUnit.SECONDS)
+        assert [10L, 60L, 120L] == fired
+    }
+
+    public void testZeroAndNegativeTimeouts() {
+        final def latch = new CountDownLatch(2)
+        timer.schedule({ latch.countDown() } as Runnable, 0L)
+        timer.schedule({ latch.countDown() } as Runnable, -10L)
+        assert latch.await(10, TimeUnit.SECONDS)
+        //the tasks don't wait for a tick
+        assert 0 == timer.activeTimeouts
+    }
+
+    public void testCancelledZeroTimeout() {
+        final def blocker = new CountDownLatch(1)
+        scheduler.execute { blocker.await() }
+        final def counter = new AtomicInteger(0)
+        final def timeout = timer.scheduleTimeout({ counter.incrementAndGet() } as Runnable, 0L)
+        assert timeout.cancel()
+        blocker.countDown()
+        final def latch = new CountDownLatch(1)
+        timer.schedule({ latch.countDown() } as Runnable, 0L)
+        assert latch.await(10, TimeUnit.SECONDS)
+        assert 0 == counter.get()
+    }
+
+    public void testTimersShareTheScheduler() {
+        final def otherTimer = new HashedWheelTimer('Other wheel timer', scheduler, 5L, 8)
+        try {
+            final def threads = Collections.synchronizedSet(new HashSet())
+            final def latch = new CountDownLatch(2)
+            timer.schedule({ threads << Thread.currentThread(); latch.countDown() } as Runnable, 10L)
+            otherTimer.schedule({ threads << Thread.currentThread(); latch.countDown() } as Runnable, 10L)
+            assert latch.await(10, TimeUnit.SECONDS)
+            assert 1 == threads.size()
+        } finally {
+            otherTimer.shutdown()
+        }
+    }
+
+    public void testCancelledTaskIsRemoved() {
+        final def counter = new AtomicInteger(0)
+        final def timeouts = (1..1000).collect { timer.scheduleTimeout({ counter.incrementAndGet() } as Runnable, 60000L) }
+        assert 1000 == timer.activeTimeouts
+        assert timeouts.every { it.cancel() }
+        assert !timeouts[0].cancel()
+
+        for (int i = 0; i < 100 && timer.activeTimeouts > 0; i++) {
+            Thread.sleep(10)
+        }
+        assert 0 == timer.activeTimeouts
+        assert 0 == counter.get()
+    }
+
+    public void testCancelAfterFiring() {
+        final def latch = new CountDownLatch(1)
+        final def timeout = timer.scheduleTimeout({ latch.countDown() } as Runnable, 10L)
+        assert latch.await(10, TimeUnit.SECONDS)
+        assert !timeout.cancel()
+    }
+
+    public void testFailingTaskDoesNotStopTheTimer() {
+        final def latch = new CountDownLatch(1)
+        timer.schedule({ throw new IllegalStateException('test') } as Runnable, 10L)
+        timer.schedule({ latch.countDown() } as Runnable, 30L)
+        assert latch.await(10, TimeUnit.SECONDS)
+    }
+
+    public void testTimerIdlesAndResumes() {
+        final def latch1 = new CountDownLatch(1)
+        timer.schedule({ latch1.countDown() } as Runnable, 10L)
+        assert latch1.await(10, TimeUnit.SECONDS)
+        Thread.sleep(100)
+
+        final def latch2 = new CountDownLatch(1)
+        timer.schedule({ latch2.countDown() } as Runnable, 10L)
+        assert latch2.await(10, TimeUnit.SECONDS)
+    }
+
+    public void testShutdown() {
+        timer.shutdown()
+        shouldFail(RejectedExecutionException) {
+            timer.schedule({} as Runnable, 10L)
+        }
+    }
+
+    public void testDefaultTimeoutForPlainTimers() {
+        final def tasks = []
+        final GeneralTimer plainTimer = new GeneralTimer() {
+            @Override
+            void schedule(final Runnable task, final long timeout) {
+                tasks << task
+            }
+
+            @Override
+            void shutdown() {}
+        }
+        final def counter = new AtomicInteger(0)
+        final def timeout1 = plainTimer.scheduleTimeout({ counter.incrementAndGet() } as Runnable, 10L)
+        plainTimer.scheduleTimeout({ counter.incrementAndGet() } as Runnable, 10L)
+        assert timeout1.cancel()
+        tasks*.run()
+        assert 1 == counter.get()
+    }
+}
@@ -0,0 +1,76 @@
+// GPars - Groovy Parallel Systems
+//
+// Copyright © 2008-2018  The original author or authors
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package groovyx.gpars.util
+
+class RingBufferMessageQueueTest extends AbstractMessageQueueTest {
+
+    protected MessageQueue createMessageQueue() {
+        return new RingBufferMessageQueue(16)
+    }
+
+    public void testCapacity() {
+        assert new RingBufferMessageQueue().capacity == RingBufferMessageQueue.DEFAULT_CAPACITY
+        assert new RingBufferMessageQueue(1).capacity == 1
+        assert new RingBufferMessageQueue(5).capacity == 8
+        assert new RingBufferMessageQueue(16).capacity == 16
+        shouldFail(IllegalArgumentException) {
+            new RingBufferMessageQueue(0)
+        }
+    }
+
+    public void testOfferWhenFull() {
+        final def queue = new RingBufferMessageQueue(4)
+        (1..4).each {assert queue.offer(it)}
+        assert queue.size() == 4
+        assert !queue.offer(5)
+        assert 1 == queue.poll()
+        assert queue.offer(5)
+        assert [2, 3, 4, 5] == (1..4).collect {queue.poll()}
+        assert queue.isEmpty()
+        assert queue.size() == 0
+    }
+
+    public void testAddWaitsForFreeSlot() {
+        final def queue = new RingBufferMessageQueue(2)
+        queue.add 1
+        queue.add 2
+        def writer = Thread.start {
+            queue.add 3
+        }
+        Thread.sleep 100
+        assert writer.alive
+        assert 1 == queue.poll()
+        writer.join()
+        assert 2 == queue.poll()
+        assert 3 == queue.poll()
+        assertNull queue.poll()
+    }
+
+    public void testReaderDoesNotWaitForItself() {
+        final def queue = new RingBufferMessageQueue(2)
+        assertNull queue.poll()
+        queue.add 1
+        queue.add 2
+        queue.add 3
+        assert 3 == queue.size()
+        assert 1 == queue.poll()
+        queue.add 4
+        assert [2, 3, 4] == (1..3).collect {queue.poll()}
+        assert queue.isEmpty()
+        assertNull queue.poll()
+    }
+}